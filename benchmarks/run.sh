@@ -0,0 +1,39 @@
+#!/bin/sh
+# 编译源码jar和基准测试jar，然后运行JMH，结果写入benchmarks/results/<提交号>.json
+# 用法：benchmarks/run.sh [JMH参数]，例如 benchmarks/run.sh HashMapBenchmark -p size=1000,100000
+#      benchmarks/run.sh footprint [size...]，测量每个键值对占用的内存，结果写入benchmarks/results/<提交号>-footprint.txt
+#      benchmarks/run.sh hitrate [cacheSize...]，模拟BoundedCache各种策略的命中率，结果写入benchmarks/results/<提交号>-hitrate.txt
+# 需要JDK 8；第一次运行前先联网执行一次 mvn dependency:go-offline（两个pom都要），之后可以离线运行
+set -e
+cd "$(dirname "$0")/.."
+# JDK 9及以上不支持-Xbootclasspath/p:，运行时也会失败，提前给出明确的错误
+if ! java -version 2>&1 | grep -q 'version "1\.8'; then
+    echo "benchmarks/run.sh需要JDK 8，当前java为：$(java -version 2>&1 | head -n 1)" >&2
+    exit 1
+fi
+mvn -B -o -q package
+mvn -B -o -q -f benchmarks/pom.xml package
+JAR="$(pwd)/target/jdk8-sourcecode-reading-1.0-SNAPSHOT.jar"
+REV="$(git rev-parse --short HEAD)"
+if [ -n "$(git status --porcelain -- src)" ]; then
+    REV="$REV-dirty"
+fi
+mkdir -p benchmarks/results
+if [ "$1" = "footprint" ]; then
+    shift
+    java "-Xbootclasspath/p:$JAR" -Xms4g -Xmx4g -XX:+UseSerialGC -XX:MarkSweepDeadRatio=0 \
+        -cp benchmarks/target/benchmarks.jar benchmark.Footprint "$@" \
+        | tee "benchmarks/results/$REV-footprint.txt"
+    exit 0
+fi
+if [ "$1" = "hitrate" ]; then
+    shift
+    java "-Xbootclasspath/p:$JAR" -cp benchmarks/target/benchmarks.jar benchmark.HitRate "$@" \
+        | tee "benchmarks/results/$REV-hitrate.txt"
+    exit 0
+fi
+exec java -jar benchmarks/target/benchmarks.jar \
+    -jvmArgsPrepend "-Xbootclasspath/p:$JAR" \
+    -prof gc \
+    -rf json -rff "benchmarks/results/$REV.json" \
+    "$@"
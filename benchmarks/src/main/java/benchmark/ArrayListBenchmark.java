@@ -0,0 +1,69 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ArrayList.add()（包括grow()扩容）和get()的基准测试
+ * add：用size次add()构建一个列表，结果是构建整个列表的耗时；
+ * get：按均匀随机的下标读取，结果是单次get()的耗时。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ArrayListBenchmark {
+    static final int LOOKUPS = 1 << 16;
+
+    static final Object ELEMENT = new Object();
+
+    @Param({"10", "1000", "100000", "10000000"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean presized;
+
+    ArrayList<Object> list;
+    int[] indexes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            list.add(ELEMENT);
+        indexes = Keys.accessOrder(LOOKUPS, size, "uniform");
+    }
+
+    @Benchmark
+    public ArrayList<Object> add() {
+        ArrayList<Object> l = presized ? new ArrayList<>(size) : new ArrayList<>();
+        for (int i = 0, n = size; i < n; i++)
+            l.add(ELEMENT);
+        return l;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void get(Blackhole bh) {
+        ArrayList<Object> l = list;
+        for (int i : indexes)
+            bh.consume(l.get(i));
+    }
+}
@@ -0,0 +1,74 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * HashMap的顺序批量操作（forEach()、replaceAll()）与并行批量操作（forEach(long, ...)、replaceAll(long, ...)、reduce()）的对比
+ * threshold是并行阈值，Long.MAX_VALUE（9223372036854775807）表示在当前线程顺序执行，1表示尽可能拆分；
+ * 加速比取决于机器的核数，ForkJoinPool.commonPool()的并行度可以用-Djava.util.concurrent.ForkJoinPool.common.parallelism指定。
+ * 并行版本的加速比还没有测量过：这个基准测试还没有在JDK 8上运行过，目前只有test/maps/ParallelBulkTest验证了行为。
+ * 值为Long，replaceAll每次都会分配新的Long，结果包括分配的开销。
+ * stream：values()的流求和，threshold为Long.MAX_VALUE时用stream()，否则用parallelStream()，拆分的均衡程度取决于Spliterator.trySplit()。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class BulkBenchmark {
+    @Param({"100000", "10000000"})
+    int size;
+
+    @Param({"9223372036854775807", "1"})
+    long threshold;
+
+    HashMap<Integer, Long> map;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        map = new HashMap<>((int) (size / 0.75f) + 1);
+        for (int i = 0; i < size; i++)
+            map.put(i, (long) i);
+    }
+
+    @Benchmark
+    public long forEach() {
+        LongAdder sum = new LongAdder();
+        map.forEach(threshold, (k, v) -> sum.add(v));
+        return sum.sum();
+    }
+
+    @Benchmark
+    public HashMap<Integer, Long> replaceAll() {
+        map.replaceAll(threshold, (k, v) -> (v * 31 + k) & 0xffffL);
+        return map;
+    }
+
+    @Benchmark
+    public Long reduce() {
+        return map.reduce(threshold, (k, v) -> v, Long::sum);
+    }
+
+    @Benchmark
+    public long stream() {
+        Stream<Long> s = (threshold == Long.MAX_VALUE) ? map.values().stream() : map.values().parallelStream();
+        return s.mapToLong(Long::longValue).sum();
+    }
+}
@@ -0,0 +1,134 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.Collections;
+import java.util.ConcurrentBinHashMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ConcurrentBinHashMap与Collections.synchronizedMap(HashMap)在多个线程共享同一个Map时的吞吐量对比
+ * 默认4个线程，用-t 1、-t 2、-t 8等分别运行可以看出随线程数的扩展性，例如benchmarks/run.sh ConcurrentMapBenchmark -t 8
+ * get：只读，ConcurrentBinHashMap不加锁，synchronizedMap的每次get都要竞争同一把锁
+ * mixed：每WRITE_EVERY次操作中有一次put，其余是get，put覆盖已有的键，Map的大小不变
+ * putRemove：每个线程添加然后删除自己的一组键，数组在扩容之后一直保持较大的容量，主要测量桶锁的竞争
+ * 结果是每个线程单次操作的吞吐量，乘以线程数是总吞吐量
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Threads(4)
+@State(Scope.Benchmark)
+public class ConcurrentMapBenchmark {
+    /**
+     * 每次基准调用中的操作次数
+     */
+    static final int OPERATIONS = 1 << 12;
+
+    /**
+     * mixed中写操作的比例为1/WRITE_EVERY
+     */
+    static final int WRITE_EVERY = 10;
+
+    @Param({"1000", "1000000"})
+    int size;
+
+    @Param({"ConcurrentBinHashMap", "synchronizedMap"})
+    String impl;
+
+    Object[] keys;
+    int[] order;
+    Map<Object, Object> map;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = Keys.distinct(size, "uniform", "Integer");
+        order = Keys.accessOrder(1 << 20, size, "uniform");
+        map = newMap();
+        for (Object k : keys)
+            map.put(k, k);
+    }
+
+    Map<Object, Object> newMap() {
+        if ("ConcurrentBinHashMap".equals(impl))
+            return new ConcurrentBinHashMap<>();
+        return Collections.synchronizedMap(new HashMap<>());
+    }
+
+    /**
+     * 每个线程从访问序列的不同位置开始
+     * putRemove使用的键是Long，与setUp()中的Integer键不相等，各个线程的键也互不相同
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+        int index;
+        Object[] own;
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams params) {
+            index = params.getThreadIndex() * (1 << 16);
+            own = new Object[OPERATIONS];
+            for (int i = 0; i < OPERATIONS; i++)
+                own[i] = (long) i * params.getThreadCount() + params.getThreadIndex();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void get(ThreadState s, Blackhole bh) {
+        Map<Object, Object> m = map;
+        Object[] ks = keys;
+        int[] o = order;
+        int i = s.index;
+        for (int n = 0; n < OPERATIONS; n++)
+            bh.consume(m.get(ks[o[i++ & (o.length - 1)]]));
+        s.index = i;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void mixed(ThreadState s, Blackhole bh) {
+        Map<Object, Object> m = map;
+        Object[] ks = keys;
+        int[] o = order;
+        int i = s.index;
+        for (int n = 0; n < OPERATIONS; n++) {
+            Object k = ks[o[i++ & (o.length - 1)]];
+            if (n % WRITE_EVERY == 0)
+                bh.consume(m.put(k, k));
+            else
+                bh.consume(m.get(k));
+        }
+        s.index = i;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2 * OPERATIONS)
+    public void putRemove(ThreadState s, Blackhole bh) {
+        Map<Object, Object> m = map;
+        Object[] own = s.own;
+        for (Object k : own)
+            bh.consume(m.put(k, k));
+        for (Object k : own)
+            bh.consume(m.remove(k));
+    }
+}
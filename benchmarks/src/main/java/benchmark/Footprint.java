@@ -0,0 +1,95 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.CompactHashMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OpenHashMap;
+import java.util.SwissHashMap;
+
+/**
+ * 测量各种Map实现平均每个键值对占用的堆内存，不包括键和值对象本身
+ * JMH只能测量分配速率，不能测量常驻内存，所以这里是一个单独的main方法，由benchmarks/run.sh footprint运行。
+ * 先生成所有的键，在Full GC之后比较构建Map前后的堆使用量；需要足够大的固定堆（-Xms与-Xmx相同）和SerialGC，
+ * 并且用-XX:MarkSweepDeadRatio=0让Full GC完全压缩，否则上一个Map留下的死对象可能不会被回收，结果偏小甚至为负数。
+ * 用法：Footprint [size...]，默认测量1000、100000和10000000个Integer键。
+ */
+public final class Footprint {
+    static final String[] IMPLS = {"HashMap", "OpenHashMap", "SwissHashMap", "CompactHashMap", "CompactHashMap.trimToSize",
+            "FrozenHashMap"};
+
+    static final Object VALUE = new Object();
+
+    /**
+     * 测量期间保持Map可达
+     */
+    static Map<Object, Object> retained;
+
+    private Footprint() {
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = {1000, 100000, 10000000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+                sizes[i] = Integer.parseInt(args[i]);
+        }
+        // 先把每种实现构建一次，避免类加载和JIT编译占用的内存计入第一次测量
+        Object[] warmup = Keys.distinct(1000, "uniform", "Integer");
+        for (String impl : IMPLS)
+            build(impl, warmup);
+        System.out.printf("%-28s %10s %14s%n", "impl", "size", "bytes/entry");
+        for (int size : sizes) {
+            Object[] keys = Keys.distinct(size, "uniform", "Integer");
+            for (String impl : IMPLS) {
+                long before = usedHeap();
+                retained = build(impl, keys);
+                long after = usedHeap();
+                System.out.printf("%-28s %10d %14.1f%n", impl, retained.size(), (double) (after - before) / size);
+                retained = null;
+            }
+        }
+    }
+
+    static Map<Object, Object> build(String impl, Object[] keys) {
+        Map<Object, Object> m;
+        switch (impl) {
+            case "HashMap":
+            case "FrozenHashMap":
+                m = new HashMap<>();
+                break;
+            case "OpenHashMap":
+                m = new OpenHashMap<>();
+                break;
+            case "SwissHashMap":
+                m = new SwissHashMap<>();
+                break;
+            default:
+                m = new CompactHashMap<>();
+        }
+        for (Object k : keys)
+            m.put(k, VALUE);
+        if (m instanceof CompactHashMap && impl.endsWith(".trimToSize"))
+            ((CompactHashMap<Object, Object>) m).trimToSize();
+        // 冻结后原来的HashMap不再可达，测量时已经被回收
+        if ("FrozenHashMap".equals(impl))
+            return ((HashMap<Object, Object>) m).freeze();
+        return m;
+    }
+
+    /**
+     * 多次Full GC直到堆使用量不再下降，返回此时的堆使用量
+     */
+    static long usedHeap() {
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long u = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            if (u >= used)
+                break;
+            used = u;
+        }
+        return used;
+    }
+}
@@ -0,0 +1,224 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.CompactHashMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OpenHashMap;
+import java.util.PersistentHashMap;
+import java.util.RobinHoodHashMap;
+import java.util.SwissHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HashMap.putVal()、getNode()的基准测试，OpenHashMap、RobinHoodHashMap、SwissHashMap、CompactHashMap和PersistentHashMap作为对照
+ * put：用size次put()构建一个Map，包括扩容（presized=false时）的开销，结果是构建整个Map的耗时。
+ * uniform和colliding每个键插入一次；skewed按偏斜的访问序列插入，热点键会被反复覆盖。
+ * get：在已经构建好的Map上按访问序列查找，结果是单次get()的耗时。
+ * getAll：与get相同的访问序列，每BATCH个键调用一次HashMap.getAll()，结果是平均每个键的耗时；其他实现逐个调用get()。
+ * miss：查找LOOKUPS个不存在的键，结果是单次get()的耗时，对应去重过滤等大部分查找都未命中的场景。
+ * copy：复制已经构建好的Map再修改一个键，PersistentHashMap用snapshot()，其他实现用clone()，对应读多写少时写时复制的开销。
+ * bulkLoad：与put相同的键值对，HashMap调用一次putAll(Object[], Object[])批量添加，其他实现逐个调用put()。
+ * FrozenHashMap：put是构建HashMap再调用freeze()的总耗时，get是冻结之后的查找耗时。
+ * HashMap.bloomFilter：开启了布隆过滤器的HashMap，主要与HashMap比较miss和get。
+ * 开放寻址在hashCode()完全相同时退化为O(n^2)，所以OpenHashMap、RobinHoodHashMap和SwissHashMap默认不参与，
+ * 需要时用-p impl=HashMap,HashMap.bloomFilter,OpenHashMap,RobinHoodHashMap,SwissHashMap,CompactHashMap,PersistentHashMap,FrozenHashMap指定，
+ * 并避开colliding。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class HashMapBenchmark {
+    /**
+     * 每次get()基准调用中的查找次数
+     */
+    static final int LOOKUPS = 1 << 16;
+
+    /**
+     * getAll()每批查找的键数
+     */
+    static final int BATCH = 256;
+
+    static final Object VALUE = new Object();
+
+    @Param({"10", "1000", "100000", "10000000"})
+    int size;
+
+    @Param({"uniform", "skewed", "colliding"})
+    String distribution;
+
+    @Param({"Integer", "String"})
+    String keyType;
+
+    @Param({"false", "true"})
+    boolean presized;
+
+    @Param({"HashMap"})
+    String impl;
+
+    Object[] keys;
+    int[] insertOrder;
+    Object[] insertKeys;
+    Object[] insertValues;
+    Object[] lookups;
+    Object[] misses;
+    Map<Object, Object> map;
+    Object[][] batches;
+    Object[] out;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = Keys.distinct(size, distribution, keyType);
+        if ("skewed".equals(distribution))
+            insertOrder = Keys.accessOrder(size, size, distribution);
+        else {
+            insertOrder = new int[size];
+            for (int i = 0; i < size; i++)
+                insertOrder[i] = i;
+        }
+        insertKeys = new Object[size];
+        for (int i = 0; i < size; i++)
+            insertKeys[i] = keys[insertOrder[i]];
+        insertValues = new Object[size];
+        Arrays.fill(insertValues, VALUE);
+        int[] order = Keys.accessOrder(LOOKUPS, size, distribution);
+        lookups = new Object[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++)
+            lookups[i] = keys[order[i]];
+        batches = new Object[LOOKUPS / BATCH][];
+        for (int i = 0; i < batches.length; i++)
+            batches[i] = Arrays.copyOfRange(lookups, i * BATCH, (i + 1) * BATCH);
+        out = new Object[BATCH];
+        // Keys.distinct()生成的前size个键与keys相同，后面的键一定不在Map中
+        misses = Arrays.copyOfRange(Keys.distinct(size + LOOKUPS, distribution, keyType), size, size + LOOKUPS);
+        map = newMap();
+        for (Object k : keys)
+            map.put(k, VALUE);
+        map = finish(map);
+    }
+
+    /**
+     * 创建Map，presized为true时指定的初始容量保证插入size个键值对不会扩容
+     */
+    Map<Object, Object> newMap() {
+        switch (impl) {
+            case "OpenHashMap":
+                return presized ? new OpenHashMap<>(size * 2 + 1) : new OpenHashMap<>();
+            case "RobinHoodHashMap":
+                return presized ? new RobinHoodHashMap<>((int) (size / 0.75f) + 1) : new RobinHoodHashMap<>();
+            case "SwissHashMap":
+                return presized ? new SwissHashMap<>(size) : new SwissHashMap<>();
+            case "CompactHashMap":
+                return presized ? new CompactHashMap<>((int) (size / 0.75f) + 1) : new CompactHashMap<>();
+            case "PersistentHashMap":
+                // 没有容量的概念，presized不起作用
+                return new PersistentHashMap<>();
+            default:
+                HashMap<Object, Object> m = presized ? new HashMap<>((int) (size / 0.75f) + 1) : new HashMap<>();
+                if ("HashMap.bloomFilter".equals(impl))
+                    m.setBloomFilterEnabled(true);
+                return m;
+        }
+    }
+
+    /**
+     * impl为FrozenHashMap时冻结构建好的HashMap
+     */
+    Map<Object, Object> finish(Map<Object, Object> m) {
+        return "FrozenHashMap".equals(impl) ? ((HashMap<Object, Object>) m).freeze() : m;
+    }
+
+    @Benchmark
+    public Map<Object, Object> put() {
+        Map<Object, Object> m = newMap();
+        Object[] ks = keys;
+        for (int i : insertOrder)
+            m.put(ks[i], VALUE);
+        return finish(m);
+    }
+
+    @Benchmark
+    public Map<Object, Object> bulkLoad() {
+        Map<Object, Object> m = newMap();
+        if (m instanceof HashMap)
+            ((HashMap<Object, Object>) m).putAll(insertKeys, insertValues);
+        else {
+            Object[] ks = insertKeys;
+            for (Object k : ks)
+                m.put(k, VALUE);
+        }
+        return finish(m);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void get(Blackhole bh) {
+        Map<Object, Object> m = map;
+        for (Object k : lookups)
+            bh.consume(m.get(k));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void miss(Blackhole bh) {
+        Map<Object, Object> m = map;
+        for (Object k : misses)
+            bh.consume(m.get(k));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void getAll(Blackhole bh) {
+        Map<Object, Object> m = map;
+        if (!(m instanceof HashMap)) {
+            for (Object k : lookups)
+                bh.consume(m.get(k));
+            return;
+        }
+        HashMap<Object, Object> hm = (HashMap<Object, Object>) m;
+        Object[] o = out;
+        for (Object[] batch : batches) {
+            bh.consume(hm.getAll(batch, o));
+            bh.consume(o);
+        }
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Map<Object, Object> copy() {
+        Map<Object, Object> m = map, c;
+        if (m instanceof PersistentHashMap)
+            c = ((PersistentHashMap<Object, Object>) m).snapshot();
+        else if (m instanceof HashMap)
+            c = (Map<Object, Object>) ((HashMap<Object, Object>) m).clone();
+        else if (m instanceof OpenHashMap)
+            c = (Map<Object, Object>) ((OpenHashMap<Object, Object>) m).clone();
+        else if (m instanceof SwissHashMap)
+            c = (Map<Object, Object>) ((SwissHashMap<Object, Object>) m).clone();
+        else if (m instanceof CompactHashMap)
+            c = (Map<Object, Object>) ((CompactHashMap<Object, Object>) m).clone();
+        else
+            // FrozenHashMap不可修改，不需要复制
+            return m;
+        c.put(keys[0], VALUE);
+        return c;
+    }
+}
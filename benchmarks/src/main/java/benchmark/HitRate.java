@@ -0,0 +1,91 @@
+package benchmark;
+
+import java.util.BoundedCache;
+import java.util.Random;
+
+/**
+ * 用访问序列模拟BoundedCache各种淘汰策略的命中率
+ * 命中率与运行时间无关，所以这里是一个单独的main方法，由benchmarks/run.sh hitrate运行。
+ * 每次访问先get()，未命中时put()，最后输出hitRate()。访问序列使用固定的随机数种子：
+ * skewed：100000个键上的偏斜访问，约一半的访问集中在前12.5%的键上；
+ * scan：skewed中每50000次访问的前20000次换成只访问一次的新键的顺序扫描；
+ * loop：在1.5倍缓存大小的键上循环访问，LRU每次都未命中。
+ * 用法：HitRate [cacheSize...]，默认缓存大小为1000和10000。
+ */
+public final class HitRate {
+    static final String[] TRACES = {"skewed", "scan", "loop"};
+
+    static final BoundedCache.Policy[] POLICIES = BoundedCache.Policy.values();
+
+    /**
+     * 每个访问序列的长度
+     */
+    static final int LENGTH = 2000000;
+
+    /**
+     * skewed和scan中热点访问的键数量
+     */
+    static final int KEYS = 100000;
+
+    /**
+     * scan中两次扫描之间的访问次数和每次扫描的长度
+     */
+    static final int SCAN_INTERVAL = 50000, SCAN_LENGTH = 20000;
+
+    private HitRate() {
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = {1000, 10000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+                sizes[i] = Integer.parseInt(args[i]);
+        }
+        System.out.printf("%-8s %10s %-10s %10s%n", "trace", "cacheSize", "policy", "hitRate");
+        for (String trace : TRACES) {
+            for (int size : sizes) {
+                Integer[] keys = trace(trace, size);
+                for (BoundedCache.Policy policy : POLICIES)
+                    System.out.printf("%-8s %10d %-10s %9.2f%%%n", trace, size, policy, 100 * simulate(keys, size, policy));
+            }
+        }
+    }
+
+    static double simulate(Integer[] keys, int size, BoundedCache.Policy policy) {
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>(size, policy, null);
+        for (Integer k : keys) {
+            if (cache.get(k) == null)
+                cache.put(k, k);
+        }
+        return cache.hitRate();
+    }
+
+    /**
+     * 生成访问序列，扫描的键从KEYS开始递增，与热点键不重复
+     */
+    static Integer[] trace(String trace, int cacheSize) {
+        Integer[] keys = new Integer[LENGTH];
+        Random random = new Random(Keys.SEED);
+        int scanKey = KEYS;
+        for (int i = 0; i < LENGTH; ) {
+            switch (trace) {
+                case "loop":
+                    keys[i] = i % (cacheSize + cacheSize / 2);
+                    i++;
+                    break;
+                case "scan":
+                    if (i % SCAN_INTERVAL == 0) {
+                        for (int j = 0; j < SCAN_LENGTH && i < LENGTH; j++)
+                            keys[i++] = scanKey++;
+                        break;
+                    }
+                    // fall through
+                default:
+                    double u = random.nextDouble();
+                    keys[i++] = (int) (KEYS * u * u * u);
+            }
+        }
+        return keys;
+    }
+}
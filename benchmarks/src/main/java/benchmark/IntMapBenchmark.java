@@ -0,0 +1,126 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.IntHashMap;
+import java.util.IntIntHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IntHashMap、IntIntHashMap与HashMap<Integer, ...>的对比，主要看-prof gc输出的gc.alloc.rate.norm（每次操作分配的字节数）
+ * 键是int，HashMap需要装箱（-128~127以外的Integer.valueOf()都会创建对象），结点也是每个键值对一个对象；
+ * int特化版本只有两个平行数组，构建时只有扩容分配内存，查找和计数不分配。
+ * put：用size个键构建一个Map，值为同一个对象，impl=IntHashMap时使用IntHashMap。
+ * get：在构建好的Map上查找LOOKUPS次，结果是单次查找的耗时。
+ * count：按偏斜的访问序列计数LOOKUPS次，HashMap用merge(k, 1, Integer::sum)，impl=IntHashMap时用IntIntHashMap.addTo()，
+ * HashMap每次计数都要装箱新的值，结果是单次计数的耗时。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class IntMapBenchmark {
+    /**
+     * get和count每次基准调用中的操作次数
+     */
+    static final int LOOKUPS = 1 << 16;
+
+    static final Object VALUE = new Object();
+
+    @Param({"1000", "100000", "10000000"})
+    int size;
+
+    @Param({"HashMap", "IntHashMap"})
+    String impl;
+
+    int[] keys;
+    int[] lookups;
+    int[] counted;
+    HashMap<Integer, Object> hashMap;
+    IntHashMap<Object> intHashMap;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Object[] boxed = Keys.distinct(size, "uniform", "Integer");
+        keys = new int[size];
+        for (int i = 0; i < size; i++)
+            keys[i] = (Integer) boxed[i];
+        int[] order = Keys.accessOrder(LOOKUPS, size, "uniform");
+        lookups = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++)
+            lookups[i] = keys[order[i]];
+        order = Keys.accessOrder(LOOKUPS, size, "skewed");
+        counted = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++)
+            counted[i] = keys[order[i]];
+        if ("IntHashMap".equals(impl)) {
+            intHashMap = new IntHashMap<>();
+            for (int k : keys)
+                intHashMap.put(k, VALUE);
+        } else {
+            hashMap = new HashMap<>();
+            for (int k : keys)
+                hashMap.put(k, VALUE);
+        }
+    }
+
+    @Benchmark
+    public Object put() {
+        int[] ks = keys;
+        if ("IntHashMap".equals(impl)) {
+            IntHashMap<Object> m = new IntHashMap<>();
+            for (int k : ks)
+                m.put(k, VALUE);
+            return m;
+        }
+        HashMap<Integer, Object> m = new HashMap<>();
+        for (int k : ks)
+            m.put(k, VALUE);
+        return m;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void get(Blackhole bh) {
+        if (intHashMap != null) {
+            IntHashMap<Object> m = intHashMap;
+            for (int k : lookups)
+                bh.consume(m.get(k));
+        } else {
+            HashMap<Integer, Object> m = hashMap;
+            for (int k : lookups)
+                bh.consume(m.get(k));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public Object count() {
+        if ("IntHashMap".equals(impl)) {
+            IntIntHashMap m = new IntIntHashMap();
+            for (int k : counted)
+                m.addTo(k, 1);
+            return m;
+        }
+        HashMap<Integer, Integer> m = new HashMap<>();
+        for (int k : counted)
+            m.merge(k, 1, Integer::sum);
+        return m;
+    }
+}
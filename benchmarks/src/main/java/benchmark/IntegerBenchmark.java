@@ -0,0 +1,81 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Integer.parseInt()、valueOf()和toString()的基准测试
+ * digits表示数字的位数，2位数字落在IntegerCache的范围[-128, 127]内，valueOf()不会创建对象。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IntegerBenchmark {
+    static final int COUNT = 1 << 10;
+
+    @Param({"2", "5", "10"})
+    int digits;
+
+    @Param({"false", "true"})
+    boolean negative;
+
+    int[] values;
+    String[] strings;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(Keys.SEED);
+        values = new int[COUNT];
+        strings = new String[COUNT];
+        long max = 1L;
+        for (int i = 0; i < digits; i++)
+            max *= 10;
+        // 10位数字时不超过Integer.MAX_VALUE
+        max = Math.min(max - 1, Integer.MAX_VALUE);
+        long min = (long) Math.pow(10, digits - 1);
+        for (int i = 0; i < COUNT; i++) {
+            int v = (int) (min + (long) (random.nextDouble() * (max - min + 1)));
+            values[i] = negative ? -v : v;
+            strings[i] = Integer.toString(values[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void parseInt(Blackhole bh) {
+        for (String s : strings)
+            bh.consume(Integer.parseInt(s));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void valueOf(Blackhole bh) {
+        for (int v : values)
+            bh.consume(Integer.valueOf(v));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void toDecimalString(Blackhole bh) {
+        for (int v : values)
+            bh.consume(Integer.toString(v));
+    }
+}
@@ -0,0 +1,90 @@
+package benchmark;
+
+import java.util.Random;
+
+/**
+ * 基准测试用的键和访问序列，使用固定的随机数种子，保证不同提交之间的结果可以比较
+ */
+final class Keys {
+    /**
+     * 随机数种子
+     */
+    static final long SEED = 42L;
+
+    private Keys() {
+    }
+
+    /**
+     * 生成size个互不相同的键
+     * uniform和skewed：随机的int，或者随机int的十进制字符串；
+     * colliding：Integer键经过HashMap.hash()扰动后低8位都为0，只会落在1/256的桶中；
+     * String键由"Aa"和"BB"拼接而成，两者hashCode()相同，所以所有键的hashCode()完全相同。
+     * 两种colliding键最多都只能生成2^24个。
+     *
+     * @param size         键的个数
+     * @param distribution uniform、skewed或colliding
+     * @param keyType      Integer或String
+     * @return 返回键的数组
+     */
+    static Object[] distinct(int size, String distribution, String keyType) {
+        Object[] keys = new Object[size];
+        boolean colliding = "colliding".equals(distribution);
+        boolean string = "String".equals(keyType);
+        if (colliding) {
+            for (int i = 0; i < size; i++)
+                keys[i] = string ? collidingString(i) : Integer.valueOf(collidingInt(i));
+        } else {
+            // 用一个简单的乘法置换打乱0..size-1，保证键互不相同又没有规律
+            Random random = new Random(SEED);
+            int offset = random.nextInt();
+            for (int i = 0; i < size; i++) {
+                int k = i * 0x9E3779B1 + offset;
+                keys[i] = string ? Integer.toString(k) : Integer.valueOf(k);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 高16位为x，低16位为(y << 8) | (x & 0xFF)，h ^ (h >>> 16)的低8位为0
+     * x取i的低16位，y取i的16~23位，所以i < 2^24时互不相同
+     */
+    static int collidingInt(int i) {
+        int x = i & 0xFFFF, y = (i >>> 16) & 0xFF;
+        return (x << 16) | (y << 8) | (x & 0xFF);
+    }
+
+    /**
+     * 由"Aa"和"BB"组成的字符串，i的每一位决定一段，长度相同的字符串hashCode()全部相同
+     */
+    static String collidingString(int i) {
+        StringBuilder sb = new StringBuilder(48);
+        for (int bit = 0; bit < 24; bit++)
+            sb.append(((i >>> bit) & 1) == 0 ? "Aa" : "BB");
+        return sb.toString();
+    }
+
+    /**
+     * 生成访问序列，元素是0..size-1之间的下标
+     * skewed：下标为size * u^3（u是[0, 1)之间的均匀随机数），约一半的访问集中在前12.5%的键上；
+     * 其他分布：均匀随机
+     *
+     * @param length       序列长度
+     * @param size         键的个数
+     * @param distribution uniform、skewed或colliding
+     * @return 返回下标序列
+     */
+    static int[] accessOrder(int length, int size, String distribution) {
+        Random random = new Random(SEED + 1);
+        int[] order = new int[length];
+        boolean skewed = "skewed".equals(distribution);
+        for (int i = 0; i < length; i++) {
+            if (skewed) {
+                double u = random.nextDouble();
+                order[i] = (int) (size * u * u * u);
+            } else
+                order[i] = random.nextInt(size);
+        }
+        return order;
+    }
+}
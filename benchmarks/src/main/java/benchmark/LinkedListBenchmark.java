@@ -0,0 +1,65 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LinkedList.add()和node(int)（通过get(int)调用）的基准测试
+ * node(int)的耗时与size成正比，size为一千万时单次调用就需要几毫秒，因此默认最大只测到十万。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class LinkedListBenchmark {
+    static final int LOOKUPS = 1 << 10;
+
+    static final Object ELEMENT = new Object();
+
+    @Param({"10", "1000", "100000"})
+    int size;
+
+    LinkedList<Object> list;
+    int[] indexes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        list = new LinkedList<>();
+        for (int i = 0; i < size; i++)
+            list.add(ELEMENT);
+        indexes = Keys.accessOrder(LOOKUPS, size, "uniform");
+    }
+
+    @Benchmark
+    public LinkedList<Object> add() {
+        LinkedList<Object> l = new LinkedList<>();
+        for (int i = 0, n = size; i < n; i++)
+            l.add(ELEMENT);
+        return l;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void get(Blackhole bh) {
+        LinkedList<Object> l = list;
+        for (int i : indexes)
+            bh.consume(l.get(i));
+    }
+}
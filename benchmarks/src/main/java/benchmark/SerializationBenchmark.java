@@ -0,0 +1,104 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.StreamCodec;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HashMap的Java序列化（writeObject()/readObject()）与writeTo()/readFrom()的对比
+ * 键由Keys.distinct()生成，值为Integer；结果是写出或者读回整个HashMap的耗时，两种格式都写入内存中的字节数组。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+    static final int BUFFER_SIZE = 1 << 16;
+
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    @Param({"Integer", "String"})
+    String keyType;
+
+    HashMap<Object, Integer> map;
+    StreamCodec<Object> keyCodec;
+    byte[] serialized;
+    byte[] encoded;
+    ByteArrayOutputStream bytes;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+        Object[] keys = Keys.distinct(size, "uniform", keyType);
+        map = new HashMap<>();
+        for (int i = 0; i < size; i++)
+            map.put(keys[i], i);
+        StreamCodec<?> kc = "String".equals(keyType) ? StreamCodec.utf8() : StreamCodec.int32();
+        keyCodec = (StreamCodec<Object>) kc;
+        bytes = new ByteArrayOutputStream(size * 32);
+        serialized = writeObject().toByteArray();
+        encoded = writeTo().toByteArray();
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream writeObject() throws IOException {
+        ByteArrayOutputStream b = bytes;
+        b.reset();
+        try (ObjectOutputStream out = new ObjectOutputStream(b)) {
+            out.writeObject(map);
+        }
+        return b;
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream writeTo() throws IOException {
+        ByteArrayOutputStream b = bytes;
+        b.reset();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(b, BUFFER_SIZE))) {
+            map.writeTo(out, keyCodec, StreamCodec.int32());
+        }
+        return b;
+    }
+
+    @Benchmark
+    public Object readObject() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return in.readObject();
+        }
+    }
+
+    @Benchmark
+    public HashMap<Object, Integer> readFrom() throws IOException {
+        HashMap<Object, Integer> m = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new ByteArrayInputStream(encoded), BUFFER_SIZE))) {
+            m.readFrom(in, keyCodec, StreamCodec.int32());
+        }
+        return m;
+    }
+}
@@ -0,0 +1,654 @@
+package java.util;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.function.BiFunction;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * 有容量上限的缓存，基于HashMap的afterNodeAccess()、afterNodeInsertion()、afterNodeRemoval()回调实现
+ * 1.键值对仍然存放在HashMap的桶中，查找只有一次哈希查找；结点通过LinkedHashMap.Entry的before/after指针额外串成一个淘汰顺序链表，
+ * 访问时调整位置、淘汰时取链表头，都是O(1)的。
+ * 2.淘汰顺序链表按访问频率分组，频率低的组在前，同一组内按访问时间排序，久未访问的在前：
+ * LRU策略下频率不增加，所有结点都在同一组中，链表就是按访问时间排序的；
+ * LFU策略下每次访问频率加1，结点移动到下一个频率组的末尾。
+ * 3.每个键值对的权重由weigher计算（默认为1，此时最大权重就是最大键值对数量），插入或修改后总权重超过maximumWeight就从链表头开始淘汰。
+ * weigher随缓存一起序列化，需要序列化时它也必须可序列化，lambda要声明为可序列化的类型，例如
+ * (ToIntBiFunction<String, byte[]> & Serializable) (k, v) -> v.length，否则writeObject()抛出NotSerializableException。
+ * 4.get()、getOrDefault()和getAll()会统计命中次数和未命中次数，淘汰时统计淘汰次数。
+ * 5.TINY_LFU策略按LRU排序，另外用FrequencySketch估计每个键最近的访问频率（命中和未命中都计入）。
+ * 插入新键值对后超过最大权重时，新键值对作为候选者与链表头的淘汰对象比较频率，不高于对方时淘汰的是新键值对自己，
+ * 一次性扫描的大量冷数据不会把热点数据挤出缓存。
+ * 6.与HashMap相同，不是线程安全的。通过Map.Entry.setValue()修改值不会重新计算权重。
+ *
+ * @param <K> 泛型，表示键值对中的键
+ * @param <V> 泛型，表示键值对中的值
+ * @see HashMap
+ */
+public class BoundedCache<K, V> extends HashMap<K, V> {
+    // 序列版本ID
+    private static final long serialVersionUID = -2213094637291546373L;
+
+    /**
+     * 淘汰策略
+     */
+    public enum Policy {
+        /**
+         * 最近最少使用：淘汰最久没有被访问的键值对
+         */
+        LRU,
+        /**
+         * 最不经常使用：淘汰访问次数最少的键值对，次数相同时淘汰最久没有被访问的
+         */
+        LFU,
+        /**
+         * 按LRU顺序淘汰，但新键值对只有在估计的访问频率高于淘汰对象时才被接纳，否则淘汰新键值对自己
+         */
+        TINY_LFU
+    }
+
+    /**
+     * 最大总权重
+     */
+    final long maximumWeight;
+
+    /**
+     * 淘汰策略
+     */
+    final Policy policy;
+
+    /**
+     * 计算键值对权重的函数，为null时每个键值对的权重都是1；参与序列化，反序列化后用它重新计算权重
+     */
+    final ToIntBiFunction<? super K, ? super V> weigher;
+
+    /**
+     * 淘汰顺序链表的头结点（下一个被淘汰的）和尾结点
+     */
+    transient LinkedHashMap.Entry<K, V> head, tail;
+
+    /**
+     * 频率最低的分组
+     */
+    transient Group<K, V> firstGroup;
+
+    /**
+     * 当前的总权重
+     */
+    transient long totalWeight;
+
+    /**
+     * TINY_LFU策略的访问频率估计，其他策略为null
+     */
+    transient FrequencySketch sketch;
+
+    // 统计
+    transient long hitCount;
+    transient long missCount;
+    transient long evictionCount;
+
+    /**
+     * 链表结点
+     */
+    static final class Entry<K, V> extends LinkedHashMap.Entry<K, V> {
+        // 权重
+        int weight;
+        // 所在的频率组
+        Group<K, V> group;
+
+        Entry(int hash, K key, V value, Node<K, V> next) {
+            super(hash, key, value, next);
+        }
+    }
+
+    /**
+     * 树结点，字段与Entry相同
+     */
+    static final class TreeEntry<K, V> extends TreeNode<K, V> {
+        // 权重
+        int weight;
+        // 所在的频率组
+        Group<K, V> group;
+
+        TreeEntry(int hash, K key, V value, Node<K, V> next) {
+            super(hash, key, value, next);
+        }
+    }
+
+    /**
+     * 频率组，组中的结点在淘汰顺序链表中是连续的，从first到last
+     * 组之间通过prev/next按频率从小到大串起来，空的组会立即被移除
+     */
+    static final class Group<K, V> {
+        int freq;
+        LinkedHashMap.Entry<K, V> first, last;
+        Group<K, V> prev, next;
+
+        Group(int freq) {
+            this.freq = freq;
+        }
+    }
+
+    /* ---------------- 构造方法 -------------- */
+
+    /**
+     * 按键值对数量限制的LRU缓存
+     *
+     * @param maximumSize 最多保存的键值对数量
+     * @throws IllegalArgumentException maximumSize为负数
+     */
+    public BoundedCache(long maximumSize) {
+        this(maximumSize, Policy.LRU, null);
+    }
+
+    /**
+     * 带全部参数的构造方法
+     *
+     * @param maximumWeight 最大总权重
+     * @param policy        淘汰策略
+     * @param weigher       计算权重的函数，返回值不能为负数；为null时每个键值对的权重都是1；序列化时也需要可序列化
+     * @throws IllegalArgumentException maximumWeight为负数
+     * @throws NullPointerException     policy为null
+     */
+    public BoundedCache(long maximumWeight, Policy policy, ToIntBiFunction<? super K, ? super V> weigher) {
+        if (maximumWeight < 0)
+            throw new IllegalArgumentException("Illegal maximum weight: " + maximumWeight);
+        this.maximumWeight = maximumWeight;
+        this.policy = Objects.requireNonNull(policy);
+        this.weigher = weigher;
+        initSketch();
+    }
+
+    /**
+     * TINY_LFU策略创建访问频率估计：没有weigher时按最大键值对数量分配，否则从小开始，随键值对数量扩大
+     */
+    private void initSketch() {
+        if (policy == Policy.TINY_LFU)
+            sketch = new FrequencySketch((weigher == null) ? maximumWeight : 0L);
+    }
+
+    /* ---------------- 查询 -------------- */
+
+    /**
+     * 得到指定key对应的value，命中时调整该键值对在淘汰顺序中的位置
+     */
+    public V get(Object key) {
+        Node<K, V> e;
+        return (e = lookup(key)) == null ? null : e.value;
+    }
+
+    /**
+     * 得到指定key对应的value，没有命中时返回defaultValue
+     */
+    public V getOrDefault(Object key, V defaultValue) {
+        Node<K, V> e;
+        return (e = lookup(key)) == null ? defaultValue : e.value;
+    }
+
+    /**
+     * 批量查找，逐个查找以便统计命中次数并调整淘汰顺序
+     */
+    public int getAll(Object[] keys, V[] out) {
+        if (out.length < keys.length)
+            throw new IllegalArgumentException("out.length < keys.length");
+        int found = 0;
+        Node<K, V> e;
+        for (int i = 0; i < keys.length; i++) {
+            if ((e = lookup(keys[i])) != null) {
+                out[i] = e.value;
+                ++found;
+            } else
+                out[i] = null;
+        }
+        return found;
+    }
+
+    /**
+     * 批量查找，逐个查找以便统计命中次数并调整淘汰顺序
+     */
+    public int getAll(Collection<?> keys, V[] out) {
+        if (out.length < keys.size())
+            throw new IllegalArgumentException("out.length < keys.size()");
+        int found = 0, i = 0;
+        Node<K, V> e;
+        for (Object k : keys) {
+            if ((e = lookup(k)) != null) {
+                out[i++] = e.value;
+                ++found;
+            } else
+                out[i++] = null;
+        }
+        return found;
+    }
+
+    /**
+     * 查找结点，统计命中或未命中，命中时记录一次访问
+     */
+    private Node<K, V> lookup(Object key) {
+        Node<K, V> e;
+        int hash = spread(key);
+        if (sketch != null)
+            sketch.increment(hash);
+        if ((e = getNode(hash, key)) == null) {
+            ++missCount;
+            return null;
+        }
+        ++hitCount;
+        recordAccess(e);
+        return e;
+    }
+
+    /**
+     * @return 返回最大总权重
+     */
+    public long maximumWeight() {
+        return maximumWeight;
+    }
+
+    /**
+     * @return 返回当前的总权重
+     */
+    public long weightedSize() {
+        return totalWeight;
+    }
+
+    /**
+     * @return 返回get()和getOrDefault()命中的次数
+     */
+    public long hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return 返回get()和getOrDefault()没有命中的次数
+     */
+    public long missCount() {
+        return missCount;
+    }
+
+    /**
+     * @return 返回命中率，没有查询过时返回1.0
+     */
+    public double hitRate() {
+        long requests = hitCount + missCount;
+        return (requests == 0L) ? 1.0 : (double) hitCount / requests;
+    }
+
+    /**
+     * @return 返回因为超过最大权重而被淘汰的键值对数量
+     */
+    public long evictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * 浅拷贝，副本的淘汰顺序、频率组和权重都与原缓存相同，统计数据也一起复制
+     * HashMap.clone()按桶的顺序重新插入，每个结点都成了频率为1的新结点，这里再按原缓存的链表重新链接一遍
+     *
+     * @return 返回副本
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public Object clone() {
+        BoundedCache<K, V> result = (BoundedCache<K, V>) super.clone();
+        result.head = result.tail = null;
+        result.firstGroup = null;
+        Group<K, V> last = null;
+        for (Group<K, V> g = firstGroup; g != null; g = g.next) {
+            Group<K, V> ng = new Group<>(g.freq);
+            result.linkGroupAfter(ng, last);
+            last = ng;
+            for (LinkedHashMap.Entry<K, V> p = g.first; ; p = p.after) {
+                Node<K, V> q = result.getNode(p.hash, p.key);
+                setWeight(q, weightOf(p));
+                result.linkLast((LinkedHashMap.Entry<K, V>) q, ng);
+                if (p == g.last)
+                    break;
+            }
+        }
+        result.totalWeight = totalWeight;
+        // 重新插入时副本的sketch又计入了一次所有的键，换成原缓存的一份拷贝
+        if (sketch != null)
+            result.sketch = sketch.copy();
+        return result;
+    }
+
+    /* ---------------- 修改 -------------- */
+
+    /**
+     * 删除所有键值对，统计数据保留
+     */
+    public void clear() {
+        super.clear();
+        head = tail = null;
+        firstGroup = null;
+        totalWeight = 0L;
+    }
+
+    /**
+     * 替换所有的值，然后重新计算权重
+     */
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        super.replaceAll(function);
+        reweighAll();
+    }
+
+    /**
+     * 并行地替换所有的值，然后在当前线程中重新计算权重
+     */
+    public void replaceAll(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends V> function) {
+        super.replaceAll(parallelismThreshold, function);
+        reweighAll();
+    }
+
+    /**
+     * 重新计算所有键值对的权重，超过最大权重时淘汰
+     */
+    final void reweighAll() {
+        long w = 0L;
+        for (LinkedHashMap.Entry<K, V> e = head; e != null; e = e.after) {
+            int ew = weigh(e.key, e.value);
+            setWeight(e, ew);
+            w += ew;
+        }
+        totalWeight = w;
+        evictIfNeeded();
+    }
+
+    /* ---------------- 淘汰顺序链表 -------------- */
+
+    /**
+     * 计算权重
+     */
+    final int weigh(K key, V value) {
+        if (weigher == null)
+            return 1;
+        int w = weigher.applyAsInt(key, value);
+        if (w < 0)
+            throw new IllegalArgumentException("Negative weight: " + w);
+        return w;
+    }
+
+    static <K, V> int weightOf(Node<K, V> p) {
+        return (p instanceof TreeEntry) ? ((TreeEntry<K, V>) p).weight : ((Entry<K, V>) p).weight;
+    }
+
+    static <K, V> void setWeight(Node<K, V> p, int w) {
+        if (p instanceof TreeEntry)
+            ((TreeEntry<K, V>) p).weight = w;
+        else
+            ((Entry<K, V>) p).weight = w;
+    }
+
+    static <K, V> Group<K, V> groupOf(Node<K, V> p) {
+        return (p instanceof TreeEntry) ? ((TreeEntry<K, V>) p).group : ((Entry<K, V>) p).group;
+    }
+
+    static <K, V> void setGroup(Node<K, V> p, Group<K, V> g) {
+        if (p instanceof TreeEntry)
+            ((TreeEntry<K, V>) p).group = g;
+        else
+            ((Entry<K, V>) p).group = g;
+    }
+
+    /**
+     * 把新结点链接到频率为1的组的末尾，并累加权重
+     */
+    private void linkNew(LinkedHashMap.Entry<K, V> p) {
+        int w = weigh(p.key, p.value);
+        setWeight(p, w);
+        totalWeight += w;
+        Group<K, V> g = firstGroup;
+        if (g == null || g.freq != 1) {
+            g = new Group<>(1);
+            linkGroupAfter(g, null);
+        }
+        linkLast(p, g);
+    }
+
+    /**
+     * 把组g插入到组prev之后，prev为null时插入到最前面
+     */
+    private void linkGroupAfter(Group<K, V> g, Group<K, V> prev) {
+        Group<K, V> next = (prev == null) ? firstGroup : prev.next;
+        g.prev = prev;
+        g.next = next;
+        if (prev == null)
+            firstGroup = g;
+        else
+            prev.next = g;
+        if (next != null)
+            next.prev = g;
+    }
+
+    /**
+     * 把结点p链接到组g的末尾
+     * 组g为空时，插入位置是前一个组的最后一个结点之后
+     */
+    private void linkLast(LinkedHashMap.Entry<K, V> p, Group<K, V> g) {
+        LinkedHashMap.Entry<K, V> b = (g.last != null) ? g.last : (g.prev != null) ? g.prev.last : null;
+        LinkedHashMap.Entry<K, V> a = (b == null) ? head : b.after;
+        p.before = b;
+        p.after = a;
+        if (b == null)
+            head = p;
+        else
+            b.after = p;
+        if (a == null)
+            tail = p;
+        else
+            a.before = p;
+        if (g.first == null)
+            g.first = p;
+        g.last = p;
+        setGroup(p, g);
+    }
+
+    /**
+     * 把结点p从链表和所在的组中移除，组变为空时一起移除
+     */
+    private void unlink(LinkedHashMap.Entry<K, V> p) {
+        Group<K, V> g = groupOf(p);
+        LinkedHashMap.Entry<K, V> b = p.before, a = p.after;
+        if (g.first == p && g.last == p) {
+            Group<K, V> gp = g.prev, gn = g.next;
+            if (gp == null)
+                firstGroup = gn;
+            else
+                gp.next = gn;
+            if (gn != null)
+                gn.prev = gp;
+        } else if (g.first == p)
+            g.first = a;
+        else if (g.last == p)
+            g.last = b;
+        p.before = p.after = null;
+        if (b == null)
+            head = a;
+        else
+            b.after = a;
+        if (a == null)
+            tail = b;
+        else
+            a.before = b;
+    }
+
+    /**
+     * 用结点dst替换结点src在链表和组中的位置，用于链表结点和树结点之间的转换
+     */
+    private void transferLinks(LinkedHashMap.Entry<K, V> src, LinkedHashMap.Entry<K, V> dst) {
+        Group<K, V> g = groupOf(src);
+        setWeight(dst, weightOf(src));
+        setGroup(dst, g);
+        LinkedHashMap.Entry<K, V> b = dst.before = src.before;
+        LinkedHashMap.Entry<K, V> a = dst.after = src.after;
+        if (b == null)
+            head = dst;
+        else
+            b.after = dst;
+        if (a == null)
+            tail = dst;
+        else
+            a.before = dst;
+        if (g.first == src)
+            g.first = dst;
+        if (g.last == src)
+            g.last = dst;
+    }
+
+    /**
+     * 记录一次访问：LRU移动到所在组的末尾，LFU移动到下一个频率组的末尾
+     */
+    final void recordAccess(Node<K, V> e) {
+        LinkedHashMap.Entry<K, V> p = (LinkedHashMap.Entry<K, V>) e;
+        Group<K, V> g = groupOf(p);
+        if (policy != Policy.LFU || g.freq == Integer.MAX_VALUE) {
+            if (g.last != p) {
+                unlink(p);
+                linkLast(p, g);
+            }
+            return;
+        }
+        int nf = g.freq + 1;
+        Group<K, V> next = g.next;
+        if (next == null || next.freq != nf) {
+            if (g.first == p && g.last == p) {
+                // 组中只有这一个结点，直接增加组的频率，位置不变
+                g.freq = nf;
+                return;
+            }
+            next = new Group<>(nf);
+            linkGroupAfter(next, g);
+        }
+        unlink(p);
+        linkLast(p, next);
+    }
+
+    /**
+     * 总权重超过最大权重时，从链表头开始淘汰
+     */
+    final void evictIfNeeded() {
+        LinkedHashMap.Entry<K, V> first;
+        while (totalWeight > maximumWeight && (first = head) != null) {
+            removeNode(first.hash, first.key, null, false, false);
+            ++evictionCount;
+        }
+    }
+
+    /**
+     * TINY_LFU策略插入后的淘汰：新结点在链表尾，作为候选者与链表头的淘汰对象比较访问频率，
+     * 候选者的频率不高于淘汰对象时淘汰候选者；候选者被淘汰后仍然超过最大权重（权重不同时）则继续从链表头淘汰
+     */
+    final void admitOrEvict() {
+        LinkedHashMap.Entry<K, V> candidate = tail, victim;
+        while (totalWeight > maximumWeight && (victim = head) != null) {
+            if (candidate != null && victim != candidate &&
+                    sketch.frequency(candidate.hash) <= sketch.frequency(victim.hash))
+                victim = candidate;
+            if (victim == candidate)
+                candidate = null;
+            removeNode(victim.hash, victim.key, null, false, false);
+            ++evictionCount;
+        }
+    }
+
+    /* ---------------- HashMap回调 -------------- */
+
+    Node<K, V> newNode(int hash, K key, V value, Node<K, V> next) {
+        if (sketch != null)
+            sketch.increment(hash);
+        Entry<K, V> p = new Entry<>(hash, key, value, next);
+        linkNew(p);
+        return p;
+    }
+
+    Node<K, V> replacementNode(Node<K, V> p, Node<K, V> next) {
+        Entry<K, V> q = new Entry<>(p.hash, p.key, p.value, next);
+        transferLinks((LinkedHashMap.Entry<K, V>) p, q);
+        return q;
+    }
+
+    TreeNode<K, V> newTreeNode(int hash, K key, V value, Node<K, V> next) {
+        if (sketch != null)
+            sketch.increment(hash);
+        TreeEntry<K, V> p = new TreeEntry<>(hash, key, value, next);
+        linkNew(p);
+        return p;
+    }
+
+    TreeNode<K, V> replacementTreeNode(Node<K, V> p, Node<K, V> next) {
+        TreeEntry<K, V> q = new TreeEntry<>(p.hash, p.key, p.value, next);
+        transferLinks((LinkedHashMap.Entry<K, V>) p, q);
+        return q;
+    }
+
+    void reinitialize() {
+        super.reinitialize();
+        head = tail = null;
+        firstGroup = null;
+        totalWeight = 0L;
+        // clone()时副本与原缓存共享同一个sketch，复制一份；反序列化时sketch还没有创建
+        if (sketch != null)
+            sketch = sketch.copy();
+    }
+
+    /**
+     * 已有键值对被修改或访问（put覆盖、compute、merge、replace等）：重新计算权重并记录一次访问
+     */
+    void afterNodeAccess(Node<K, V> e) {
+        int w = weigh(e.key, e.value);
+        totalWeight += w - weightOf(e);
+        setWeight(e, w);
+        recordAccess(e);
+        evictIfNeeded();
+    }
+
+    void afterNodeInsertion(boolean evict) {
+        if (!evict)
+            return;
+        if (sketch != null) {
+            sketch.ensureCapacity(size);
+            admitOrEvict();
+        } else
+            evictIfNeeded();
+    }
+
+    void afterNodeRemoval(Node<K, V> e) {
+        totalWeight -= weightOf(e);
+        unlink((LinkedHashMap.Entry<K, V>) e);
+    }
+
+    /**
+     * 按淘汰顺序写出，反序列化后保持原来的访问顺序（频率不保留）
+     */
+    void internalWriteEntries(java.io.ObjectOutputStream s) throws IOException {
+        for (LinkedHashMap.Entry<K, V> e = head; e != null; e = e.after) {
+            s.writeObject(e.key);
+            s.writeObject(e.value);
+        }
+    }
+
+    void internalWriteEntries(java.io.DataOutput out, StreamCodec<? super K> keyCodec,
+                              StreamCodec<? super V> valueCodec) throws IOException {
+        for (LinkedHashMap.Entry<K, V> e = head; e != null; e = e.after) {
+            keyCodec.write(e.key, out);
+            valueCodec.write(e.value, out);
+        }
+    }
+
+    /**
+     * HashMap.readObject()插入键值对时本类的字段还没有读取，weigher为null，因此读取完成后重新计算权重；TINY_LFU策略的访问频率不保留
+     */
+    private void readObject(java.io.ObjectInputStream s) throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        initSketch();
+        long w = 0L;
+        for (LinkedHashMap.Entry<K, V> e = head; e != null; e = e.after) {
+            int ew = weigh(e.key, e.value);
+            setWeight(e, ew);
+            w += ew;
+        }
+        totalWeight = w;
+        evictIfNeeded();
+    }
+}
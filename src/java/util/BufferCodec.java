@@ -0,0 +1,109 @@
+package java.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 把对象编码到ByteBuffer中以及从ByteBuffer中解码的编解码器，OffHeapHashMap用它在堆外内存中存放键和值
+ * 1.所有方法都使用绝对下标读写，不修改ByteBuffer的position和limit，因此多个线程可以同时读取同一个ByteBuffer。
+ * 2.用作键的编解码器时，相等的对象必须编码成相同的字节，并且hash()与equals()一致，
+ * OffHeapHashMap查找时只比较哈希值和编码后的字节，不会解码。
+ * 3.不支持null。
+ * 4.OffHeapHashMap的快照会把hash()的结果随记录一起写入文件，用作快照的键时hash()必须在不同进程中保持不变，
+ * 并通过stableHash()声明。
+ *
+ * @param <T> 泛型，表示被编码的对象类型
+ * @see OffHeapHashMap
+ */
+public interface BufferCodec<T> {
+    /**
+     * 计算对象的哈希值，默认使用hashCode()
+     * 哈希值不属于编码结果，但会保存在OffHeapHashMap的记录头中，writeSnapshot()把它原样写入快照文件
+     *
+     * @param value 对象
+     * @return 返回哈希值
+     */
+    default int hash(T value) {
+        return value.hashCode();
+    }
+
+    /**
+     * 判断hash()在不同进程中是否返回相同的结果
+     * 默认的hashCode()对枚举、Class以及没有重写hashCode()的对象每次运行都不同，
+     * 用这样的哈希值写入的快照在另一个进程中打开后会找不到键，因此默认返回false，writeSnapshot()拒绝写入。
+     * 哈希值只由对象的内容决定时（例如String、Integer，或者按编码后的字节计算）重写此方法返回true。
+     *
+     * @return hash()跨进程稳定时返回true
+     */
+    default boolean stableHash() {
+        return false;
+    }
+
+    /**
+     * 计算对象编码后的字节数
+     *
+     * @param value 对象
+     * @return 返回编码后的字节数
+     */
+    int encodedSize(T value);
+
+    /**
+     * 把对象编码到buf的[offset, offset + encodedSize(value))中
+     *
+     * @param value  对象
+     * @param buf    目标缓冲区
+     * @param offset 起始下标
+     */
+    void encode(T value, ByteBuffer buf, int offset);
+
+    /**
+     * 从buf的[offset, offset + length)中解码出对象
+     *
+     * @param buf    源缓冲区
+     * @param offset 起始下标
+     * @param length 字节数
+     * @return 返回解码出的对象
+     */
+    T decode(ByteBuffer buf, int offset, int length);
+
+    /**
+     * 判断buf的[offset, offset + length)是否是value编码后的结果
+     * 默认解码后调用equals()比较，内置的编解码器直接比较字节，不创建对象
+     *
+     * @param value  对象
+     * @param buf    缓冲区
+     * @param offset 起始下标
+     * @param length 字节数
+     * @return 相同时返回true
+     */
+    default boolean matches(T value, ByteBuffer buf, int offset, int length) {
+        return value.equals(decode(buf, offset, length));
+    }
+
+    /**
+     * @return 返回String的UTF-8编解码器
+     */
+    static BufferCodec<String> utf8() {
+        return BufferCodecs.Utf8.INSTANCE;
+    }
+
+    /**
+     * @return 返回Integer的编解码器，固定4个字节
+     */
+    static BufferCodec<Integer> int32() {
+        return BufferCodecs.Int32.INSTANCE;
+    }
+
+    /**
+     * @return 返回Long的编解码器，固定8个字节
+     */
+    static BufferCodec<Long> int64() {
+        return BufferCodecs.Int64.INSTANCE;
+    }
+
+    /**
+     * @return 返回byte[]的编解码器，哈希值和相等都按数组内容计算
+     */
+    static BufferCodec<byte[]> bytes() {
+        return BufferCodecs.Bytes.INSTANCE;
+    }
+}
@@ -0,0 +1,239 @@
+package java.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * BufferCodec的内置实现
+ *
+ * @see BufferCodec
+ */
+final class BufferCodecs {
+    private BufferCodecs() {
+        throw new AssertionError("no instances");
+    }
+
+    /**
+     * 把src复制到buf的offset处，JDK 8的ByteBuffer没有绝对下标的批量写入，所以通过duplicate()实现
+     */
+    static void put(ByteBuffer buf, int offset, byte[] src) {
+        ByteBuffer dup = buf.duplicate();
+        dup.position(offset);
+        dup.put(src);
+    }
+
+    /**
+     * 从buf的offset处读取length个字节
+     */
+    static byte[] get(ByteBuffer buf, int offset, int length) {
+        byte[] dst = new byte[length];
+        ByteBuffer dup = buf.duplicate();
+        dup.position(offset);
+        dup.get(dst);
+        return dst;
+    }
+
+    /**
+     * String的UTF-8编解码器，不成对的代理字符编码为'?'，与String.getBytes(UTF_8)相同
+     */
+    static final class Utf8 implements BufferCodec<String> {
+        static final Utf8 INSTANCE = new Utf8();
+
+        /**
+         * String.hashCode()由内容决定，计算方法由规范规定
+         */
+        public boolean stableHash() {
+            return true;
+        }
+
+        public int encodedSize(String s) {
+            int n = s.length(), size = n;
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x80) {
+                    if (c < 0x800)
+                        size += 1;
+                    else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                        // 代理对的两个char编码为4个字节
+                        size += 2;
+                        i++;
+                    } else if (!Character.isSurrogate(c))
+                        // 不成对的代理字符编码为1个字节的'?'，其他的3个字节
+                        size += 2;
+                }
+            }
+            return size;
+        }
+
+        public void encode(String s, ByteBuffer buf, int offset) {
+            int n = s.length(), p = offset;
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80)
+                    buf.put(p++, (byte) c);
+                else if (c < 0x800) {
+                    buf.put(p++, (byte) (0xC0 | (c >> 6)));
+                    buf.put(p++, (byte) (0x80 | (c & 0x3F)));
+                } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    buf.put(p++, (byte) (0xF0 | (cp >> 18)));
+                    buf.put(p++, (byte) (0x80 | ((cp >> 12) & 0x3F)));
+                    buf.put(p++, (byte) (0x80 | ((cp >> 6) & 0x3F)));
+                    buf.put(p++, (byte) (0x80 | (cp & 0x3F)));
+                } else if (Character.isSurrogate(c))
+                    buf.put(p++, (byte) '?');
+                else {
+                    buf.put(p++, (byte) (0xE0 | (c >> 12)));
+                    buf.put(p++, (byte) (0x80 | ((c >> 6) & 0x3F)));
+                    buf.put(p++, (byte) (0x80 | (c & 0x3F)));
+                }
+            }
+        }
+
+        public String decode(ByteBuffer buf, int offset, int length) {
+            // 全部是ASCII时直接转换成char，不需要经过CharsetDecoder
+            char[] cs = new char[length];
+            for (int i = 0; i < length; i++) {
+                byte b = buf.get(offset + i);
+                if (b < 0)
+                    return new String(get(buf, offset, length), StandardCharsets.UTF_8);
+                cs[i] = (char) b;
+            }
+            return new String(cs);
+        }
+
+        /**
+         * 一边编码一边比较，不创建对象
+         */
+        public boolean matches(String s, ByteBuffer buf, int offset, int length) {
+            int n = s.length(), p = offset, end = offset + length;
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    if (p >= end || buf.get(p++) != (byte) c)
+                        return false;
+                } else if (c < 0x800) {
+                    if (p + 2 > end || buf.get(p++) != (byte) (0xC0 | (c >> 6)) ||
+                            buf.get(p++) != (byte) (0x80 | (c & 0x3F)))
+                        return false;
+                } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    if (p + 4 > end || buf.get(p++) != (byte) (0xF0 | (cp >> 18)) ||
+                            buf.get(p++) != (byte) (0x80 | ((cp >> 12) & 0x3F)) ||
+                            buf.get(p++) != (byte) (0x80 | ((cp >> 6) & 0x3F)) ||
+                            buf.get(p++) != (byte) (0x80 | (cp & 0x3F)))
+                        return false;
+                } else if (Character.isSurrogate(c)) {
+                    if (p >= end || buf.get(p++) != (byte) '?')
+                        return false;
+                } else {
+                    if (p + 3 > end || buf.get(p++) != (byte) (0xE0 | (c >> 12)) ||
+                            buf.get(p++) != (byte) (0x80 | ((c >> 6) & 0x3F)) ||
+                            buf.get(p++) != (byte) (0x80 | (c & 0x3F)))
+                        return false;
+                }
+            }
+            return p == end;
+        }
+    }
+
+    /**
+     * Integer的编解码器
+     */
+    static final class Int32 implements BufferCodec<Integer> {
+        static final Int32 INSTANCE = new Int32();
+
+        /**
+         * Integer.hashCode()就是值本身
+         */
+        public boolean stableHash() {
+            return true;
+        }
+
+        public int encodedSize(Integer value) {
+            return Integer.BYTES;
+        }
+
+        public void encode(Integer value, ByteBuffer buf, int offset) {
+            buf.putInt(offset, value);
+        }
+
+        public Integer decode(ByteBuffer buf, int offset, int length) {
+            return buf.getInt(offset);
+        }
+
+        public boolean matches(Integer value, ByteBuffer buf, int offset, int length) {
+            return length == Integer.BYTES && buf.getInt(offset) == value;
+        }
+    }
+
+    /**
+     * Long的编解码器
+     */
+    static final class Int64 implements BufferCodec<Long> {
+        static final Int64 INSTANCE = new Int64();
+
+        /**
+         * Long.hashCode()由值决定
+         */
+        public boolean stableHash() {
+            return true;
+        }
+
+        public int encodedSize(Long value) {
+            return Long.BYTES;
+        }
+
+        public void encode(Long value, ByteBuffer buf, int offset) {
+            buf.putLong(offset, value);
+        }
+
+        public Long decode(ByteBuffer buf, int offset, int length) {
+            return buf.getLong(offset);
+        }
+
+        public boolean matches(Long value, ByteBuffer buf, int offset, int length) {
+            return length == Long.BYTES && buf.getLong(offset) == value;
+        }
+    }
+
+    /**
+     * byte[]的编解码器
+     */
+    static final class Bytes implements BufferCodec<byte[]> {
+        static final Bytes INSTANCE = new Bytes();
+
+        /**
+         * Arrays.hashCode()由内容决定
+         */
+        public boolean stableHash() {
+            return true;
+        }
+
+        public int hash(byte[] value) {
+            return Arrays.hashCode(value);
+        }
+
+        public int encodedSize(byte[] value) {
+            return value.length;
+        }
+
+        public void encode(byte[] value, ByteBuffer buf, int offset) {
+            put(buf, offset, value);
+        }
+
+        public byte[] decode(ByteBuffer buf, int offset, int length) {
+            return get(buf, offset, length);
+        }
+
+        public boolean matches(byte[] value, ByteBuffer buf, int offset, int length) {
+            if (value.length != length)
+                return false;
+            for (int i = 0; i < length; i++) {
+                if (buf.get(offset + i) != value[i])
+                    return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,866 @@
+package java.util;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.Serializable;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * 不为键值对创建结点对象的链地址法哈希表，是HashMap的紧凑存储版本
+ * 1.与HashMap相同，键的哈希值通过HashMap.hash(Object)扰动计算，桶的个数必定是2的n次方，下标用(n - 1) & hash计算，
+ * 发生冲突时同一个桶中的键值对串成链表。
+ * 2.与HashMap不同，键值对按插入顺序紧密地存放在四个平行的数组hashes、nexts、keys、vals的[0, size)中，
+ * 桶数组table和链表指针nexts存放的是数组下标而不是结点引用，因此每个键值对只占用4个数组元素，没有对象头和额外的引用。
+ * 开启压缩指针的64位JVM上，HashMap每个键值对需要32字节的Node再加上桶数组，一百万个Integer键实测约40字节；
+ * 本类每个键值对只需要hashes、nexts、keys、vals各4字节再加上桶数组，实测约24字节，调用trimToSize()去掉空闲位置后还会略少
+ * （benchmarks/run.sh footprint）。
+ * 3.删除时把最后一个键值对移动到被删除的位置，保持数组紧密，因此删除后迭代顺序会改变。
+ * 4.没有红黑树，hashCode()相同的键很多时链表查找退化为O(n)。
+ * 5.允许null键和null值，不是线程安全的。
+ *
+ * @param <K> 泛型，表示键值对中的键
+ * @param <V> 泛型，表示键值对中的值
+ * @see HashMap
+ * @see OpenHashMap
+ */
+/*
+    extends
+        AbstractMap<K, V>   继承自抽象类AbstractMap<K, V>
+    implements
+        Map<K, V>   实现Map接口
+        Cloneable   标记性接口，表示该类可以被克隆
+        Serializable    标记性接口，表示该类可以被序列化和反序列化
+ */
+public class CompactHashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Cloneable, Serializable {
+    // 序列版本ID
+    private static final long serialVersionUID = 5320847117366239503L;
+
+    /**
+     * 常量，默认的初始化容量，必定是2的n次方
+     */
+    static final int DEFAULT_INITIAL_CAPACITY = 1 << 4;
+
+    /**
+     * 常量，桶数组的最大容量，与HashMap相同
+     */
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * 常量，默认的负载因子，与HashMap相同
+     */
+    static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    /**
+     * 常量，键值对数组的最大长度，与ArrayList相同
+     */
+    static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * 桶数组，存放每个桶中链表第一个键值对的下标加1，0表示空桶
+     */
+    transient int[] table;
+
+    /**
+     * 链表指针，nexts[i]是同一个桶中下一个键值对的下标加1，0表示链表结束
+     */
+    transient int[] nexts;
+
+    /**
+     * 每个键值对的键的哈希值，用来在比较equals()之前快速排除不相等的键，以及扩容时重新计算桶的下标
+     */
+    transient int[] hashes;
+
+    /**
+     * 存放键的数组，[0, size)中的元素有效
+     */
+    transient Object[] keys;
+
+    /**
+     * 存放值的数组，与keys数组一一对应
+     */
+    transient Object[] vals;
+
+    /**
+     * 键值对的数量
+     */
+    transient int size;
+
+    /**
+     * 结构性修改的次数，用于迭代器的快速失败
+     */
+    transient int modCount;
+
+    /**
+     * 阈值，键值对的数量超过此值就会扩容桶数组，threshold = capacity * loadFactor
+     * 在数组还没有分配时，存放的是初始容量
+     */
+    transient int threshold;
+
+    /**
+     * 负载因子
+     */
+    final float loadFactor;
+
+    /**
+     * 对应键值对的映射集，keySet和values视图使用父类AbstractMap中的字段
+     */
+    transient Set<Map.Entry<K, V>> entrySet;
+
+    /* ---------------- 构造方法 -------------- */
+
+    /**
+     * 带两个参数的构造方法
+     *
+     * @param initialCapacity 初始化容量
+     * @param loadFactor      负载因子
+     * @throws IllegalArgumentException initialCapacity为负数或者loadFactor不是正数
+     */
+    public CompactHashMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        if (initialCapacity > MAXIMUM_CAPACITY)
+            initialCapacity = MAXIMUM_CAPACITY;
+        if (loadFactor <= 0 || Float.isNaN(loadFactor))
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        this.loadFactor = loadFactor;
+        // 数组延迟到第一次添加时分配，此时threshold暂存的是初始容量
+        this.threshold = HashMap.tableSizeFor(initialCapacity);
+    }
+
+    /**
+     * 带初始容量的构造方法
+     *
+     * @param initialCapacity 初始化容量
+     */
+    public CompactHashMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * 无参构造方法
+     */
+    public CompactHashMap() {
+        this.loadFactor = DEFAULT_LOAD_FACTOR;
+    }
+
+    /**
+     * 使用Map集合构造
+     *
+     * @param m Map集合
+     */
+    public CompactHashMap(Map<? extends K, ? extends V> m) {
+        this.loadFactor = DEFAULT_LOAD_FACTOR;
+        putAll(m);
+    }
+
+    /* ---------------- 工具方法 -------------- */
+
+    /**
+     * 根据期望的键值对数量计算桶数组的容量，保证容量是2的n次方，并且capacity * loadFactor >= expected
+     *
+     * @param expected 期望存放的键值对数量
+     * @return 返回容量
+     */
+    final int capacityFor(int expected) {
+        float fc = (float) expected / loadFactor + 1.0F;
+        return (fc >= MAXIMUM_CAPACITY) ? MAXIMUM_CAPACITY :
+                HashMap.tableSizeFor(Math.max((int) fc, DEFAULT_INITIAL_CAPACITY));
+    }
+
+    /**
+     * 根据桶数组的容量计算阈值，达到最大容量后不再扩容桶数组
+     */
+    final int thresholdFor(int cap) {
+        float ft = (float) cap * loadFactor;
+        return (cap < MAXIMUM_CAPACITY && ft < (float) MAX_ARRAY_SIZE) ? (int) ft : Integer.MAX_VALUE;
+    }
+
+    /**
+     * 查找指定键所在的下标
+     *
+     * @param hash 键的哈希值
+     * @param key  键
+     * @return 返回键在数组中的下标，没有找到则返回-1
+     */
+    final int findIndex(int hash, Object key) {
+        int[] tab;
+        if ((tab = table) == null)
+            return -1;
+        int[] hs = hashes, nx = nexts;
+        Object[] ks = keys;
+        // 沿着链表查找，下标加1存放，所以i为-1时表示链表结束
+        for (int i = tab[hash & (tab.length - 1)] - 1; i >= 0; i = nx[i] - 1) {
+            Object k;
+            // 先比较哈希值，哈希值不相等就不需要访问键对象调用equals()
+            if (hs[i] == hash && ((k = ks[i]) == key || (key != null && key.equals(k))))
+                return i;
+        }
+        return -1;
+    }
+
+    /* ---------------- 查询 -------------- */
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 得到指定key对应的value
+     *
+     * @param key 指定的key
+     * @return 返回查找到的value，没有查找到则返回null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int i = findIndex(HashMap.hash(key), key);
+        return (i < 0) ? null : (V) vals[i];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(Object key, V defaultValue) {
+        int i = findIndex(HashMap.hash(key), key);
+        return (i < 0) ? defaultValue : (V) vals[i];
+    }
+
+    public boolean containsKey(Object key) {
+        return findIndex(HashMap.hash(key), key) >= 0;
+    }
+
+    /**
+     * 判断是否包含指定的值，只需要顺序遍历vals数组的[0, size)
+     */
+    public boolean containsValue(Object value) {
+        Object[] vs;
+        if ((vs = vals) != null) {
+            for (int i = 0, n = size; i < n; ++i) {
+                Object v;
+                if ((v = vs[i]) == value || (value != null && value.equals(v)))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /* ---------------- 修改 -------------- */
+
+    public V put(K key, V value) {
+        return putVal(HashMap.hash(key), key, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return putVal(HashMap.hash(key), key, value, true);
+    }
+
+    /**
+     * 添加键值对
+     *
+     * @param hash         键的哈希值
+     * @param key          键
+     * @param value        值
+     * @param onlyIfAbsent 为true时，如果已经存在非null的旧值则不替换
+     * @return 返回旧值或者null
+     */
+    @SuppressWarnings("unchecked")
+    final V putVal(int hash, K key, V value, boolean onlyIfAbsent) {
+        int i;
+        if ((i = findIndex(hash, key)) >= 0) {
+            V oldValue = (V) vals[i];
+            if (!onlyIfAbsent || oldValue == null)
+                vals[i] = value;
+            return oldValue;
+        }
+        // 新的键值对放在数组末尾，再插入到所在桶的链表头部
+        if (table == null || size >= threshold)
+            resize();
+        if ((i = size) == keys.length)
+            growEntries(i + 1);
+        int[] tab = table;
+        int b = hash & (tab.length - 1);
+        hashes[i] = hash;
+        keys[i] = key;
+        vals[i] = value;
+        nexts[i] = tab[b];
+        tab[b] = i + 1;
+        ++modCount;
+        ++size;
+        return null;
+    }
+
+    /**
+     * 初始化或扩容桶数组，容量变为原来的2倍，并按新的容量重新串起所有链表
+     * 键值对数组只在初始化时按阈值分配，之后由growEntries()像ArrayList一样按1.5倍单独扩大，
+     * 平均空闲的比例比每次扩大到新阈值（2倍）小
+     */
+    final void resize() {
+        int[] oldTab = table;
+        int oldCap = (oldTab == null) ? 0 : oldTab.length;
+        int newCap;
+        if (oldCap > 0) {
+            if (oldCap >= MAXIMUM_CAPACITY) {
+                // 桶数组已经达到最大容量，之后只扩大键值对数组
+                threshold = Integer.MAX_VALUE;
+                return;
+            }
+            newCap = oldCap << 1;
+        } else if (threshold > 0)
+            // 使用构造方法指定的初始容量
+            newCap = threshold;
+        else
+            newCap = DEFAULT_INITIAL_CAPACITY;
+        threshold = thresholdFor(newCap);
+        if (keys == null) {
+            int entries = Math.min(threshold, MAX_ARRAY_SIZE);
+            hashes = new int[entries];
+            nexts = new int[entries];
+            keys = new Object[entries];
+            vals = new Object[entries];
+        }
+        rehash(new int[newCap]);
+    }
+
+    /**
+     * 按照桶数组tab重新串起[0, size)中所有的键值对
+     * 从后向前插入到链表头部，因此同一个桶中的链表按下标从小到大排列
+     */
+    final void rehash(int[] tab) {
+        int[] hs = hashes, nx = nexts;
+        int mask = tab.length - 1;
+        for (int i = size - 1; i >= 0; --i) {
+            int b = hs[i] & mask;
+            nx[i] = tab[b];
+            tab[b] = i + 1;
+        }
+        table = tab;
+    }
+
+    /**
+     * 扩大键值对数组，长度至少为minCapacity，通常扩大到原来的1.5倍
+     */
+    final void growEntries(int minCapacity) {
+        int oldLen = keys.length;
+        if (minCapacity > MAX_ARRAY_SIZE || minCapacity < 0)
+            throw new OutOfMemoryError("Required array size too large");
+        int newLen = oldLen + (oldLen >> 1);
+        if (newLen - minCapacity < 0)
+            newLen = minCapacity;
+        if (newLen - MAX_ARRAY_SIZE > 0)
+            newLen = MAX_ARRAY_SIZE;
+        hashes = Arrays.copyOf(hashes, newLen);
+        nexts = Arrays.copyOf(nexts, newLen);
+        keys = Arrays.copyOf(keys, newLen);
+        vals = Arrays.copyOf(vals, newLen);
+    }
+
+    /**
+     * 将键值对数组缩小到size，桶数组缩小到能放下size个键值对的最小容量，用于构建完成后不再增长的Map
+     */
+    public void trimToSize() {
+        if (table == null)
+            return;
+        int cap = capacityFor(size);
+        if (cap < table.length) {
+            threshold = thresholdFor(cap);
+            rehash(new int[cap]);
+        }
+        if (size < keys.length) {
+            hashes = Arrays.copyOf(hashes, size);
+            nexts = Arrays.copyOf(nexts, size);
+            keys = Arrays.copyOf(keys, size);
+            vals = Arrays.copyOf(vals, size);
+        }
+    }
+
+    public void putAll(Map<? extends K, ? extends V> m) {
+        int s = m.size();
+        if (s > 0) {
+            // 预先扩容，避免逐个添加时多次扩容
+            if (table == null) {
+                int cap = capacityFor(s);
+                if (cap > threshold)
+                    threshold = cap;
+            } else {
+                while (s > threshold && table.length < MAXIMUM_CAPACITY)
+                    resize();
+            }
+            for (Map.Entry<? extends K, ? extends V> e : m.entrySet())
+                put(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * 移除指定key的键值对
+     *
+     * @param key 指定的key
+     * @return 返回被删除键值对的值或者null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        int i = findIndex(HashMap.hash(key), key);
+        if (i < 0)
+            return null;
+        V oldValue = (V) vals[i];
+        removeAt(i);
+        return oldValue;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        int i = findIndex(HashMap.hash(key), key);
+        Object v;
+        if (i >= 0 && ((v = vals[i]) == value || (value != null && value.equals(v)))) {
+            removeAt(i);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 删除下标为i的键值对：先从它所在的链表中摘除，再把最后一个键值对移动到i处，
+     * 并把指向最后一个键值对的链接改为指向i
+     *
+     * @param i 要被删除的键值对的下标
+     */
+    final void removeAt(int i) {
+        int[] tab = table, nx = nexts, hs = hashes;
+        int mask = tab.length - 1;
+        unlink(tab, nx, hs[i] & mask, i);
+        int last = --size;
+        if (i != last) {
+            int b = hs[last] & mask;
+            // 找到指向last的链接，改为指向i
+            if (tab[b] == last + 1)
+                tab[b] = i + 1;
+            else {
+                int p = tab[b] - 1;
+                while (nx[p] != last + 1)
+                    p = nx[p] - 1;
+                nx[p] = i + 1;
+            }
+            hs[i] = hs[last];
+            nx[i] = nx[last];
+            keys[i] = keys[last];
+            vals[i] = vals[last];
+        }
+        keys[last] = null;
+        vals[last] = null;
+        ++modCount;
+    }
+
+    /**
+     * 把下标为i的键值对从桶b的链表中摘除
+     */
+    static void unlink(int[] tab, int[] nx, int b, int i) {
+        if (tab[b] == i + 1)
+            tab[b] = nx[i];
+        else {
+            int p = tab[b] - 1;
+            while (nx[p] != i + 1)
+                p = nx[p] - 1;
+            nx[p] = nx[i];
+        }
+    }
+
+    /**
+     * 清空所有键值对，保留数组容量
+     */
+    public void clear() {
+        modCount++;
+        if (table != null && size > 0) {
+            Arrays.fill(table, 0);
+            Arrays.fill(keys, 0, size, null);
+            Arrays.fill(vals, 0, size, null);
+            size = 0;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean replace(K key, V oldValue, V newValue) {
+        int i = findIndex(HashMap.hash(key), key);
+        V v;
+        if (i >= 0 && ((v = (V) vals[i]) == oldValue || (v != null && v.equals(oldValue)))) {
+            vals[i] = newValue;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V replace(K key, V value) {
+        int i = findIndex(HashMap.hash(key), key);
+        if (i >= 0) {
+            V oldValue = (V) vals[i];
+            vals[i] = value;
+            return oldValue;
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (action == null)
+            throw new NullPointerException();
+        if (size > 0) {
+            Object[] ks = keys, vs = vals;
+            int mc = modCount;
+            for (int i = 0; i < size && modCount == mc; ++i)
+                action.accept((K) ks[i], (V) vs[i]);
+            if (modCount != mc)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        if (function == null)
+            throw new NullPointerException();
+        if (size > 0) {
+            Object[] ks = keys, vs = vals;
+            int mc = modCount;
+            for (int i = 0; i < size && modCount == mc; ++i)
+                vs[i] = function.apply((K) ks[i], (V) vs[i]);
+            if (modCount != mc)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    /* ---------------- 视图 -------------- */
+
+    public Set<K> keySet() {
+        Set<K> ks = keySet;
+        if (ks == null) {
+            ks = new KeySet();
+            keySet = ks;
+        }
+        return ks;
+    }
+
+    final class KeySet extends AbstractSet<K> {
+        public final int size() {
+            return size;
+        }
+
+        public final void clear() {
+            CompactHashMap.this.clear();
+        }
+
+        public final Iterator<K> iterator() {
+            return new KeyIterator();
+        }
+
+        public final boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        public final boolean remove(Object key) {
+            int i = findIndex(HashMap.hash(key), key);
+            if (i < 0)
+                return false;
+            removeAt(i);
+            return true;
+        }
+
+        public final Object[] toArray() {
+            return Arrays.copyOf(keys == null ? new Object[0] : keys, size);
+        }
+
+        @SuppressWarnings("unchecked")
+        public final void forEach(Consumer<? super K> action) {
+            if (action == null)
+                throw new NullPointerException();
+            if (size > 0) {
+                Object[] ks = keys;
+                int mc = modCount;
+                for (int i = 0; i < size && modCount == mc; ++i)
+                    action.accept((K) ks[i]);
+                if (modCount != mc)
+                    throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    public Collection<V> values() {
+        Collection<V> vs = values;
+        if (vs == null) {
+            vs = new Values();
+            values = vs;
+        }
+        return vs;
+    }
+
+    final class Values extends AbstractCollection<V> {
+        public final int size() {
+            return size;
+        }
+
+        public final void clear() {
+            CompactHashMap.this.clear();
+        }
+
+        public final Iterator<V> iterator() {
+            return new ValueIterator();
+        }
+
+        public final boolean contains(Object o) {
+            return containsValue(o);
+        }
+
+        public final Object[] toArray() {
+            return Arrays.copyOf(vals == null ? new Object[0] : vals, size);
+        }
+
+        @SuppressWarnings("unchecked")
+        public final void forEach(Consumer<? super V> action) {
+            if (action == null)
+                throw new NullPointerException();
+            if (size > 0) {
+                Object[] vs = vals;
+                int mc = modCount;
+                for (int i = 0; i < size && modCount == mc; ++i)
+                    action.accept((V) vs[i]);
+                if (modCount != mc)
+                    throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es;
+        return (es = entrySet) == null ? (entrySet = new EntrySet()) : es;
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        public final int size() {
+            return size;
+        }
+
+        public final void clear() {
+            CompactHashMap.this.clear();
+        }
+
+        public final Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        public final boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            Object key = e.getKey();
+            int i = findIndex(HashMap.hash(key), key);
+            return i >= 0 && Objects.equals(vals[i], e.getValue());
+        }
+
+        public final boolean remove(Object o) {
+            if (o instanceof Map.Entry) {
+                Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+                return CompactHashMap.this.remove(e.getKey(), e.getValue());
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 迭代器返回的键值对，记录键和它所在的下标
+     * 由于删除时会移动键值对，下标可能失效，因此每次访问前都会检查该下标上是否仍然是这个键
+     */
+    final class Entry implements Map.Entry<K, V> {
+        final K key;
+        // 最近一次所在的下标
+        int index;
+
+        Entry(K key, int index) {
+            this.key = key;
+            this.index = index;
+        }
+
+        /**
+         * 得到键当前所在的下标，键已经被删除则返回-1
+         * null键最多只有一个，所以keys[i] == null时也一定是同一个键
+         */
+        int slot() {
+            int i = index;
+            if (i >= size || keys[i] != key)
+                index = i = findIndex(HashMap.hash(key), key);
+            return i;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        @SuppressWarnings("unchecked")
+        public V getValue() {
+            int i = slot();
+            return (i < 0) ? null : (V) vals[i];
+        }
+
+        @SuppressWarnings("unchecked")
+        public V setValue(V value) {
+            int i = slot();
+            if (i < 0)
+                throw new IllegalStateException("Entry was removed");
+            V oldValue = (V) vals[i];
+            vals[i] = value;
+            return oldValue;
+        }
+
+        public boolean equals(Object o) {
+            if (o == this)
+                return true;
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(getValue(), e.getValue());
+        }
+
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(getValue());
+        }
+
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+
+    /* ---------------- 迭代器 -------------- */
+
+    /**
+     * 迭代器从下标size - 1向0遍历
+     * 删除时被移动的是最后一个键值对，它的下标不小于当前下标，一定已经遍历过，所以不会重复或者遗漏
+     */
+    abstract class HashIterator {
+        // 下一次返回下标为index - 1的键值对
+        int index;
+        // 最近一次返回的键值对的下标，-1表示没有或者已经被删除
+        int last = -1;
+        int expectedModCount;
+
+        HashIterator() {
+            expectedModCount = modCount;
+            index = size;
+        }
+
+        public final boolean hasNext() {
+            return index > 0;
+        }
+
+        /**
+         * 返回下一个键值对的下标
+         */
+        final int nextIndex() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (index <= 0)
+                throw new NoSuchElementException();
+            return last = --index;
+        }
+
+        public final void remove() {
+            if (last < 0)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            removeAt(last);
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    final class KeyIterator extends HashIterator implements Iterator<K> {
+        @SuppressWarnings("unchecked")
+        public final K next() {
+            return (K) keys[nextIndex()];
+        }
+    }
+
+    final class ValueIterator extends HashIterator implements Iterator<V> {
+        @SuppressWarnings("unchecked")
+        public final V next() {
+            return (V) vals[nextIndex()];
+        }
+    }
+
+    final class EntryIterator extends HashIterator implements Iterator<Map.Entry<K, V>> {
+        @SuppressWarnings("unchecked")
+        public final Map.Entry<K, V> next() {
+            int i = nextIndex();
+            return new Entry((K) keys[i], i);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    // Cloning and serialization
+
+    /**
+     * 返回浅拷贝，键和值本身不会被克隆
+     *
+     * @return 返回该Map的浅拷贝
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public Object clone() {
+        CompactHashMap<K, V> result;
+        try {
+            result = (CompactHashMap<K, V>) super.clone();
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError(e);
+        }
+        if (table != null) {
+            result.table = table.clone();
+            result.nexts = nexts.clone();
+            result.hashes = hashes.clone();
+            result.keys = keys.clone();
+            result.vals = vals.clone();
+        }
+        result.modCount = 0;
+        result.entrySet = null;
+        return result;
+    }
+
+    /**
+     * 序列化，格式与HashMap相同：容量(int)、键值对数量(int)，然后按数组顺序写出每个键值对的键和值
+     */
+    private void writeObject(java.io.ObjectOutputStream s) throws IOException {
+        s.defaultWriteObject();
+        s.writeInt((table == null) ? capacityFor(0) : table.length);
+        s.writeInt(size);
+        Object[] ks = keys, vs = vals;
+        for (int i = 0; i < size; ++i) {
+            s.writeObject(ks[i]);
+            s.writeObject(vs[i]);
+        }
+    }
+
+    /**
+     * 反序列化
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(java.io.ObjectInputStream s) throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        if (loadFactor <= 0 || Float.isNaN(loadFactor))
+            throw new InvalidObjectException("Illegal load factor: " + loadFactor);
+        s.readInt();                // 忽略容量
+        int mappings = s.readInt(); // 键值对数量
+        if (mappings < 0)
+            throw new InvalidObjectException("Illegal mappings count: " + mappings);
+        threshold = capacityFor(mappings);
+        for (int i = 0; i < mappings; i++) {
+            K key = (K) s.readObject();
+            V value = (V) s.readObject();
+            putVal(HashMap.hash(key), key, value, false);
+        }
+    }
+}
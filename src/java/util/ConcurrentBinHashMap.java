@@ -0,0 +1,1131 @@
+package java.util;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 基于HashMap桶结构的并发哈希表，用来代替Collections.synchronizedMap(new HashMap<>())
+ * 1.桶数组、哈希值扰动、(n - 1) & hash定位下标、扩容时按(hash & oldCap)把一个桶拆分为低位链表和高位链表，都与HashMap相同。
+ * 2.写操作只锁住桶的头结点：向空桶插入时用CAS设置头结点，不加锁；向非空桶插入、修改、删除时对头结点加synchronized锁，
+ * 不同桶上的写操作互不影响。
+ * 3.读操作不加锁：桶数组的元素通过AtomicReferenceArray以volatile语义读取，结点的val和next字段也是volatile的。
+ * 4.扩容是多线程协作完成的：发起扩容的线程创建两倍大小的新数组，其他线程在写操作时遇到正在迁移的桶（ForwardingNode）
+ * 就领取一段还没有迁移的桶帮忙迁移，全部迁移完成后再切换table。迁移过程中读操作通过ForwardingNode到新数组中查找。
+ * 5.与HashMap不同，不允许null键和null值（无法区分“不存在”和“值为null”）；
+ * 链表过长时也不会转为红黑树，桶中始终是链表。
+ * 6.size()和迭代器都是弱一致的，反映的是调用时或调用后某一时刻的状态。
+ *
+ * @param <K> 泛型，表示键值对中的键
+ * @param <V> 泛型，表示键值对中的值
+ * @see HashMap
+ */
+/*
+    extends
+        AbstractMap<K, V>   继承自抽象类AbstractMap<K, V>
+    implements
+        ConcurrentMap<K, V>   实现ConcurrentMap接口
+        Serializable    标记性接口，表示该类可以被序列化和反序列化
+ */
+public class ConcurrentBinHashMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>, Serializable {
+    // 序列版本ID
+    private static final long serialVersionUID = 5185916257303373645L;
+
+    /**
+     * 常量，默认的初始化容量，必定是2的n次方
+     */
+    static final int DEFAULT_INITIAL_CAPACITY = 1 << 4;
+
+    /**
+     * 常量，最大容量
+     */
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * 常量，每个线程一次领取的最少迁移桶数，避免多个线程为了很少的桶频繁竞争transferIndex
+     */
+    static final int MIN_TRANSFER_STRIDE = 16;
+
+    /**
+     * 常量，ForwardingNode结点的哈希值，表示该桶已经迁移到新数组
+     */
+    static final int MOVED = -1;
+
+    /**
+     * 常量，ReservationNode结点的哈希值，表示computeIfAbsent()正在该空桶上计算值
+     */
+    static final int RESERVED = -2;
+
+    /**
+     * 常量，普通结点哈希值可用的位，保证普通结点的哈希值都不是负数，负数留给上面两种特殊结点
+     */
+    static final int HASH_BITS = 0x7fffffff;
+
+    /**
+     * 常量，CPU的数量，用来计算每次领取的迁移桶数
+     */
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 桶数组，第一次插入时才初始化，长度必定是2的n次方
+     */
+    transient volatile AtomicReferenceArray<Node<K, V>> table;
+
+    /**
+     * 控制初始化和扩容
+     * 大于0：table还没有初始化时表示初始容量，初始化之后表示扩容阈值（容量的0.75倍）；
+     * 等于0：使用默认初始容量；
+     * 等于-1：正在初始化或者正在扩容。
+     */
+    private transient volatile int sizeCtl;
+
+    /**
+     * 当前正在进行的扩容，没有扩容时为null
+     */
+    private transient volatile Transfer<K, V> transfer;
+
+    /**
+     * 键值对数量的计数器，LongAdder在多线程竞争时把计数分散到多个单元上，避免所有线程竞争同一个变量
+     */
+    private transient LongAdder counter = new LongAdder();
+
+    /**
+     * 对sizeCtl字段做CAS
+     */
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<ConcurrentBinHashMap> SIZECTL =
+            AtomicIntegerFieldUpdater.newUpdater(ConcurrentBinHashMap.class, "sizeCtl");
+
+    // 视图，keySet和values使用AbstractMap中的字段
+    transient EntrySet<K, V> entrySet;
+
+    /**
+     * 普通结点，与HashMap.Node的结构相同，但val和next是volatile的，以支持不加锁的读取
+     * 只有持有桶头结点的锁时才能修改val和next
+     */
+    static class Node<K, V> implements Map.Entry<K, V> {
+        final int hash;
+        final K key;
+        volatile V val;
+        volatile Node<K, V> next;
+
+        Node(int hash, K key, V val, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.val = val;
+            this.next = next;
+        }
+
+        public final K getKey() {
+            return key;
+        }
+
+        public final V getValue() {
+            return val;
+        }
+
+        public final int hashCode() {
+            return key.hashCode() ^ val.hashCode();
+        }
+
+        public final String toString() {
+            return key + "=" + val;
+        }
+
+        /**
+         * 不支持通过结点直接修改值，迭代器返回的是MapEntry
+         */
+        public final V setValue(V value) {
+            throw new UnsupportedOperationException();
+        }
+
+        public final boolean equals(Object o) {
+            Object k, v, u;
+            Map.Entry<?, ?> e;
+            return ((o instanceof Map.Entry) &&
+                    (k = (e = (Map.Entry<?, ?>) o).getKey()) != null &&
+                    (v = e.getValue()) != null &&
+                    (k == key || k.equals(key)) &&
+                    (v == (u = val) || v.equals(u)));
+        }
+
+        /**
+         * 从当前结点开始沿链表查找，特殊结点会覆盖此方法
+         *
+         * @param h 键的哈希值
+         * @param k 键
+         * @return 返回查找到的结点或者null
+         */
+        Node<K, V> find(int h, Object k) {
+            Node<K, V> e = this;
+            do {
+                K ek;
+                if (e.hash == h && ((ek = e.key) == k || (ek != null && k.equals(ek))))
+                    return e;
+            } while ((e = e.next) != null);
+            return null;
+        }
+    }
+
+    /**
+     * 迁移结点，放在旧数组中已经迁移完成的桶上，指向新数组
+     */
+    static final class ForwardingNode<K, V> extends Node<K, V> {
+        final Transfer<K, V> transfer;
+
+        ForwardingNode(Transfer<K, V> transfer) {
+            super(MOVED, null, null, null);
+            this.transfer = transfer;
+        }
+
+        /**
+         * 到新数组中查找，新数组也可能正在扩容，因此需要循环
+         */
+        Node<K, V> find(int h, Object k) {
+            AtomicReferenceArray<Node<K, V>> tab = transfer.nextTable;
+            outer:
+            for (; ; ) {
+                Node<K, V> e = tab.get((tab.length() - 1) & h);
+                for (; e != null; e = e.next) {
+                    int eh;
+                    K ek;
+                    if ((eh = e.hash) == h && ((ek = e.key) == k || (ek != null && k.equals(ek))))
+                        return e;
+                    if (eh < 0) {
+                        if (e instanceof ForwardingNode) {
+                            tab = ((ForwardingNode<K, V>) e).transfer.nextTable;
+                            continue outer;
+                        }
+                        return e.find(h, k);
+                    }
+                }
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 占位结点，computeIfAbsent()在空桶上计算值时放在桶上，持有它的锁直到计算完成
+     */
+    static final class ReservationNode<K, V> extends Node<K, V> {
+        ReservationNode() {
+            super(RESERVED, null, null, null);
+        }
+
+        Node<K, V> find(int h, Object k) {
+            return null;
+        }
+    }
+
+    /**
+     * 一次扩容的状态，由所有参与迁移的线程共享
+     * 线程从transferIndex开始向下领取一段桶，迁移完成后从remaining中减去迁移的桶数，减到0的线程负责切换table
+     */
+    static final class Transfer<K, V> {
+        final AtomicReferenceArray<Node<K, V>> table;
+        final AtomicReferenceArray<Node<K, V>> nextTable;
+        final AtomicInteger transferIndex;
+        final AtomicInteger remaining;
+        final int stride;
+        final ForwardingNode<K, V> fwd;
+
+        Transfer(AtomicReferenceArray<Node<K, V>> table) {
+            int n = table.length();
+            this.table = table;
+            this.nextTable = new AtomicReferenceArray<>(n << 1);
+            this.transferIndex = new AtomicInteger(n);
+            this.remaining = new AtomicInteger(n);
+            this.stride = Math.max((NCPU > 1) ? (n >>> 3) / NCPU : n, MIN_TRANSFER_STRIDE);
+            this.fwd = new ForwardingNode<>(this);
+        }
+    }
+
+    /* ---------------- 构造方法 -------------- */
+
+    /**
+     * 无参构造方法，使用默认初始容量16
+     */
+    public ConcurrentBinHashMap() {
+    }
+
+    /**
+     * 带初始容量的构造方法
+     * 与ConcurrentHashMap相同，initialCapacity表示预计的键值对数量，保证插入这么多键值对之前不会扩容
+     *
+     * @param initialCapacity 初始容量
+     * @throws IllegalArgumentException initialCapacity为负数
+     */
+    public ConcurrentBinHashMap(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        int cap = (initialCapacity >= (MAXIMUM_CAPACITY >>> 1)) ? MAXIMUM_CAPACITY :
+                HashMap.tableSizeFor(initialCapacity + (initialCapacity >>> 1) + 1);
+        sizeCtl = cap;
+    }
+
+    /**
+     * 带一个Map参数的构造方法
+     *
+     * @param m 要复制的Map
+     */
+    public ConcurrentBinHashMap(Map<? extends K, ? extends V> m) {
+        this(Math.max(m.size(), DEFAULT_INITIAL_CAPACITY));
+        putAll(m);
+    }
+
+    /* ---------------- 工具方法 -------------- */
+
+    /**
+     * 计算哈希值：与HashMap.hash()相同，再去掉符号位
+     *
+     * @param key 键，不能为null
+     * @return 返回非负的哈希值
+     */
+    static int spread(Object key) {
+        return HashMap.hash(key) & HASH_BITS;
+    }
+
+    /**
+     * 初始化table，只有一个线程能把sizeCtl改为-1并执行初始化，其他线程让出CPU等待
+     *
+     * @return 返回初始化之后的table
+     */
+    private AtomicReferenceArray<Node<K, V>> initTable() {
+        AtomicReferenceArray<Node<K, V>> tab;
+        int sc;
+        while ((tab = table) == null) {
+            if ((sc = sizeCtl) < 0)
+                Thread.yield();
+            else if (SIZECTL.compareAndSet(this, sc, -1)) {
+                try {
+                    if ((tab = table) == null) {
+                        int n = (sc > 0) ? sc : DEFAULT_INITIAL_CAPACITY;
+                        table = tab = new AtomicReferenceArray<>(n);
+                        sc = n - (n >>> 2);
+                    }
+                } finally {
+                    sizeCtl = sc;
+                }
+                break;
+            }
+        }
+        return tab;
+    }
+
+    /**
+     * 修改计数，并在需要时发起或者协助扩容
+     * 只有插入到非空桶时才检查是否需要扩容（check大于0），因为每次都读取LongAdder的总和会让多个CPU争抢计数单元所在的缓存行；
+     * 负载越高，插入到非空桶的概率越大，所以键值对数量不会明显超过阈值
+     *
+     * @param x     计数的增量
+     * @param check 插入前桶中的结点数，小于等于0时不检查扩容
+     */
+    private void addCount(long x, int check) {
+        counter.add(x);
+        if (check <= 0)
+            return;
+        for (; ; ) {
+            int sc = sizeCtl;
+            if (sc < 0) {
+                Transfer<K, V> t = transfer;
+                if (t != null)
+                    transfer(t);
+                return;
+            }
+            AtomicReferenceArray<Node<K, V>> tab = table;
+            if (tab == null || counter.sum() < sc || tab.length() >= MAXIMUM_CAPACITY)
+                return;
+            if (SIZECTL.compareAndSet(this, sc, -1)) {
+                Transfer<K, V> t = new Transfer<>(tab);
+                transfer = t;
+                transfer(t);
+            }
+        }
+    }
+
+    /**
+     * 遇到ForwardingNode时协助迁移
+     *
+     * @param f 遇到的ForwardingNode
+     * @return 返回新数组，调用方在新数组上重试
+     */
+    final AtomicReferenceArray<Node<K, V>> helpTransfer(ForwardingNode<K, V> f) {
+        Transfer<K, V> t = f.transfer;
+        if (t.transferIndex.get() > 0)
+            transfer(t);
+        return t.nextTable;
+    }
+
+    /**
+     * 领取并迁移桶，直到没有可以领取的桶为止
+     * 桶从高下标向低下标领取，每次领取stride个；迁移完一个桶就把ForwardingNode放到旧数组的该位置上。
+     * 最后一个完成迁移的线程把table切换为新数组，并更新阈值。
+     *
+     * @param t 扩容状态
+     */
+    private void transfer(Transfer<K, V> t) {
+        AtomicReferenceArray<Node<K, V>> tab = t.table;
+        int n = tab.length();
+        for (; ; ) {
+            int end = t.transferIndex.get();
+            if (end <= 0)
+                return;
+            int bound = Math.max(end - t.stride, 0);
+            if (!t.transferIndex.compareAndSet(end, bound))
+                continue;
+            for (int i = end - 1; i >= bound; ) {
+                if (transferBin(t, tab, i, n))
+                    --i;
+            }
+            if (t.remaining.addAndGet(bound - end) == 0) {
+                // 所有桶都迁移完成，切换table，再允许下一次扩容
+                table = t.nextTable;
+                transfer = null;
+                int m = n << 1;
+                sizeCtl = m - (m >>> 2);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 迁移一个桶
+     * 拆分方式与HashMap.resize()相同：(hash & n) == 0的结点留在低位i，其余的放到高位i + n。
+     * 旧链表可能正在被其他线程不加锁地读取，所以不能修改旧结点的next，从lastRun开始的尾部可以直接复用，前面的结点需要复制。
+     *
+     * @param t   扩容状态
+     * @param tab 旧数组
+     * @param i   桶的下标
+     * @param n   旧数组的长度
+     * @return 迁移成功返回true，桶的头结点发生了变化需要重试时返回false
+     */
+    private boolean transferBin(Transfer<K, V> t, AtomicReferenceArray<Node<K, V>> tab, int i, int n) {
+        Node<K, V> f = tab.get(i);
+        if (f == null)
+            return tab.compareAndSet(i, null, t.fwd);
+        synchronized (f) {
+            if (tab.get(i) != f)
+                return false;
+            int runBit = f.hash & n;
+            Node<K, V> lastRun = f;
+            for (Node<K, V> p = f.next; p != null; p = p.next) {
+                int b = p.hash & n;
+                if (b != runBit) {
+                    runBit = b;
+                    lastRun = p;
+                }
+            }
+            Node<K, V> ln, hn;
+            if (runBit == 0) {
+                ln = lastRun;
+                hn = null;
+            } else {
+                hn = lastRun;
+                ln = null;
+            }
+            for (Node<K, V> p = f; p != lastRun; p = p.next) {
+                if ((p.hash & n) == 0)
+                    ln = new Node<>(p.hash, p.key, p.val, ln);
+                else
+                    hn = new Node<>(p.hash, p.key, p.val, hn);
+            }
+            t.nextTable.set(i, ln);
+            t.nextTable.set(i + n, hn);
+            tab.set(i, t.fwd);
+        }
+        return true;
+    }
+
+    /* ---------------- 查询 -------------- */
+
+    /**
+     * 得到键值对的个数，超过Integer.MAX_VALUE时返回Integer.MAX_VALUE
+     *
+     * @return 返回键值对的数量
+     */
+    public int size() {
+        long n = counter.sum();
+        return (n < 0L) ? 0 : (n > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) n;
+    }
+
+    /**
+     * 得到键值对的个数，返回long，应该代替size()使用
+     *
+     * @return 返回键值对的数量
+     */
+    public long mappingCount() {
+        long n = counter.sum();
+        return (n < 0L) ? 0L : n;
+    }
+
+    /**
+     * 判断是否为空
+     *
+     * @return 没有键值对时返回true
+     */
+    public boolean isEmpty() {
+        return counter.sum() <= 0L;
+    }
+
+    /**
+     * 得到指定key对应的value，不加锁
+     *
+     * @param key 指定的key
+     * @return 返回查找到的value，没有查找到则返回null
+     * @throws NullPointerException key为null
+     */
+    public V get(Object key) {
+        AtomicReferenceArray<Node<K, V>> tab;
+        Node<K, V> e, p;
+        int n, eh;
+        K ek;
+        int h = spread(key);
+        if ((tab = table) != null && (n = tab.length()) > 0 &&
+                (e = tab.get((n - 1) & h)) != null) {
+            if ((eh = e.hash) == h) {
+                if ((ek = e.key) == key || key.equals(ek))
+                    return e.val;
+            } else if (eh < 0)
+                return (p = e.find(h, key)) != null ? p.val : null;
+            while ((e = e.next) != null) {
+                if (e.hash == h && ((ek = e.key) == key || key.equals(ek)))
+                    return e.val;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 得到指定key对应的value，没有查找到时返回defaultValue
+     */
+    public V getOrDefault(Object key, V defaultValue) {
+        V v;
+        return (v = get(key)) == null ? defaultValue : v;
+    }
+
+    /**
+     * 判断是否包含指定的key
+     */
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * 判断是否包含指定的value，需要遍历所有结点
+     */
+    public boolean containsValue(Object value) {
+        if (value == null)
+            throw new NullPointerException();
+        Traverser<K, V> it = new Traverser<>(table);
+        for (Node<K, V> p; (p = it.advance()) != null; ) {
+            V v;
+            if ((v = p.val) == value || value.equals(v))
+                return true;
+        }
+        return false;
+    }
+
+    /* ---------------- 修改 -------------- */
+
+    /**
+     * 添加键值对，已经存在该key时用新值覆盖旧值
+     *
+     * @throws NullPointerException key或者value为null
+     */
+    public V put(K key, V value) {
+        return putVal(key, value, false);
+    }
+
+    /**
+     * 只有不存在该key时才添加
+     *
+     * @throws NullPointerException key或者value为null
+     */
+    public V putIfAbsent(K key, V value) {
+        return putVal(key, value, true);
+    }
+
+    /**
+     * 添加键值对
+     *
+     * @param key          键
+     * @param value        值
+     * @param onlyIfAbsent 为true时不替换已有的值
+     * @return 返回旧值或者null
+     */
+    final V putVal(K key, V value, boolean onlyIfAbsent) {
+        if (key == null || value == null)
+            throw new NullPointerException();
+        int hash = spread(key);
+        int binCount = 0;
+        for (AtomicReferenceArray<Node<K, V>> tab = table; ; ) {
+            Node<K, V> f;
+            int n, i, fh;
+            if (tab == null || (n = tab.length()) == 0)
+                tab = initTable();
+            else if ((f = tab.get(i = (n - 1) & hash)) == null) {
+                // 空桶，CAS设置头结点，不加锁
+                if (tab.compareAndSet(i, null, new Node<>(hash, key, value, null)))
+                    break;
+            } else if ((fh = f.hash) == MOVED)
+                tab = helpTransfer((ForwardingNode<K, V>) f);
+            else {
+                V oldVal = null;
+                synchronized (f) {
+                    // 加锁之后需要再次确认头结点没有变化（没有被删除或者迁移）
+                    if (tab.get(i) == f) {
+                        if (fh == RESERVED)
+                            throw new IllegalStateException("Recursive update");
+                        binCount = 1;
+                        for (Node<K, V> e = f; ; ++binCount) {
+                            K ek;
+                            if (e.hash == hash && ((ek = e.key) == key || key.equals(ek))) {
+                                oldVal = e.val;
+                                if (!onlyIfAbsent)
+                                    e.val = value;
+                                break;
+                            }
+                            Node<K, V> pred = e;
+                            if ((e = e.next) == null) {
+                                pred.next = new Node<>(hash, key, value, null);
+                                break;
+                            }
+                        }
+                    }
+                }
+                if (binCount != 0) {
+                    if (oldVal != null)
+                        return oldVal;
+                    break;
+                }
+            }
+        }
+        addCount(1L, binCount);
+        return null;
+    }
+
+    /**
+     * 复制指定Map中的所有键值对
+     */
+    public void putAll(Map<? extends K, ? extends V> m) {
+        for (Map.Entry<? extends K, ? extends V> e : m.entrySet())
+            putVal(e.getKey(), e.getValue(), false);
+    }
+
+    /**
+     * 如果不存在该key，则用mappingFunction计算出值并添加，整个过程是原子的，mappingFunction最多被调用一次
+     * 计算期间持有桶的锁，所以mappingFunction应该简短，并且不能修改这个Map
+     *
+     * @throws NullPointerException key或者mappingFunction为null
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        if (key == null || mappingFunction == null)
+            throw new NullPointerException();
+        int h = spread(key);
+        V val = null;
+        int binCount = 0;
+        for (AtomicReferenceArray<Node<K, V>> tab = table; ; ) {
+            Node<K, V> f;
+            int n, i, fh;
+            if (tab == null || (n = tab.length()) == 0)
+                tab = initTable();
+            else if ((f = tab.get(i = (n - 1) & h)) == null) {
+                Node<K, V> r = new ReservationNode<>();
+                synchronized (r) {
+                    if (tab.compareAndSet(i, null, r)) {
+                        binCount = 1;
+                        Node<K, V> node = null;
+                        try {
+                            if ((val = mappingFunction.apply(key)) != null)
+                                node = new Node<>(h, key, val, null);
+                        } finally {
+                            tab.set(i, node);
+                        }
+                    }
+                }
+                if (binCount != 0)
+                    break;
+            } else if ((fh = f.hash) == MOVED)
+                tab = helpTransfer((ForwardingNode<K, V>) f);
+            else {
+                boolean added = false;
+                synchronized (f) {
+                    if (tab.get(i) == f) {
+                        if (fh == RESERVED)
+                            throw new IllegalStateException("Recursive update");
+                        binCount = 1;
+                        for (Node<K, V> e = f; ; ++binCount) {
+                            K ek;
+                            if (e.hash == h && ((ek = e.key) == key || key.equals(ek))) {
+                                val = e.val;
+                                break;
+                            }
+                            Node<K, V> pred = e;
+                            if ((e = e.next) == null) {
+                                if ((val = mappingFunction.apply(key)) != null) {
+                                    if (pred.next != null)
+                                        throw new IllegalStateException("Recursive update");
+                                    added = true;
+                                    pred.next = new Node<>(h, key, val, null);
+                                }
+                                break;
+                            }
+                        }
+                    }
+                }
+                if (binCount != 0) {
+                    if (!added)
+                        return val;
+                    break;
+                }
+            }
+        }
+        if (val != null)
+            addCount(1L, binCount);
+        return val;
+    }
+
+    /**
+     * 删除指定key的键值对
+     *
+     * @throws NullPointerException key为null
+     */
+    public V remove(Object key) {
+        return replaceNode(key, null, null);
+    }
+
+    /**
+     * 只有key当前对应的值等于value时才删除
+     */
+    public boolean remove(Object key, Object value) {
+        if (key == null)
+            throw new NullPointerException();
+        return value != null && replaceNode(key, null, value) != null;
+    }
+
+    /**
+     * 只有key当前对应的值等于oldValue时才替换为newValue
+     */
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (key == null || oldValue == null || newValue == null)
+            throw new NullPointerException();
+        return replaceNode(key, newValue, oldValue) != null;
+    }
+
+    /**
+     * 只有存在该key时才替换
+     */
+    public V replace(K key, V value) {
+        if (key == null || value == null)
+            throw new NullPointerException();
+        return replaceNode(key, value, null);
+    }
+
+    /**
+     * 删除或替换的公共实现
+     *
+     * @param key   键
+     * @param value 新值，为null时表示删除
+     * @param cv    期望的旧值，为null时表示不比较
+     * @return 返回旧值，没有删除或替换时返回null
+     */
+    final V replaceNode(Object key, V value, Object cv) {
+        int hash = spread(key);
+        for (AtomicReferenceArray<Node<K, V>> tab = table; ; ) {
+            Node<K, V> f;
+            int n, i, fh;
+            if (tab == null || (n = tab.length()) == 0 ||
+                    (f = tab.get(i = (n - 1) & hash)) == null)
+                return null;
+            else if ((fh = f.hash) == MOVED)
+                tab = helpTransfer((ForwardingNode<K, V>) f);
+            else {
+                V oldVal = null;
+                boolean validated = false;
+                synchronized (f) {
+                    if (tab.get(i) == f && fh >= 0) {
+                        validated = true;
+                        for (Node<K, V> e = f, pred = null; e != null; pred = e, e = e.next) {
+                            K ek;
+                            if (e.hash == hash && ((ek = e.key) == key || key.equals(ek))) {
+                                V ev = e.val;
+                                if (cv == null || cv == ev || cv.equals(ev)) {
+                                    oldVal = ev;
+                                    if (value != null)
+                                        e.val = value;
+                                    else if (pred != null)
+                                        pred.next = e.next;
+                                    else
+                                        tab.set(i, e.next);
+                                }
+                                break;
+                            }
+                        }
+                    }
+                }
+                if (validated) {
+                    if (oldVal != null && value == null)
+                        addCount(-1L, -1);
+                    return oldVal;
+                }
+                // 空桶上的ReservationNode：计算完成之前桶中没有其他键
+                if (fh == RESERVED && tab.get(i) != f)
+                    continue;
+                if (fh == RESERVED)
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * 删除所有键值对
+     * 逐个桶加锁后清空，不是原子操作，执行期间其他线程插入的键值对可能被保留
+     */
+    public void clear() {
+        long delta = 0L;
+        int i = 0;
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        while (tab != null && i < tab.length()) {
+            Node<K, V> f = tab.get(i);
+            if (f == null)
+                ++i;
+            else if (f.hash == MOVED) {
+                tab = helpTransfer((ForwardingNode<K, V>) f);
+                i = 0;
+            } else {
+                synchronized (f) {
+                    if (tab.get(i) == f) {
+                        if (f.hash >= 0) {
+                            for (Node<K, V> p = f; p != null; p = p.next)
+                                --delta;
+                            tab.set(i, null);
+                        }
+                        ++i;
+                    }
+                }
+            }
+        }
+        if (delta != 0L)
+            addCount(delta, -1);
+    }
+
+    /* ---------------- 遍历 -------------- */
+
+    /**
+     * 遍历所有键值对，弱一致
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (action == null)
+            throw new NullPointerException();
+        Traverser<K, V> it = new Traverser<>(table);
+        for (Node<K, V> p; (p = it.advance()) != null; )
+            action.accept(p.key, p.val);
+    }
+
+    /**
+     * 遍历所有结点
+     * 遇到ForwardingNode时，旧数组下标i的结点已经迁移到新数组的i和i + n两个位置，于是压入一层遍历这两个位置，
+     * 新数组中还可能再遇到ForwardingNode，所以用栈记录每一层。
+     * 每个键值对最多返回一次；遍历期间插入或删除的键值对可能返回也可能不返回。
+     */
+    static class Traverser<K, V> {
+        /**
+         * 遍历的一层：在tab中从index开始，每次前进step，共访问count个桶
+         */
+        static final class Frame<K, V> {
+            final AtomicReferenceArray<Node<K, V>> tab;
+            final int step;
+            final Frame<K, V> parent;
+            int index;
+            int count;
+
+            Frame(AtomicReferenceArray<Node<K, V>> tab, int index, int step, int count, Frame<K, V> parent) {
+                this.tab = tab;
+                this.index = index;
+                this.step = step;
+                this.count = count;
+                this.parent = parent;
+            }
+        }
+
+        Frame<K, V> top;
+        Node<K, V> next;
+
+        Traverser(AtomicReferenceArray<Node<K, V>> tab) {
+            if (tab != null)
+                top = new Frame<>(tab, 0, 1, tab.length(), null);
+        }
+
+        /**
+         * 前进到下一个结点
+         *
+         * @return 返回下一个结点，没有时返回null
+         */
+        final Node<K, V> advance() {
+            Node<K, V> e = next;
+            if (e != null)
+                e = e.next;
+            while (e == null) {
+                Frame<K, V> t;
+                if ((t = top) == null)
+                    break;
+                if (t.count == 0) {
+                    top = t.parent;
+                    continue;
+                }
+                int i = t.index;
+                t.index += t.step;
+                --t.count;
+                Node<K, V> f = t.tab.get(i);
+                if (f == null)
+                    continue;
+                if (f.hash == MOVED) {
+                    top = new Frame<>(((ForwardingNode<K, V>) f).transfer.nextTable, i, t.tab.length(), 2, t);
+                    continue;
+                }
+                if (f.hash >= 0)
+                    e = f;
+            }
+            return next = e;
+        }
+    }
+
+    /**
+     * 迭代器的基类，remove()通过Map.remove(key)实现
+     */
+    abstract static class BaseIterator<K, V> extends Traverser<K, V> {
+        final ConcurrentBinHashMap<K, V> map;
+        Node<K, V> lastReturned;
+
+        BaseIterator(ConcurrentBinHashMap<K, V> map) {
+            super(map.table);
+            this.map = map;
+            advance();
+        }
+
+        public final boolean hasNext() {
+            return next != null;
+        }
+
+        final Node<K, V> nextNode() {
+            Node<K, V> p;
+            if ((p = next) == null)
+                throw new NoSuchElementException();
+            lastReturned = p;
+            advance();
+            return p;
+        }
+
+        public final void remove() {
+            Node<K, V> p;
+            if ((p = lastReturned) == null)
+                throw new IllegalStateException();
+            lastReturned = null;
+            map.replaceNode(p.key, null, null);
+        }
+    }
+
+    static final class KeyIterator<K, V> extends BaseIterator<K, V> implements Iterator<K> {
+        KeyIterator(ConcurrentBinHashMap<K, V> map) {
+            super(map);
+        }
+
+        public K next() {
+            return nextNode().key;
+        }
+    }
+
+    static final class ValueIterator<K, V> extends BaseIterator<K, V> implements Iterator<V> {
+        ValueIterator(ConcurrentBinHashMap<K, V> map) {
+            super(map);
+        }
+
+        public V next() {
+            return nextNode().val;
+        }
+    }
+
+    static final class EntryIterator<K, V> extends BaseIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+        EntryIterator(ConcurrentBinHashMap<K, V> map) {
+            super(map);
+        }
+
+        public Map.Entry<K, V> next() {
+            Node<K, V> p = nextNode();
+            return new MapEntry<>(p.key, p.val, map);
+        }
+    }
+
+    /**
+     * 迭代器返回的键值对，setValue()会写回Map
+     */
+    static final class MapEntry<K, V> extends AbstractMap.SimpleEntry<K, V> {
+        private static final long serialVersionUID = -1651637339578416291L;
+        final transient ConcurrentBinHashMap<K, V> map;
+
+        MapEntry(K key, V val, ConcurrentBinHashMap<K, V> map) {
+            super(key, val);
+            this.map = map;
+        }
+
+        public V setValue(V value) {
+            if (value == null)
+                throw new NullPointerException();
+            V v = super.setValue(value);
+            map.put(getKey(), value);
+            return v;
+        }
+    }
+
+    /* ---------------- 视图 -------------- */
+
+    public Set<K> keySet() {
+        Set<K> ks;
+        return (ks = keySet) != null ? ks : (keySet = new KeySet<>(this));
+    }
+
+    public Collection<V> values() {
+        Collection<V> vs;
+        return (vs = values) != null ? vs : (values = new Values<>(this));
+    }
+
+    public Set<Map.Entry<K, V>> entrySet() {
+        EntrySet<K, V> es;
+        return (es = entrySet) != null ? es : (entrySet = new EntrySet<>(this));
+    }
+
+    static final class KeySet<K, V> extends AbstractSet<K> {
+        final ConcurrentBinHashMap<K, V> map;
+
+        KeySet(ConcurrentBinHashMap<K, V> map) {
+            this.map = map;
+        }
+
+        public int size() {
+            return map.size();
+        }
+
+        public void clear() {
+            map.clear();
+        }
+
+        public Iterator<K> iterator() {
+            return new KeyIterator<>(map);
+        }
+
+        public boolean contains(Object o) {
+            return map.containsKey(o);
+        }
+
+        public boolean remove(Object o) {
+            return map.remove(o) != null;
+        }
+    }
+
+    static final class Values<K, V> extends AbstractCollection<V> {
+        final ConcurrentBinHashMap<K, V> map;
+
+        Values(ConcurrentBinHashMap<K, V> map) {
+            this.map = map;
+        }
+
+        public int size() {
+            return map.size();
+        }
+
+        public void clear() {
+            map.clear();
+        }
+
+        public Iterator<V> iterator() {
+            return new ValueIterator<>(map);
+        }
+
+        public boolean contains(Object o) {
+            return map.containsValue(o);
+        }
+    }
+
+    static final class EntrySet<K, V> extends AbstractSet<Map.Entry<K, V>> {
+        final ConcurrentBinHashMap<K, V> map;
+
+        EntrySet(ConcurrentBinHashMap<K, V> map) {
+            this.map = map;
+        }
+
+        public int size() {
+            return map.size();
+        }
+
+        public void clear() {
+            map.clear();
+        }
+
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator<>(map);
+        }
+
+        public boolean contains(Object o) {
+            Object k, v, r;
+            Map.Entry<?, ?> e;
+            return ((o instanceof Map.Entry) &&
+                    (k = (e = (Map.Entry<?, ?>) o).getKey()) != null &&
+                    (r = map.get(k)) != null &&
+                    (v = e.getValue()) != null &&
+                    (v == r || v.equals(r)));
+        }
+
+        public boolean remove(Object o) {
+            Object k, v;
+            Map.Entry<?, ?> e;
+            return ((o instanceof Map.Entry) &&
+                    (k = (e = (Map.Entry<?, ?>) o).getKey()) != null &&
+                    (v = e.getValue()) != null &&
+                    map.remove(k, v));
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    // Serialization
+
+    /**
+     * 序列化：依次写出每个键值对的键和值，最后写出两个null
+     */
+    private void writeObject(java.io.ObjectOutputStream s) throws IOException {
+        s.defaultWriteObject();
+        Traverser<K, V> it = new Traverser<>(table);
+        for (Node<K, V> p; (p = it.advance()) != null; ) {
+            s.writeObject(p.key);
+            s.writeObject(p.val);
+        }
+        s.writeObject(null);
+        s.writeObject(null);
+    }
+
+    /**
+     * 反序列化
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(java.io.ObjectInputStream s) throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        // 反序列化时不会执行字段的初始化语句
+        counter = new LongAdder();
+        for (; ; ) {
+            K k = (K) s.readObject();
+            V v = (V) s.readObject();
+            if (k == null || v == null) {
+                if (k != null || v != null)
+                    throw new InvalidObjectException("Null key or value");
+                break;
+            }
+            putVal(k, v, false);
+        }
+    }
+}
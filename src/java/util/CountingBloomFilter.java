@@ -0,0 +1,123 @@
+package java.util;
+
+/**
+ * 计数布隆过滤器，用于HashMap在访问哈希桶数组之前排除一定不存在的键
+ * 1.每个计数器4位，一个long存放16个计数器。8个long（128个计数器，64字节）组成一块，一个键的4个计数器都在同一块中，
+ * 查询只访问一块连续的内存，而不是4个随机的位置。平均每块8个键，即每个键16个计数器、8字节。
+ * 2.哈希值经过SplitMix64的终结函数混合成64位：高32位选择块，低28位每7位选择块中的一个计数器。
+ * 3.添加时4个计数器都加1，删除时都减1，4个计数器都不为0时键可能存在，有一个为0时一定不存在。
+ * 4.计数器加到15后不再变化，删除时也不减少，只会让误判变多，不会漏判。
+ * 5.输入是HashMap中结点的hash值，hash值相同的键无法区分，只要其中一个存在，其他键都会被判断为可能存在。
+ *
+ * @see HashMap#setBloomFilterEnabled(boolean)
+ */
+final class CountingBloomFilter {
+    /**
+     * 每块平均的键数量
+     */
+    static final int KEYS_PER_BLOCK = 8;
+
+    /**
+     * 最少的块数
+     */
+    static final int MIN_BLOCKS = 8;
+
+    /**
+     * 最多的块数，table的长度不超过2^30
+     */
+    static final int MAX_BLOCKS = 1 << 27;
+
+    /**
+     * 计数器数组，每8个long是一块
+     */
+    final long[] table;
+
+    /**
+     * 块数 - 1
+     */
+    final int blockMask;
+
+    /**
+     * 容量，键的数量超过它时误判率明显上升，应该重建；块数已经最多时为Integer.MAX_VALUE
+     */
+    final int capacity;
+
+    /**
+     * @param expectedSize 预计的键数量
+     */
+    CountingBloomFilter(int expectedSize) {
+        int blocks = (expectedSize >= MAX_BLOCKS * KEYS_PER_BLOCK) ? MAX_BLOCKS :
+                HashMap.tableSizeFor(Math.max((expectedSize + KEYS_PER_BLOCK - 1) / KEYS_PER_BLOCK, MIN_BLOCKS));
+        table = new long[blocks << 3];
+        blockMask = blocks - 1;
+        capacity = (blocks == MAX_BLOCKS) ? Integer.MAX_VALUE : blocks * KEYS_PER_BLOCK;
+    }
+
+    /**
+     * 把hash值混合成64位，SplitMix64的终结函数
+     */
+    static long mix(int hash) {
+        long z = hash + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * 判断hash对应的键是否可能存在
+     *
+     * @param hash 键的哈希值
+     * @return 返回false表示一定不存在
+     */
+    boolean mightContain(int hash) {
+        long z = mix(hash);
+        long[] t = table;
+        int base = ((int) (z >>> 32) & blockMask) << 3;
+        for (int i = 0; i < 4; i++) {
+            int c = (int) (z >>> (7 * i)) & 127;
+            if ((t[base + (c >>> 4)] & (0xFL << ((c & 15) << 2))) == 0L)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * 添加hash对应的键
+     *
+     * @param hash 键的哈希值
+     */
+    void add(int hash) {
+        long z = mix(hash);
+        long[] t = table;
+        int base = ((int) (z >>> 32) & blockMask) << 3;
+        for (int i = 0; i < 4; i++) {
+            int c = (int) (z >>> (7 * i)) & 127, j = base + (c >>> 4), offset = (c & 15) << 2;
+            if (((t[j] >>> offset) & 0xFL) != 0xFL)
+                t[j] += 1L << offset;
+        }
+    }
+
+    /**
+     * 删除hash对应的键，该键必须已经添加过
+     *
+     * @param hash 键的哈希值
+     */
+    void remove(int hash) {
+        long z = mix(hash);
+        long[] t = table;
+        int base = ((int) (z >>> 32) & blockMask) << 3;
+        for (int i = 0; i < 4; i++) {
+            int c = (int) (z >>> (7 * i)) & 127, j = base + (c >>> 4), offset = (c & 15) << 2;
+            long count = (t[j] >>> offset) & 0xFL;
+            if (count != 0xFL && count != 0L)
+                t[j] -= 1L << offset;
+        }
+    }
+
+    /**
+     * 清空所有计数器
+     */
+    void clear() {
+        Arrays.fill(table, 0L);
+    }
+}
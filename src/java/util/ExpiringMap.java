@@ -0,0 +1,667 @@
+package java.util;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * 键值对在写入或者访问一段时间后过期的Map，基于HashMap的afterNodeAccess()、afterNodeInsertion()、afterNodeRemoval()回调实现
+ * 1.过期不依赖后台线程扫描整个哈希桶数组：每个结点按过期时间挂到分层时间轮的一个桶中，时间前进时只处理经过的桶，
+ * 到期的结点被删除，还没有到期的（高层时间轮的桶跨度大）重新挂到更低层的桶中。
+ * 2.时间轮有5层，每层的桶跨度依次约为1.07秒、1.14分钟、1.22小时、0.78天、13天，都是2的幂纳秒，用移位得到桶下标。
+ * 低4层分别覆盖约1.14分钟、1.22小时、1.63天、13天，时间轮进入结点所在的桶时，结点移到更低的一层或者到期，
+ * 所以每个结点最多被移动4次，均摊O(1)；更远的结点放在最高层唯一的桶中，每13天重新检查一次。
+ * 一次推进超过某层一圈时该层所有的桶都会被处理，还没有到的结点可能留在同一层。
+ * 3.写操作（插入、覆盖、compute、merge、replace等）推进时间轮；读操作只检查查到的结点，已经过期时删除它并当作不存在。
+ * 只有读操作时，已经过期但没有被读到的键值对不会被删除，可以定期调用cleanUp()。
+ * 4.expireAfterWrite从写入开始计时，expireAfterAccess从最后一次读或写开始计时，两者都设置时先到者生效。
+ * 5.时间由Ticker提供，默认是System.nanoTime()，测试时可以传入手动推进的Ticker。
+ * 6.size()、迭代器和视图包括已经过期但还没有被删除的键值对，需要精确结果时先调用cleanUp()。
+ * 7.与HashMap相同，不是线程安全的；读操作可能删除过期的键值对，迭代过程中调用会抛出ConcurrentModificationException。
+ * 通过Map.Entry.setValue()修改值不会重新开始计时。
+ *
+ * @param <K> 泛型，表示键值对中的键
+ * @param <V> 泛型，表示键值对中的值
+ * @see HashMap
+ * @see BoundedCache
+ */
+public class ExpiringMap<K, V> extends HashMap<K, V> {
+    // 序列版本ID
+    private static final long serialVersionUID = 5207364283617902618L;
+
+    /**
+     * 时间源，返回值只用于计算时间差，单位是纳秒
+     */
+    @FunctionalInterface
+    public interface Ticker {
+        /**
+         * @return 返回当前时间，单位是纳秒
+         */
+        long read();
+
+        /**
+         * @return 返回使用System.nanoTime()的Ticker
+         */
+        static Ticker system() {
+            return SystemTicker.INSTANCE;
+        }
+    }
+
+    /**
+     * 使用System.nanoTime()的Ticker，枚举保证可以序列化
+     */
+    enum SystemTicker implements Ticker {
+        INSTANCE;
+
+        public long read() {
+            return System.nanoTime();
+        }
+    }
+
+    /**
+     * 最大的过期时长，约146年，传入更大的时长（包括Long.MAX_VALUE）等同于不过期
+     * 过期时间都是当前时间加上不超过该值的时长，用减法比较先后时不会溢出
+     */
+    static final long MAX_DURATION = 1L << 62;
+
+    /**
+     * 每层时间轮的桶数量，都是2的幂
+     * 第i层的桶数量不少于第i+1层一个桶的跨度除以第i层一个桶的跨度，即BUCKETS[i] >= 1 << (SHIFT[i + 1] - SHIFT[i])，
+     * 所以在第i+1层中到了当前桶的结点，一定能放入第i层不是当前桶的位置
+     */
+    static final int[] BUCKETS = {64, 64, 32, 16, 1};
+
+    /**
+     * 每层时间轮的桶跨度对应的移位数，跨度依次为1.07秒、1.14分钟、1.22小时、0.78天、13天
+     */
+    static final int[] SHIFT = {30, 36, 42, 46, 50};
+
+    /**
+     * 写入后的过期时长（纳秒）
+     */
+    final long expireAfterWriteNanos;
+
+    /**
+     * 访问后的过期时长（纳秒）
+     */
+    final long expireAfterAccessNanos;
+
+    /**
+     * 时间源
+     */
+    final Ticker ticker;
+
+    /**
+     * 分层时间轮，wheel[i][j]是第i层第j个桶的哨兵结点，桶中的结点通过before/after指针串成以哨兵为头的循环链表
+     */
+    transient LinkedHashMap.Entry<K, V>[][] wheel;
+
+    /**
+     * 已经到期、等待删除的结点，也是以哨兵为头的循环链表
+     */
+    transient LinkedHashMap.Entry<K, V> expired;
+
+    /**
+     * 时间轮最后一次推进到的时间
+     */
+    transient long nanos;
+
+    /**
+     * 因为过期而被删除的键值对数量
+     */
+    transient long expirationCount;
+
+    /**
+     * 链表结点
+     */
+    static final class Entry<K, V> extends LinkedHashMap.Entry<K, V> {
+        // 最后一次写入的时间
+        long writeTime;
+        // 过期时间
+        long expiresAt;
+
+        Entry(int hash, K key, V value, Node<K, V> next) {
+            super(hash, key, value, next);
+        }
+    }
+
+    /**
+     * 树结点，字段与Entry相同
+     */
+    static final class TreeEntry<K, V> extends TreeNode<K, V> {
+        // 最后一次写入的时间
+        long writeTime;
+        // 过期时间
+        long expiresAt;
+
+        TreeEntry(int hash, K key, V value, Node<K, V> next) {
+            super(hash, key, value, next);
+        }
+    }
+
+    /* ---------------- 构造方法 -------------- */
+
+    /**
+     * 写入后经过指定时长过期
+     *
+     * @param expireAfterWrite 写入后的过期时长
+     * @param unit             时长的单位
+     * @throws IllegalArgumentException expireAfterWrite为负数
+     */
+    public ExpiringMap(long expireAfterWrite, TimeUnit unit) {
+        this(expireAfterWrite, Long.MAX_VALUE, unit, Ticker.system());
+    }
+
+    /**
+     * 带全部参数的构造方法
+     *
+     * @param expireAfterWrite  写入后的过期时长，Long.MAX_VALUE表示不按写入时间过期
+     * @param expireAfterAccess 最后一次访问后的过期时长，Long.MAX_VALUE表示不按访问时间过期
+     * @param unit              时长的单位
+     * @param ticker            时间源，序列化时也需要可序列化
+     * @throws IllegalArgumentException 时长为负数
+     * @throws NullPointerException     unit或者ticker为null
+     */
+    public ExpiringMap(long expireAfterWrite, long expireAfterAccess, TimeUnit unit, Ticker ticker) {
+        if (expireAfterWrite < 0)
+            throw new IllegalArgumentException("Illegal expireAfterWrite: " + expireAfterWrite);
+        if (expireAfterAccess < 0)
+            throw new IllegalArgumentException("Illegal expireAfterAccess: " + expireAfterAccess);
+        this.expireAfterWriteNanos = Math.min(unit.toNanos(expireAfterWrite), MAX_DURATION);
+        this.expireAfterAccessNanos = Math.min(unit.toNanos(expireAfterAccess), MAX_DURATION);
+        this.ticker = Objects.requireNonNull(ticker);
+        initWheel();
+    }
+
+    /* ---------------- 查询 -------------- */
+
+    /**
+     * 得到指定key对应的value，已经过期时删除该键值对并返回null
+     */
+    public V get(Object key) {
+        Node<K, V> e;
+        return (e = lookup(key)) == null ? null : e.value;
+    }
+
+    /**
+     * 得到指定key对应的value，不存在或者已经过期时返回defaultValue
+     */
+    public V getOrDefault(Object key, V defaultValue) {
+        Node<K, V> e;
+        return (e = lookup(key)) == null ? defaultValue : e.value;
+    }
+
+    /**
+     * 判断是否包含没有过期的指定key
+     */
+    public boolean containsKey(Object key) {
+        return lookup(key) != null;
+    }
+
+    /**
+     * 批量查找，逐个查找以便检查过期并记录访问时间
+     */
+    public int getAll(Object[] keys, V[] out) {
+        if (out.length < keys.length)
+            throw new IllegalArgumentException("out.length < keys.length");
+        int found = 0;
+        Node<K, V> e;
+        for (int i = 0; i < keys.length; i++) {
+            if ((e = lookup(keys[i])) != null) {
+                out[i] = e.value;
+                ++found;
+            } else
+                out[i] = null;
+        }
+        return found;
+    }
+
+    /**
+     * 批量查找，逐个查找以便检查过期并记录访问时间
+     */
+    public int getAll(Collection<?> keys, V[] out) {
+        if (out.length < keys.size())
+            throw new IllegalArgumentException("out.length < keys.size()");
+        int found = 0, i = 0;
+        Node<K, V> e;
+        for (Object k : keys) {
+            if ((e = lookup(k)) != null) {
+                out[i++] = e.value;
+                ++found;
+            } else
+                out[i++] = null;
+        }
+        return found;
+    }
+
+    /**
+     * 查找没有过期的结点，已经过期时删除它；设置了expireAfterAccess时记录一次访问
+     */
+    private Node<K, V> lookup(Object key) {
+        Node<K, V> e;
+        if ((e = getNode(spread(key), key)) == null)
+            return null;
+        long now = ticker.read();
+        if (expiresAtOf(e) - now <= 0) {
+            removeExpired(e);
+            return null;
+        }
+        if (expireAfterAccessNanos != MAX_DURATION)
+            reschedule(e, writeTimeOf(e), now);
+        return e;
+    }
+
+    /**
+     * 写操作之前删除已经过期但还没有被时间轮删除的键值对，使写操作看到的是该键不存在
+     */
+    private void expireKey(Object key) {
+        Node<K, V> e;
+        if ((e = getNode(spread(key), key)) != null && expiresAtOf(e) - ticker.read() <= 0)
+            removeExpired(e);
+    }
+
+    /**
+     * @return 返回因为过期而被删除的键值对数量
+     */
+    public long expirationCount() {
+        return expirationCount;
+    }
+
+    /* ---------------- 修改 -------------- */
+
+    public V put(K key, V value) {
+        expireKey(key);
+        return super.put(key, value);
+    }
+
+    /**
+     * 已有没有过期的值时只算一次读，不重新开始写入计时
+     * HashMap.putVal()在onlyIfAbsent时保留旧值也会回调afterNodeAccess()，不能交给它处理
+     */
+    public V putIfAbsent(K key, V value) {
+        Node<K, V> e;
+        V v;
+        if ((e = lookup(key)) != null && (v = e.value) != null)
+            return v;
+        return super.putIfAbsent(key, value);
+    }
+
+    public V remove(Object key) {
+        expireKey(key);
+        return super.remove(key);
+    }
+
+    public boolean remove(Object key, Object value) {
+        expireKey(key);
+        return super.remove(key, value);
+    }
+
+    public boolean replace(K key, V oldValue, V newValue) {
+        expireKey(key);
+        return super.replace(key, oldValue, newValue);
+    }
+
+    public V replace(K key, V value) {
+        expireKey(key);
+        return super.replace(key, value);
+    }
+
+    /**
+     * 已有没有过期的值时只算一次读，不重新开始写入计时
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Node<K, V> e;
+        V v;
+        if ((e = lookup(key)) != null && (v = e.value) != null)
+            return v;
+        return super.computeIfAbsent(key, mappingFunction);
+    }
+
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        expireKey(key);
+        return super.computeIfPresent(key, remappingFunction);
+    }
+
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        expireKey(key);
+        return super.compute(key, remappingFunction);
+    }
+
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        expireKey(key);
+        return super.merge(key, value, remappingFunction);
+    }
+
+    /**
+     * 替换所有的值，所有键值对重新开始计时
+     */
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        super.replaceAll(function);
+        rewriteAll();
+    }
+
+    /**
+     * 并行地替换所有的值，然后在当前线程中重新开始计时
+     */
+    public void replaceAll(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends V> function) {
+        super.replaceAll(parallelismThreshold, function);
+        rewriteAll();
+    }
+
+    /**
+     * 所有键值对以当前时间作为写入时间重新计时
+     */
+    final void rewriteAll() {
+        long now = ticker.read();
+        for (Map.Entry<K, V> me : entrySet())
+            reschedule((Node<K, V>) me, now, now);
+        advance(now);
+    }
+
+    /**
+     * 删除所有键值对，统计数据保留
+     */
+    public void clear() {
+        super.clear();
+        initWheel();
+    }
+
+    /**
+     * 推进时间轮到当前时间，删除所有已经过期的键值对
+     * 时间轮只在进入下一格时处理当前格，这里额外检查最低层当前格中的结点，使过期时间在当前格内的也被删除
+     */
+    public void cleanUp() {
+        advance(ticker.read());
+        LinkedHashMap.Entry<K, V> s = wheel[0][(int) (nanos >> SHIFT[0]) & (BUCKETS[0] - 1)], e, next;
+        for (e = s.after; e != s; e = next) {
+            next = e.after;
+            if (expiresAtOf(e) - nanos <= 0L) {
+                unlinkTimer(e);
+                linkLast(expired, e);
+            }
+        }
+        drainExpired();
+    }
+
+    /**
+     * 副本中的键值对保留原来的写入时间和过期时间
+     */
+    @SuppressWarnings("unchecked")
+    public Object clone() {
+        ExpiringMap<K, V> result = (ExpiringMap<K, V>) super.clone();
+        for (Map.Entry<K, V> me : result.entrySet()) {
+            Node<K, V> q = (Node<K, V>) me, p = getNode(q.hash, q.key);
+            result.unlinkTimer((LinkedHashMap.Entry<K, V>) q);
+            setTimes(q, writeTimeOf(p), expiresAtOf(p));
+            result.schedule((LinkedHashMap.Entry<K, V>) q);
+        }
+        return result;
+    }
+
+    /* ---------------- 过期时间 -------------- */
+
+    static <K, V> long writeTimeOf(Node<K, V> p) {
+        return (p instanceof TreeEntry) ? ((TreeEntry<K, V>) p).writeTime : ((Entry<K, V>) p).writeTime;
+    }
+
+    static <K, V> long expiresAtOf(Node<K, V> p) {
+        return (p instanceof TreeEntry) ? ((TreeEntry<K, V>) p).expiresAt : ((Entry<K, V>) p).expiresAt;
+    }
+
+    static <K, V> void setTimes(Node<K, V> p, long writeTime, long expiresAt) {
+        if (p instanceof TreeEntry) {
+            TreeEntry<K, V> t = (TreeEntry<K, V>) p;
+            t.writeTime = writeTime;
+            t.expiresAt = expiresAt;
+        } else {
+            Entry<K, V> t = (Entry<K, V>) p;
+            t.writeTime = writeTime;
+            t.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * 计算过期时间：写入时间加expireAfterWrite与访问时间加expireAfterAccess中较早的一个
+     */
+    final long expiresAt(long writeTime, long accessTime) {
+        long w = writeTime + expireAfterWriteNanos, a = accessTime + expireAfterAccessNanos;
+        return (a - w < 0) ? a : w;
+    }
+
+    /**
+     * 更新结点的写入时间和过期时间，过期时间变化时移动到对应的桶中
+     */
+    final void reschedule(Node<K, V> e, long writeTime, long now) {
+        long t = expiresAt(writeTime, now);
+        if (t == expiresAtOf(e) && writeTime == writeTimeOf(e))
+            return;
+        LinkedHashMap.Entry<K, V> p = (LinkedHashMap.Entry<K, V>) e;
+        unlinkTimer(p);
+        setTimes(p, writeTime, t);
+        schedule(p);
+    }
+
+    /**
+     * 删除读到的已经过期的结点
+     */
+    private void removeExpired(Node<K, V> e) {
+        removeNode(e.hash, e.key, null, false, false);
+        ++expirationCount;
+    }
+
+    /* ---------------- 时间轮 -------------- */
+
+    /**
+     * 创建空的时间轮，时间从当前时间开始；反序列化时ticker还没有读取，在readObject()中再设置时间
+     */
+    @SuppressWarnings("unchecked")
+    final void initWheel() {
+        LinkedHashMap.Entry<K, V>[][] w = (LinkedHashMap.Entry<K, V>[][]) new LinkedHashMap.Entry<?, ?>[BUCKETS.length][];
+        for (int i = 0; i < w.length; i++) {
+            w[i] = (LinkedHashMap.Entry<K, V>[]) new LinkedHashMap.Entry<?, ?>[BUCKETS[i]];
+            for (int j = 0; j < w[i].length; j++)
+                w[i][j] = sentinel();
+        }
+        wheel = w;
+        expired = sentinel();
+        nanos = (ticker != null) ? ticker.read() : 0L;
+    }
+
+    /**
+     * 创建循环链表的哨兵结点
+     */
+    static <K, V> LinkedHashMap.Entry<K, V> sentinel() {
+        LinkedHashMap.Entry<K, V> s = new Entry<>(0, null, null, null);
+        s.before = s.after = s;
+        return s;
+    }
+
+    /**
+     * 找到过期时间time应该放入的桶：从低层开始，第一个time所在的桶与当前时间所在的桶相差不到一圈的层，
+     * 这样桶中的结点只会在时间轮进入这个桶时被处理，不会因为绕回而提前被处理
+     * 已经过期的放入当前时间所在的桶，时间轮推进一格时被删除
+     */
+    final LinkedHashMap.Entry<K, V> findBucket(long time) {
+        if (time - nanos < 0L)
+            time = nanos;
+        int last = wheel.length - 1;
+        for (int i = 0; i < last; i++) {
+            long ticks = time >> SHIFT[i];
+            if (ticks - (nanos >> SHIFT[i]) < BUCKETS[i])
+                return wheel[i][(int) ticks & (BUCKETS[i] - 1)];
+        }
+        return wheel[last][0];
+    }
+
+    /**
+     * 把结点p按它的过期时间放入时间轮
+     */
+    final void schedule(LinkedHashMap.Entry<K, V> p) {
+        linkLast(findBucket(expiresAtOf(p)), p);
+    }
+
+    /**
+     * 把结点p链接到哨兵s所在的循环链表的末尾
+     */
+    static <K, V> void linkLast(LinkedHashMap.Entry<K, V> s, LinkedHashMap.Entry<K, V> p) {
+        LinkedHashMap.Entry<K, V> b = s.before;
+        p.before = b;
+        p.after = s;
+        b.after = p;
+        s.before = p;
+    }
+
+    /**
+     * 把结点p从所在的桶中移除，不在时间轮中（反序列化过程中创建的结点）时什么都不做
+     */
+    final void unlinkTimer(LinkedHashMap.Entry<K, V> p) {
+        LinkedHashMap.Entry<K, V> b = p.before, a = p.after;
+        if (b != null) {
+            b.after = a;
+            a.before = b;
+            p.before = p.after = null;
+        }
+    }
+
+    /**
+     * 推进时间轮到now，然后删除所有到期的结点
+     * 第i层的桶下标每经过1 << SHIFT[i]纳秒变化一次，只有低一层的桶下标变化时高一层的才可能变化，因此从低层开始，
+     * 某一层没有变化就可以停止。
+     */
+    final void advance(long now) {
+        long prev = nanos;
+        if (now - prev < 0L)
+            return;
+        nanos = now;
+        for (int i = 0; i < SHIFT.length; i++) {
+            long prevTicks = prev >> SHIFT[i], ticks = now >> SHIFT[i];
+            if (ticks - prevTicks <= 0L)
+                break;
+            expireBuckets(i, prevTicks, ticks);
+        }
+        drainExpired();
+    }
+
+    /**
+     * 删除expired链表中的所有结点
+     */
+    private void drainExpired() {
+        LinkedHashMap.Entry<K, V> e;
+        while ((e = expired.after) != expired) {
+            if (removeNode(e.hash, e.key, null, false, false) != null)
+                ++expirationCount;
+            else
+                unlinkTimer(e);
+        }
+    }
+
+    /**
+     * 处理第index层从prevTicks到ticks经过的桶，最多转一圈：到期的结点移到expired链表，其余的重新放入时间轮
+     * 这里只移动链表指针，不修改哈希表；到期的结点在所有桶处理完之后再统一删除，删除时树结点和链表结点之间的转换
+     * 会通过transferLinks()替换expired链表中的结点，不会影响这里的遍历。
+     */
+    private void expireBuckets(int index, long prevTicks, long ticks) {
+        LinkedHashMap.Entry<K, V>[] w = wheel[index];
+        int mask = w.length - 1;
+        int steps = (int) Math.min(1L + (ticks - prevTicks), w.length);
+        int start = (int) prevTicks & mask;
+        for (int i = start; i < start + steps; i++) {
+            LinkedHashMap.Entry<K, V> s = w[i & mask], e = s.after, next;
+            s.before = s.after = s;
+            for (; e != s; e = next) {
+                next = e.after;
+                e.before = e.after = null;
+                if (expiresAtOf(e) - nanos > 0L)
+                    schedule(e);
+                else
+                    linkLast(expired, e);
+            }
+        }
+    }
+
+    /**
+     * 用结点dst替换结点src的过期时间和在时间轮中的位置，用于链表结点和树结点之间的转换
+     */
+    private void transferLinks(LinkedHashMap.Entry<K, V> src, LinkedHashMap.Entry<K, V> dst) {
+        setTimes(dst, writeTimeOf(src), expiresAtOf(src));
+        LinkedHashMap.Entry<K, V> b = src.before, a = src.after;
+        if (b != null) {
+            dst.before = b;
+            dst.after = a;
+            b.after = dst;
+            a.before = dst;
+        }
+    }
+
+    /* ---------------- HashMap回调 -------------- */
+
+    /**
+     * 新结点以当前时间作为写入时间放入时间轮；反序列化过程中ticker还是null，在readObject()中再放入
+     */
+    private <T extends LinkedHashMap.Entry<K, V>> T scheduleNew(T p) {
+        if (ticker != null) {
+            long now = ticker.read();
+            setTimes(p, now, expiresAt(now, now));
+            schedule(p);
+        }
+        return p;
+    }
+
+    Node<K, V> newNode(int hash, K key, V value, Node<K, V> next) {
+        return scheduleNew(new Entry<>(hash, key, value, next));
+    }
+
+    Node<K, V> replacementNode(Node<K, V> p, Node<K, V> next) {
+        Entry<K, V> q = new Entry<>(p.hash, p.key, p.value, next);
+        transferLinks((LinkedHashMap.Entry<K, V>) p, q);
+        return q;
+    }
+
+    TreeNode<K, V> newTreeNode(int hash, K key, V value, Node<K, V> next) {
+        return scheduleNew(new TreeEntry<>(hash, key, value, next));
+    }
+
+    TreeNode<K, V> replacementTreeNode(Node<K, V> p, Node<K, V> next) {
+        TreeEntry<K, V> q = new TreeEntry<>(p.hash, p.key, p.value, next);
+        transferLinks((LinkedHashMap.Entry<K, V>) p, q);
+        return q;
+    }
+
+    void reinitialize() {
+        super.reinitialize();
+        initWheel();
+    }
+
+    /**
+     * 已有键值对被修改（put覆盖、compute、merge、replace等）：重新开始写入计时，并推进时间轮
+     */
+    void afterNodeAccess(Node<K, V> e) {
+        long now = ticker.read();
+        reschedule(e, now, now);
+        advance(now);
+    }
+
+    void afterNodeInsertion(boolean evict) {
+        if (evict)
+            advance(ticker.read());
+    }
+
+    void afterNodeRemoval(Node<K, V> e) {
+        unlinkTimer((LinkedHashMap.Entry<K, V>) e);
+    }
+
+    /**
+     * HashMap.readObject()插入键值对时本类的字段还没有读取，ticker为null，因此读取完成后以当前时间作为所有键值对的写入时间
+     * ticker的读数在不同的JVM之间没有意义，原来的过期时间不保留
+     */
+    private void readObject(java.io.ObjectInputStream s) throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        long now = nanos = ticker.read();
+        for (Map.Entry<K, V> me : entrySet()) {
+            LinkedHashMap.Entry<K, V> p = (LinkedHashMap.Entry<K, V>) me;
+            setTimes(p, now, expiresAt(now, now));
+            schedule(p);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package java.util;
+
+/**
+ * 估计键的访问频率的Count-Min Sketch，用于BoundedCache的TinyLFU准入策略
+ * 1.每个计数器4位，一个long存放16个计数器，table.length个long按键数量取2的幂，平均每个键约8字节。
+ * 2.一个键对应4个计数器：哈希值的低2位选择每个long中的一组（4个计数器），4个不同的种子各选出一个long，
+ * 每个long中取该组的第i个计数器；增加时4个计数器都加1（最大15），频率是4个计数器的最小值。
+ * 3.计数只增不减会让过去的热点一直占据缓存，所以每增加sampleSize（10倍容量）次，所有计数器减半，旧的频率逐渐衰减。
+ * 4.输入是HashMap中结点的hash值，同一个键总是落在相同的计数器上；不同的键可能冲突，频率只会被高估。
+ *
+ * @see BoundedCache
+ */
+final class FrequencySketch {
+    /**
+     * 选择4个long的种子
+     */
+    static final long[] SEED = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    /**
+     * 每个计数器右移1位后清除从相邻计数器移入的最高位
+     */
+    static final long RESET_MASK = 0x7777777777777777L;
+
+    /**
+     * 每个计数器的最低位，用来统计减半时丢掉的奇数
+     */
+    static final long ONE_MASK = 0x1111111111111111L;
+
+    /**
+     * 计数器数组
+     */
+    long[] table;
+
+    /**
+     * table.length - 1
+     */
+    int tableMask;
+
+    /**
+     * 增加次数达到该值时计数器减半
+     */
+    int sampleSize;
+
+    /**
+     * 自上次减半以来增加的次数（只统计至少有一个计数器增加了的）
+     */
+    int size;
+
+    /**
+     * @param expectedSize 预计的键数量
+     */
+    FrequencySketch(long expectedSize) {
+        ensureCapacity(expectedSize);
+    }
+
+    /**
+     * 键数量超过容量时扩大计数器数组，原来的计数全部丢弃
+     *
+     * @param expectedSize 预计的键数量
+     */
+    void ensureCapacity(long expectedSize) {
+        int maximum = (int) Math.min(Math.max(expectedSize, 16L), HashMap.MAXIMUM_CAPACITY);
+        if (table != null && table.length >= maximum)
+            return;
+        table = new long[HashMap.tableSizeFor(maximum)];
+        tableMask = table.length - 1;
+        sampleSize = (maximum > Integer.MAX_VALUE / 10) ? Integer.MAX_VALUE : 10 * maximum;
+        size = 0;
+    }
+
+    /**
+     * 估计hash对应的键的访问频率
+     *
+     * @param hash 键的哈希值
+     * @return 返回0~15之间的频率
+     */
+    int frequency(int hash) {
+        int h = rehash(hash);
+        int start = (h & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int count = (int) ((table[indexOf(h, i)] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * 记录hash对应的键的一次访问
+     *
+     * @param hash 键的哈希值
+     */
+    void increment(int hash) {
+        int h = rehash(hash);
+        int start = (h & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++)
+            added |= incrementAt(indexOf(h, i), start + i);
+        if (added && ++size == sampleSize)
+            reset();
+    }
+
+    /**
+     * table[i]中的第j个计数器加1，已经是15时不变
+     *
+     * @return 返回是否增加了
+     */
+    boolean incrementAt(int i, int j) {
+        int offset = j << 2;
+        long mask = 0xfL << offset;
+        if ((table[i] & mask) != mask) {
+            table[i] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 所有计数器减半，size按减半后的总计数调整
+     */
+    void reset() {
+        int count = 0;
+        for (int i = 0; i < table.length; i++) {
+            count += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (count >>> 2);
+    }
+
+    /**
+     * 用第i个种子从哈希值选出一个long
+     */
+    int indexOf(int h, int i) {
+        long hash = (h + SEED[i]) * SEED[i];
+        hash += (hash >>> 32);
+        return ((int) hash) & tableMask;
+    }
+
+    /**
+     * 再次打散哈希值，HashMap的hash值只对低位做了扰动
+     */
+    static int rehash(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+
+    /**
+     * @return 返回计数完全相同的副本
+     */
+    FrequencySketch copy() {
+        FrequencySketch s = new FrequencySketch(0L);
+        s.table = table.clone();
+        s.tableMask = tableMask;
+        s.sampleSize = sampleSize;
+        s.size = size;
+        return s;
+    }
+}
@@ -0,0 +1,633 @@
+package java.util;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.Serializable;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 不可修改的完美哈希表，用于构建一次之后只读的Map，由HashMap.freeze()或者构造方法创建
+ * 1.使用CHD（hash and displace）方式的完美哈希：先把键按哈希值分到约n/3个组，从最大的组开始，
+ * 为每个组找到一个种子，使组中所有键用该种子计算出的位置都是空的且互不相同。构建完成后每个键独占一个位置，没有链表和红黑树。
+ * 2.查找时计算一次哈希值，读取所在组的种子得到唯一的位置，比较一次哈希值和一次equals()即可，不需要沿着链表查找。
+ * 3.键和值相邻地存放在同一个数组table中，命中时键和值通常在同一个缓存行；另有hashes数组存放哈希值。位置的个数约为n / 0.85，没有结点对象。
+ * 4.hashCode()扰动后完全相同的多个键无法用哈希值区分，这些键和null键一起按哈希值排序存放在数组末尾的溢出区，用二分查找。
+ * 只有存在这样的键时，未命中的查找才需要额外查找溢出区。
+ * 5.不可修改，所有修改方法都抛出UnsupportedOperationException；没有modCount，迭代时也不需要检查并发修改。
+ * 键和值本身不会被复制，键的hashCode()和equals()在冻结之后不能改变。
+ *
+ * @param <K> 泛型，表示键值对中的键
+ * @param <V> 泛型，表示键值对中的值
+ * @see HashMap#freeze()
+ * @see CompactHashMap
+ */
+/*
+    extends
+        AbstractMap<K, V>   继承自抽象类AbstractMap<K, V>
+    implements
+        Map<K, V>   实现Map接口
+        Serializable    标记性接口，表示该类可以被序列化和反序列化
+ */
+public class FrozenHashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Serializable {
+    // 序列版本ID
+    private static final long serialVersionUID = -2861042718336508717L;
+
+    /**
+     * 常量，键值对占用位置的比例，越接近1越省空间，但为最后几个组寻找种子需要尝试的次数越多
+     */
+    static final float LOAD_FACTOR = 0.85f;
+
+    /**
+     * 常量，平均每组的键的个数，组越大种子数组越小，但寻找种子越难
+     */
+    static final int BUCKET_SIZE = 3;
+
+    /**
+     * 常量，每个组最多尝试的种子个数，超过后扩大数组重新构建
+     */
+    static final int MAX_SEED = 1 << 16;
+
+    /**
+     * 常量，数组的最大长度，与ArrayList相同
+     */
+    static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * 每个组的种子，长度是2的n次方
+     */
+    transient int[] seeds;
+
+    /**
+     * 组的下标等于混合后的哈希值无符号右移bucketShift位，即取高位
+     */
+    transient int bucketShift;
+
+    /**
+     * 位置的个数，[0, slotCount)存放完美哈希的键值对，[slotCount, hashes.length)是溢出区
+     */
+    transient int slotCount;
+
+    /**
+     * 每个位置上键的哈希值（HashMap.hash(Object)），溢出区按哈希值从小到大排列
+     */
+    transient int[] hashes;
+
+    /**
+     * 存放键值对的数组，位置i的键在table[2 * i]，值在table[2 * i + 1]，完美哈希部分中键为null的位置是空位置
+     */
+    transient Object[] table;
+
+    /**
+     * 键值对的数量
+     */
+    transient int size;
+
+    transient Set<Map.Entry<K, V>> entrySet;
+
+    /* ---------------- 构造方法 -------------- */
+
+    /**
+     * 使用Map集合构造，复制m中所有的键值对
+     *
+     * @param m Map集合
+     * @throws NullPointerException m为null
+     */
+    public FrozenHashMap(Map<? extends K, ? extends V> m) {
+        int n = m.size();
+        int[] hs = new int[n];
+        Object[] ks = new Object[n];
+        Object[] vs = new Object[n];
+        int i = 0;
+        for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+            if (i == n)
+                throw new ConcurrentModificationException();
+            K k = e.getKey();
+            hs[i] = HashMap.hash(k);
+            ks[i] = k;
+            vs[i++] = e.getValue();
+        }
+        if (i != n)
+            throw new ConcurrentModificationException();
+        build(hs, ks, vs, n);
+    }
+
+    /* ---------------- 构建 -------------- */
+
+    /**
+     * 混合哈希值，MurmurHash3的fmix32终结函数
+     */
+    static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 根据混合后的哈希值和所在组的种子计算位置，把32位的混合结果按比例映射到[0, n)，不需要取模
+     *
+     * @param g    混合后的哈希值
+     * @param seed 所在组的种子
+     * @param n    位置的个数
+     * @return 返回位置
+     */
+    static int slotOf(int g, int seed, int n) {
+        return (int) (((mix(g ^ seed * 0x9e3779b9) & 0xffffffffL) * n) >>> 32);
+    }
+
+    /**
+     * 构建完美哈希表
+     * 1.按哈希值排序，哈希值与其他键相同的键以及null键放入溢出区，其余的键哈希值互不相同。
+     * 2.按组的大小从大到小为每个组寻找种子，大的组最难放下，要在空位置还多的时候先放。
+     * 3.某个组尝试MAX_SEED个种子都失败时，位置增加1/8重新构建，实际上几乎不会发生。
+     *
+     * @param hs 键的哈希值
+     * @param ks 键
+     * @param vs 值
+     * @param n  键值对的数量
+     */
+    final void build(int[] hs, Object[] ks, Object[] vs, int n) {
+        // 哈希值在高32位，下标在低32位，排序后哈希值相同的键相邻
+        long[] order = new long[n];
+        for (int i = 0; i < n; ++i)
+            order[i] = ((long) hs[i] << 32) | i;
+        Arrays.sort(order);
+        int[] unique = new int[n];
+        int[] overflow = new int[n];
+        int u = 0, o = 0;
+        for (int i = 0; i < n; ) {
+            int h = (int) (order[i] >> 32), j = i + 1;
+            while (j < n && (int) (order[j] >> 32) == h)
+                ++j;
+            boolean single = j - i == 1;
+            for (; i < j; ++i) {
+                int idx = (int) order[i];
+                if (single && ks[idx] != null)
+                    unique[u++] = idx;
+                else
+                    overflow[o++] = idx;
+            }
+        }
+
+        int bits = 1;
+        while (bits < 30 && (1 << bits) * BUCKET_SIZE < u)
+            ++bits;
+        int r = 1 << bits, shift = 32 - bits;
+        // 按组做计数排序，members[start[b], start[b + 1])是第b组的键
+        int[] g = new int[u];
+        int[] start = new int[r + 1];
+        for (int i = 0; i < u; ++i) {
+            g[i] = mix(hs[unique[i]]);
+            ++start[(g[i] >>> shift) + 1];
+        }
+        int maxBucket = 0;
+        for (int b = 0; b < r; ++b) {
+            maxBucket = Math.max(maxBucket, start[b + 1]);
+            start[b + 1] += start[b];
+        }
+        int[] members = new int[u];
+        int[] fill = Arrays.copyOf(start, r);
+        for (int i = 0; i < u; ++i)
+            members[fill[g[i] >>> shift]++] = i;
+        // 再按组的大小做计数排序，得到从大到小的处理顺序
+        int[] bySize = new int[maxBucket + 2];
+        for (int b = 0; b < r; ++b)
+            ++bySize[maxBucket - (start[b + 1] - start[b]) + 1];
+        for (int s = 0; s <= maxBucket; ++s)
+            bySize[s + 1] += bySize[s];
+        int[] buckets = new int[r];
+        for (int b = 0; b < r; ++b)
+            buckets[bySize[maxBucket - (start[b + 1] - start[b])]++] = b;
+
+        long want = (long) (u / LOAD_FACTOR) + 1;
+        int m;
+        int[] sd = new int[r];
+        int[] tmp = new int[Math.max(maxBucket, 1)];
+        boolean[] used;
+        for (; ; ) {
+            if (want + o > MAX_ARRAY_SIZE)
+                throw new OutOfMemoryError("Required array size too large");
+            m = (int) want;
+            used = new boolean[m];
+            if (place(g, members, start, buckets, sd, tmp, used, shift, m))
+                break;
+            Arrays.fill(sd, 0);
+            want = m + (m >>> 3) + 1;
+        }
+
+        int len = m + o;
+        int[] th = new int[len];
+        Object[] tab = new Object[len << 1];
+        for (int i = 0; i < u; ++i) {
+            int idx = unique[i];
+            int s = slotOf(g[i], sd[g[i] >>> shift], m);
+            th[s] = hs[idx];
+            tab[s << 1] = ks[idx];
+            tab[(s << 1) + 1] = vs[idx];
+        }
+        // 溢出区已经按哈希值排好序
+        for (int i = 0; i < o; ++i) {
+            int idx = overflow[i];
+            th[m + i] = hs[idx];
+            tab[(m + i) << 1] = ks[idx];
+            tab[((m + i) << 1) + 1] = vs[idx];
+        }
+        seeds = sd;
+        bucketShift = shift;
+        slotCount = m;
+        hashes = th;
+        table = tab;
+        size = n;
+    }
+
+    /**
+     * 按buckets的顺序为每个组寻找种子
+     *
+     * @return 返回是否所有的组都找到了种子
+     */
+    static boolean place(int[] g, int[] members, int[] start, int[] buckets, int[] sd, int[] tmp,
+                         boolean[] used, int shift, int m) {
+        for (int b : buckets) {
+            int from = start[b], k = start[b + 1] - from;
+            if (k == 0)
+                // 之后的组都是空的
+                return true;
+            int seed = 1;
+            search:
+            for (; ; ++seed) {
+                if (seed > MAX_SEED)
+                    return false;
+                for (int j = 0; j < k; ++j) {
+                    int s = slotOf(g[members[from + j]], seed, m);
+                    if (used[s])
+                        continue search;
+                    // 同一组中的键也不能落在同一个位置
+                    for (int t = 0; t < j; ++t) {
+                        if (tmp[t] == s)
+                            continue search;
+                    }
+                    tmp[j] = s;
+                }
+                break;
+            }
+            for (int j = 0; j < k; ++j)
+                used[tmp[j]] = true;
+            sd[b] = seed;
+        }
+        return true;
+    }
+
+    /* ---------------- 查询 -------------- */
+
+    /**
+     * 查找指定键所在的下标
+     *
+     * @param key 键
+     * @return 返回键在数组中的下标，没有找到则返回-1
+     */
+    final int indexOf(Object key) {
+        int h = HashMap.hash(key);
+        if (key != null) {
+            int g = mix(h);
+            int s = slotOf(g, seeds[g >>> bucketShift], slotCount);
+            Object k;
+            if (hashes[s] == h && (k = table[s << 1]) != null && (k == key || key.equals(k)))
+                return s;
+            if (hashes.length == slotCount)
+                return -1;
+        }
+        return overflowIndexOf(h, key);
+    }
+
+    /**
+     * 在溢出区中二分查找哈希值为h的第一个位置，再依次比较哈希值相同的键
+     */
+    final int overflowIndexOf(int h, Object key) {
+        int[] hs = hashes;
+        Object[] tab = table;
+        int lo = slotCount, hi = hs.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (hs[mid] < h)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        for (Object k; lo < hs.length && hs[lo] == h; ++lo) {
+            if ((k = tab[lo << 1]) == key || (key != null && key.equals(k)))
+                return lo;
+        }
+        return -1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 得到指定key对应的value
+     *
+     * @param key 指定的key
+     * @return 返回查找到的value，没有查找到则返回null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int i = indexOf(key);
+        return (i < 0) ? null : (V) table[(i << 1) + 1];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(Object key, V defaultValue) {
+        int i = indexOf(key);
+        return (i < 0) ? defaultValue : (V) table[(i << 1) + 1];
+    }
+
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    public boolean containsValue(Object value) {
+        Object[] tab = table;
+        for (int i = 0, m = slotCount << 1; i < tab.length; i += 2) {
+            Object v;
+            if ((i >= m || tab[i] != null) && ((v = tab[i + 1]) == value || (value != null && value.equals(v))))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (action == null)
+            throw new NullPointerException();
+        Object[] tab = table;
+        for (int i = 0, m = slotCount << 1; i < tab.length; i += 2) {
+            if (i >= m || tab[i] != null)
+                action.accept((K) tab[i], (V) tab[i + 1]);
+        }
+    }
+
+    /* ---------------- 修改，全部不支持 -------------- */
+
+    public V put(K key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void putAll(Map<? extends K, ? extends V> m) {
+        throw new UnsupportedOperationException();
+    }
+
+    public V remove(Object key) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        throw new UnsupportedOperationException();
+    }
+
+    /* ---------------- 视图 -------------- */
+
+    public Set<K> keySet() {
+        Set<K> ks = keySet;
+        if (ks == null) {
+            ks = new KeySet();
+            keySet = ks;
+        }
+        return ks;
+    }
+
+    final class KeySet extends AbstractSet<K> {
+        public final int size() {
+            return size;
+        }
+
+        public final Iterator<K> iterator() {
+            return new KeyIterator();
+        }
+
+        public final boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        @SuppressWarnings("unchecked")
+        public final void forEach(Consumer<? super K> action) {
+            if (action == null)
+                throw new NullPointerException();
+            Object[] tab = table;
+            for (int i = 0, m = slotCount << 1; i < tab.length; i += 2) {
+                if (i >= m || tab[i] != null)
+                    action.accept((K) tab[i]);
+            }
+        }
+    }
+
+    public Collection<V> values() {
+        Collection<V> vs = values;
+        if (vs == null) {
+            vs = new Values();
+            values = vs;
+        }
+        return vs;
+    }
+
+    final class Values extends AbstractCollection<V> {
+        public final int size() {
+            return size;
+        }
+
+        public final Iterator<V> iterator() {
+            return new ValueIterator();
+        }
+
+        public final boolean contains(Object o) {
+            return containsValue(o);
+        }
+
+        @SuppressWarnings("unchecked")
+        public final void forEach(Consumer<? super V> action) {
+            if (action == null)
+                throw new NullPointerException();
+            Object[] tab = table;
+            for (int i = 0, m = slotCount << 1; i < tab.length; i += 2) {
+                if (i >= m || tab[i] != null)
+                    action.accept((V) tab[i + 1]);
+            }
+        }
+    }
+
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es;
+        return (es = entrySet) == null ? (entrySet = new EntrySet()) : es;
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        public final int size() {
+            return size;
+        }
+
+        public final Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        public final boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            int i = indexOf(e.getKey());
+            return i >= 0 && Objects.equals(table[(i << 1) + 1], e.getValue());
+        }
+    }
+
+    /* ---------------- 迭代器 -------------- */
+
+    /**
+     * 迭代器先按位置顺序遍历完美哈希部分，跳过空位置，再遍历溢出区
+     * 不支持remove()
+     */
+    abstract class FrozenIterator {
+        // 下一个键值对的位置，等于hashes.length时表示遍历结束
+        int next;
+
+        FrozenIterator() {
+            advance(0);
+        }
+
+        final void advance(int i) {
+            Object[] tab = table;
+            int m = slotCount;
+            while (i < m && tab[i << 1] == null)
+                ++i;
+            next = i;
+        }
+
+        public final boolean hasNext() {
+            return next < hashes.length;
+        }
+
+        /**
+         * 返回下一个键值对的下标
+         */
+        final int nextIndex() {
+            int i = next;
+            if (i >= hashes.length)
+                throw new NoSuchElementException();
+            advance(i + 1);
+            return i;
+        }
+    }
+
+    final class KeyIterator extends FrozenIterator implements Iterator<K> {
+        @SuppressWarnings("unchecked")
+        public final K next() {
+            return (K) table[nextIndex() << 1];
+        }
+    }
+
+    final class ValueIterator extends FrozenIterator implements Iterator<V> {
+        @SuppressWarnings("unchecked")
+        public final V next() {
+            return (V) table[(nextIndex() << 1) + 1];
+        }
+    }
+
+    final class EntryIterator extends FrozenIterator implements Iterator<Map.Entry<K, V>> {
+        @SuppressWarnings("unchecked")
+        public final Map.Entry<K, V> next() {
+            int i = nextIndex() << 1;
+            return new AbstractMap.SimpleImmutableEntry<>((K) table[i], (V) table[i + 1]);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    // Serialization
+
+    /**
+     * 序列化，只写出键值对数量(int)和每个键值对的键和值，反序列化时重新构建，不依赖哈希值在不同进程中相同
+     */
+    private void writeObject(java.io.ObjectOutputStream s) throws IOException {
+        s.defaultWriteObject();
+        s.writeInt(size);
+        Object[] tab = table;
+        for (int i = 0, m = slotCount << 1; i < tab.length; i += 2) {
+            if (i >= m || tab[i] != null) {
+                s.writeObject(tab[i]);
+                s.writeObject(tab[i + 1]);
+            }
+        }
+    }
+
+    /**
+     * 反序列化
+     */
+    private void readObject(java.io.ObjectInputStream s) throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        int mappings = s.readInt(); // 键值对数量
+        if (mappings < 0)
+            throw new InvalidObjectException("Illegal mappings count: " + mappings);
+        int[] hs = new int[mappings];
+        Object[] ks = new Object[mappings];
+        Object[] vs = new Object[mappings];
+        for (int i = 0; i < mappings; i++) {
+            Object k = s.readObject();
+            hs[i] = HashMap.hash(k);
+            ks[i] = k;
+            vs[i] = s.readObject();
+        }
+        build(hs, ks, vs, mappings);
+    }
+}
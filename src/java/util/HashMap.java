@@ -2,11 +2,17 @@ package java.util;
 
 import sun.misc.SharedSecrets;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.InvalidObjectException;
 import java.io.Serializable;
+import java.io.StreamCorruptedException;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
@@ -70,6 +76,48 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
      */
     static final int MIN_TREEIFY_CAPACITY = 64;
 
+    /**
+     * 常量，渐进式扩容时，每次操作最多搬迁的桶的个数（不包括当前操作的键所在的桶）
+     * 扩容后阈值为新容量的0.75，即最多再插入0.75 * oldCap个元素就会触发下一次扩容，
+     * 每次至少搬迁2个桶就能保证在下一次扩容前旧表已经搬迁完毕
+     */
+    static final int TRANSFER_STRIDE = 4;
+
+    /**
+     * 常量，开启统计后，每64次getNode()采样1次探测长度
+     */
+    static final int STATISTICS_SAMPLE_MASK = 63;
+
+    /**
+     * 常量，哈希桶数组的容量达到该值后才按段统计键值对的数量，更小的表不值得并行拆分
+     */
+    static final int MIN_SEGMENTED_CAPACITY = 1 << 10;
+
+    /**
+     * 常量，每段至少包含2^4个桶
+     */
+    static final int MIN_SEGMENT_SHIFT = 4;
+
+    /**
+     * 常量，最多分成2^10段
+     */
+    static final int MAX_SEGMENT_BITS = 10;
+
+    /**
+     * 常量，批量添加时最多按桶下标的高位分成2^16个区间
+     */
+    static final int BULK_PARTITION_BITS = 16;
+
+    /**
+     * 常量，批量添加时链表长度达到该值就立即转换成红黑树，否则等全部添加完再转换
+     */
+    static final int BULK_TREEIFY_LIMIT = 64;
+
+    /**
+     * 常量，批量添加时哈希桶数组的容量达到该值才按区间排序，更小的表可以留在缓存中
+     */
+    static final int BULK_SORT_MIN_CAPACITY = 1 << 18;
+
     /**
      * 内部类，HashMap中每个索引位置都是链表，也称为桶，链表中每个结点就是Node<K, V>
      * 实现Map.Entry<K, V>接口
@@ -143,6 +191,51 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         return (key == null) ? 0 : (h = key.hashCode()) ^ (h >>> 16);
     }
 
+    /**
+     * 计算键（key）在本实例中的哈希值，实例方法都通过它而不是hash(Object)计算哈希值
+     * 1.没有开启随机化哈希时与hash(Object)完全相同。
+     * 2.开启后，String键使用带种子的MurmurHash3按字符重新计算，其他键把种子与hashCode()混合后再经过fmix32终结函数，
+     * 终结函数由乘法和异或移位组成，hashCode()的每一位都会影响结果的每一位（包括计算下标用的低位）。
+     * 3.只对hashCode()加种子无法区分hashCode()完全相同的键（例如"Aa"和"BB"），所以String键要根据内容计算，
+     * 这也是JDK 7u6中String替代哈希的做法。其他类型的键仍然依赖hashCode()本身的质量。
+     *
+     * @param key 键值对中的键（key）
+     * @return 返回哈希值
+     */
+    final int spread(Object key) {
+        int seed;
+        if ((seed = hashSeed) == 0 || key == null)
+            return hash(key);
+        int h;
+        if (key instanceof String) {
+            // MurmurHash3_x86_32，每两个char组成一个32位的块
+            String s = (String) key;
+            int len = s.length(), i = 0;
+            h = seed;
+            for (; i + 1 < len; i += 2) {
+                h ^= mixK1(s.charAt(i) | (s.charAt(i + 1) << 16));
+                h = Integer.rotateLeft(h, 13) * 5 + 0xe6546b64;
+            }
+            if (i < len)
+                h ^= mixK1(s.charAt(i));
+            h ^= len << 1;
+        } else
+            h = key.hashCode() ^ seed;
+        // fmix32
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * MurmurHash3中对每个块的混合
+     */
+    static int mixK1(int k) {
+        return Integer.rotateLeft(k * 0xcc9e2d51, 15) * 0x1b873593;
+    }
+
     /**
      * 判断是否实现了Comparable接口
      *
@@ -182,6 +275,21 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
                 ((Comparable) k).compareTo(x));
     }
 
+    /**
+     * 用keyComparator比较k和x，与compareComparables()一样用0表示无法区分：
+     * 有一个为null或者比较器抛出ClassCastException（例如get()传入了其他类型的键）时返回0
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"}) // for cast to Comparator
+    static int compareWith(Comparator cmp, Object k, Object x) {
+        if (k == null || x == null)
+            return 0;
+        try {
+            return cmp.compare(k, x);
+        } catch (ClassCastException e) {
+            return 0;
+        }
+    }
+
     /**
      * 检查所传的初始值是否是2的n次方，如果不是，则将其变为2的幂次方
      * 且不能为负数（负数则返回1），且不能超过常量MAXIMUM_CAPACITY
@@ -248,6 +356,60 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
      */
     final float loadFactor;
 
+    /**
+     * 是否开启渐进式扩容，默认不开启，通过setIncrementalResize(boolean)方法设置
+     * 开启后，扩容时只分配新的哈希桶数组，旧哈希桶数组中的桶分摊到之后的操作中逐步搬迁
+     */
+    transient boolean incrementalResize;
+
+    /**
+     * 渐进式扩容时还没有搬迁完的旧哈希桶数组，没有正在进行的扩容时为null
+     * 旧表中已经搬迁的桶会被置为null，没有置为null的桶中的结点还没有搬迁到table中
+     */
+    transient Node<K, V>[] oldTable;
+
+    /**
+     * 渐进式扩容时，下一个要按顺序搬迁的旧哈希桶数组的下标
+     */
+    transient int transferIndex;
+
+    /**
+     * 统计计数器，没有开启统计时为null，通过setStatisticsEnabled(boolean)方法设置
+     */
+    transient Statistics statistics;
+
+    /**
+     * 随机化哈希的种子，0表示没有开启，通过setRandomizedHashing(boolean)方法设置
+     * 随默认的序列化字段写出，反序列化得到的副本使用相同的种子；没有这个字段的旧数据读出来是0，即没有开启
+     *
+     * @serial
+     */
+    int hashSeed;
+
+    /**
+     * 按段统计的键值对数量，哈希桶数组中下标为i的桶属于第i >>> segmentShift段
+     * 1.由putVal()、removeNode()等方法在增删结点时维护，扩容时随着桶的搬迁重新统计，渐进式扩容期间统计的是新表。
+     * 2.Spliterator根据它在段的边界上按键值对数量平分，而不是按桶的下标平分，并且拆分出的每一部分的大小都是精确的。
+     * 3.容量小于MIN_SEGMENTED_CAPACITY时为null。
+     */
+    transient int[] segmentCounts;
+
+    /**
+     * 每段包含2^segmentShift个桶
+     */
+    transient int segmentShift;
+
+    /**
+     * 计数布隆过滤器，没有开启时为null，通过setBloomFilterEnabled(boolean)方法设置
+     * 由putVal()、removeNode()等方法在增删结点时维护，getNode()先查询它，一定不存在的键不再访问哈希桶数组
+     */
+    transient CountingBloomFilter bloomFilter;
+
+    /**
+     * 红黑树桶中比较哈希值相同的键的比较器，为null时使用键的Comparable，通过setKeyComparator(Comparator)方法设置
+     */
+    transient Comparator<? super K> keyComparator;
+
     /* ---------------- HashMap的构造方法 -------------- */
 
     /**
@@ -351,7 +513,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
                 // 值
                 V value = e.getValue();
                 // 调用putVal()方法向HashMap中添加键值对
-                putVal(hash(key), key, value, false, evict);
+                putVal(spread(key), key, value, false, evict);
             }
         }
     }
@@ -385,7 +547,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         // 局部变量，存放根据key值获取到的结点Node
         Node<K, V> e;
         // 根据指定的key查找HashMap中的结点，如果结点为null则返回null，否则返回结点的值value
-        return (e = getNode(hash(key), key)) == null ? null : e.value;
+        return (e = getNode(spread(key), key)) == null ? null : e.value;
         /**
          等价于（只是语句太复杂了，下面详细说明）
          int hash = hash(key);
@@ -410,6 +572,23 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         Node<K, V> first, e;
         int n;
         K k;
+        Statistics st;
+        CountingBloomFilter bf;
+        // 开启了布隆过滤器时，一定不存在的键直接返回，不访问哈希桶数组，也不推进渐进式扩容
+        if ((bf = bloomFilter) != null && !bf.mightContain(hash)) {
+            if ((st = statistics) != null) {
+                ++st.lookups;
+                ++st.bloomFilterRejects;
+            }
+            return null;
+        }
+        // 渐进式扩容还没有结束，先把该键所在的桶搬迁到新表中
+        // 查询也会修改哈希桶数组，因此搬迁期间并发的只读访问也不安全，参考setIncrementalResize(boolean)
+        if (oldTable != null)
+            advanceTransfer(hash);
+        // 开启了统计时，每STATISTICS_SAMPLE_MASK + 1次查找采样一次探测长度
+        if ((st = statistics) != null && (++st.lookups & STATISTICS_SAMPLE_MASK) == 0)
+            st.recordProbe(probeLength(hash, key));
         /*
             且哈希桶数组不能为null，表示table已经初始化了
             且tab.length大于0，表示已经哈希桶数组中已经有元素结点了
@@ -428,9 +607,12 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             // 如果链头结点不是要查找的结点，并且如果链表除了头结点还有其他的结点，那么遍历整个链表
             if ((e = first.next) != null) {
                 // 判断链头结点是否是树结点TreeNode，则表示当前结构不是链表结构，而是红黑树结构
-                if (first instanceof TreeNode)
+                if (first instanceof TreeNode) {
                     // 那么调用getTreeNode()方法在红黑树中根据指定的key查找结点然后返回
-                    return ((TreeNode<K, V>) first).getTreeNode(hash, key);
+                    if ((e = ((TreeNode<K, V>) first).getTreeNode(hash, key, keyComparator)) == null && bf != null && st != null)
+                        ++st.bloomFilterFalsePositives;
+                    return e;
+                }
                 // 如果链头结点不是树结点，表示当前是链表结构，并且头结点不是要查找的结点，所以遍历整个链表
                 do {
                     // 比较循环遍历中的链表结点的哈希值和key是否等于要查找的指定哈希值和key
@@ -440,6 +622,9 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
                 } while ((e = e.next) != null);
             }
         }
+        // 布隆过滤器判断为可能存在，实际上不存在
+        if (bf != null && st != null)
+            ++st.bloomFilterFalsePositives;
         // 如果都没有查找到，则返回null，表示在HashMap中没有找到指定的值
         return null;
     }
@@ -453,7 +638,155 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
     public boolean containsKey(Object key) {
         // 调用getNode()方法查找指定key的结点，getNode()方法的返回结果是如果查找到结点则返回该结点，如果没有查找到则返回null
         // 因此判断它是否等于null就可以得到HashMap中是否包含指定键
-        return getNode(hash(key), key) != null;
+        return getNode(spread(key), key) != null;
+    }
+
+    /**
+     * 批量查找，keys[i]对应的value存放到out[i]中，没有找到时存放null
+     * 1.逐个调用get()时，每次查找都要等上一次查找访问哈希桶数组和结点的缓存未命中结束后才开始。
+     * 批量查找每4个键一组，先计算出4个哈希值并读取4个桶的链头结点，再依次比较，4次互不依赖的内存访问可以同时进行。
+     * 2.不分配任何中间对象。
+     * 3.渐进式扩容还没有结束、开启了统计或者布隆过滤器时，逐个调用getNode()查找。
+     * 4.与HashMap.get()相同，不会触发afterNodeAccess()回调，因此按访问顺序排序的LinkedHashMap不会调整顺序，BoundedCache重写了该方法。
+     *
+     * @param keys 要查找的键
+     * @param out  存放查找结果，长度不能小于keys.length
+     * @return 返回找到的键的个数
+     * @throws IllegalArgumentException out.length小于keys.length
+     */
+    public int getAll(Object[] keys, V[] out) {
+        int len = keys.length;
+        if (out.length < len)
+            throw new IllegalArgumentException("out.length < keys.length");
+        Node<K, V>[] tab;
+        Node<K, V> e;
+        int found = 0, i = 0;
+        if (oldTable != null || statistics != null || bloomFilter != null || (tab = table) == null || tab.length == 0) {
+            for (; i < len; i++) {
+                Object k = keys[i];
+                if ((e = getNode(spread(k), k)) != null) {
+                    out[i] = e.value;
+                    ++found;
+                } else
+                    out[i] = null;
+            }
+            return found;
+        }
+        for (; i + 4 <= len; i += 4)
+            found += getBatch(tab, keys[i], keys[i + 1], keys[i + 2], keys[i + 3], 4, out, i);
+        if (i < len)
+            found += getBatch(tab, keys[i], (i + 1 < len) ? keys[i + 1] : null, (i + 2 < len) ? keys[i + 2] : null,
+                    null, len - i, out, i);
+        return found;
+    }
+
+    /**
+     * 批量查找，按keys的迭代顺序把结果存放到out中，参考getAll(Object[], Object[])
+     *
+     * @param keys 要查找的键
+     * @param out  存放查找结果，长度不能小于keys.size()
+     * @return 返回找到的键的个数
+     * @throws IllegalArgumentException out.length小于keys.size()
+     */
+    public int getAll(Collection<?> keys, V[] out) {
+        if (out.length < keys.size())
+            throw new IllegalArgumentException("out.length < keys.size()");
+        Node<K, V>[] tab;
+        Node<K, V> e;
+        int found = 0, i = 0;
+        Iterator<?> it = keys.iterator();
+        if (oldTable != null || statistics != null || bloomFilter != null || (tab = table) == null || tab.length == 0) {
+            while (it.hasNext()) {
+                Object k = it.next();
+                if ((e = getNode(spread(k), k)) != null) {
+                    out[i++] = e.value;
+                    ++found;
+                } else
+                    out[i++] = null;
+            }
+            return found;
+        }
+        while (it.hasNext()) {
+            Object k0 = it.next(), k1 = null, k2 = null, k3 = null;
+            int m = 1;
+            if (it.hasNext()) {
+                k1 = it.next();
+                ++m;
+                if (it.hasNext()) {
+                    k2 = it.next();
+                    ++m;
+                    if (it.hasNext()) {
+                        k3 = it.next();
+                        ++m;
+                    }
+                }
+            }
+            found += getBatch(tab, k0, k1, k2, k3, m, out, i);
+            i += m;
+        }
+        return found;
+    }
+
+    /**
+     * 查找一组（最多4个）键，结果存放到out[off]到out[off + m - 1]中
+     * 先读取所有的链头结点再逐个比较，m小于4时多余的键为null，只会多读一次tab[0]
+     *
+     * @return 返回找到的键的个数
+     */
+    private int getBatch(Node<K, V>[] tab, Object k0, Object k1, Object k2, Object k3, int m, V[] out, int off) {
+        int mask = tab.length - 1;
+        int h0 = spread(k0), h1 = spread(k1), h2 = spread(k2), h3 = spread(k3);
+        Node<K, V> b0 = tab[h0 & mask], b1 = tab[h1 & mask], b2 = tab[h2 & mask], b3 = tab[h3 & mask];
+        Node<K, V> e;
+        int found = 0;
+        if ((e = findInBin(b0, h0, k0)) != null) {
+            out[off] = e.value;
+            ++found;
+        } else
+            out[off] = null;
+        if (m > 1) {
+            if ((e = findInBin(b1, h1, k1)) != null) {
+                out[off + 1] = e.value;
+                ++found;
+            } else
+                out[off + 1] = null;
+        }
+        if (m > 2) {
+            if ((e = findInBin(b2, h2, k2)) != null) {
+                out[off + 2] = e.value;
+                ++found;
+            } else
+                out[off + 2] = null;
+        }
+        if (m > 3) {
+            if ((e = findInBin(b3, h3, k3)) != null) {
+                out[off + 3] = e.value;
+                ++found;
+            } else
+                out[off + 3] = null;
+        }
+        return found;
+    }
+
+    /**
+     * 在以first为链头的桶中查找结点，与getNode()中读取链头之后的部分相同
+     */
+    final Node<K, V> findInBin(Node<K, V> first, int hash, Object key) {
+        Node<K, V> e;
+        K k;
+        if (first == null)
+            return null;
+        if (first.hash == hash && ((k = first.key) == key || (key != null && key.equals(k))))
+            return first;
+        if ((e = first.next) != null) {
+            if (first instanceof TreeNode)
+                return ((TreeNode<K, V>) first).getTreeNode(hash, key, keyComparator);
+            do {
+                if (e.hash == hash && ((k = e.key) == key || (key != null && key.equals(k))))
+                    return e;
+            } while ((e = e.next) != null);
+        }
+        return null;
     }
 
     /**
@@ -465,7 +798,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
      */
     public V put(K key, V value) {
         // 调用putVal()方法向HashMap中添加键值对
-        return putVal(hash(key), key, value, false, true);
+        return putVal(spread(key), key, value, false, true);
     }
 
     /**
@@ -482,6 +815,9 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         HashMap.Node<K, V>[] tab;// 临时变量，用来临时存放哈希桶数组
         HashMap.Node<K, V> p;
         int n, i;
+        // 渐进式扩容还没有结束，先把该键所在的桶搬迁到新表中
+        if (oldTable != null)
+            advanceTransfer(hash);
         // 检查链表数组table是否为空，table为null或者table数组的长度为0都表示为空
         if ((tab = table) == null || (n = tab.length) == 0)
             // 如果为空则初始化，并扩容，然后返回新链表数组的长度，将长度赋值给变量n
@@ -545,10 +881,14 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         }
         // 记录修改次数
         ++modCount;
+        // 计入所在的段；treeifyBin()只在容量小于MIN_TREEIFY_CAPACITY时扩容，此时没有分段统计，不会重复计数
+        addSegmentCount(i, 1);
         // 如果添加元素后，超过阈值
         if (++size > threshold)
             // 则对HashMap进行扩容
             resize();
+        // 在afterNodeInsertion()可能淘汰结点之前加入布隆过滤器
+        addToBloomFilter(hash);
         // 给LinkedHashMap使用
         afterNodeInsertion(evict);
         return null;
@@ -560,6 +900,12 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
      * @return 返回初始化或扩容后的哈希桶数组
      */
     final Node<K, V>[] resize() {
+        // 开启了统计时记录扩容耗时
+        Statistics st = statistics;
+        long start = (st != null) ? System.nanoTime() : 0L;
+        // 如果上一次渐进式扩容还没有结束，那么先搬迁完剩下的桶
+        if (oldTable != null)
+            finishTransfer();
         // 局部变量，存放扩容前（或未初始化）的哈希桶数组
         Node<K, V>[] oldTab = table;
         // 旧哈希桶数组的容量（即已有的元素个数）
@@ -618,85 +964,627 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             // 判断新阈值是否在MAXIMUM_CAPACITY范围内，设置新阈值
             newThr = (newCap < MAXIMUM_CAPACITY && ft < (float) MAXIMUM_CAPACITY ? (int) ft : Integer.MAX_VALUE);
         }
-        threshold = newThr;
-        // 创建一个新容量的哈希桶数组
-        @SuppressWarnings({"rawtypes", "unchecked"})
-        Node<K, V>[] newTab = (Node<K, V>[]) new Node[newCap];
-        // 将新数组赋给table
-        table = newTab;
-        // 将旧表中的元素都复制到新表
-        if (oldTab != null) {
-            // 循环遍历旧哈希桶数组
-            for (int j = 0; j < oldCap; ++j) {
-                // 局部变量，存放哈希桶数组中的每个结点
-                Node<K, V> e;
-                // 如果当前位置的结点不为null，则复制该结点，为null的话则继续遍历循环下一个结点
-                if ((e = oldTab[j]) != null) {
-                    // 将旧哈希桶当前位置的结点置为null
-                    oldTab[j] = null;
-                    // 如果该位置只有e一个结点，即没有后继结点（e.next==null）
-                    if (e.next == null)
-                        // 直接将e结点存储在新哈希桶中计算出来的位置中
-                        newTab[e.hash & (newCap - 1)] = e;
-                        // 表示不止一个结点，判断是否是红黑树结点
-                    else if (e instanceof TreeNode)
-                        // 调用split方法对这个桶中红黑树所有节点进行重新hash分布
-                        ((TreeNode<K, V>) e).split(this, newTab, j, oldCap);
-                    // 表示是链表结构
-                    else {
-                        // 将原先的链表分成两条，以e.hash&oldCap是否等于0为分割线
-                        Node<K, V> loHead = null, loTail = null;
-                        Node<K, V> hiHead = null, hiTail = null;
-                        Node<K, V> next;
-                        // 循环遍历
-                        do {
-                            // 该语句用于下面的循环，指向下一个结点
-                            next = e.next;
-                            // 以e.hash&oldCap是否等于0将原先的链表分割，然后分别连接成两条链表
-                            if ((e.hash & oldCap) == 0) {
-                                // 将e.hash&oldCap等于0的结点连接成一条新的链表
-                                // loTail等于null，表示当前是一个空链表
-                                if (loTail == null)
-                                    // 将e赋给当前链表的头指针
-                                    loHead = e;
-                                // loTail不等于null，表示当前不是一个空链表
-                                else
-                                    // 那么将loTail的next指针指向e
-                                    loTail.next = e;
-                                // 然后将新插入的e置为尾结点
-                                loTail = e;
-                            } else {
-                                // 将e.hash&oldCap不等于0的结点连接成一条新的链表
-                                // hiTail等于null，表示当前是一个空链表
-                                if (hiTail == null)
-                                    // 将e赋给当前链表的头指针
-                                    hiHead = e;
-                                // hiTail不等于null，表示当前不是一个空链表
-                                else
-                                    // 那么将loTail的next指针指向e
-                                    hiTail.next = e;
-                                // 然后将新插入的e置为尾结点
-                                hiTail = e;
-                            }
-                        } while ((e = next) != null);// e=e.next;
-                        // 当loTail不等于null时，将新哈希桶数组中j位置设置尾loHead链表
-                        if (loTail != null) {
-                            // 将尾结点的next指针指向null，表示链表结束
-                            loTail.next = null;
-                            newTab[j] = loHead;
-                        }
-                        // 当hiTail不等于null时，将新哈希桶数组中j+oldCap位置设置为hiHead链表
-                        if (hiTail != null) {
-                            // 将尾结点的next指针指向null，表示链表结束
-                            hiTail.next = null;
-                            newTab[j + oldCap] = hiHead;
-                        }
-                    }
-                }
-            }
+        threshold = newThr;
+        // 创建一个新容量的哈希桶数组
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        Node<K, V>[] newTab = (Node<K, V>[]) new Node[newCap];
+        // 将新数组赋给table
+        table = newTab;
+        // 段的数量随容量变化，由下面的搬迁重新统计
+        initSegmentCounts(newCap);
+        // 开启了渐进式扩容，并且旧表中已经有元素，那么不在这里一次性搬迁，而是让旧表和新表同时存在，
+        // 之后每次getNode()、putVal()、removeNode()等操作各搬迁若干个桶，参考advanceTransfer()方法
+        if (incrementalResize && oldTab != null && size > 0) {
+            oldTable = oldTab;
+            transferIndex = 0;
+            if (st != null)
+                st.recordResize(start);
+            return newTab;
+        }
+        // 将旧表中的元素都复制到新表
+        if (oldTab != null) {
+            // 循环遍历旧哈希桶数组
+            for (int j = 0; j < oldCap; ++j) {
+                // 如果当前位置的结点不为null，则复制该结点，为null的话则继续遍历循环下一个结点
+                if (oldTab[j] != null)
+                    transferBin(oldTab, newTab, j, oldCap);
+            }
+        }
+        if (st != null)
+            st.recordResize(start);
+        // 返回扩容后的新表
+        return newTab;
+    }
+
+    /**
+     * 将旧哈希桶数组中j位置的桶搬迁到新哈希桶数组中，由resize()和渐进式扩容共同使用
+     * 桶中的结点以e.hash & oldCap是否等于0分成两部分，分别放在新表的j和j + oldCap位置
+     *
+     * @param oldTab 旧哈希桶数组
+     * @param newTab 新哈希桶数组，容量是旧哈希桶数组的2倍
+     * @param j      要搬迁的桶在旧哈希桶数组中的下标
+     * @param oldCap 旧哈希桶数组的容量
+     */
+    final void transferBin(Node<K, V>[] oldTab, Node<K, V>[] newTab, int j, int oldCap) {
+        // 局部变量，存放桶中的第一个结点
+        Node<K, V> e = oldTab[j];
+        // 将旧哈希桶当前位置的结点置为null
+        oldTab[j] = null;
+        // 如果该位置只有e一个结点，即没有后继结点（e.next==null）
+        if (e.next == null) {
+            // 直接将e结点存储在新哈希桶中计算出来的位置中
+            int k;
+            newTab[k = e.hash & (newTab.length - 1)] = e;
+            addSegmentCount(k, 1);
+        }
+            // 表示不止一个结点，判断是否是红黑树结点
+        else if (e instanceof TreeNode)
+            // 调用split方法对这个桶中红黑树所有节点进行重新hash分布
+            ((TreeNode<K, V>) e).split(this, newTab, j, oldCap);
+        // 表示是链表结构
+        else {
+            // 将原先的链表分成两条，以e.hash&oldCap是否等于0为分割线
+            Node<K, V> loHead = null, loTail = null;
+            Node<K, V> hiHead = null, hiTail = null;
+            Node<K, V> next;
+            // 两条链表的结点个数，计入所在的段
+            int lc = 0, hc = 0;
+            // 循环遍历
+            do {
+                // 该语句用于下面的循环，指向下一个结点
+                next = e.next;
+                // 以e.hash&oldCap是否等于0将原先的链表分割，然后分别连接成两条链表
+                if ((e.hash & oldCap) == 0) {
+                    // 将e.hash&oldCap等于0的结点连接成一条新的链表
+                    // loTail等于null，表示当前是一个空链表
+                    if (loTail == null)
+                        // 将e赋给当前链表的头指针
+                        loHead = e;
+                    // loTail不等于null，表示当前不是一个空链表
+                    else
+                        // 那么将loTail的next指针指向e
+                        loTail.next = e;
+                    // 然后将新插入的e置为尾结点
+                    loTail = e;
+                    ++lc;
+                } else {
+                    // 将e.hash&oldCap不等于0的结点连接成一条新的链表
+                    // hiTail等于null，表示当前是一个空链表
+                    if (hiTail == null)
+                        // 将e赋给当前链表的头指针
+                        hiHead = e;
+                    // hiTail不等于null，表示当前不是一个空链表
+                    else
+                        // 那么将loTail的next指针指向e
+                        hiTail.next = e;
+                    // 然后将新插入的e置为尾结点
+                    hiTail = e;
+                    ++hc;
+                }
+            } while ((e = next) != null);// e=e.next;
+            addSegmentCount(j, lc);
+            addSegmentCount(j + oldCap, hc);
+            // 当loTail不等于null时，将新哈希桶数组中j位置设置尾loHead链表
+            if (loTail != null) {
+                // 将尾结点的next指针指向null，表示链表结束
+                loTail.next = null;
+                newTab[j] = loHead;
+            }
+            // 当hiTail不等于null时，将新哈希桶数组中j+oldCap位置设置为hiHead链表
+            if (hiTail != null) {
+                // 将尾结点的next指针指向null，表示链表结束
+                hiTail.next = null;
+                newTab[j + oldCap] = hiHead;
+            }
+        }
+    }
+
+    /**
+     * 按新哈希桶数组的容量重新分配segmentCounts，容量小于MIN_SEGMENTED_CAPACITY时不统计
+     * 段数为容量的1/16，最多2^MAX_SEGMENT_BITS段
+     *
+     * @param cap 新哈希桶数组的容量
+     */
+    final void initSegmentCounts(int cap) {
+        if (cap >= MIN_SEGMENTED_CAPACITY) {
+            int shift = Math.max(MIN_SEGMENT_SHIFT, Integer.numberOfTrailingZeros(cap) - MAX_SEGMENT_BITS);
+            segmentShift = shift;
+            segmentCounts = new int[cap >>> shift];
+        } else
+            segmentCounts = null;
+    }
+
+    /**
+     * 把下标为i的桶中增加（或减少）的结点个数计入所在的段
+     */
+    final void addSegmentCount(int i, int delta) {
+        int[] sc;
+        if ((sc = segmentCounts) != null)
+            sc[i >>> segmentShift] += delta;
+    }
+
+    /**
+     * 渐进式扩容时推进搬迁：先搬迁当前操作的键所在的桶，然后按顺序再搬迁最多TRANSFER_STRIDE个桶
+     * 由getNode()、putVal()、removeNode()等方法在访问哈希桶数组之前调用，调用前需要保证oldTable不为null
+     * 搬迁完成后，该键所在的桶一定已经在table中，因此调用者只需要访问table即可
+     *
+     * @param hash 当前操作的键的哈希值
+     */
+    final void advanceTransfer(int hash) {
+        Node<K, V>[] oldTab = oldTable, newTab = table;
+        int oldCap = oldTab.length;
+        // 当前键在旧表中所在的桶，已经搬迁过的桶为null
+        int j = hash & (oldCap - 1);
+        if (oldTab[j] != null)
+            transferBin(oldTab, newTab, j, oldCap);
+        // 按顺序搬迁接下来的若干个桶，空桶也计入个数，保证每次操作的工作量有上限
+        int i = transferIndex;
+        for (int bound = Math.min(i + TRANSFER_STRIDE, oldCap); i < bound; ++i) {
+            if (oldTab[i] != null)
+                transferBin(oldTab, newTab, i, oldCap);
+        }
+        // 所有的桶都搬迁完了，丢弃旧表
+        if ((transferIndex = i) >= oldCap) {
+            oldTable = null;
+            transferIndex = 0;
+        }
+    }
+
+    /**
+     * 一次性搬迁完渐进式扩容中剩下的所有桶，没有正在进行的渐进式扩容时什么也不做
+     * 1.遍历整个哈希表的操作（迭代器、forEach()、containsValue()等）以及下一次扩容之前调用。
+     * 2.开启了渐进式扩容的HashMap构建完成后、交给其他线程只读使用之前，必须调用该方法，
+     * 否则之后的get()仍然会搬迁桶，即修改哈希桶数组，多个线程同时读取也会丢失或者破坏桶，参考setIncrementalResize(boolean)。
+     */
+    public final void finishTransfer() {
+        Node<K, V>[] oldTab, newTab = table;
+        if ((oldTab = oldTable) != null) {
+            int oldCap = oldTab.length;
+            for (int i = transferIndex; i < oldCap; ++i) {
+                if (oldTab[i] != null)
+                    transferBin(oldTab, newTab, i, oldCap);
+            }
+            oldTable = null;
+            transferIndex = 0;
+        }
+    }
+
+    /**
+     * 设置是否开启渐进式扩容
+     * 1.默认情况下，put()导致键值对数量超过阈值时，resize()会在这一次调用中搬迁全部的键值对，耗时与键值对数量成正比。
+     * 2.开启后，扩容时只分配新的哈希桶数组，旧哈希桶数组与新哈希桶数组同时存在，
+     * 之后的每次get()、put()、remove()等操作除了搬迁自己要访问的桶之外，最多再搬迁TRANSFER_STRIDE个桶，
+     * 因此单次操作的耗时有上限，代价是搬迁期间每次操作多一次判断。
+     * 3.遍历整个哈希表的操作（迭代器、forEach()等）会先搬迁完剩下的桶。
+     * 4.关闭时会立即搬迁完正在进行的扩容。该设置不参与序列化。
+     * 5.注意：搬迁期间get()、containsKey()等查询方法也会搬迁桶，即修改table和oldTable，查询也是结构性修改。
+     * 默认情况下没有写线程时多个线程可以同时读取HashMap，开启后不再成立：即使只读使用，也必须在外部同步；
+     * 或者在交给其他线程之前调用finishTransfer()（或者关闭渐进式扩容）搬迁完剩下的桶，之后不再修改。
+     *
+     * @param enabled true表示开启渐进式扩容，false表示关闭
+     */
+    public void setIncrementalResize(boolean enabled) {
+        if (!enabled)
+            finishTransfer();
+        incrementalResize = enabled;
+    }
+
+    /**
+     * 设置是否开启随机化哈希，用来防御哈希洪水攻击
+     * 1.键来自外部输入时（例如请求参数），攻击者可以构造大量hashCode()相同或者扰动后低位相同的键，全部落在同一个桶中，
+     * 桶转为红黑树后查找仍是O(log n)，但是树化和树的维护开销很大。
+     * 2.开启后每个实例使用一个随机的种子计算哈希值（参考spread(Object)），攻击者无法预先知道哪些键会落在同一个桶中，
+     * 不同实例、不同进程的种子都不同。
+     * 3.代价是String键每次查找都要重新计算哈希值（不能使用String缓存的hashCode()），耗时与字符串长度成正比。
+     * 4.只能在HashMap为空时设置，已经开启时再次开启会更换种子。clone()和反序列化得到的副本使用相同的种子，
+     * 因此序列化数据中包含种子，能读到序列化数据的一方也能构造冲突的键。
+     * 5.LinkedHashMap的get()直接调用hash(Object)，因此不支持。
+     *
+     * @param enabled true表示开启随机化哈希，false表示关闭
+     * @throws IllegalStateException         HashMap不为空
+     * @throws UnsupportedOperationException 当前对象是LinkedHashMap
+     */
+    public void setRandomizedHashing(boolean enabled) {
+        if (this instanceof LinkedHashMap)
+            throw new UnsupportedOperationException("LinkedHashMap");
+        if (size != 0)
+            throw new IllegalStateException("Map is not empty");
+        int seed = 0;
+        while (enabled && seed == 0)
+            seed = java.util.concurrent.ThreadLocalRandom.current().nextInt();
+        hashSeed = seed;
+    }
+
+    /**
+     * 设置是否开启布隆过滤器，用于大部分查找都未命中的场景（例如去重）
+     * 1.开启后维护一个计数布隆过滤器（参考CountingBloomFilter），getNode()先查询它，
+     * 一定不存在的键不再访问哈希桶数组和结点，只需要访问过滤器中连续的64字节；可能存在的键照常查找。
+     * 2.增删结点时同步增减计数器，键值对数量超过过滤器的容量时重建，容量按2的n次方取整，与扩容一样每次翻倍，
+     * 重建需要遍历所有结点，均摊O(1)。
+     * 3.每个键值对额外占用8~16字节。误判率（不存在的键没有被排除的比例）在键值对数量接近容量时最高，约0.3%，
+     * 开启统计后可以通过Statistics.bloomFilterFalsePositiveRate()观察。
+     * 4.过滤器本身也要访问一次内存：键较少、桶大多为空时，未命中的查找原本也只访问一次哈希桶数组，收益不大；
+     * 桶中的结点较多或者equals()开销较大（例如String键）时收益明显。命中的查找多一次过滤器查询，通常多一次缓存未命中，
+     * 大部分查找都命中时不要开启。
+     * 5.可以在任何时候设置，开启时由当前所有的键构建。该设置不参与序列化，clone()得到的副本也会开启。
+     *
+     * @param enabled true表示开启布隆过滤器，false表示关闭
+     */
+    public void setBloomFilterEnabled(boolean enabled) {
+        if (!enabled)
+            bloomFilter = null;
+        else if (bloomFilter == null)
+            rebuildBloomFilter();
+    }
+
+    /**
+     * 设置红黑树桶中键的比较器，用于没有实现Comparable的键（例如组合键）
+     * 1.红黑树先按哈希值排序，哈希值相同的键用compareTo()区分；键没有实现Comparable时无法区分，
+     * find()要同时查找左右子树，putTreeVal()用tieBreakOrder()按System.identityHashCode()插入，hashCode()大量相同时退化成O(n)。
+     * 2.设置比较器后哈希值相同的键改用它区分，查找和插入都是O(log n)。比较器只需要区分哈希值相同的键，
+     * 例如比较组合键的各个字段，或者比较与hashCode()独立的第二个哈希值；返回0的键仍然同时查找左右子树，结果总是正确的。
+     * 3.比较器对同一个桶中的键必须是一致的全序（与TreeMap的要求相同），并且必须与equals()相容：a.equals(b)时compare(a, b)必须返回0。
+     * find()和putTreeVal()遇到非0的结果只查找一侧子树，如果相等的键比较结果不为0，get()会找不到已有的键，put()会插入重复的键。
+     * 反过来不要求，不相等的键可以返回0，例如只比较组合键的一部分字段。
+     * null键、抛出ClassCastException的比较按无法区分处理，因此get()等方法可以传入任何类型的键。
+     * 4.可以在任何时候设置，已有的红黑树桶按新的比较器重新构建，null表示恢复使用Comparable。
+     * 该设置不参与序列化，clone()得到的副本使用相同的比较器。
+     *
+     * @param comparator 键的比较器，null表示使用键的Comparable
+     */
+    public void setKeyComparator(Comparator<? super K> comparator) {
+        // 先用原来的比较器搬迁完剩下的桶，搬迁时拆分的红黑树还是按原来的比较器排序的
+        finishTransfer();
+        keyComparator = comparator;
+        Node<K, V>[] tab;
+        boolean rebuilt = false;
+        if ((tab = table) != null) {
+            for (Node<K, V> e : tab) {
+                // 红黑树桶的根结点总是链头，treeify()沿next重新插入所有结点
+                if (e instanceof TreeNode) {
+                    ((TreeNode<K, V>) e).treeify(tab, comparator);
+                    rebuilt = true;
+                }
+            }
+        }
+        // 重建会把新的根结点移到链头，改变了next的顺序，正在进行的迭代可能重复或者遗漏结点，按结构性修改处理
+        if (rebuilt)
+            ++modCount;
+    }
+
+    /**
+     * 新增结点后把它的hash值加入布隆过滤器，此时size已经计入了该结点
+     * 键值对数量超过过滤器的容量时直接重建，重建时会遍历到这个新结点
+     *
+     * @param hash 新结点的hash值
+     */
+    final void addToBloomFilter(int hash) {
+        CountingBloomFilter bf;
+        if ((bf = bloomFilter) != null) {
+            if (size > bf.capacity)
+                rebuildBloomFilter();
+            else
+                bf.add(hash);
+        }
+    }
+
+    /**
+     * 按当前的键值对数量重新构建布隆过滤器，渐进式扩容期间旧表中还没有搬迁的桶也要遍历
+     */
+    final void rebuildBloomFilter() {
+        CountingBloomFilter bf = new CountingBloomFilter(size);
+        Node<K, V>[] tab;
+        if ((tab = oldTable) != null) {
+            for (Node<K, V> e : tab) {
+                for (; e != null; e = e.next)
+                    bf.add(e.hash);
+            }
+        }
+        if ((tab = table) != null) {
+            for (Node<K, V> e : tab) {
+                for (; e != null; e = e.next)
+                    bf.add(e.hash);
+            }
+        }
+        bloomFilter = bf;
+    }
+
+    /* ---------------- 统计 -------------- */
+
+    /**
+     * 设置是否开启统计
+     * 1.开启后记录扩容次数和耗时、链表转红黑树和红黑树转链表的次数，并对getNode()采样记录探测长度（比较过的结点数），
+     * 用来观察键的hashCode()经过hash(Object)扰动后分布得是否均匀。
+     * 2.计数器都是普通字段，没有开启时getNode()只多一次null判断，开启后每次查找多一次计数，每64次查找多遍历一次桶，
+     * 开销足够小，可以在生产环境中长期开启。
+     * 3.已经开启时再次开启不会清零；关闭后丢弃所有计数。该设置不参与序列化，clone()得到的副本从0开始计数。
+     *
+     * @param enabled true表示开启统计，false表示关闭
+     */
+    public void setStatisticsEnabled(boolean enabled) {
+        if (!enabled)
+            statistics = null;
+        else if (statistics == null)
+            statistics = new Statistics();
+    }
+
+    /**
+     * 得到统计数据的快照，桶长度分布在调用时遍历哈希桶数组计算，耗时与容量成正比
+     * 渐进式扩容期间不会搬迁剩下的桶：旧表中还没有搬迁的桶按transferBin()的拆分方式，
+     * 计算搬迁之后低位和高位两个桶的长度，结果与搬迁完之后统计的相同，哈希桶数组不会被修改
+     *
+     * @return 返回统计数据，没有开启统计时返回null
+     */
+    public Statistics statistics() {
+        Statistics st;
+        if ((st = statistics) == null)
+            return null;
+        Statistics snapshot = new Statistics(st);
+        int[] histogram = new int[TREEIFY_THRESHOLD + 1];
+        Node<K, V>[] tab, oldTab = oldTable;
+        if ((tab = table) != null) {
+            int oldCap = (oldTab == null) ? 0 : oldTab.length;
+            for (int i = 0; i < tab.length; ++i) {
+                Node<K, V> e = tab[i], b;
+                if (oldTab != null && (b = oldTab[i & (oldCap - 1)]) != null) {
+                    // 还没有搬迁的桶，新表中的i位置一定为空；统计(hash & oldCap)与i在同一侧的结点
+                    boolean lo = i < oldCap;
+                    int n = 0;
+                    for (Node<K, V> p = b; p != null; p = p.next) {
+                        if (((p.hash & oldCap) == 0) == lo)
+                            ++n;
+                    }
+                    ++histogram[Math.min(n, TREEIFY_THRESHOLD)];
+                    // TreeNode.split()中超过UNTREEIFY_THRESHOLD个结点的一侧仍是红黑树
+                    if (b instanceof TreeNode && n > UNTREEIFY_THRESHOLD)
+                        ++snapshot.treeBins;
+                    continue;
+                }
+                int len = 0;
+                for (Node<K, V> p = e; p != null && len < TREEIFY_THRESHOLD; p = p.next)
+                    ++len;
+                ++histogram[len];
+                if (e instanceof TreeNode)
+                    ++snapshot.treeBins;
+            }
+            snapshot.capacity = tab.length;
+        }
+        snapshot.size = size;
+        snapshot.binHistogram = histogram;
+        return snapshot;
+    }
+
+    /**
+     * 采样时计算探测长度：查找指定键需要比较的结点数，空桶为0
+     *
+     * @param hash 键的哈希值
+     * @param key  键
+     * @return 返回探测长度
+     */
+    final int probeLength(int hash, Object key) {
+        Node<K, V>[] tab;
+        Node<K, V> e;
+        int n, probes = 0;
+        if ((tab = table) != null && (n = tab.length) > 0 && (e = tab[(n - 1) & hash]) != null) {
+            if (e instanceof TreeNode) {
+                probes = treeProbeLength(((TreeNode<K, V>) e).root(), hash, key, null, keyComparator);
+                if (probes < 0)
+                    probes = -probes;
+            } else {
+                K k;
+                do {
+                    ++probes;
+                    if (e.hash == hash && ((k = e.key) == key || (key != null && key.equals(k))))
+                        break;
+                } while ((e = e.next) != null);
+            }
+        }
+        return probes;
+    }
+
+    /**
+     * 计算在红黑树中查找需要比较的结点数，查找路径与TreeNode.find()完全相同
+     * 哈希值相同又无法通过compareTo()（或keyComparator）区分的键需要同时查找左右子树，这正是hashCode()冲突严重时的代价
+     *
+     * @param p   开始查找的结点
+     * @param h   键的哈希值
+     * @param k   键
+     * @param kc  键的Comparable类型，第一次调用时为null
+     * @param cmp HashMap的keyComparator
+     * @return 没有找到时返回比较过的结点数，找到时返回其相反数
+     */
+    static int treeProbeLength(TreeNode<?, ?> p, int h, Object k, Class<?> kc, Comparator<?> cmp) {
+        int probes = 0;
+        do {
+            int ph, dir;
+            Object pk;
+            TreeNode<?, ?> pl = p.left, pr = p.right;
+            ++probes;
+            if ((ph = p.hash) > h)
+                p = pl;
+            else if (ph < h)
+                p = pr;
+            else if ((pk = p.key) == k || (k != null && k.equals(pk)))
+                return -probes;
+            else if (pl == null)
+                p = pr;
+            else if (pr == null)
+                p = pl;
+            else if (cmp != null ? (dir = compareWith(cmp, k, pk)) != 0 :
+                    (kc != null || (kc = comparableClassFor(k)) != null)
+                            && (dir = compareComparables(kc, k, pk)) != 0)
+                p = (dir < 0) ? pl : pr;
+            else {
+                // 与find()相同，先在右子树中递归查找，找不到再继续查找左子树
+                int q = treeProbeLength(pr, h, k, kc, cmp);
+                if (q < 0)
+                    return q - probes;
+                probes += q;
+                p = pl;
+            }
+        } while (p != null);
+        return probes;
+    }
+
+    /**
+     * HashMap的统计数据
+     * 内部计数器和statistics()返回的快照都使用这个类，只有快照中的桶长度分布、红黑树桶数、容量和键值对数量有效
+     */
+    public static final class Statistics {
+        // getNode()的调用次数
+        long lookups;
+        // 采样的查找次数
+        long sampledLookups;
+        // 采样的查找中比较过的结点总数
+        long sampledProbes;
+        // 扩容次数（包括第一次初始化哈希桶数组）
+        long resizes;
+        // 扩容的总耗时，单位纳秒
+        long resizeNanos;
+        // 链表转红黑树的次数
+        long treeifications;
+        // 红黑树转链表的次数
+        long untreeifications;
+        // 被布隆过滤器排除的查找次数
+        long bloomFilterRejects;
+        // 布隆过滤器判断为可能存在、实际上不存在的查找次数
+        long bloomFilterFalsePositives;
+        // 以下字段只在快照中有效
+        int[] binHistogram;
+        int treeBins;
+        int capacity;
+        int size;
+
+        Statistics() {
+        }
+
+        Statistics(Statistics st) {
+            lookups = st.lookups;
+            sampledLookups = st.sampledLookups;
+            sampledProbes = st.sampledProbes;
+            resizes = st.resizes;
+            resizeNanos = st.resizeNanos;
+            treeifications = st.treeifications;
+            untreeifications = st.untreeifications;
+            bloomFilterRejects = st.bloomFilterRejects;
+            bloomFilterFalsePositives = st.bloomFilterFalsePositives;
+        }
+
+        final void recordProbe(int probes) {
+            ++sampledLookups;
+            sampledProbes += probes;
+        }
+
+        final void recordResize(long start) {
+            ++resizes;
+            resizeNanos += System.nanoTime() - start;
+        }
+
+        /**
+         * @return 返回getNode()的调用次数
+         */
+        public long lookupCount() {
+            return lookups;
+        }
+
+        /**
+         * @return 返回采样得到的平均探测长度，没有采样时返回0
+         */
+        public double averageProbeLength() {
+            return (sampledLookups == 0L) ? 0.0 : (double) sampledProbes / sampledLookups;
+        }
+
+        /**
+         * @return 返回扩容次数，包括第一次分配哈希桶数组
+         */
+        public long resizeCount() {
+            return resizes;
+        }
+
+        /**
+         * @return 返回resize()的总耗时，单位纳秒；开启渐进式扩容时不包括之后分摊搬迁的耗时
+         */
+        public long resizeNanos() {
+            return resizeNanos;
+        }
+
+        /**
+         * @return 返回链表转红黑树的次数
+         */
+        public long treeifyCount() {
+            return treeifications;
+        }
+
+        /**
+         * @return 返回红黑树转链表的次数
+         */
+        public long untreeifyCount() {
+            return untreeifications;
+        }
+
+        /**
+         * @return 返回被布隆过滤器排除、没有访问哈希桶数组的查找次数
+         */
+        public long bloomFilterRejectCount() {
+            return bloomFilterRejects;
+        }
+
+        /**
+         * @return 返回布隆过滤器判断为可能存在、实际上不存在的查找次数
+         */
+        public long bloomFilterFalsePositiveCount() {
+            return bloomFilterFalsePositives;
+        }
+
+        /**
+         * 布隆过滤器的误判率：不存在的键中没有被过滤器排除的比例
+         *
+         * @return 返回误判率，没有开启布隆过滤器或者没有未命中的查找时返回0
+         */
+        public double bloomFilterFalsePositiveRate() {
+            long misses = bloomFilterRejects + bloomFilterFalsePositives;
+            return (misses == 0L) ? 0.0 : (double) bloomFilterFalsePositives / misses;
+        }
+
+        /**
+         * 桶长度分布：下标i表示长度为i的桶的个数，最后一个元素表示长度大于等于TREEIFY_THRESHOLD的桶的个数
+         *
+         * @return 返回桶长度分布的拷贝
+         */
+        public int[] binHistogram() {
+            return binHistogram.clone();
+        }
+
+        /**
+         * @return 返回当前是红黑树结构的桶的个数
+         */
+        public int treeBinCount() {
+            return treeBins;
+        }
+
+        /**
+         * @return 返回哈希桶数组的容量
+         */
+        public int capacity() {
+            return capacity;
+        }
+
+        /**
+         * @return 返回键值对数量
+         */
+        public int size() {
+            return size;
+        }
+
+        public String toString() {
+            return "HashMap.Statistics{size=" + size + ", capacity=" + capacity +
+                    ", binHistogram=" + Arrays.toString(binHistogram) + ", treeBins=" + treeBins +
+                    ", treeifications=" + treeifications + ", untreeifications=" + untreeifications +
+                    ", resizes=" + resizes + ", resizeNanos=" + resizeNanos +
+                    ", lookups=" + lookups + ", averageProbeLength=" + averageProbeLength() +
+                    ", bloomFilterRejects=" + bloomFilterRejects +
+                    ", bloomFilterFalsePositiveRate=" + bloomFilterFalsePositiveRate() + "}";
         }
-        // 返回扩容后的新表
-        return newTab;
     }
 
     /**
@@ -742,7 +1630,9 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             // tab[index] = hd 指的是将完成的双链表放到数组指定索引处，也就是原来单链表的位置，单链表释放资源
             if ((tab[index] = hd) != null)
                 // 调用treeify()方法将双链表转换成红黑树
-                hd.treeify(tab);
+                hd.treeify(tab, keyComparator);
+            if (statistics != null)
+                ++statistics.treeifications;
         }
     }
 
@@ -756,6 +1646,139 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         putMapEntries(m, true);
     }
 
+    /**
+     * 批量添加，keys[i]和values[i]组成一个键值对，结果与按顺序逐个调用put()相同（重复的键保留最后一个值）
+     * 1.按最终的键值对数量一次性确定容量，添加过程中不会扩容，也不再逐个检查阈值。
+     * 2.先计算全部哈希值，再按桶下标的高位把键值对分成最多2^BULK_PARTITION_BITS个区间（计数排序，同一区间内保持原有顺序），
+     * 按区间依次放入哈希桶数组。同一区间的桶在内存中相邻，大表不会每添加一个键就缓存未命中一次；
+     * 同一个桶的结点也是相邻分配的，之后遍历链表更连续。容量小于BULK_SORT_MIN_CAPACITY时哈希桶数组可以留在缓存中，不排序。
+     * 3.添加过程中链表不转换成红黑树，全部添加完之后再转换长度达到TREEIFY_THRESHOLD的链表；
+     * 只有长度达到BULK_TREEIFY_LIMIT时才立即转换，避免hashCode()相同的大量键让查找重复键退化成O(n^2)。
+     * 4.临时需要两个长度为keys.length的int数组。
+     * 5.子类（LinkedHashMap、BoundedCache等）依赖afterNodeInsertion()等回调，哈希桶数组小于MIN_TREEIFY_CAPACITY时
+     * 转换红黑树会扩容，这两种情况只一次性确定容量，然后逐个调用putVal()。
+     *
+     * @param keys   键
+     * @param values 值，长度必须与keys相同
+     * @throws IllegalArgumentException keys.length与values.length不同
+     */
+    public void putAll(K[] keys, V[] values) {
+        if (keys.length != values.length)
+            throw new IllegalArgumentException("keys.length != values.length");
+        putAllBulk(keys, values);
+    }
+
+    /**
+     * 批量添加，按keys和values的迭代顺序一一对应组成键值对，参考putAll(Object[], Object[])
+     * 两个集合先通过toArray()复制成数组，例如由Stream.collect(Collectors.toList())得到的键和值。
+     *
+     * @param keys   键
+     * @param values 值，大小必须与keys相同
+     * @throws IllegalArgumentException keys.size()与values.size()不同
+     */
+    public void putAll(Collection<? extends K> keys, Collection<? extends V> values) {
+        Object[] ks = keys.toArray(), vs = values.toArray();
+        if (ks.length != vs.length)
+            throw new IllegalArgumentException("keys.size() != values.size()");
+        putAllBulk(ks, vs);
+    }
+
+    /**
+     * putAll(Object[], Object[])的实现，keys和values的长度相同
+     */
+    @SuppressWarnings("unchecked")
+    final void putAllBulk(Object[] keys, Object[] values) {
+        int len = keys.length;
+        if (len == 0)
+            return;
+        ensureCapacityFor(size + (long) len);
+        // 渐进式扩容时ensureCapacityFor()可能刚开始一次扩容，批量添加之前全部搬迁完
+        finishTransfer();
+        Node<K, V>[] tab;
+        if ((tab = table) == null || tab.length == 0)
+            tab = resize();
+        int n = tab.length;
+        if (getClass() != HashMap.class || n < MIN_TREEIFY_CAPACITY) {
+            for (int j = 0; j < len; j++) {
+                K key = (K) keys[j];
+                putVal(spread(key), key, (V) values[j], false, true);
+            }
+            return;
+        }
+        int mask = n - 1;
+        int[] hashes = new int[len], order = new int[len];
+        if (n < BULK_SORT_MIN_CAPACITY) {
+            // 哈希桶数组可以留在缓存中，排序得不偿失，按原有顺序添加
+            for (int j = 0; j < len; j++) {
+                hashes[j] = spread(keys[j]);
+                order[j] = j;
+            }
+        } else {
+            // 计数排序：starts[p + 1]先统计区间p的键值对个数，求前缀和后starts[p]是区间p的起始位置
+            int bits = Math.min(Integer.numberOfTrailingZeros(n), BULK_PARTITION_BITS);
+            int shift = Integer.numberOfTrailingZeros(n) - bits;
+            int[] starts = new int[(1 << bits) + 1];
+            for (int j = 0; j < len; j++) {
+                int h = hashes[j] = spread(keys[j]);
+                ++starts[((h & mask) >>> shift) + 1];
+            }
+            for (int p = 1; p < starts.length; p++)
+                starts[p] += starts[p - 1];
+            for (int j = 0; j < len; j++)
+                order[starts[(hashes[j] & mask) >>> shift]++] = j;
+        }
+        CountingBloomFilter bf = bloomFilter;
+        // 长度达到TREEIFY_THRESHOLD的桶的下标依次记录在order的开头，order[k]之前的位置都已经读取过，可以覆盖
+        int oldSize = size, longBins = 0;
+        for (int k = 0; k < len; k++) {
+            int j = order[k], h = hashes[j], i = h & mask;
+            K key = (K) keys[j];
+            V value = (V) values[j];
+            Node<K, V> p, e = null;
+            K pk;
+            if ((p = tab[i]) == null)
+                tab[i] = newNode(h, key, value, null);
+            else if (p instanceof TreeNode)
+                e = ((TreeNode<K, V>) p).putTreeVal(this, tab, h, key, value);
+            else {
+                for (int binCount = 1; ; ++binCount) {
+                    if (p.hash == h && ((pk = p.key) == key || (key != null && key.equals(pk)))) {
+                        e = p;
+                        break;
+                    }
+                    if (p.next == null) {
+                        // 添加后链表的长度是binCount + 1
+                        p.next = newNode(h, key, value, null);
+                        if (binCount + 1 == TREEIFY_THRESHOLD)
+                            order[longBins++] = i;
+                        else if (binCount + 1 >= BULK_TREEIFY_LIMIT)
+                            treeifyBin(tab, h);
+                        break;
+                    }
+                    p = p.next;
+                }
+            }
+            if (e != null) {
+                e.value = value;
+                continue;
+            }
+            ++size;
+            addSegmentCount(i, 1);
+            if (bf != null)
+                bf.add(h);
+        }
+        for (int b = 0; b < longBins; b++) {
+            int i = order[b];
+            // 已经因为达到BULK_TREEIFY_LIMIT转换过的桶不再转换
+            if (!(tab[i] instanceof TreeNode))
+                treeifyBin(tab, i);
+        }
+        if (size != oldSize)
+            ++modCount;
+        if (bf != null && size > bf.capacity)
+            rebuildBloomFilter();
+    }
+
     /**
      * 移除HashMap中指定key的键值对
      *
@@ -766,7 +1789,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         // 局部变量，存放被删除的结点
         Node<K, V> e;
         // 调用removeNode()方法移除HashMap中的元素
-        return (e = removeNode(hash(key), key, null, false, true)) == null ? null : e.value;
+        return (e = removeNode(spread(key), key, null, false, true)) == null ? null : e.value;
         /*
             等价于（复杂化代码）
             int hash = hash(key);
@@ -797,6 +1820,9 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         Node<K, V> p;
         // 局部变量，n表示哈希桶数组table的长度，index表示根据哈希值计算出来的数组下标
         int n, index;
+        // 渐进式扩容还没有结束，先把该键所在的桶搬迁到新表中
+        if (oldTable != null)
+            advanceTransfer(hash);
         /*
             (tab = table) != null   判断哈希桶数组table是否初始化，如果为null，则表示table没有初始化，则返回null
             (n = tab.length) > 0    判断哈希桶数组table中是否有足够的元素，大于0则表示table有键值对
@@ -819,7 +1845,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
                 // 如果头（根）结点p是TreeNode类型，那么代表是红黑树结构
                 if (p instanceof TreeNode)
                     // 那么调用getTreeNode()方法获取要被删除的结点
-                    node = ((TreeNode<K, V>) p).getTreeNode(hash, key);
+                    node = ((TreeNode<K, V>) p).getTreeNode(hash, key, keyComparator);
                     // 那么就表示头（根）结点p是链表结构
                 else {
                     // 遍历循环整个链表
@@ -855,6 +1881,9 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
                 ++modCount;
                 // 同时删除成功后，HashMap中键值对的个数减少一个
                 --size;
+                addSegmentCount(index, -1);
+                if (bloomFilter != null)
+                    bloomFilter.remove(node.hash);
                 // 提供给linkedHashMap使用
                 afterNodeRemoval(node);
                 // 返回被删除的结点
@@ -873,6 +1902,9 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         Node<K, V>[] tab;
         // 修改次数加1
         modCount++;
+        // 丢弃渐进式扩容中还没有搬迁的旧表
+        oldTable = null;
+        transferIndex = 0;
         // table不为null并且size不为0，即HashMap中有键值对才需要进行清空，否则没有必要
         if ((tab = table) != null && size > 0) {
             // 将size重置为0
@@ -880,6 +1912,10 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             // 同时将哈希桶数组中的所有元素置为null
             for (int i = 0; i < tab.length; ++i)
                 tab[i] = null;
+            if (segmentCounts != null)
+                Arrays.fill(segmentCounts, 0);
+            if (bloomFilter != null)
+                bloomFilter.clear();
         }
     }
 
@@ -894,6 +1930,8 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         Node<K, V>[] tab;
         // 局部变量，保存找到的值
         V v;
+        // 遍历之前先搬迁完渐进式扩容中剩下的桶
+        finishTransfer();
         // 如果哈希桶数组不为null并且size大于0，即HashMap存在键值对，才有意义
         if ((tab = table) != null && size > 0) {
             // 循环遍历哈希桶数组table，因为每个桶都是链表或者红黑树
@@ -955,7 +1993,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         }
 
         public final boolean remove(Object key) {
-            return removeNode(hash(key), key, null, false, true) != null;
+            return removeNode(spread(key), key, null, false, true) != null;
         }
 
         public final Spliterator<K> spliterator() {
@@ -966,6 +2004,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             Node<K, V>[] tab;
             if (action == null)
                 throw new NullPointerException();
+            finishTransfer();
             if (size > 0 && (tab = table) != null) {
                 int mc = modCount;
                 for (int i = 0; i < tab.length; ++i) {
@@ -1023,6 +2062,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             Node<K, V>[] tab;
             if (action == null)
                 throw new NullPointerException();
+            finishTransfer();
             if (size > 0 && (tab = table) != null) {
                 int mc = modCount;
                 for (int i = 0; i < tab.length; ++i) {
@@ -1075,7 +2115,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
                 return false;
             Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
             Object key = e.getKey();
-            Node<K, V> candidate = getNode(hash(key), key);
+            Node<K, V> candidate = getNode(spread(key), key);
             return candidate != null && candidate.equals(e);
         }
 
@@ -1084,7 +2124,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
                 Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
                 Object key = e.getKey();
                 Object value = e.getValue();
-                return removeNode(hash(key), key, value, true, true) != null;
+                return removeNode(spread(key), key, value, true, true) != null;
             }
             return false;
         }
@@ -1097,6 +2137,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             Node<K, V>[] tab;
             if (action == null)
                 throw new NullPointerException();
+            finishTransfer();
             if (size > 0 && (tab = table) != null) {
                 int mc = modCount;
                 for (int i = 0; i < tab.length; ++i) {
@@ -1121,7 +2162,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
     @Override
     public V getOrDefault(Object key, V defaultValue) {
         Node<K, V> e;
-        return (e = getNode(hash(key), key)) == null ? defaultValue : e.value;
+        return (e = getNode(spread(key), key)) == null ? defaultValue : e.value;
         // 与get()方法的return语句比较
         // return (e = getNode(hash(key), key)) == null ? null : e.value;
     }
@@ -1137,7 +2178,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
     @Override
     public V putIfAbsent(K key, V value) {
         // onlyIfAbsent表示是否替换键相同的情况已有的value值，true表示不替换，false表示替换
-        return putVal(hash(key), key, value, true, true);
+        return putVal(spread(key), key, value, true, true);
     }
 
     /**
@@ -1149,7 +2190,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
      */
     @Override
     public boolean remove(Object key, Object value) {
-        return removeNode(hash(key), key, value, true, true) != null;
+        return removeNode(spread(key), key, value, true, true) != null;
     }
 
     /**
@@ -1167,7 +2208,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         // 保存结点e的value值
         V v;
         // 检测是否查找到指定key的value，并且与输入的oldValue相等
-        if ((e = getNode(hash(key), key)) != null && ((v = e.value) == oldValue || (v != null && v.equals(oldValue)))) {
+        if ((e = getNode(spread(key), key)) != null && ((v = e.value) == oldValue || (v != null && v.equals(oldValue)))) {
             // 将旧值替换为新值newValue
             e.value = newValue;
             // 给LinkedHashMap使用
@@ -1192,7 +2233,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         // 局部变量，用来保存通过getNode()方法查找到的结点
         Node<K, V> e;
         // 如果该结点存在则进行替换
-        if ((e = getNode(hash(key), key)) != null) {
+        if ((e = getNode(spread(key), key)) != null) {
             // 旧值
             V oldValue = e.value;
             // 用新值替换旧值
@@ -1211,7 +2252,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
                              Function<? super K, ? extends V> mappingFunction) {
         if (mappingFunction == null)
             throw new NullPointerException();
-        int hash = hash(key);
+        int hash = spread(key);
         Node<K, V>[] tab;
         Node<K, V> first;
         int n, i;
@@ -1221,9 +2262,11 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         if (size > threshold || (tab = table) == null ||
                 (n = tab.length) == 0)
             n = (tab = resize()).length;
+        if (oldTable != null)
+            advanceTransfer(hash);
         if ((first = tab[i = (n - 1) & hash]) != null) {
             if (first instanceof TreeNode)
-                old = (t = (TreeNode<K, V>) first).getTreeNode(hash, key);
+                old = (t = (TreeNode<K, V>) first).getTreeNode(hash, key, keyComparator);
             else {
                 Node<K, V> e = first;
                 K k;
@@ -1242,7 +2285,11 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
                 return oldValue;
             }
         }
+        // 映射函数不能修改本HashMap，否则上面得到的tab、first、t都可能已经失效（与JDK 9相同）
+        int mc = modCount;
         V v = mappingFunction.apply(key);
+        if (mc != modCount)
+            throw new ConcurrentModificationException();
         if (v == null) {
             return null;
         } else if (old != null) {
@@ -1258,6 +2305,8 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         }
         ++modCount;
         ++size;
+        addSegmentCount(i, 1);
+        addToBloomFilter(hash);
         afterNodeInsertion(true);
         return v;
     }
@@ -1268,10 +2317,13 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             throw new NullPointerException();
         Node<K, V> e;
         V oldValue;
-        int hash = hash(key);
+        int hash = spread(key);
         if ((e = getNode(hash, key)) != null &&
                 (oldValue = e.value) != null) {
+            int mc = modCount;
             V v = remappingFunction.apply(key, oldValue);
+            if (mc != modCount)
+                throw new ConcurrentModificationException();
             if (v != null) {
                 e.value = v;
                 afterNodeAccess(e);
@@ -1287,7 +2339,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
                      BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
         if (remappingFunction == null)
             throw new NullPointerException();
-        int hash = hash(key);
+        int hash = spread(key);
         Node<K, V>[] tab;
         Node<K, V> first;
         int n, i;
@@ -1297,9 +2349,11 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         if (size > threshold || (tab = table) == null ||
                 (n = tab.length) == 0)
             n = (tab = resize()).length;
+        if (oldTable != null)
+            advanceTransfer(hash);
         if ((first = tab[i = (n - 1) & hash]) != null) {
             if (first instanceof TreeNode)
-                old = (t = (TreeNode<K, V>) first).getTreeNode(hash, key);
+                old = (t = (TreeNode<K, V>) first).getTreeNode(hash, key, keyComparator);
             else {
                 Node<K, V> e = first;
                 K k;
@@ -1314,7 +2368,10 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             }
         }
         V oldValue = (old == null) ? null : old.value;
+        int mc = modCount;
         V v = remappingFunction.apply(key, oldValue);
+        if (mc != modCount)
+            throw new ConcurrentModificationException();
         if (old != null) {
             if (v != null) {
                 old.value = v;
@@ -1331,6 +2388,8 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             }
             ++modCount;
             ++size;
+            addSegmentCount(i, 1);
+            addToBloomFilter(hash);
             afterNodeInsertion(true);
         }
         return v;
@@ -1343,7 +2402,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             throw new NullPointerException();
         if (remappingFunction == null)
             throw new NullPointerException();
-        int hash = hash(key);
+        int hash = spread(key);
         Node<K, V>[] tab;
         Node<K, V> first;
         int n, i;
@@ -1353,9 +2412,11 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         if (size > threshold || (tab = table) == null ||
                 (n = tab.length) == 0)
             n = (tab = resize()).length;
+        if (oldTable != null)
+            advanceTransfer(hash);
         if ((first = tab[i = (n - 1) & hash]) != null) {
             if (first instanceof TreeNode)
-                old = (t = (TreeNode<K, V>) first).getTreeNode(hash, key);
+                old = (t = (TreeNode<K, V>) first).getTreeNode(hash, key, keyComparator);
             else {
                 Node<K, V> e = first;
                 K k;
@@ -1371,9 +2432,12 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         }
         if (old != null) {
             V v;
-            if (old.value != null)
+            if (old.value != null) {
+                int mc = modCount;
                 v = remappingFunction.apply(old.value, value);
-            else
+                if (mc != modCount)
+                    throw new ConcurrentModificationException();
+            } else
                 v = value;
             if (v != null) {
                 old.value = v;
@@ -1392,6 +2456,8 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             }
             ++modCount;
             ++size;
+            addSegmentCount(i, 1);
+            addToBloomFilter(hash);
             afterNodeInsertion(true);
         }
         return value;
@@ -1402,6 +2468,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         Node<K, V>[] tab;
         if (action == null)
             throw new NullPointerException();
+        finishTransfer();
         if (size > 0 && (tab = table) != null) {
             int mc = modCount;
             for (int i = 0; i < tab.length; ++i) {
@@ -1418,6 +2485,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         Node<K, V>[] tab;
         if (function == null)
             throw new NullPointerException();
+        finishTransfer();
         if (size > 0 && (tab = table) != null) {
             int mc = modCount;
             for (int i = 0; i < tab.length; ++i) {
@@ -1430,6 +2498,309 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         }
     }
 
+    /**
+     * 冻结，返回包含当前所有键值对的不可修改的FrozenHashMap，本HashMap不受影响，之后的修改不会反映到返回的Map中
+     * 适用于启动时构建一次、之后只读的Map：FrozenHashMap使用完美哈希，查找时没有链表和红黑树，也没有modCount。
+     *
+     * @return 返回不可修改的Map
+     * @see FrozenHashMap
+     */
+    public FrozenHashMap<K, V> freeze() {
+        return new FrozenHashMap<>(this);
+    }
+
+    /* ---------------- Parallel bulk operations -------------- */
+
+    /*
+     * 并行批量操作，参数和语义与ConcurrentHashMap的forEach(long, BiConsumer)、reduce、search相同
+     * 1.parallelismThreshold是并行执行所需的最少键值对数量：键值对数量小于它时在当前线程顺序执行，
+     * Long.MAX_VALUE表示总是顺序执行，1表示按ForkJoinPool.commonPool()的并行度尽可能拆分。
+     * 2.按哈希桶数组的下标范围二分拆分成BulkTask，拆分出的任务提交到ForkJoinPool，当前线程也参与执行。
+     * 3.执行期间其他线程不能结构性修改HashMap，执行结束后检查modCount，发现修改时抛出ConcurrentModificationException。
+     * 4.回调函数在多个线程中同时执行，需要是线程安全的，并且不应该依赖遍历顺序。
+     */
+
+    /**
+     * 计算一个批量操作最多拆分出的任务数，参考ConcurrentHashMap.batchFor()
+     *
+     * @param b 并行阈值
+     * @return 返回0表示顺序执行
+     */
+    final int batchFor(long b) {
+        long n;
+        if (b == Long.MAX_VALUE || (n = size) <= 1L || n < b)
+            return 0;
+        int p = ForkJoinPool.getCommonPoolParallelism() << 2; // slack of 4
+        return (b <= 0L || (n /= b) >= p) ? p : (int) n;
+    }
+
+    /**
+     * 并行地对每个键值对执行action
+     *
+     * @param parallelismThreshold 并行执行所需的最少键值对数量
+     * @param action               对每个键值对执行的操作
+     * @throws NullPointerException action为null
+     */
+    public void forEach(long parallelismThreshold, BiConsumer<? super K, ? super V> action) {
+        if (action == null)
+            throw new NullPointerException();
+        Node<K, V>[] tab;
+        finishTransfer();
+        if (size > 0 && (tab = table) != null) {
+            int mc = modCount;
+            new ForEachTask<>(tab, 0, tab.length, batchFor(parallelismThreshold), action).invoke();
+            if (modCount != mc)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * 并行地把每个键值对的值替换为function的返回值
+     * 只修改结点的value，不是结构性修改，ForkJoinTask.invoke()返回时所有的写入对当前线程可见
+     *
+     * @param parallelismThreshold 并行执行所需的最少键值对数量
+     * @param function             根据键和旧值计算新值的函数
+     * @throws NullPointerException function为null
+     */
+    public void replaceAll(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends V> function) {
+        if (function == null)
+            throw new NullPointerException();
+        Node<K, V>[] tab;
+        finishTransfer();
+        if (size > 0 && (tab = table) != null) {
+            int mc = modCount;
+            new ReplaceAllTask<>(tab, 0, tab.length, batchFor(parallelismThreshold), function).invoke();
+            if (modCount != mc)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * 并行地把每个键值对转换后归约
+     *
+     * @param parallelismThreshold 并行执行所需的最少键值对数量
+     * @param transformer          把键值对转换成要归约的元素，返回null时忽略该键值对
+     * @param reducer              合并两个元素，需要满足结合律
+     * @param <U>                  归约结果的类型
+     * @return 返回归约结果，没有任何元素时返回null
+     * @throws NullPointerException transformer或者reducer为null
+     */
+    public <U> U reduce(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends U> transformer,
+                        BiFunction<? super U, ? super U, ? extends U> reducer) {
+        if (transformer == null || reducer == null)
+            throw new NullPointerException();
+        Node<K, V>[] tab;
+        finishTransfer();
+        U r = null;
+        if (size > 0 && (tab = table) != null) {
+            int mc = modCount;
+            r = new ReduceTask<>(tab, 0, tab.length, batchFor(parallelismThreshold), transformer, reducer).invoke();
+            if (modCount != mc)
+                throw new ConcurrentModificationException();
+        }
+        return r;
+    }
+
+    /**
+     * 并行地查找，返回searchFunction对某个键值对的第一个非null结果
+     * 找到结果后其他任务不再继续遍历；有多个键值对满足条件时返回其中任意一个的结果
+     *
+     * @param parallelismThreshold 并行执行所需的最少键值对数量
+     * @param searchFunction       没有找到时返回null
+     * @param <U>                  查找结果的类型
+     * @return 返回查找结果，没有找到时返回null
+     * @throws NullPointerException searchFunction为null
+     */
+    public <U> U search(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+        if (searchFunction == null)
+            throw new NullPointerException();
+        Node<K, V>[] tab;
+        finishTransfer();
+        U r = null;
+        if (size > 0 && (tab = table) != null) {
+            int mc = modCount;
+            AtomicReference<U> result = new AtomicReference<>();
+            new SearchTask<>(tab, 0, tab.length, batchFor(parallelismThreshold), searchFunction, result).invoke();
+            r = result.get();
+            if (modCount != mc)
+                throw new ConcurrentModificationException();
+        }
+        return r;
+    }
+
+    /**
+     * 并行批量操作的基类，负责哈希桶数组[lo, hi)的部分
+     * batch是还可以继续拆分出的任务数，每次二分时减半，为0时在当前任务中遍历整个范围
+     * 红黑树桶中的TreeNode仍然按next串成链表，所以所有的桶都可以沿着next遍历
+     */
+    abstract static class BulkTask<K, V, R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = -2538270315582216143L;
+
+        final Node<K, V>[] tab;
+        final int lo, hi;
+        final int batch;
+
+        BulkTask(Node<K, V>[] tab, int lo, int hi, int batch) {
+            this.tab = tab;
+            this.lo = lo;
+            this.hi = hi;
+            this.batch = batch;
+        }
+
+        protected final R compute() {
+            if (batch > 0 && hi - lo > 1) {
+                int mid = (lo + hi) >>> 1, b = batch >>> 1;
+                BulkTask<K, V, R> right = subtask(mid, hi, b);
+                right.fork();
+                R l = subtask(lo, mid, b).compute();
+                return combine(l, right.join());
+            }
+            return traverse();
+        }
+
+        /**
+         * 创建负责[lo, hi)的子任务
+         */
+        abstract BulkTask<K, V, R> subtask(int lo, int hi, int batch);
+
+        /**
+         * 在当前线程中遍历[lo, hi)中所有的桶
+         */
+        abstract R traverse();
+
+        /**
+         * 合并两个子任务的结果
+         */
+        R combine(R l, R r) {
+            return null;
+        }
+    }
+
+    static final class ForEachTask<K, V> extends BulkTask<K, V, Void> {
+        private static final long serialVersionUID = 3581536410453108658L;
+
+        final BiConsumer<? super K, ? super V> action;
+
+        ForEachTask(Node<K, V>[] tab, int lo, int hi, int batch, BiConsumer<? super K, ? super V> action) {
+            super(tab, lo, hi, batch);
+            this.action = action;
+        }
+
+        BulkTask<K, V, Void> subtask(int lo, int hi, int batch) {
+            return new ForEachTask<>(tab, lo, hi, batch, action);
+        }
+
+        Void traverse() {
+            Node<K, V>[] t = tab;
+            BiConsumer<? super K, ? super V> a = action;
+            for (int i = lo; i < hi; ++i) {
+                for (Node<K, V> e = t[i]; e != null; e = e.next)
+                    a.accept(e.key, e.value);
+            }
+            return null;
+        }
+    }
+
+    static final class ReplaceAllTask<K, V> extends BulkTask<K, V, Void> {
+        private static final long serialVersionUID = -6095366532476453658L;
+
+        final BiFunction<? super K, ? super V, ? extends V> function;
+
+        ReplaceAllTask(Node<K, V>[] tab, int lo, int hi, int batch,
+                       BiFunction<? super K, ? super V, ? extends V> function) {
+            super(tab, lo, hi, batch);
+            this.function = function;
+        }
+
+        BulkTask<K, V, Void> subtask(int lo, int hi, int batch) {
+            return new ReplaceAllTask<>(tab, lo, hi, batch, function);
+        }
+
+        Void traverse() {
+            Node<K, V>[] t = tab;
+            BiFunction<? super K, ? super V, ? extends V> f = function;
+            for (int i = lo; i < hi; ++i) {
+                for (Node<K, V> e = t[i]; e != null; e = e.next)
+                    e.value = f.apply(e.key, e.value);
+            }
+            return null;
+        }
+    }
+
+    static final class ReduceTask<K, V, U> extends BulkTask<K, V, U> {
+        private static final long serialVersionUID = 8614406437424226442L;
+
+        final BiFunction<? super K, ? super V, ? extends U> transformer;
+        final BiFunction<? super U, ? super U, ? extends U> reducer;
+
+        ReduceTask(Node<K, V>[] tab, int lo, int hi, int batch,
+                   BiFunction<? super K, ? super V, ? extends U> transformer,
+                   BiFunction<? super U, ? super U, ? extends U> reducer) {
+            super(tab, lo, hi, batch);
+            this.transformer = transformer;
+            this.reducer = reducer;
+        }
+
+        BulkTask<K, V, U> subtask(int lo, int hi, int batch) {
+            return new ReduceTask<>(tab, lo, hi, batch, transformer, reducer);
+        }
+
+        U traverse() {
+            Node<K, V>[] t = tab;
+            U r = null;
+            for (int i = lo; i < hi; ++i) {
+                for (Node<K, V> e = t[i]; e != null; e = e.next) {
+                    U u;
+                    if ((u = transformer.apply(e.key, e.value)) != null)
+                        r = (r == null) ? u : reducer.apply(r, u);
+                }
+            }
+            return r;
+        }
+
+        U combine(U l, U r) {
+            return (l == null) ? r : (r == null) ? l : reducer.apply(l, r);
+        }
+    }
+
+    static final class SearchTask<K, V, U> extends BulkTask<K, V, Void> {
+        private static final long serialVersionUID = 4208143651062702398L;
+
+        final BiFunction<? super K, ? super V, ? extends U> searchFunction;
+        // 所有子任务共享，第一个非null结果胜出
+        final AtomicReference<U> result;
+
+        SearchTask(Node<K, V>[] tab, int lo, int hi, int batch,
+                   BiFunction<? super K, ? super V, ? extends U> searchFunction,
+                   AtomicReference<U> result) {
+            super(tab, lo, hi, batch);
+            this.searchFunction = searchFunction;
+            this.result = result;
+        }
+
+        BulkTask<K, V, Void> subtask(int lo, int hi, int batch) {
+            return new SearchTask<>(tab, lo, hi, batch, searchFunction, result);
+        }
+
+        Void traverse() {
+            Node<K, V>[] t = tab;
+            AtomicReference<U> res = result;
+            for (int i = lo; i < hi; ++i) {
+                // 每个桶检查一次其他任务是否已经找到结果
+                if (res.get() != null)
+                    return null;
+                for (Node<K, V> e = t[i]; e != null; e = e.next) {
+                    U u;
+                    if ((u = searchFunction.apply(e.key, e.value)) != null) {
+                        res.compareAndSet(null, u);
+                        return null;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
     /* ------------------------------------------------------------ */
     // Cloning and serialization
 
@@ -1542,6 +2913,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             @SuppressWarnings({"rawtypes", "unchecked"})
             Node<K, V>[] tab = (Node<K, V>[]) new Node[cap];
             table = tab;
+            initSegmentCounts(cap);
 
             // Read the keys and values, and put the mappings in the HashMap
             for (int i = 0; i < mappings; i++) {
@@ -1549,11 +2921,82 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
                 K key = (K) s.readObject();
                 @SuppressWarnings("unchecked")
                 V value = (V) s.readObject();
-                putVal(hash(key), key, value, false, false);
+                putVal(spread(key), key, value, false, false);
             }
         }
     }
 
+    /**
+     * 用编解码器把所有键值对写入out，比writeObject()快得多
+     * 1.格式：键值对数量(int)，然后依次是每个键值对的键和值，由keyCodec和valueCodec写入；
+     * 不写入类描述、容量和负载因子，也没有对象头和引用表。
+     * 2.写入顺序与序列化相同：HashMap按桶的顺序，BoundedCache按淘汰顺序，LinkedHashMap按链表的顺序（插入顺序或访问顺序），
+     * 因此readFrom()到同类型的空Map中之后顺序不变。
+     * 3.HashMap中有null键或者null值时，对应的编解码器必须支持null。
+     * 4.写入期间HashMap被修改时抛出ConcurrentModificationException，已经写入的数据不完整。
+     * 5.对100万个Integer键的粗略测量（SerializationBenchmark），写入约比writeObject()快12倍。
+     *
+     * @param out        目标输出，调用者负责缓冲和关闭
+     * @param keyCodec   键的编解码器
+     * @param valueCodec 值的编解码器
+     * @throws IOException 写入失败
+     * @see #readFrom(DataInput, StreamCodec, StreamCodec)
+     */
+    public void writeTo(DataOutput out, StreamCodec<? super K> keyCodec, StreamCodec<? super V> valueCodec)
+            throws IOException {
+        if (keyCodec == null || valueCodec == null)
+            throw new NullPointerException();
+        int mc = modCount;
+        out.writeInt(size);
+        internalWriteEntries(out, keyCodec, valueCodec);
+        if (modCount != mc)
+            throw new ConcurrentModificationException();
+    }
+
+    /**
+     * 读取writeTo()写入的键值对并添加到当前HashMap中，已经存在的键被覆盖
+     * 1.先按读到的键值对数量一次性确定容量（与readObject()相同），读取过程中不会扩容。
+     * 2.键和值由编解码器直接创建，不经过反射；每个键仍然需要计算哈希值，因为哈希值可能依赖于进程（例如随机化哈希）。
+     * 3.读取只比readObject()快2~3倍，没有达到5倍的目标：两种方式都要为每个键值对创建结点并调用putVal()，
+     * 这部分开销与格式无关，占了读取耗时的大部分。
+     *
+     * @param in         源输入
+     * @param keyCodec   键的编解码器，必须与写入时相同
+     * @param valueCodec 值的编解码器，必须与写入时相同
+     * @throws IOException 读取失败或者数据格式错误
+     */
+    public void readFrom(DataInput in, StreamCodec<? extends K> keyCodec, StreamCodec<? extends V> valueCodec)
+            throws IOException {
+        if (keyCodec == null || valueCodec == null)
+            throw new NullPointerException();
+        int mappings = in.readInt();
+        if (mappings < 0)
+            throw new StreamCorruptedException("Illegal mappings count: " + mappings);
+        if (mappings == 0)
+            return;
+        ensureCapacityFor(size + (long) mappings);
+        for (int i = 0; i < mappings; i++) {
+            K key = keyCodec.read(in);
+            V value = valueCodec.read(in);
+            putVal(spread(key), key, value, false, true);
+        }
+    }
+
+    /**
+     * 保证容纳n个键值对时不需要扩容：table还没有初始化时只修改阈值（即初始容量），否则在添加之前连续扩容，只搬迁已有的键值对
+     */
+    final void ensureCapacityFor(long n) {
+        if (table == null) {
+            float ft = ((float) n / loadFactor) + 1.0F;
+            int t = ((ft < (float) MAXIMUM_CAPACITY) ? (int) ft : MAXIMUM_CAPACITY);
+            if (t > threshold)
+                threshold = tableSizeFor(t);
+        } else {
+            while (n > threshold && table.length < MAXIMUM_CAPACITY)
+                resize();
+        }
+    }
+
     /* ------------------------------------------------------------ */
     // iterators
 
@@ -1564,6 +3007,8 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         int index;             // current slot
 
         HashIterator() {
+            // 遍历之前先搬迁完渐进式扩容中剩下的桶
+            finishTransfer();
             expectedModCount = modCount;
             Node<K, V>[] t = table;
             current = next = null;
@@ -1613,7 +3058,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
                 throw new ConcurrentModificationException();
             current = null;
             K key = p.key;
-            removeNode(hash(key), key, null, false, false);
+            removeNode(spread(key), key, null, false, false);
             expectedModCount = modCount;
         }
     }
@@ -1646,6 +3091,8 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         int fence;                  // one past last index
         int est;                    // size estimate
         int expectedModCount;       // for comodification checks
+        boolean exact;              // est是[index, fence)中精确的键值对数量，并且范围的两端都在段的边界上
+        boolean traversed;          // 已经用tryAdvance()遍历过，est不再是剩下的键值对数量
 
         HashMapSpliterator(HashMap<K, V> m, int origin,
                            int fence, int est,
@@ -1657,22 +3104,90 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             this.expectedModCount = expectedModCount;
         }
 
+        HashMapSpliterator(HashMap<K, V> m, int origin, int fence, int est, int expectedModCount, boolean exact) {
+            this(m, origin, fence, est, expectedModCount);
+            this.exact = exact;
+        }
+
         final int getFence() { // initialize fence and size on first use
             int hi;
             if ((hi = fence) < 0) {
                 HashMap<K, V> m = map;
                 est = m.size;
                 expectedModCount = m.modCount;
-                Node<K, V>[] tab = m.table;
+                Node<K, V>[] tab = table();
                 hi = fence = (tab == null) ? 0 : tab.length;
+                // 有分段统计时，整个表的大小size是精确的，之后在段的边界上拆分
+                exact = m.segmentCounts != null;
             }
             return hi;
         }
 
+        /**
+         * 把[index, fence)拆分成两部分，前一部分[index, mid)交给新的Spliterator，本Spliterator保留[mid, fence)
+         * 1.有分段统计时，在使两部分的键值对数量最接近的段的边界上拆分，两部分的大小都是精确的；范围只剩一段时不再拆分。
+         * 2.没有分段统计时（容量小于MIN_SEGMENTED_CAPACITY），与JDK相同，按桶的下标平分，大小估计为一半。
+         * 3.已经开始遍历的Spliterator不再拆分。
+         *
+         * @return 返回前一部分的大小，不能拆分时返回-1，拆分后index为mid
+         */
+        final int split() {
+            int hi = getFence(), lo = index;
+            // tryAdvance()不更新est，遍历到段的边界时current为null，也不能再按est拆分
+            if (current != null || traversed)
+                return -1;
+            if (!exact) {
+                int mid = (lo + hi) >>> 1;
+                if (lo >= mid)
+                    return -1;
+                index = mid;
+                return est >>>= 1;
+            }
+            HashMap<K, V> m = map;
+            if (m.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            int[] sc = m.segmentCounts;
+            int shift = m.segmentShift;
+            int sLo = lo >>> shift, sHi = hi >>> shift;
+            if (est < 2 || sHi - sLo < 2)
+                return -1;
+            // 找到最后一个使前一部分不超过一半的边界s，再与下一个边界比较哪个更接近一半，两部分至少各有一段
+            int half = est >>> 1, n = 0, s = sLo;
+            while (s < sHi - 1 && n + sc[s] <= half)
+                n += sc[s++];
+            // 按两倍比较，est为奇数时一半不是整数
+            if (s < sHi - 1 && (s == sLo || 2 * (n + sc[s]) - est < est - 2 * n))
+                n += sc[s++];
+            index = s << shift;
+            est -= n;
+            return n;
+        }
+
+        /**
+         * SIZED、SUBSIZED特征值
+         */
+        final int sizeCharacteristics() {
+            if (fence < 0)
+                return (map.segmentCounts != null) ? Spliterator.SIZED | Spliterator.SUBSIZED : Spliterator.SIZED;
+            if (exact)
+                return Spliterator.SIZED | Spliterator.SUBSIZED;
+            return (est == map.size) ? Spliterator.SIZED : 0;
+        }
+
         public final long estimateSize() {
             getFence(); // force init
             return (long) est;
         }
+
+        /**
+         * 得到map的哈希桶数组，渐进式扩容还没有结束时先搬迁完剩下的桶
+         */
+        final Node<K, V>[] table() {
+            HashMap<K, V> m = map;
+            if (m.oldTable != null)
+                m.finishTransfer();
+            return m.table;
+        }
     }
 
     static final class KeySpliterator<K, V> extends HashMapSpliterator<K, V> implements Spliterator<K> {
@@ -1681,11 +3196,13 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             super(m, origin, fence, est, expectedModCount);
         }
 
+        KeySpliterator(HashMap<K, V> m, int origin, int fence, int est, int expectedModCount, boolean exact) {
+            super(m, origin, fence, est, expectedModCount, exact);
+        }
+
         public KeySpliterator<K, V> trySplit() {
-            int hi = getFence(), lo = index, mid = (lo + hi) >>> 1;
-            return (lo >= mid || current != null) ? null :
-                    new KeySpliterator<>(map, lo, index = mid, est >>>= 1,
-                            expectedModCount);
+            int lo = index, n = split();
+            return (n < 0) ? null : new KeySpliterator<>(map, lo, index, n, expectedModCount, exact);
         }
 
         public void forEachRemaining(Consumer<? super K> action) {
@@ -1693,7 +3210,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             if (action == null)
                 throw new NullPointerException();
             HashMap<K, V> m = map;
-            Node<K, V>[] tab = m.table;
+            Node<K, V>[] tab = table();
             if ((hi = fence) < 0) {
                 mc = expectedModCount = m.modCount;
                 hi = fence = (tab == null) ? 0 : tab.length;
@@ -1720,8 +3237,9 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             int hi;
             if (action == null)
                 throw new NullPointerException();
-            Node<K, V>[] tab = map.table;
+            Node<K, V>[] tab = table();
             if (tab != null && tab.length >= (hi = getFence()) && index >= 0) {
+                traversed = true;
                 while (current != null || index < hi) {
                     if (current == null)
                         current = tab[index++];
@@ -1739,8 +3257,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         }
 
         public int characteristics() {
-            return (fence < 0 || est == map.size ? Spliterator.SIZED : 0) |
-                    Spliterator.DISTINCT;
+            return sizeCharacteristics() | Spliterator.DISTINCT;
         }
     }
 
@@ -1750,11 +3267,13 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             super(m, origin, fence, est, expectedModCount);
         }
 
+        ValueSpliterator(HashMap<K, V> m, int origin, int fence, int est, int expectedModCount, boolean exact) {
+            super(m, origin, fence, est, expectedModCount, exact);
+        }
+
         public ValueSpliterator<K, V> trySplit() {
-            int hi = getFence(), lo = index, mid = (lo + hi) >>> 1;
-            return (lo >= mid || current != null) ? null :
-                    new ValueSpliterator<>(map, lo, index = mid, est >>>= 1,
-                            expectedModCount);
+            int lo = index, n = split();
+            return (n < 0) ? null : new ValueSpliterator<>(map, lo, index, n, expectedModCount, exact);
         }
 
         public void forEachRemaining(Consumer<? super V> action) {
@@ -1762,7 +3281,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             if (action == null)
                 throw new NullPointerException();
             HashMap<K, V> m = map;
-            Node<K, V>[] tab = m.table;
+            Node<K, V>[] tab = table();
             if ((hi = fence) < 0) {
                 mc = expectedModCount = m.modCount;
                 hi = fence = (tab == null) ? 0 : tab.length;
@@ -1789,8 +3308,9 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             int hi;
             if (action == null)
                 throw new NullPointerException();
-            Node<K, V>[] tab = map.table;
+            Node<K, V>[] tab = table();
             if (tab != null && tab.length >= (hi = getFence()) && index >= 0) {
+                traversed = true;
                 while (current != null || index < hi) {
                     if (current == null)
                         current = tab[index++];
@@ -1808,7 +3328,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         }
 
         public int characteristics() {
-            return (fence < 0 || est == map.size ? Spliterator.SIZED : 0);
+            return sizeCharacteristics();
         }
     }
 
@@ -1817,9 +3337,13 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             super(m, origin, fence, est, expectedModCount);
         }
 
+        EntrySpliterator(HashMap<K, V> m, int origin, int fence, int est, int expectedModCount, boolean exact) {
+            super(m, origin, fence, est, expectedModCount, exact);
+        }
+
         public EntrySpliterator<K, V> trySplit() {
-            int hi = getFence(), lo = index, mid = (lo + hi) >>> 1;
-            return (lo >= mid || current != null) ? null : new EntrySpliterator<>(map, lo, index = mid, est >>>= 1, expectedModCount);
+            int lo = index, n = split();
+            return (n < 0) ? null : new EntrySpliterator<>(map, lo, index, n, expectedModCount, exact);
         }
 
         public void forEachRemaining(Consumer<? super Map.Entry<K, V>> action) {
@@ -1827,7 +3351,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             if (action == null)
                 throw new NullPointerException();
             HashMap<K, V> m = map;
-            Node<K, V>[] tab = m.table;
+            Node<K, V>[] tab = table();
             if ((hi = fence) < 0) {
                 mc = expectedModCount = m.modCount;
                 hi = fence = (tab == null) ? 0 : tab.length;
@@ -1854,8 +3378,9 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             int hi;
             if (action == null)
                 throw new NullPointerException();
-            Node<K, V>[] tab = map.table;
+            Node<K, V>[] tab = table();
             if (tab != null && tab.length >= (hi = getFence()) && index >= 0) {
+                traversed = true;
                 while (current != null || index < hi) {
                     if (current == null)
                         current = tab[index++];
@@ -1873,8 +3398,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         }
 
         public int characteristics() {
-            return (fence < 0 || est == map.size ? Spliterator.SIZED : 0) |
-                    Spliterator.DISTINCT;
+            return sizeCharacteristics() | Spliterator.DISTINCT;
         }
     }
 
@@ -1913,6 +3437,13 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         modCount = 0;
         threshold = 0;
         size = 0;
+        oldTable = null;
+        transferIndex = 0;
+        segmentCounts = null;
+        if (statistics != null)
+            statistics = new Statistics();
+        if (bloomFilter != null)
+            bloomFilter = new CountingBloomFilter(0);
     }
 
     // Callbacks to allow LinkedHashMap post-actions
@@ -1928,6 +3459,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
     // Called only from writeObject, to ensure compatible ordering.
     void internalWriteEntries(java.io.ObjectOutputStream s) throws IOException {
         Node<K, V>[] tab;
+        finishTransfer();
         if (size > 0 && (tab = table) != null) {
             for (int i = 0; i < tab.length; ++i) {
                 for (Node<K, V> e = tab[i]; e != null; e = e.next) {
@@ -1937,6 +3469,29 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
             }
         }
     }
+
+    // Called only from writeTo, to ensure the same ordering as writeObject.
+    void internalWriteEntries(DataOutput out, StreamCodec<? super K> keyCodec,
+                              StreamCodec<? super V> valueCodec) throws IOException {
+        Node<K, V>[] tab;
+        if (this instanceof LinkedHashMap) {
+            // rt.jar中的LinkedHashMap不会重写这个方法，按entrySet()的链表顺序写入，与它的writeObject()相同
+            for (Map.Entry<K, V> e : entrySet()) {
+                keyCodec.write(e.getKey(), out);
+                valueCodec.write(e.getValue(), out);
+            }
+            return;
+        }
+        finishTransfer();
+        if (size > 0 && (tab = table) != null) {
+            for (int i = 0; i < tab.length; ++i) {
+                for (Node<K, V> e = tab[i]; e != null; e = e.next) {
+                    keyCodec.write(e.key, out);
+                    valueCodec.write(e.value, out);
+                }
+            }
+        }
+    }
     // LinkedHashMap support
     /* 上面的方法被设计用于LinkedHashMap类重写 1 */
     /* ------------------------------------------------------------ */
@@ -1948,8 +3503,9 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
      * Entry for Tree bins. Extends LinkedHashMap.Entry (which in turn
      * extends Node) so can be used as extension of either regular or
      * linked node.
+     * 没有声明为final，BoundedCache需要继承它，在树结点上保存权重和访问频率
      */
-    static final class TreeNode<K, V> extends LinkedHashMap.Entry<K, V> {
+    static class TreeNode<K, V> extends LinkedHashMap.Entry<K, V> {
         // 父节点
         TreeNode<K, V> parent;
         // 左孩子结点
@@ -2033,12 +3589,13 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         /**
          * 根据给定的hash值和key值在红黑树中查找符合的结点
          *
-         * @param h  哈希值
-         * @param k  键
-         * @param kc
-         * @return 键（k）的Class对象，该Class应该是实现了Comparable<K>的，否则应该是null
+         * @param h   哈希值
+         * @param k   键
+         * @param kc  键（k）的Class对象，该Class应该是实现了Comparable<K>的，否则应该是null
+         * @param cmp HashMap的keyComparator，不为null时代替Comparable比较哈希值相同的键
+         * @return 找到的结点，没有找到时返回null
          */
-        final TreeNode<K, V> find(int h, Object k, Class<?> kc) {
+        final TreeNode<K, V> find(int h, Object k, Class<?> kc, Comparator<? super K> cmp) {
             // 局部变量，保存当前调用了该方法的结点对象
             TreeNode<K, V> p = this;
             // 从当前结点p开始循环遍历红黑树
@@ -2070,19 +3627,20 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
                     // 则向左遍历
                     p = pl;
                 /*
+                    cmp!=null   设置了keyComparator，用它比较，不再检查Comparable
                     kc!=null    指的是kc参数传了值，不为null
                     kc = comparableClassFor(k)) != null     kc不为空代表k实现了Comparable
                     dir = compareComparables(kc, k, pk)) != 0   k<pk则dir<0, k>pk则dir>0
                  */
-                else if ((kc != null
-                        || (kc = comparableClassFor(k)) != null)
-                        && (dir = compareComparables(kc, k, pk)) != 0)
+                else if (cmp != null ? (dir = compareWith(cmp, k, pk)) != 0 :
+                        (kc != null || (kc = comparableClassFor(k)) != null)
+                                && (dir = compareComparables(kc, k, pk)) != 0)
                     // k<pk则向左遍历(p赋值为p的左节点), 否则向右遍历
                     p = (dir < 0) ? pl : pr;
-                    // 代码走到此处, 代表key所属类没有实现Comparable, 直接指定向p的右边遍历
-                else if ((q = pr.find(h, k, kc)) != null)
+                    // 代码走到此处, 代表key无法与pk区分（没有实现Comparable或者比较结果为0）, 直接指定向p的右边遍历
+                else if ((q = pr.find(h, k, kc, cmp)) != null)
                     return q;
-                    // 代码走到此处代表“pr.find(h, k, kc)”为空, 因此直接向左遍历
+                    // 代码走到此处代表“pr.find(h, k, kc, cmp)”为空, 因此直接向左遍历
                 else
                     p = pl;
             } while (p != null);
@@ -2093,26 +3651,27 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         /**
          * 根据指定的哈希值和key查找红黑树中的结点
          *
-         * @param h 哈希值
-         * @param k 键
+         * @param h   哈希值
+         * @param k   键
+         * @param cmp HashMap的keyComparator
          * @return
          */
-        final TreeNode<K, V> getTreeNode(int h, Object k) {
+        final TreeNode<K, V> getTreeNode(int h, Object k, Comparator<? super K> cmp) {
             /*
                 parent!=null    判断当前结点的父结点是否为null，如果为null则表示当前结点是根结点，如果不为null则表示当前结点不为根结点，是红黑树中的普通结点
                 root()      即parent!=null得到的结果是true，那么证明该结点this不是根结点，那么调用root()方法获得根结点
                 this        即parent!=null得到的结果是false，那么证明该结点this是根结点
                 find(h,k,null)  从红黑树的根结点开始向整棵树遍历查找符合指定hash值和key值的结点，并返回查找结果
              */
-            return ((parent != null) ? root() : this).find(h, k, null);
+            return ((parent != null) ? root() : this).find(h, k, null, cmp);
             /*
                 等价于（复杂化代码）
                 if (parent != null) {
                     TreeNode<K, V> root = root();
-                    TreeNode<K, V> node = root.find(h, k, null);
+                    TreeNode<K, V> node = root.find(h, k, null, cmp);
                     return node;
                 } else {
-                    TreeNode<K, V> node = this.find(h, k, null);
+                    TreeNode<K, V> node = this.find(h, k, null, cmp);
                     return node;
                 }
              */
@@ -2139,8 +3698,9 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
          * 将双链表转换红黑树
          *
          * @param tab 哈希桶数组
+         * @param cmp HashMap的keyComparator
          */
-        final void treeify(Node<K, V>[] tab) {
+        final void treeify(Node<K, V>[] tab, Comparator<? super K> cmp) {
             // 局部变量，保存红黑树的根结点
             TreeNode<K, V> root = null;
             // this就是调用treeify()方法的TreeNode<K, V>对象，也是该处需要转换红黑树
@@ -2182,9 +3742,11 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
                             // 则将dir赋值为1, 代表向p的右边查找
                             dir = 1;
                         // 表示结点x的hash值和结点p的hash值相等，下面比较key直
-                        else if ((kc == null && // 如果k没有实现Comparable接口 或者 x结点的key和p结点的key相等
-                                (kc = comparableClassFor(k)) == null) ||
-                                (dir = compareComparables(kc, k, pk)) == 0)
+                        // 设置了keyComparator时用它比较，否则用Comparable比较
+                        else if (cmp != null ? (dir = compareWith(cmp, k, pk)) == 0 :
+                                (kc == null && // 如果k没有实现Comparable接口 或者 x结点的key和p结点的key相等
+                                        (kc = comparableClassFor(k)) == null) ||
+                                        (dir = compareComparables(kc, k, pk)) == 0)
                             // 使用定义的一套规则来比较x节点和p节点的大小，用来决定向左还是向右查找
                             dir = tieBreakOrder(k, pk);
                         /* 比较hash值，决定向右还是向左查找 end */
@@ -2219,6 +3781,8 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
          * @return 返回转换完成的链表
          */
         final Node<K, V> untreeify(HashMap<K, V> map) {
+            if (map.statistics != null)
+                ++map.statistics.untreeifications;
             // 局部变量，hd指的是链表的头结点，tl指的是链表的尾结点
             Node<K, V> hd = null, tl = null;
             // this指的是当前调用该方法的Node<K, V>对象，是一棵红黑树
@@ -2247,6 +3811,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
         final TreeNode<K, V> putTreeVal(HashMap<K, V> map, Node<K, V>[] tab,
                                         int h, K k, V v) {
             Class<?> kc = null;
+            Comparator<? super K> cmp = map.keyComparator;
             boolean searched = false;
             TreeNode<K, V> root = (parent != null) ? root() : this;
             for (TreeNode<K, V> p = root; ; ) {
@@ -2258,16 +3823,17 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
                     dir = 1;
                 else if ((pk = p.key) == k || (k != null && k.equals(pk)))
                     return p;
-                else if ((kc == null &&
-                        (kc = comparableClassFor(k)) == null) ||
-                        (dir = compareComparables(kc, k, pk)) == 0) {
+                else if (cmp != null ? (dir = compareWith(cmp, k, pk)) == 0 :
+                        (kc == null &&
+                                (kc = comparableClassFor(k)) == null) ||
+                                (dir = compareComparables(kc, k, pk)) == 0) {
                     if (!searched) {
                         TreeNode<K, V> q, ch;
                         searched = true;
                         if (((ch = p.left) != null &&
-                                (q = ch.find(h, k, kc)) != null) ||
+                                (q = ch.find(h, k, kc, cmp)) != null) ||
                                 ((ch = p.right) != null &&
-                                        (q = ch.find(h, k, kc)) != null))
+                                        (q = ch.find(h, k, kc, cmp)) != null))
                             return q;
                     }
                     dir = tieBreakOrder(k, pk);
@@ -2524,6 +4090,8 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
                 }
             }
 
+            map.addSegmentCount(index, lc);
+            map.addSegmentCount(index + bit, hc);
             // 表示loHead这个红黑树不为空
             if (loHead != null) {
                 // 判断该红黑树的结点元素个数是否小于等于阈值6
@@ -2537,7 +4105,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
                     // 执行到这里，表示旧表的红黑树已经分割成了两个，红黑树的平衡已经被打破了，所以需要重新调整平衡构建新的红黑树
                     if (hiHead != null)
                         // 以loHead尾根结点，构造新的红黑树
-                        loHead.treeify(tab);
+                        loHead.treeify(tab, map.keyComparator);
                 }
             }
             // 表示hiHead这颗红黑树不为空
@@ -2553,7 +4121,7 @@ public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Clone
                     // loHead不为空代表旧红黑树已经被分割，需要重新构建新的红黑树
                     if (loHead != null)
                         // 以hiHead为根结点，构建新的红黑树
-                        hiHead.treeify(tab);
+                        hiHead.treeify(tab, map.keyComparator);
                 }
             }
         }
@@ -0,0 +1,598 @@
+package java.util;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.Serializable;
+import java.util.function.IntFunction;
+
+/**
+ * 键为int基本类型的哈希表，是HashMap<Integer, V>的特化版本
+ * 1.HashMap<Integer, V>的每次put()都要通过Integer.valueOf(int)装箱（超出IntegerCache范围时会创建新的Integer对象），
+ * 每个键值对还要创建一个Node结点；本类直接使用int作为键，不装箱，也不创建结点。
+ * 2.键存放在int[]数组中，值存放在平行的Object[]数组中，冲突时线性探测，删除时向后移位，与OpenHashMap相同。
+ * 3.int[]中的0表示空位，因此键0单独存放在zeroValue字段中。
+ * 4.方法的名字和语义与HashMap中对应的方法一致，例如getOrDefault()、putIfAbsent()、computeIfAbsent()。
+ *
+ * @param <V> 泛型，表示键值对中的值
+ * @see IntIntHashMap
+ * @see OpenHashMap
+ */
+public class IntHashMap<V> implements Cloneable, Serializable {
+    // 序列版本ID
+    private static final long serialVersionUID = 2735181096316937618L;
+
+    /**
+     * 常量，默认的初始化容量，必定是2的n次方
+     */
+    static final int DEFAULT_INITIAL_CAPACITY = 1 << 4;
+
+    /**
+     * 常量，最大容量
+     */
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * 常量，默认的负载因子，与OpenHashMap相同
+     */
+    static final float DEFAULT_LOAD_FACTOR = 0.5f;
+
+    /**
+     * 存放键的数组，0表示该位置为空
+     */
+    transient int[] keys;
+
+    /**
+     * 存放值的数组，与keys数组一一对应
+     */
+    transient Object[] vals;
+
+    /**
+     * 是否存在键0
+     */
+    transient boolean containsZeroKey;
+
+    /**
+     * 键0对应的值
+     */
+    transient Object zeroValue;
+
+    /**
+     * 键值对的数量，包括键0
+     */
+    transient int size;
+
+    /**
+     * 阈值，keys数组中键的数量超过此值就会扩容，在数组还没有分配时，存放的是初始容量
+     */
+    transient int threshold;
+
+    /**
+     * 负载因子，取值范围是(0, 1)
+     */
+    final float loadFactor;
+
+    /**
+     * 遍历键值对时使用的函数式接口，避免将键装箱
+     *
+     * @param <V> 值的类型
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        /**
+         * 处理一个键值对
+         *
+         * @param key   键
+         * @param value 值
+         */
+        void accept(int key, V value);
+    }
+
+    /* ---------------- 构造方法 -------------- */
+
+    /**
+     * 带两个参数的构造方法
+     *
+     * @param initialCapacity 初始化容量
+     * @param loadFactor      负载因子，必须大于0并且小于1
+     * @throws IllegalArgumentException initialCapacity为负数或者loadFactor不在(0, 1)范围内
+     */
+    public IntHashMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        if (initialCapacity > MAXIMUM_CAPACITY)
+            initialCapacity = MAXIMUM_CAPACITY;
+        if (!(loadFactor > 0 && loadFactor < 1))
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        this.loadFactor = loadFactor;
+        this.threshold = HashMap.tableSizeFor(initialCapacity);
+    }
+
+    /**
+     * 带初始容量的构造方法
+     *
+     * @param initialCapacity 初始化容量
+     */
+    public IntHashMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * 无参构造方法
+     */
+    public IntHashMap() {
+        this.loadFactor = DEFAULT_LOAD_FACTOR;
+    }
+
+    /* ---------------- 工具方法 -------------- */
+
+    /**
+     * 计算int键的哈希值
+     * Integer.hashCode()返回的就是int值本身，HashMap.hash()只是把高16位异或到低16位；
+     * 而线性探测对规律的键（例如都是容量的倍数）非常敏感，因此先乘以黄金分割常数把各位打散，再做同样的高低位异或
+     *
+     * @param key 键
+     * @return 返回哈希值
+     */
+    static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 查找指定键在keys数组中的位置，键不能为0
+     *
+     * @param key 键
+     * @return 返回下标，没有找到则返回-1
+     */
+    final int findIndex(int key) {
+        int[] ks;
+        if ((ks = keys) == null)
+            return -1;
+        int mask = ks.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            int k = ks[i];
+            if (k == key)
+                return i;
+            if (k == 0)
+                return -1;
+        }
+    }
+
+    /* ---------------- 查询 -------------- */
+
+    /**
+     * 得到键值对的个数
+     *
+     * @return 返回键值对的数量
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 判断是否为空
+     *
+     * @return 没有键值对时返回true
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 得到指定key对应的value
+     *
+     * @param key 指定的key
+     * @return 返回查找到的value，没有查找到则返回null
+     */
+    public V get(int key) {
+        return getOrDefault(key, null);
+    }
+
+    /**
+     * 得到指定key对应的value，没有查找到时返回defaultValue
+     *
+     * @param key          指定的key
+     * @param defaultValue 默认值
+     * @return 返回查找到的value或者defaultValue
+     */
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(int key, V defaultValue) {
+        if (key == 0)
+            return containsZeroKey ? (V) zeroValue : defaultValue;
+        int i = findIndex(key);
+        return (i < 0) ? defaultValue : (V) vals[i];
+    }
+
+    /**
+     * 判断是否包含指定的key
+     *
+     * @param key 指定的key
+     * @return 包含则返回true
+     */
+    public boolean containsKey(int key) {
+        return (key == 0) ? containsZeroKey : findIndex(key) >= 0;
+    }
+
+    /**
+     * 判断是否包含指定的value
+     *
+     * @param value 指定的value
+     * @return 包含则返回true
+     */
+    public boolean containsValue(Object value) {
+        if (containsZeroKey && Objects.equals(zeroValue, value))
+            return true;
+        int[] ks;
+        if ((ks = keys) != null) {
+            Object[] vs = vals;
+            for (int i = 0; i < ks.length; ++i) {
+                if (ks[i] != 0 && Objects.equals(vs[i], value))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /* ---------------- 修改 -------------- */
+
+    /**
+     * 添加键值对，已经存在该key时用新值覆盖旧值
+     *
+     * @param key   键
+     * @param value 值
+     * @return 返回旧值或者null
+     */
+    public V put(int key, V value) {
+        return putVal(key, value, false);
+    }
+
+    /**
+     * 只有不存在该key或者旧值为null时才添加
+     *
+     * @param key   键
+     * @param value 值
+     * @return 返回旧值或者null
+     */
+    public V putIfAbsent(int key, V value) {
+        return putVal(key, value, true);
+    }
+
+    /**
+     * 添加键值对
+     *
+     * @param key          键
+     * @param value        值
+     * @param onlyIfAbsent 为true时，如果已经存在非null的旧值则不替换
+     * @return 返回旧值或者null
+     */
+    @SuppressWarnings("unchecked")
+    final V putVal(int key, V value, boolean onlyIfAbsent) {
+        if (key == 0) {
+            V oldValue = (V) zeroValue;
+            if (!containsZeroKey) {
+                containsZeroKey = true;
+                ++size;
+            } else if (onlyIfAbsent && oldValue != null)
+                return oldValue;
+            zeroValue = value;
+            return oldValue;
+        }
+        int[] ks;
+        if ((ks = keys) == null)
+            ks = resize();
+        int mask = ks.length - 1;
+        int i = hash(key) & mask;
+        for (int k; (k = ks[i]) != 0; i = (i + 1) & mask) {
+            if (k == key) {
+                V oldValue = (V) vals[i];
+                if (!onlyIfAbsent || oldValue == null)
+                    vals[i] = value;
+                return oldValue;
+            }
+        }
+        ks[i] = key;
+        vals[i] = value;
+        if (++size - (containsZeroKey ? 1 : 0) > threshold)
+            resize();
+        return null;
+    }
+
+    /**
+     * 如果不存在该key或者旧值为null，则用mappingFunction计算出值并添加
+     * 与HashMap.computeIfAbsent()相同，计算结果为null时不添加
+     *
+     * @param key             键
+     * @param mappingFunction 根据键计算值的函数
+     * @return 返回已有的值或者计算出来的值
+     */
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(int key, IntFunction<? extends V> mappingFunction) {
+        if (mappingFunction == null)
+            throw new NullPointerException();
+        V oldValue;
+        if (key == 0) {
+            if (containsZeroKey && (oldValue = (V) zeroValue) != null)
+                return oldValue;
+        } else {
+            int i = findIndex(key);
+            if (i >= 0 && (oldValue = (V) vals[i]) != null)
+                return oldValue;
+        }
+        V v = mappingFunction.apply(key);
+        if (v != null)
+            putVal(key, v, false);
+        return v;
+    }
+
+    /**
+     * 初始化或扩容
+     *
+     * @return 返回新的keys数组
+     */
+    final int[] resize() {
+        int[] oldKeys = keys;
+        int oldCap = (oldKeys == null) ? 0 : oldKeys.length;
+        int newCap;
+        if (oldCap > 0) {
+            if (oldCap >= MAXIMUM_CAPACITY) {
+                if (size - (containsZeroKey ? 1 : 0) >= MAXIMUM_CAPACITY - 1)
+                    throw new IllegalStateException("Capacity exhausted.");
+                threshold = MAXIMUM_CAPACITY - 1;
+                return oldKeys;
+            }
+            newCap = oldCap << 1;
+        } else if (threshold > 0)
+            newCap = threshold;
+        else
+            newCap = DEFAULT_INITIAL_CAPACITY;
+        threshold = Math.min((int) (newCap * loadFactor), newCap - 1);
+        Object[] oldVals = vals;
+        int[] ks = new int[newCap];
+        Object[] vs = new Object[newCap];
+        int mask = newCap - 1;
+        for (int j = 0; j < oldCap; ++j) {
+            int k;
+            if ((k = oldKeys[j]) != 0) {
+                int i = hash(k) & mask;
+                while (ks[i] != 0)
+                    i = (i + 1) & mask;
+                ks[i] = k;
+                vs[i] = oldVals[j];
+            }
+        }
+        keys = ks;
+        vals = vs;
+        return ks;
+    }
+
+    /**
+     * 移除指定key的键值对
+     *
+     * @param key 指定的key
+     * @return 返回被删除键值对的值或者null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        if (key == 0) {
+            if (!containsZeroKey)
+                return null;
+            V oldValue = (V) zeroValue;
+            containsZeroKey = false;
+            zeroValue = null;
+            --size;
+            return oldValue;
+        }
+        int i = findIndex(key);
+        if (i < 0)
+            return null;
+        V oldValue = (V) vals[i];
+        --size;
+        shiftKeys(i);
+        return oldValue;
+    }
+
+    /**
+     * 向后移位删除，参考OpenHashMap.shiftKeys()
+     *
+     * @param i 空出来的位置
+     */
+    final void shiftKeys(int i) {
+        int[] ks = keys;
+        Object[] vs = vals;
+        int mask = ks.length - 1;
+        for (int j = (i + 1) & mask; ; j = (j + 1) & mask) {
+            int k;
+            if ((k = ks[j]) == 0)
+                break;
+            if (OpenHashMap.canShift(hash(k) & mask, i, j)) {
+                ks[i] = k;
+                vs[i] = vs[j];
+                i = j;
+            }
+        }
+        ks[i] = 0;
+        vs[i] = null;
+    }
+
+    /**
+     * 清空所有键值对，保留数组容量
+     */
+    public void clear() {
+        if (size > 0) {
+            size = 0;
+            containsZeroKey = false;
+            zeroValue = null;
+            if (keys != null) {
+                Arrays.fill(keys, 0);
+                Arrays.fill(vals, null);
+            }
+        }
+    }
+
+    /* ---------------- 遍历 -------------- */
+
+    /**
+     * 遍历所有键值对
+     *
+     * @param action 对每个键值对执行的操作
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> action) {
+        if (action == null)
+            throw new NullPointerException();
+        if (containsZeroKey)
+            action.accept(0, (V) zeroValue);
+        int[] ks;
+        if ((ks = keys) != null) {
+            Object[] vs = vals;
+            for (int i = 0; i < ks.length; ++i) {
+                int k;
+                if ((k = ks[i]) != 0)
+                    action.accept(k, (V) vs[i]);
+            }
+        }
+    }
+
+    /**
+     * 得到所有的键
+     *
+     * @return 返回包含所有键的新数组，顺序不确定
+     */
+    public int[] keys() {
+        int[] result = new int[size];
+        int n = 0;
+        if (containsZeroKey)
+            result[n++] = 0;
+        int[] ks;
+        if ((ks = keys) != null) {
+            for (int k : ks) {
+                if (k != 0)
+                    result[n++] = k;
+            }
+        }
+        return result;
+    }
+
+    /* ---------------- Object方法 -------------- */
+
+    /**
+     * 与另一个IntHashMap比较，包含的键值对完全相同时返回true
+     */
+    @SuppressWarnings("unchecked")
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof IntHashMap))
+            return false;
+        IntHashMap<Object> m = (IntHashMap<Object>) o;
+        if (m.size() != size)
+            return false;
+        if (containsZeroKey && (!m.containsZeroKey || !Objects.equals(zeroValue, m.zeroValue)))
+            return false;
+        int[] ks;
+        if ((ks = keys) != null) {
+            Object[] vs = vals;
+            for (int i = 0; i < ks.length; ++i) {
+                int k, j;
+                if ((k = ks[i]) != 0 && ((j = m.findIndex(k)) < 0 || !Objects.equals(vs[i], m.vals[j])))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 哈希值的计算方式与包含相同键值对的Map<Integer, V>一致
+     */
+    public int hashCode() {
+        int h = containsZeroKey ? Objects.hashCode(zeroValue) : 0;
+        int[] ks;
+        if ((ks = keys) != null) {
+            Object[] vs = vals;
+            for (int i = 0; i < ks.length; ++i) {
+                int k;
+                if ((k = ks[i]) != 0)
+                    h += k ^ Objects.hashCode(vs[i]);
+            }
+        }
+        return h;
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder().append('{');
+        forEach((k, v) -> {
+            if (sb.length() > 1)
+                sb.append(", ");
+            sb.append(k).append('=').append(v == this ? "(this Map)" : v);
+        });
+        return sb.append('}').toString();
+    }
+
+    /* ------------------------------------------------------------ */
+    // Cloning and serialization
+
+    /**
+     * 返回浅拷贝，值本身不会被克隆
+     *
+     * @return 返回该Map的浅拷贝
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public IntHashMap<V> clone() {
+        IntHashMap<V> result;
+        try {
+            result = (IntHashMap<V>) super.clone();
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError(e);
+        }
+        if (keys != null) {
+            result.keys = keys.clone();
+            result.vals = vals.clone();
+        }
+        return result;
+    }
+
+    /**
+     * 序列化：键值对数量(int)，然后是每个键值对的键(int)和值(Object)
+     */
+    private void writeObject(java.io.ObjectOutputStream s) throws IOException {
+        s.defaultWriteObject();
+        s.writeInt(size);
+        if (containsZeroKey) {
+            s.writeInt(0);
+            s.writeObject(zeroValue);
+        }
+        int[] ks;
+        if ((ks = keys) != null) {
+            Object[] vs = vals;
+            for (int i = 0; i < ks.length; ++i) {
+                int k;
+                if ((k = ks[i]) != 0) {
+                    s.writeInt(k);
+                    s.writeObject(vs[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * 反序列化
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(java.io.ObjectInputStream s) throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        if (!(loadFactor > 0 && loadFactor < 1))
+            throw new InvalidObjectException("Illegal load factor: " + loadFactor);
+        int mappings = s.readInt();
+        if (mappings < 0)
+            throw new InvalidObjectException("Illegal mappings count: " + mappings);
+        float fc = (float) mappings / loadFactor + 1.0F;
+        threshold = (fc >= MAXIMUM_CAPACITY) ? MAXIMUM_CAPACITY :
+                HashMap.tableSizeFor(Math.max((int) fc, DEFAULT_INITIAL_CAPACITY));
+        for (int i = 0; i < mappings; i++) {
+            int key = s.readInt();
+            putVal(key, (V) s.readObject(), false);
+        }
+    }
+}
@@ -0,0 +1,589 @@
+package java.util;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.Serializable;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * 键和值都是int基本类型的哈希表，是HashMap<Integer, Integer>的特化版本
+ * 1.键和值都不装箱，存放在两个平行的int[]数组中，常用于计数、编号映射等场景。
+ * 2.冲突处理、键0的处理方式与IntHashMap相同。
+ * 3.值是基本类型，没有null，因此get()、put()、remove()在键不存在时返回0，需要区分时使用containsKey()或者getOrDefault()。
+ *
+ * @see IntHashMap
+ */
+public class IntIntHashMap implements Cloneable, Serializable {
+    // 序列版本ID
+    private static final long serialVersionUID = -6064512938315962021L;
+
+    /**
+     * 存放键的数组，0表示该位置为空
+     */
+    transient int[] keys;
+
+    /**
+     * 存放值的数组，与keys数组一一对应
+     */
+    transient int[] vals;
+
+    /**
+     * 是否存在键0
+     */
+    transient boolean containsZeroKey;
+
+    /**
+     * 键0对应的值
+     */
+    transient int zeroValue;
+
+    /**
+     * 键值对的数量，包括键0
+     */
+    transient int size;
+
+    /**
+     * 阈值，keys数组中键的数量超过此值就会扩容，在数组还没有分配时，存放的是初始容量
+     */
+    transient int threshold;
+
+    /**
+     * 负载因子，取值范围是(0, 1)
+     */
+    final float loadFactor;
+
+    /**
+     * 遍历键值对时使用的函数式接口
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        /**
+         * 处理一个键值对
+         *
+         * @param key   键
+         * @param value 值
+         */
+        void accept(int key, int value);
+    }
+
+    /* ---------------- 构造方法 -------------- */
+
+    /**
+     * 带两个参数的构造方法
+     *
+     * @param initialCapacity 初始化容量
+     * @param loadFactor      负载因子，必须大于0并且小于1
+     * @throws IllegalArgumentException initialCapacity为负数或者loadFactor不在(0, 1)范围内
+     */
+    public IntIntHashMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        if (initialCapacity > IntHashMap.MAXIMUM_CAPACITY)
+            initialCapacity = IntHashMap.MAXIMUM_CAPACITY;
+        if (!(loadFactor > 0 && loadFactor < 1))
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        this.loadFactor = loadFactor;
+        this.threshold = HashMap.tableSizeFor(initialCapacity);
+    }
+
+    /**
+     * 带初始容量的构造方法
+     *
+     * @param initialCapacity 初始化容量
+     */
+    public IntIntHashMap(int initialCapacity) {
+        this(initialCapacity, IntHashMap.DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * 无参构造方法
+     */
+    public IntIntHashMap() {
+        this.loadFactor = IntHashMap.DEFAULT_LOAD_FACTOR;
+    }
+
+    /**
+     * 查找指定键在keys数组中的位置，键不能为0
+     *
+     * @param key 键
+     * @return 返回下标，没有找到则返回-1
+     */
+    final int findIndex(int key) {
+        int[] ks;
+        if ((ks = keys) == null)
+            return -1;
+        int mask = ks.length - 1;
+        for (int i = IntHashMap.hash(key) & mask; ; i = (i + 1) & mask) {
+            int k = ks[i];
+            if (k == key)
+                return i;
+            if (k == 0)
+                return -1;
+        }
+    }
+
+    /**
+     * 查找指定键的位置，不存在时插入该键（值为0）
+     * 插入后可能扩容，因此返回的下标是在扩容之后的数组中的位置
+     *
+     * @param key 键，不能为0
+     * @return 返回下标，新插入的键返回(-下标 - 1)
+     */
+    final int insertIndex(int key) {
+        int[] ks;
+        if ((ks = keys) == null)
+            ks = resize();
+        int mask = ks.length - 1;
+        int i = IntHashMap.hash(key) & mask;
+        for (int k; (k = ks[i]) != 0; i = (i + 1) & mask) {
+            if (k == key)
+                return i;
+        }
+        ks[i] = key;
+        if (++size - (containsZeroKey ? 1 : 0) > threshold) {
+            resize();
+            i = findIndex(key);
+        }
+        return -i - 1;
+    }
+
+    /* ---------------- 查询 -------------- */
+
+    /**
+     * 得到键值对的个数
+     *
+     * @return 返回键值对的数量
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 判断是否为空
+     *
+     * @return 没有键值对时返回true
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 得到指定key对应的value
+     *
+     * @param key 指定的key
+     * @return 返回查找到的value，没有查找到则返回0
+     */
+    public int get(int key) {
+        return getOrDefault(key, 0);
+    }
+
+    /**
+     * 得到指定key对应的value，没有查找到时返回defaultValue
+     *
+     * @param key          指定的key
+     * @param defaultValue 默认值
+     * @return 返回查找到的value或者defaultValue
+     */
+    public int getOrDefault(int key, int defaultValue) {
+        if (key == 0)
+            return containsZeroKey ? zeroValue : defaultValue;
+        int i = findIndex(key);
+        return (i < 0) ? defaultValue : vals[i];
+    }
+
+    /**
+     * 判断是否包含指定的key
+     *
+     * @param key 指定的key
+     * @return 包含则返回true
+     */
+    public boolean containsKey(int key) {
+        return (key == 0) ? containsZeroKey : findIndex(key) >= 0;
+    }
+
+    /**
+     * 判断是否包含指定的value
+     *
+     * @param value 指定的value
+     * @return 包含则返回true
+     */
+    public boolean containsValue(int value) {
+        if (containsZeroKey && zeroValue == value)
+            return true;
+        int[] ks;
+        if ((ks = keys) != null) {
+            int[] vs = vals;
+            for (int i = 0; i < ks.length; ++i) {
+                if (ks[i] != 0 && vs[i] == value)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /* ---------------- 修改 -------------- */
+
+    /**
+     * 添加键值对，已经存在该key时用新值覆盖旧值
+     *
+     * @param key   键
+     * @param value 值
+     * @return 返回旧值，不存在时返回0
+     */
+    public int put(int key, int value) {
+        int oldValue;
+        if (key == 0) {
+            oldValue = zeroValue;
+            if (!containsZeroKey) {
+                containsZeroKey = true;
+                ++size;
+            }
+            zeroValue = value;
+            return oldValue;
+        }
+        int i = insertIndex(key);
+        if (i < 0)
+            i = -i - 1;
+        oldValue = vals[i];
+        vals[i] = value;
+        return oldValue;
+    }
+
+    /**
+     * 只有不存在该key时才添加
+     *
+     * @param key   键
+     * @param value 值
+     * @return 返回已有的值，不存在时返回0
+     */
+    public int putIfAbsent(int key, int value) {
+        if (key == 0) {
+            if (containsZeroKey)
+                return zeroValue;
+            containsZeroKey = true;
+            ++size;
+            zeroValue = value;
+            return 0;
+        }
+        int i = insertIndex(key);
+        if (i >= 0)
+            return vals[i];
+        vals[-i - 1] = value;
+        return 0;
+    }
+
+    /**
+     * 将指定key的值加上delta，不存在该key时视为旧值为0
+     * 相当于HashMap<Integer, Integer>的merge(key, delta, Integer::sum)，但只查找一次，也不装箱，适合做计数器
+     *
+     * @param key   键
+     * @param delta 增量
+     * @return 返回相加之后的新值
+     */
+    public int addTo(int key, int delta) {
+        if (key == 0) {
+            if (!containsZeroKey) {
+                containsZeroKey = true;
+                ++size;
+            }
+            return zeroValue += delta;
+        }
+        int i = insertIndex(key);
+        if (i < 0)
+            i = -i - 1;
+        return vals[i] += delta;
+    }
+
+    /**
+     * 如果不存在该key，则用mappingFunction计算出值并添加
+     * mappingFunction不应该修改当前的map；如果修改了，与IntHashMap一样在调用之后重新查找插入位置，
+     * 即使函数中插入了该key，也用计算出来的值覆盖，不会重复计入size
+     *
+     * @param key             键
+     * @param mappingFunction 根据键计算值的函数
+     * @return 返回已有的值或者计算出来的值
+     */
+    public int computeIfAbsent(int key, IntUnaryOperator mappingFunction) {
+        if (mappingFunction == null)
+            throw new NullPointerException();
+        if (key == 0) {
+            if (containsZeroKey)
+                return zeroValue;
+        } else {
+            int i = findIndex(key);
+            if (i >= 0)
+                return vals[i];
+        }
+        // 先计算再插入，函数抛出异常时不会留下键
+        int v = mappingFunction.applyAsInt(key);
+        put(key, v);
+        return v;
+    }
+
+    /**
+     * 初始化或扩容
+     *
+     * @return 返回新的keys数组
+     */
+    final int[] resize() {
+        int[] oldKeys = keys;
+        int oldCap = (oldKeys == null) ? 0 : oldKeys.length;
+        int newCap;
+        if (oldCap > 0) {
+            if (oldCap >= IntHashMap.MAXIMUM_CAPACITY) {
+                if (size - (containsZeroKey ? 1 : 0) >= IntHashMap.MAXIMUM_CAPACITY - 1)
+                    throw new IllegalStateException("Capacity exhausted.");
+                threshold = IntHashMap.MAXIMUM_CAPACITY - 1;
+                return oldKeys;
+            }
+            newCap = oldCap << 1;
+        } else if (threshold > 0)
+            newCap = threshold;
+        else
+            newCap = IntHashMap.DEFAULT_INITIAL_CAPACITY;
+        threshold = Math.min((int) (newCap * loadFactor), newCap - 1);
+        int[] oldVals = vals;
+        int[] ks = new int[newCap];
+        int[] vs = new int[newCap];
+        int mask = newCap - 1;
+        for (int j = 0; j < oldCap; ++j) {
+            int k;
+            if ((k = oldKeys[j]) != 0) {
+                int i = IntHashMap.hash(k) & mask;
+                while (ks[i] != 0)
+                    i = (i + 1) & mask;
+                ks[i] = k;
+                vs[i] = oldVals[j];
+            }
+        }
+        keys = ks;
+        vals = vs;
+        return ks;
+    }
+
+    /**
+     * 移除指定key的键值对
+     *
+     * @param key 指定的key
+     * @return 返回被删除键值对的值，不存在时返回0
+     */
+    public int remove(int key) {
+        if (key == 0) {
+            if (!containsZeroKey)
+                return 0;
+            int oldValue = zeroValue;
+            containsZeroKey = false;
+            zeroValue = 0;
+            --size;
+            return oldValue;
+        }
+        int i = findIndex(key);
+        if (i < 0)
+            return 0;
+        int oldValue = vals[i];
+        --size;
+        shiftKeys(i);
+        return oldValue;
+    }
+
+    /**
+     * 向后移位删除，参考OpenHashMap.shiftKeys()
+     *
+     * @param i 空出来的位置
+     */
+    final void shiftKeys(int i) {
+        int[] ks = keys;
+        int[] vs = vals;
+        int mask = ks.length - 1;
+        for (int j = (i + 1) & mask; ; j = (j + 1) & mask) {
+            int k;
+            if ((k = ks[j]) == 0)
+                break;
+            if (OpenHashMap.canShift(IntHashMap.hash(k) & mask, i, j)) {
+                ks[i] = k;
+                vs[i] = vs[j];
+                i = j;
+            }
+        }
+        ks[i] = 0;
+        vs[i] = 0;
+    }
+
+    /**
+     * 清空所有键值对，保留数组容量
+     */
+    public void clear() {
+        if (size > 0) {
+            size = 0;
+            containsZeroKey = false;
+            zeroValue = 0;
+            if (keys != null) {
+                Arrays.fill(keys, 0);
+                Arrays.fill(vals, 0);
+            }
+        }
+    }
+
+    /* ---------------- 遍历 -------------- */
+
+    /**
+     * 遍历所有键值对
+     *
+     * @param action 对每个键值对执行的操作
+     */
+    public void forEach(EntryConsumer action) {
+        if (action == null)
+            throw new NullPointerException();
+        if (containsZeroKey)
+            action.accept(0, zeroValue);
+        int[] ks;
+        if ((ks = keys) != null) {
+            int[] vs = vals;
+            for (int i = 0; i < ks.length; ++i) {
+                int k;
+                if ((k = ks[i]) != 0)
+                    action.accept(k, vs[i]);
+            }
+        }
+    }
+
+    /**
+     * 得到所有的键
+     *
+     * @return 返回包含所有键的新数组，顺序不确定
+     */
+    public int[] keys() {
+        int[] result = new int[size];
+        int n = 0;
+        if (containsZeroKey)
+            result[n++] = 0;
+        int[] ks;
+        if ((ks = keys) != null) {
+            for (int k : ks) {
+                if (k != 0)
+                    result[n++] = k;
+            }
+        }
+        return result;
+    }
+
+    /* ---------------- Object方法 -------------- */
+
+    /**
+     * 与另一个IntIntHashMap比较，包含的键值对完全相同时返回true
+     */
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof IntIntHashMap))
+            return false;
+        IntIntHashMap m = (IntIntHashMap) o;
+        if (m.size() != size)
+            return false;
+        if (containsZeroKey && (!m.containsZeroKey || zeroValue != m.zeroValue))
+            return false;
+        int[] ks;
+        if ((ks = keys) != null) {
+            int[] vs = vals;
+            for (int i = 0; i < ks.length; ++i) {
+                int k, j;
+                if ((k = ks[i]) != 0 && ((j = m.findIndex(k)) < 0 || vs[i] != m.vals[j]))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 哈希值的计算方式与包含相同键值对的Map<Integer, Integer>一致
+     */
+    public int hashCode() {
+        int h = containsZeroKey ? zeroValue : 0;
+        int[] ks;
+        if ((ks = keys) != null) {
+            int[] vs = vals;
+            for (int i = 0; i < ks.length; ++i) {
+                int k;
+                if ((k = ks[i]) != 0)
+                    h += k ^ vs[i];
+            }
+        }
+        return h;
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder().append('{');
+        forEach((k, v) -> {
+            if (sb.length() > 1)
+                sb.append(", ");
+            sb.append(k).append('=').append(v);
+        });
+        return sb.append('}').toString();
+    }
+
+    /* ------------------------------------------------------------ */
+    // Cloning and serialization
+
+    /**
+     * 返回拷贝
+     *
+     * @return 返回该Map的拷贝
+     */
+    @Override
+    public IntIntHashMap clone() {
+        IntIntHashMap result;
+        try {
+            result = (IntIntHashMap) super.clone();
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError(e);
+        }
+        if (keys != null) {
+            result.keys = keys.clone();
+            result.vals = vals.clone();
+        }
+        return result;
+    }
+
+    /**
+     * 序列化：键值对数量(int)，然后是每个键值对的键(int)和值(int)
+     */
+    private void writeObject(java.io.ObjectOutputStream s) throws IOException {
+        s.defaultWriteObject();
+        s.writeInt(size);
+        if (containsZeroKey) {
+            s.writeInt(0);
+            s.writeInt(zeroValue);
+        }
+        int[] ks;
+        if ((ks = keys) != null) {
+            int[] vs = vals;
+            for (int i = 0; i < ks.length; ++i) {
+                int k;
+                if ((k = ks[i]) != 0) {
+                    s.writeInt(k);
+                    s.writeInt(vs[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * 反序列化
+     */
+    private void readObject(java.io.ObjectInputStream s) throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        if (!(loadFactor > 0 && loadFactor < 1))
+            throw new InvalidObjectException("Illegal load factor: " + loadFactor);
+        int mappings = s.readInt();
+        if (mappings < 0)
+            throw new InvalidObjectException("Illegal mappings count: " + mappings);
+        float fc = (float) mappings / loadFactor + 1.0F;
+        threshold = (fc >= IntHashMap.MAXIMUM_CAPACITY) ? IntHashMap.MAXIMUM_CAPACITY :
+                HashMap.tableSizeFor(Math.max((int) fc, IntHashMap.DEFAULT_INITIAL_CAPACITY));
+        for (int i = 0; i < mappings; i++) {
+            int key = s.readInt();
+            put(key, s.readInt());
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package java.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * 线程安全的加载缓存，同一个键同时只有一次加载（single-flight），用来代替在外部加锁调用HashMap.computeIfAbsent()
+ * 1.内部是ConcurrentBinHashMap<K, CompletableFuture<V>>，键映射到加载结果的Future。第一个调用get(key)的线程
+ * 用putIfAbsent()放入一个未完成的Future并执行加载，同时到达的其他线程得到同一个Future并等待它完成，加载函数只执行一次。
+ * 2.加载在桶锁之外执行，ConcurrentBinHashMap.computeIfAbsent()在计算期间持有桶锁，会阻塞同一个桶中其他键的写操作，
+ * 这里只有putIfAbsent()一次很短的加锁，不同的键可以并行加载。
+ * 3.getAsync()在executor中加载，立即返回Future；get()在当前线程中加载，两者等待的是同一次加载，可以混合使用。
+ * getAsync()返回的是内部Future的副本（thenApply(Function.identity())），调用者cancel()、complete()或者obtrudeValue()
+ * 只影响自己的副本，不会让缓存中的键永远得到被取消或者被篡改的结果。
+ * 4.加载函数返回null或者抛出异常时不缓存，先从Map中删除这个Future再完成它，等待中的线程得到null或者异常，之后的调用重新加载。
+ * 5.加载函数中再次get()同一个键会永远等待自己，此时抛出IllegalStateException。
+ * 6.不淘汰，需要限制大小时调用invalidate()；键不能为null。
+ *
+ * @param <K> 泛型，表示键值对中的键
+ * @param <V> 泛型，表示键值对中的值
+ * @see ConcurrentBinHashMap
+ * @see BoundedCache
+ */
+public class LoadingCache<K, V> {
+    /**
+     * 键到加载结果的映射，正在加载的键映射到未完成的Future
+     */
+    final ConcurrentBinHashMap<K, CompletableFuture<V>> map;
+
+    /**
+     * 加载函数
+     */
+    final Function<? super K, ? extends V> loader;
+
+    /**
+     * getAsync()执行加载的Executor
+     */
+    final Executor executor;
+
+    /**
+     * 加载中的Future，记录正在执行加载的线程，用来发现递归加载
+     */
+    static final class Loading<V> extends CompletableFuture<V> {
+        volatile Thread loader;
+    }
+
+    /* ---------------- 构造方法 -------------- */
+
+    /**
+     * 使用ForkJoinPool.commonPool()执行异步加载
+     *
+     * @param loader 加载函数
+     * @throws NullPointerException loader为null
+     */
+    public LoadingCache(Function<? super K, ? extends V> loader) {
+        this(loader, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 带Executor的构造方法
+     *
+     * @param loader   加载函数
+     * @param executor 执行异步加载的Executor
+     * @throws NullPointerException loader或者executor为null
+     */
+    public LoadingCache(Function<? super K, ? extends V> loader, Executor executor) {
+        if (loader == null || executor == null)
+            throw new NullPointerException();
+        this.loader = loader;
+        this.executor = executor;
+        this.map = new ConcurrentBinHashMap<>();
+    }
+
+    /* ---------------- 查询 -------------- */
+
+    /**
+     * 得到指定key对应的value，没有缓存时在当前线程中加载，其他线程正在加载时等待其结果
+     *
+     * @param key 指定的key
+     * @return 返回value，加载函数返回null时返回null
+     * @throws NullPointerException  key为null
+     * @throws IllegalStateException 加载函数中递归加载同一个key
+     * @throws CompletionException   加载函数抛出了受检异常，原始异常是它的cause；非受检异常直接抛出
+     */
+    public V get(K key) {
+        for (CompletableFuture<V> f; ; ) {
+            if ((f = map.get(key)) == null) {
+                Loading<V> p = new Loading<>();
+                if ((f = map.putIfAbsent(key, p)) == null) {
+                    load(key, p);
+                    f = p;
+                }
+            }
+            // 被取消的Future视为不存在，删除后重新加载
+            if (f.isCancelled())
+                map.remove(key, f);
+            else
+                return join(f);
+        }
+    }
+
+    /**
+     * 得到指定key对应的value的Future，没有缓存时在executor中加载，不阻塞当前线程
+     *
+     * @param key 指定的key
+     * @return 返回加载结果的Future的副本，与其他线程同时加载同一个key时等待同一次加载；取消它不会取消加载
+     * @throws NullPointerException key为null
+     */
+    public CompletableFuture<V> getAsync(K key) {
+        for (CompletableFuture<V> f; ; ) {
+            if ((f = map.get(key)) == null) {
+                Loading<V> p = new Loading<>();
+                if ((f = map.putIfAbsent(key, p)) == null) {
+                    try {
+                        executor.execute(() -> load(key, p));
+                    } catch (Throwable ex) {
+                        // Executor拒绝执行，同样不缓存
+                        map.remove(key, p);
+                        p.completeExceptionally(ex);
+                    }
+                    f = p;
+                }
+            }
+            if (f.isCancelled())
+                map.remove(key, f);
+            else
+                return f.thenApply(Function.identity());
+        }
+    }
+
+    /**
+     * 得到已经加载完成的value，不触发加载，也不等待正在进行的加载
+     *
+     * @param key 指定的key
+     * @return 返回value，没有缓存或者还没有加载完成时返回null
+     */
+    public V getIfPresent(Object key) {
+        CompletableFuture<V> f;
+        if ((f = map.get(key)) == null || !f.isDone() || f.isCompletedExceptionally())
+            return null;
+        return f.join();
+    }
+
+    /**
+     * 缓存的键值对数量，包括正在加载的键
+     */
+    public long size() {
+        return map.mappingCount();
+    }
+
+    /* ---------------- 修改 -------------- */
+
+    /**
+     * 直接放入value，正在进行的加载完成后不会覆盖它，但等待该加载的线程得到的是加载的结果
+     *
+     * @throws NullPointerException key或者value为null
+     */
+    public void put(K key, V value) {
+        if (value == null)
+            throw new NullPointerException();
+        map.put(key, CompletableFuture.completedFuture(value));
+    }
+
+    /**
+     * 删除指定key的缓存，正在进行的加载不会被取消，但它的结果不再被缓存
+     */
+    public void invalidate(Object key) {
+        map.remove(key);
+    }
+
+    /**
+     * 删除所有缓存
+     */
+    public void invalidateAll() {
+        map.clear();
+    }
+
+    /* ---------------- 加载 -------------- */
+
+    /**
+     * 执行加载并完成p，p已经由当前调用放入map
+     * 结果为null或者加载失败时用remove(key, p)删除，只删除自己放入的Future，不会误删之后put()或者其他加载放入的值
+     */
+    final void load(K key, Loading<V> p) {
+        V v;
+        p.loader = Thread.currentThread();
+        try {
+            v = loader.apply(key);
+        } catch (Throwable ex) {
+            map.remove(key, p);
+            p.completeExceptionally(ex);
+            return;
+        } finally {
+            p.loader = null;
+        }
+        if (v == null)
+            map.remove(key, p);
+        p.complete(v);
+    }
+
+    /**
+     * 等待f完成并返回结果
+     * 非受检异常和Error原样抛出，与直接调用加载函数时相同
+     */
+    final V join(CompletableFuture<V> f) {
+        if (!f.isDone() && f instanceof Loading && ((Loading<V>) f).loader == Thread.currentThread())
+            throw new IllegalStateException("Recursive load");
+        try {
+            return f.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw ex;
+        }
+    }
+}
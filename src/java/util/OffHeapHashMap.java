@@ -0,0 +1,1073 @@
+package java.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BiConsumer;
+
+/**
+ * 键和值都序列化后存放在堆外内存（直接缓冲区）中的哈希表，用于很大、基本只读的数据集
+ * 1.堆上只有少量的ByteBuffer对象，不管存放多少键值对，GC都不需要遍历它们，Full GC的耗时与Map的大小无关。
+ * 2.与OpenHashMap相同，使用线性探测的开放寻址，容量是2的n次方（HashMap.tableSizeFor()），负载因子为0.5，
+ * 删除时使用向后移位删除；哈希值由键的编解码器计算，再与HashMap.hash(Object)一样把高16位异或到低16位。
+ * 3.槽位数组存放在堆外，每个槽位是一个long：低40位是记录的地址，高24位是哈希值的高24位，用来在比较键之前快速排除不相等的键，
+ * 0表示空槽位。记录依次追加在数据区中，格式是哈希值(int)、键的字节数(int)、值的字节数(int)、键、值。
+ * 4.查找时用BufferCodec.matches()直接比较编码后的键，不解码；get()只解码值。
+ * 5.数据区和槽位数组都按1GB分页，每页是一个直接缓冲区，因此总大小不受单个ByteBuffer 2GB的限制，记录不会跨页。
+ * 第一页从64KB开始按2倍增长，之后每次分配一整页。直接内存的上限由-XX:MaxDirectMemorySize设置。
+ * 6.值变长时追加新的记录，删除时旧记录不会立即回收，成为垃圾，可以通过compact()整理。
+ * 7.不允许null键和null值。不是线程安全的；没有线程修改时，多个线程可以同时读取。
+ * 8.使用完毕后应调用close()立即释放堆外内存，否则要等ByteBuffer被GC回收后才释放，之后再访问抛出IllegalStateException。
+ * 9.writeSnapshot()把槽位数组和数据区原样写入文件，openSnapshot()通过FileChannel.map()映射文件得到只读的Map，
+ * 不需要反序列化和重新计算哈希值，打开后立即可以查找，页面由操作系统按需读入。
+ * 快照中的槽位位置由键的编解码器的hash()决定，因此要求它跨进程稳定（BufferCodec.stableHash()）。
+ *
+ * @param <K> 泛型，表示键值对中的键
+ * @param <V> 泛型，表示键值对中的值
+ * @see BufferCodec
+ * @see OpenHashMap
+ */
+public class OffHeapHashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Closeable {
+    /**
+     * 每页的大小是2的PAGE_SHIFT次方，即1GB
+     */
+    static final int PAGE_SHIFT = 30;
+
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+    static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    /**
+     * 数据区第一页的初始大小
+     */
+    static final int INITIAL_DATA_SIZE = 1 << 16;
+
+    /**
+     * 常量，默认的初始化容量，必定是2的n次方
+     */
+    static final int DEFAULT_INITIAL_CAPACITY = 1 << 4;
+
+    /**
+     * 常量，最大容量，与HashMap相同，此时槽位数组占用8GB
+     */
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * 常量，负载因子，与OpenHashMap相同
+     */
+    static final float LOAD_FACTOR = 0.5f;
+
+    /**
+     * 记录头的字节数：哈希值、键的字节数、值的字节数
+     */
+    static final int HEADER_SIZE = 12;
+
+    /**
+     * 槽位中记录地址的位数，数据区最大1TB
+     */
+    static final int ADDRESS_BITS = 40;
+
+    static final long ADDRESS_MASK = (1L << ADDRESS_BITS) - 1;
+
+    /**
+     * 快照文件的魔数，即ASCII的"OHHMSNAP"
+     */
+    static final long SNAPSHOT_MAGIC = 0x4F48484D534E4150L;
+
+    static final int SNAPSHOT_VERSION = 1;
+
+    /**
+     * 快照文件头的字节数，之后依次是槽位数组和数据区
+     */
+    static final int SNAPSHOT_HEADER_SIZE = 64;
+
+    /**
+     * openSnapshot()抽查的记录个数，用当前的编解码器重新计算哈希值，与文件中保存的比较
+     */
+    static final int SNAPSHOT_HASH_SAMPLES = 16;
+
+    /**
+     * 每个抽查位置最多探测的槽位个数，保证打开的耗时与容量无关
+     */
+    static final int SNAPSHOT_SAMPLE_PROBES = 64;
+
+    /**
+     * 键的编解码器
+     */
+    final BufferCodec<K> keyCodec;
+
+    /**
+     * 值的编解码器
+     */
+    final BufferCodec<V> valueCodec;
+
+    /**
+     * 槽位数组的分页，close()之后为null
+     */
+    ByteBuffer[] slots;
+
+    /**
+     * 槽位数组的容量减1
+     */
+    int mask;
+
+    /**
+     * 数据区的分页
+     */
+    ByteBuffer[] data;
+
+    /**
+     * 数据区中下一条记录的地址，地址0保留给空槽位，因此从8开始
+     */
+    long dataEnd;
+
+    /**
+     * 数据区中已经失效的字节数，包括被删除或者被替换的记录，以及页尾放不下记录而跳过的空间
+     */
+    long garbage;
+
+    /**
+     * 键值对的数量
+     */
+    int size;
+
+    /**
+     * 阈值，键值对的数量超过此值就会扩容
+     */
+    int threshold;
+
+    /**
+     * 结构性修改的次数，用于迭代器的快速失败
+     */
+    int modCount;
+
+    /**
+     * 是否是通过openSnapshot()映射的只读Map
+     */
+    boolean readOnly;
+
+    /**
+     * 对应键值对的映射集，keySet和values视图使用父类AbstractMap中的字段
+     */
+    Set<Map.Entry<K, V>> entrySet;
+
+    /* ---------------- 构造方法 -------------- */
+
+    /**
+     * 使用默认初始容量的构造方法
+     *
+     * @param keyCodec   键的编解码器
+     * @param valueCodec 值的编解码器
+     */
+    public OffHeapHashMap(BufferCodec<K> keyCodec, BufferCodec<V> valueCodec) {
+        this(keyCodec, valueCodec, 0);
+    }
+
+    /**
+     * 指定预期键值对数量的构造方法，预期数量准确时不会扩容
+     *
+     * @param keyCodec     键的编解码器
+     * @param valueCodec   值的编解码器
+     * @param expectedSize 预期的键值对数量
+     * @throws IllegalArgumentException expectedSize为负数
+     * @throws NullPointerException     keyCodec或者valueCodec为null
+     */
+    public OffHeapHashMap(BufferCodec<K> keyCodec, BufferCodec<V> valueCodec, int expectedSize) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("Illegal expected size: " + expectedSize);
+        this.keyCodec = Objects.requireNonNull(keyCodec);
+        this.valueCodec = Objects.requireNonNull(valueCodec);
+        int cap = capacityFor(expectedSize);
+        slots = newSlots(cap);
+        mask = cap - 1;
+        threshold = thresholdFor(cap);
+        data = new ByteBuffer[]{allocate(INITIAL_DATA_SIZE)};
+        dataEnd = 8L;
+    }
+
+    /**
+     * openSnapshot()使用的构造方法，直接使用映射好的槽位数组和数据区
+     */
+    OffHeapHashMap(BufferCodec<K> keyCodec, BufferCodec<V> valueCodec, ByteBuffer[] slots, int cap,
+                   ByteBuffer[] data, long dataEnd, long garbage, int size) {
+        this.keyCodec = Objects.requireNonNull(keyCodec);
+        this.valueCodec = Objects.requireNonNull(valueCodec);
+        this.slots = slots;
+        this.mask = cap - 1;
+        this.threshold = thresholdFor(cap);
+        this.data = data;
+        this.dataEnd = dataEnd;
+        this.garbage = garbage;
+        this.size = size;
+        this.readOnly = true;
+    }
+
+    /* ---------------- 堆外内存 -------------- */
+
+    /**
+     * 分配直接缓冲区，内容全部为0
+     */
+    static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * 立即释放直接缓冲区的内存，之后不能再访问它
+     */
+    static void free(ByteBuffer buf) {
+        sun.misc.Cleaner cleaner = ((sun.nio.ch.DirectBuffer) buf).cleaner();
+        if (cleaner != null)
+            cleaner.clean();
+    }
+
+    static void free(ByteBuffer[] pages) {
+        for (ByteBuffer p : pages)
+            free(p);
+    }
+
+    /**
+     * 根据期望的键值对数量计算容量
+     */
+    static int capacityFor(int expected) {
+        float fc = (float) expected / LOAD_FACTOR + 1.0F;
+        return (fc >= MAXIMUM_CAPACITY) ? MAXIMUM_CAPACITY :
+                HashMap.tableSizeFor(Math.max((int) fc, DEFAULT_INITIAL_CAPACITY));
+    }
+
+    /**
+     * 根据容量计算阈值，至少保留一个空槽位，保证探测一定能结束
+     */
+    static int thresholdFor(int cap) {
+        return Math.min((int) (cap * LOAD_FACTOR), cap - 1);
+    }
+
+    /**
+     * 分配容量为cap的槽位数组，不超过一页时只分配cap * 8个字节
+     */
+    static ByteBuffer[] newSlots(int cap) {
+        long bytes = (long) cap << 3;
+        if (bytes <= PAGE_SIZE)
+            return new ByteBuffer[]{allocate((int) bytes)};
+        ByteBuffer[] pages = new ByteBuffer[(int) (bytes >>> PAGE_SHIFT)];
+        for (int i = 0; i < pages.length; i++)
+            pages[i] = allocate(PAGE_SIZE);
+        return pages;
+    }
+
+    static long getSlot(ByteBuffer[] tab, int i) {
+        long pos = (long) i << 3;
+        return tab[(int) (pos >>> PAGE_SHIFT)].getLong((int) pos & PAGE_MASK);
+    }
+
+    static void setSlot(ByteBuffer[] tab, int i, long s) {
+        long pos = (long) i << 3;
+        tab[(int) (pos >>> PAGE_SHIFT)].putLong((int) pos & PAGE_MASK, s);
+    }
+
+    /**
+     * 哈希值的高24位，存放在槽位的高24位
+     */
+    static long tagOf(int hash) {
+        return (long) (hash >>> 8) << ADDRESS_BITS;
+    }
+
+    /**
+     * 修改之前检查是否是只读的快照
+     */
+    final void ensureWritable() {
+        if (readOnly)
+            throw new UnsupportedOperationException("Read-only snapshot");
+    }
+
+    /**
+     * 得到槽位数组，已经关闭时抛出异常
+     */
+    final ByteBuffer[] slots() {
+        ByteBuffer[] tab;
+        if ((tab = slots) == null)
+            throw new IllegalStateException("Map is closed");
+        return tab;
+    }
+
+    /**
+     * 地址所在的页
+     */
+    final ByteBuffer page(long addr) {
+        return data[(int) (addr >>> PAGE_SHIFT)];
+    }
+
+    /**
+     * 地址在页内的偏移量
+     */
+    static int offset(long addr) {
+        return (int) addr & PAGE_MASK;
+    }
+
+    /**
+     * 得到记录中存放的哈希值
+     */
+    final int hashAt(long addr) {
+        return page(addr).getInt(offset(addr));
+    }
+
+    /**
+     * 得到记录的总字节数
+     */
+    final int recordSize(long addr) {
+        ByteBuffer b = page(addr);
+        int off = offset(addr);
+        return HEADER_SIZE + b.getInt(off + 4) + b.getInt(off + 8);
+    }
+
+    /**
+     * 在数据区末尾分配len个字节，当前页放不下时跳到下一页的开头
+     *
+     * @return 返回分配的地址
+     */
+    final long allocateRecord(long len) {
+        if (len > PAGE_SIZE)
+            throw new IllegalArgumentException("Record too large: " + len);
+        long addr = dataEnd;
+        int p = (int) (addr >>> PAGE_SHIFT), off = offset(addr);
+        if (off + len > PAGE_SIZE) {
+            garbage += PAGE_SIZE - off;
+            addr = (long) ++p << PAGE_SHIFT;
+            off = 0;
+        }
+        if (addr + len > ADDRESS_MASK)
+            throw new IllegalStateException("Off-heap data exhausted");
+        if (p == data.length) {
+            data = Arrays.copyOf(data, p + 1);
+            data[p] = allocate(PAGE_SIZE);
+        } else if (off + len > data[p].capacity()) {
+            // 只有第一页可能小于PAGE_SIZE，容量翻倍直到能放下这条记录，并复制已经使用的部分
+            ByteBuffer old = data[p];
+            long cap = old.capacity();
+            while (cap < off + len)
+                cap <<= 1;
+            ByteBuffer b = allocate((int) Math.min(cap, PAGE_SIZE));
+            ByteBuffer src = old.duplicate();
+            src.position(0).limit(off);
+            b.put(src);
+            b.clear();
+            data[p] = b;
+            free(old);
+        }
+        dataEnd = addr + len;
+        return addr;
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @return 返回记录的地址
+     */
+    final long writeRecord(int hash, K key, int klen, V value, int vlen) {
+        long addr = allocateRecord((long) HEADER_SIZE + klen + vlen);
+        ByteBuffer b = page(addr);
+        int off = offset(addr);
+        b.putInt(off, hash);
+        b.putInt(off + 4, klen);
+        b.putInt(off + 8, vlen);
+        keyCodec.encode(key, b, off + HEADER_SIZE);
+        valueCodec.encode(value, b, off + HEADER_SIZE + klen);
+        return addr;
+    }
+
+    final K readKey(long addr) {
+        ByteBuffer b = page(addr);
+        int off = offset(addr);
+        return keyCodec.decode(b, off + HEADER_SIZE, b.getInt(off + 4));
+    }
+
+    final V readValue(long addr) {
+        ByteBuffer b = page(addr);
+        int off = offset(addr);
+        return valueCodec.decode(b, off + HEADER_SIZE + b.getInt(off + 4), b.getInt(off + 8));
+    }
+
+    /* ---------------- 查找 -------------- */
+
+    /**
+     * 计算键的哈希值
+     */
+    final int spread(K key) {
+        int h = keyCodec.hash(key);
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 查找指定键所在的槽位
+     *
+     * @return 返回槽位的下标；没有找到时返回-(i + 1)，i是探测结束时的空槽位
+     */
+    @SuppressWarnings("unchecked")
+    final int find(int hash, Object key) {
+        ByteBuffer[] tab = slots();
+        long tag = tagOf(hash);
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            long s = getSlot(tab, i);
+            if (s == 0L)
+                return -(i + 1);
+            // 先比较哈希值的高24位，相同时再比较编码后的键
+            if ((s & ~ADDRESS_MASK) == tag) {
+                long addr = s & ADDRESS_MASK;
+                ByteBuffer b = page(addr);
+                int off = offset(addr);
+                if (b.getInt(off) == hash && keyCodec.matches((K) key, b, off + HEADER_SIZE, b.getInt(off + 4)))
+                    return i;
+            }
+        }
+    }
+
+    /**
+     * 查找地址为addr的记录所在的槽位
+     */
+    final int slotOf(long addr) {
+        ByteBuffer[] tab = slots;
+        for (int i = hashAt(addr) & mask; ; i = (i + 1) & mask) {
+            long s = getSlot(tab, i);
+            if ((s & ADDRESS_MASK) == addr)
+                return i;
+            if (s == 0L)
+                return -1;
+        }
+    }
+
+    /* ---------------- 查询 -------------- */
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 得到指定key对应的value，只解码值
+     *
+     * @param key 指定的key
+     * @return 返回查找到的value，没有查找到或者key为null时返回null
+     * @throws ClassCastException key的类型与键的编解码器不符
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int i;
+        if (key == null || (i = find(spread((K) key), key)) < 0)
+            return null;
+        return readValue(getSlot(slots, i) & ADDRESS_MASK);
+    }
+
+    @SuppressWarnings("unchecked")
+    public boolean containsKey(Object key) {
+        return key != null && find(spread((K) key), key) >= 0;
+    }
+
+    /**
+     * @return 返回已经分配的堆外内存字节数，包括槽位数组和数据区
+     */
+    public long offHeapBytes() {
+        long n = 0L;
+        if (slots != null) {
+            for (ByteBuffer p : slots)
+                n += p.capacity();
+            for (ByteBuffer p : data)
+                n += p.capacity();
+        }
+        return n;
+    }
+
+    /**
+     * @return 返回数据区中已经失效、可以通过compact()回收的字节数
+     */
+    public long garbageBytes() {
+        return garbage;
+    }
+
+    /* ---------------- 修改 -------------- */
+
+    /**
+     * 添加键值对
+     * 键已经存在时，新值的字节数不超过旧值则原地覆盖，否则追加一条新记录
+     *
+     * @param key   键
+     * @param value 值
+     * @return 返回旧值或者null
+     * @throws NullPointerException key或者value为null
+     */
+    public V put(K key, V value) {
+        if (key == null || value == null)
+            throw new NullPointerException();
+        ensureWritable();
+        int hash = spread(key);
+        int i = find(hash, key);
+        int vlen = valueCodec.encodedSize(value);
+        if (i >= 0) {
+            long s = getSlot(slots, i), addr = s & ADDRESS_MASK;
+            V oldValue = readValue(addr);
+            ByteBuffer b = page(addr);
+            int off = offset(addr), klen = b.getInt(off + 4), oldLen = b.getInt(off + 8);
+            if (vlen <= oldLen) {
+                valueCodec.encode(value, b, off + HEADER_SIZE + klen);
+                b.putInt(off + 8, vlen);
+                garbage += oldLen - vlen;
+            } else {
+                long na = writeRecord(hash, key, klen, value, vlen);
+                setSlot(slots, i, (s & ~ADDRESS_MASK) | na);
+                garbage += HEADER_SIZE + klen + oldLen;
+            }
+            return oldValue;
+        }
+        if (size >= threshold) {
+            resize();
+            i = find(hash, key);
+        }
+        long addr = writeRecord(hash, key, keyCodec.encodedSize(key), value, vlen);
+        setSlot(slots, -i - 1, tagOf(hash) | addr);
+        ++size;
+        ++modCount;
+        return null;
+    }
+
+    /**
+     * 扩容，槽位数组的容量变为原来的2倍，记录本身不移动
+     * 槽位中只有哈希值的高24位，因此需要从记录头中读取完整的哈希值来计算新的位置
+     */
+    final void resize() {
+        int oldCap = mask + 1;
+        if (oldCap >= MAXIMUM_CAPACITY) {
+            // 已经达到最大容量，只要还有空位就继续使用，数组填满之前抛出异常
+            if (size >= MAXIMUM_CAPACITY - 1)
+                throw new IllegalStateException("Capacity exhausted.");
+            threshold = MAXIMUM_CAPACITY - 1;
+            return;
+        }
+        int newCap = oldCap << 1, m = newCap - 1;
+        ByteBuffer[] oldTab = slots, tab = newSlots(newCap);
+        for (int j = 0; j < oldCap; ++j) {
+            long s;
+            if ((s = getSlot(oldTab, j)) != 0L) {
+                int i = hashAt(s & ADDRESS_MASK) & m;
+                while (getSlot(tab, i) != 0L)
+                    i = (i + 1) & m;
+                setSlot(tab, i, s);
+            }
+        }
+        slots = tab;
+        mask = m;
+        threshold = thresholdFor(newCap);
+        free(oldTab);
+    }
+
+    /**
+     * 移除指定key的键值对
+     *
+     * @param key 指定的key
+     * @return 返回被删除键值对的值或者null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        int i;
+        if (key == null || (i = find(spread((K) key), key)) < 0)
+            return null;
+        long addr = getSlot(slots, i) & ADDRESS_MASK;
+        V oldValue = readValue(addr);
+        removeAt(i, addr, null);
+        return oldValue;
+    }
+
+    /**
+     * 删除槽位i上地址为addr的记录
+     */
+    final void removeAt(int i, long addr, HashIterator it) {
+        ensureWritable();
+        garbage += recordSize(addr);
+        ++modCount;
+        --size;
+        shiftSlots(i, it);
+    }
+
+    /**
+     * 向后移位删除，与OpenHashMap.shiftKeys()相同
+     * it不为null时，把从未遍历位置移动到已遍历位置的记录交给迭代器，参考OpenHashMap.HashIterator
+     */
+    final void shiftSlots(int i, HashIterator it) {
+        ByteBuffer[] tab = slots;
+        int m = mask, pos = i;
+        for (int j = (i + 1) & m; ; j = (j + 1) & m) {
+            long s;
+            if ((s = getSlot(tab, j)) == 0L)
+                break;
+            if (OpenHashMap.canShift(hashAt(s & ADDRESS_MASK) & m, i, j)) {
+                if (it != null && j < pos && i >= pos)
+                    it.addWrapped(s & ADDRESS_MASK);
+                setSlot(tab, i, s);
+                i = j;
+            }
+        }
+        setSlot(tab, i, 0L);
+    }
+
+    /**
+     * 清空所有键值对，保留槽位数组的容量，释放数据区
+     */
+    public void clear() {
+        ensureWritable();
+        ByteBuffer[] oldTab = slots(), oldData = data;
+        slots = newSlots(mask + 1);
+        data = new ByteBuffer[]{allocate(INITIAL_DATA_SIZE)};
+        dataEnd = 8L;
+        garbage = 0L;
+        size = 0;
+        ++modCount;
+        free(oldTab);
+        free(oldData);
+    }
+
+    /**
+     * 整理数据区：按槽位顺序把有效的记录复制到新的数据区中，然后释放旧的数据区
+     * 整理期间新旧数据区同时存在
+     */
+    public void compact() {
+        ensureWritable();
+        ByteBuffer[] tab = slots(), oldData = data;
+        long live = dataEnd - garbage;
+        data = new ByteBuffer[]{allocate((int) Math.min(Math.max(live, INITIAL_DATA_SIZE), PAGE_SIZE))};
+        dataEnd = 8L;
+        garbage = 0L;
+        for (int j = 0, n = mask + 1; j < n; ++j) {
+            long s;
+            if ((s = getSlot(tab, j)) != 0L) {
+                long addr = s & ADDRESS_MASK;
+                ByteBuffer ob = oldData[(int) (addr >>> PAGE_SHIFT)];
+                int off = offset(addr);
+                int len = HEADER_SIZE + ob.getInt(off + 4) + ob.getInt(off + 8);
+                long na = allocateRecord(len);
+                ByteBuffer src = ob.duplicate(), dst = page(na).duplicate();
+                src.position(off).limit(off + len);
+                dst.position(offset(na));
+                dst.put(src);
+                setSlot(tab, j, (s & ~ADDRESS_MASK) | na);
+            }
+        }
+        free(oldData);
+    }
+
+    /**
+     * 立即释放所有堆外内存（快照则解除映射），之后的访问抛出IllegalStateException，重复调用没有影响
+     */
+    public void close() {
+        ByteBuffer[] tab;
+        if ((tab = slots) != null) {
+            slots = null;
+            free(tab);
+            free(data);
+            data = null;
+            size = 0;
+            ++modCount;
+        }
+    }
+
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (action == null)
+            throw new NullPointerException();
+        ByteBuffer[] tab = slots();
+        int mc = modCount;
+        for (int j = 0, n = mask + 1; j < n && modCount == mc; ++j) {
+            long s;
+            if ((s = getSlot(tab, j)) != 0L) {
+                long addr = s & ADDRESS_MASK;
+                action.accept(readKey(addr), readValue(addr));
+            }
+        }
+        if (modCount != mc)
+            throw new ConcurrentModificationException();
+    }
+
+    /* ---------------- 快照 -------------- */
+
+    /**
+     * 把槽位数组和数据区原样写入文件，被删除或者被替换的记录也会写入，需要时先调用compact()
+     * 文件格式：64字节的文件头，依次是魔数(long)、版本(int)、字节序(int，1表示小端)、容量(int)、键值对数量(int)、
+     * 数据区长度(long)、失效字节数(long)，其余保留；然后是容量 * 8字节的槽位数组，最后是数据区。
+     * 多字节整数使用当前平台的字节序，打开时按文件头中记录的字节序读取。
+     * 槽位的位置和记录头中的哈希值都来自键的编解码器的hash()，它在不同进程中必须返回相同的结果，
+     * 否则在另一个进程中打开后查找不到键，而size()和遍历仍然正常。
+     *
+     * @param file 目标文件，已经存在时覆盖
+     * @throws IOException           写入失败
+     * @throws IllegalStateException 键的编解码器没有声明stableHash()
+     */
+    public void writeSnapshot(Path file) throws IOException {
+        ByteBuffer[] tab = slots();
+        if (!keyCodec.stableHash())
+            throw new IllegalStateException("Key codec hash is not stable across processes: " + keyCodec);
+        ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE).order(ByteOrder.nativeOrder());
+        header.putLong(SNAPSHOT_MAGIC)
+                .putInt(SNAPSHOT_VERSION)
+                .putInt(ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? 1 : 0)
+                .putInt(mask + 1)
+                .putInt(size)
+                .putLong(dataEnd)
+                .putLong(garbage);
+        header.clear();
+        long dataStart = SNAPSHOT_HEADER_SIZE + ((long) (mask + 1) << 3);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(ch, header, 0L);
+            for (int i = 0; i < tab.length; i++)
+                writeFully(ch, tab[i].duplicate(), SNAPSHOT_HEADER_SIZE + ((long) i << PAGE_SHIFT));
+            // 每页写到与地址对应的位置，第一页没有长满时留下的空洞读出来是0
+            for (int p = 0; p < data.length; p++) {
+                long start = (long) p << PAGE_SHIFT;
+                ByteBuffer b = data[p].duplicate();
+                b.limit((int) Math.min(b.capacity(), dataEnd - start));
+                writeFully(ch, b, dataStart + start);
+            }
+            if (ch.size() < dataStart + dataEnd)
+                writeFully(ch, ByteBuffer.allocate(1), dataStart + dataEnd - 1);
+        }
+    }
+
+    /**
+     * 从position开始把b的[0, limit)全部写入
+     */
+    static void writeFully(FileChannel ch, ByteBuffer b, long position) throws IOException {
+        b.position(0);
+        while (b.hasRemaining())
+            position += ch.write(b, position);
+    }
+
+    /**
+     * 映射writeSnapshot()写入的文件，得到只读的Map
+     * 1.文件通过FileChannel.map()以只读方式映射，不复制、不反序列化，打开的耗时与文件大小无关。
+     * 2.返回的Map不能修改，修改方法抛出UnsupportedOperationException。
+     * 3.调用close()解除映射；没有调用时，要等映射的ByteBuffer被GC回收后才解除。
+     * 4.打开时抽查最多SNAPSHOT_HASH_SAMPLES条记录，用keyCodec重新计算键的哈希值，与写入时保存的不同则说明
+     * hash()不稳定或者编解码器不匹配，抛出IOException，而不是返回一个查找不到键的Map。
+     *
+     * @param file       快照文件
+     * @param keyCodec   键的编解码器，必须与写入时相同，并且声明了stableHash()
+     * @param valueCodec 值的编解码器，必须与写入时相同
+     * @param <K>        泛型，表示键值对中的键
+     * @param <V>        泛型，表示键值对中的值
+     * @return 返回只读的Map
+     * @throws IOException              文件不是有效的快照、哈希值与keyCodec不一致或者读取失败
+     * @throws IllegalArgumentException keyCodec没有声明stableHash()
+     */
+    public static <K, V> OffHeapHashMap<K, V> openSnapshot(Path file, BufferCodec<K> keyCodec,
+                                                           BufferCodec<V> valueCodec) throws IOException {
+        if (!keyCodec.stableHash())
+            throw new IllegalArgumentException("Key codec hash is not stable across processes: " + keyCodec);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE).order(ByteOrder.nativeOrder());
+            while (header.hasRemaining()) {
+                if (ch.read(header) < 0)
+                    throw new IOException("Truncated snapshot header");
+            }
+            header.flip();
+            // 魔数按两种字节序都检查一次，确定文件的字节序
+            long magic = header.getLong(0);
+            if (magic != SNAPSHOT_MAGIC) {
+                if (Long.reverseBytes(magic) != SNAPSHOT_MAGIC)
+                    throw new IOException("Not a snapshot file");
+                header.order(header.order() == ByteOrder.BIG_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            }
+            ByteOrder order = header.getInt(12) == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+            int version = header.getInt(8), cap = header.getInt(16), size = header.getInt(20);
+            long dataEnd = header.getLong(24), garbage = header.getLong(32);
+            if (version != SNAPSHOT_VERSION)
+                throw new IOException("Unsupported snapshot version: " + version);
+            if (cap < DEFAULT_INITIAL_CAPACITY || cap > MAXIMUM_CAPACITY || (cap & (cap - 1)) != 0 ||
+                    size < 0 || size >= cap || dataEnd < 8L || dataEnd > ADDRESS_MASK)
+                throw new IOException("Corrupt snapshot header");
+            long slotBytes = (long) cap << 3, dataStart = SNAPSHOT_HEADER_SIZE + slotBytes;
+            if (ch.size() < dataStart + dataEnd)
+                throw new IOException("Truncated snapshot");
+            ByteBuffer[] slots = new ByteBuffer[(int) Math.max(1L, slotBytes >>> PAGE_SHIFT)];
+            for (int i = 0; i < slots.length; i++)
+                slots[i] = ch.map(FileChannel.MapMode.READ_ONLY, SNAPSHOT_HEADER_SIZE + ((long) i << PAGE_SHIFT),
+                        Math.min(slotBytes, PAGE_SIZE)).order(order);
+            ByteBuffer[] data = new ByteBuffer[(int) ((dataEnd - 1) >>> PAGE_SHIFT) + 1];
+            for (int p = 0; p < data.length; p++) {
+                long start = (long) p << PAGE_SHIFT;
+                data[p] = ch.map(FileChannel.MapMode.READ_ONLY, dataStart + start,
+                        Math.min(PAGE_SIZE, dataEnd - start)).order(order);
+            }
+            OffHeapHashMap<K, V> m =
+                    new OffHeapHashMap<>(keyCodec, valueCodec, slots, cap, data, dataEnd, garbage, size);
+            if (!m.hashesMatch()) {
+                m.close();
+                throw new IOException("Snapshot key hashes do not match the key codec");
+            }
+            return m;
+        }
+    }
+
+    /**
+     * 把槽位数组均分成SNAPSHOT_HASH_SAMPLES段，每段从开头探测最多SNAPSHOT_SAMPLE_PROBES个槽位，
+     * 对找到的第一条记录解码出键、重新计算哈希值，与记录头中保存的比较
+     *
+     * @return 抽查的记录都一致时返回true
+     */
+    final boolean hashesMatch() {
+        if (size == 0)
+            return true;
+        ByteBuffer[] tab = slots;
+        int n = mask + 1, step = Math.max(1, n / SNAPSHOT_HASH_SAMPLES);
+        for (int start = 0; start < n; start += step) {
+            for (int i = start, end = Math.min(n, start + SNAPSHOT_SAMPLE_PROBES); i < end; ++i) {
+                long s;
+                if ((s = getSlot(tab, i)) != 0L) {
+                    long addr = s & ADDRESS_MASK;
+                    if (spread(readKey(addr)) != hashAt(addr))
+                        return false;
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    /* ---------------- 视图 -------------- */
+
+    public Set<K> keySet() {
+        Set<K> ks = keySet;
+        if (ks == null) {
+            ks = new KeySet();
+            keySet = ks;
+        }
+        return ks;
+    }
+
+    final class KeySet extends AbstractSet<K> {
+        public final int size() {
+            return size;
+        }
+
+        public final void clear() {
+            OffHeapHashMap.this.clear();
+        }
+
+        public final Iterator<K> iterator() {
+            return new KeyIterator();
+        }
+
+        public final boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        @SuppressWarnings("unchecked")
+        public final boolean remove(Object key) {
+            int i;
+            if (key == null || (i = find(spread((K) key), key)) < 0)
+                return false;
+            removeAt(i, getSlot(slots, i) & ADDRESS_MASK, null);
+            return true;
+        }
+    }
+
+    public Collection<V> values() {
+        Collection<V> vs = values;
+        if (vs == null) {
+            vs = new Values();
+            values = vs;
+        }
+        return vs;
+    }
+
+    final class Values extends AbstractCollection<V> {
+        public final int size() {
+            return size;
+        }
+
+        public final void clear() {
+            OffHeapHashMap.this.clear();
+        }
+
+        public final Iterator<V> iterator() {
+            return new ValueIterator();
+        }
+    }
+
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es;
+        return (es = entrySet) == null ? (entrySet = new EntrySet()) : es;
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        public final int size() {
+            return size;
+        }
+
+        public final void clear() {
+            OffHeapHashMap.this.clear();
+        }
+
+        public final Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        public final boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            Object value = get(e.getKey());
+            return value != null && value.equals(e.getValue());
+        }
+
+        public final boolean remove(Object o) {
+            if (o instanceof Map.Entry) {
+                Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+                return OffHeapHashMap.this.remove(e.getKey(), e.getValue());
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 迭代器返回的键值对，键和值在返回时已经解码，setValue()通过put()写回
+     */
+    final class Entry implements Map.Entry<K, V> {
+        final K key;
+        V value;
+
+        Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public V setValue(V value) {
+            V oldValue = this.value;
+            put(key, value);
+            this.value = value;
+            return oldValue;
+        }
+
+        public boolean equals(Object o) {
+            if (o == this)
+                return true;
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /* ---------------- 迭代器 -------------- */
+
+    /**
+     * 迭代器从槽位数组末尾向前遍历，删除时的处理与OpenHashMap.HashIterator相同，
+     * 被移动到已遍历位置、还没有返回的记录按地址保存在wrapped中
+     */
+    abstract class HashIterator {
+        // 下一次从index - 1开始向前查找
+        int index;
+        // 最近一次返回的记录所在的槽位，-1表示没有或者已经被删除
+        int last = -1;
+        // 最近一次返回的记录的地址
+        long lastAddr;
+        // 最近一次返回的记录是否来自wrapped
+        boolean lastWrapped;
+        // 还没有返回的记录个数
+        int remaining;
+        int expectedModCount;
+        long[] wrapped;
+        int wrappedCount;
+
+        HashIterator() {
+            slots();
+            expectedModCount = modCount;
+            remaining = size;
+            index = mask + 1;
+        }
+
+        public final boolean hasNext() {
+            return remaining > 0;
+        }
+
+        final void addWrapped(long addr) {
+            if (wrapped == null)
+                wrapped = new long[2];
+            else if (wrappedCount == wrapped.length)
+                wrapped = Arrays.copyOf(wrapped, wrappedCount << 1);
+            wrapped[wrappedCount++] = addr;
+        }
+
+        /**
+         * 返回下一条记录的地址
+         */
+        final long nextAddress() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (remaining <= 0)
+                throw new NoSuchElementException();
+            remaining--;
+            lastWrapped = false;
+            ByteBuffer[] tab = slots;
+            while (--index >= 0) {
+                long s;
+                if ((s = getSlot(tab, index)) != 0L) {
+                    last = index;
+                    return lastAddr = s & ADDRESS_MASK;
+                }
+            }
+            // 槽位数组已经遍历完，剩下的记录在wrapped中
+            lastWrapped = true;
+            lastAddr = wrapped[--wrappedCount];
+            last = slotOf(lastAddr);
+            return lastAddr;
+        }
+
+        public final void remove() {
+            if (last < 0)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            // 槽位数组已经遍历完时，直接删除即可
+            removeAt(last, lastAddr, lastWrapped ? null : this);
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    final class KeyIterator extends HashIterator implements Iterator<K> {
+        public final K next() {
+            return readKey(nextAddress());
+        }
+    }
+
+    final class ValueIterator extends HashIterator implements Iterator<V> {
+        public final V next() {
+            return readValue(nextAddress());
+        }
+    }
+
+    final class EntryIterator extends HashIterator implements Iterator<Map.Entry<K, V>> {
+        public final Map.Entry<K, V> next() {
+            long addr = nextAddress();
+            return new Entry(readKey(addr), readValue(addr));
+        }
+    }
+}
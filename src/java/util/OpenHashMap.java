@@ -0,0 +1,887 @@
+package java.util;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.Serializable;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * 开放寻址（线性探测）实现的哈希表，是HashMap的姊妹实现
+ * 1.与HashMap相同，键的哈希值通过HashMap.hash(Object)扰动计算，容量也必定是2的n次方，下标用(n - 1) & hash计算。
+ * 2.与HashMap不同，不为每个键值对创建Node结点，键和值相邻地存放在同一个数组table中（与FrozenHashMap相同），
+ * 哈希值存放在平行的数组hashes中。发生冲突时向后线性探测下一个位置，查找时访问的是连续内存，不需要沿着next指针在堆中跳转；
+ * 命中时键和值通常在同一个缓存行，不像键和值分开存放时那样读取值还要再访问一次另一个数组。
+ * 3.删除时使用向后移位删除（backward-shift deletion），把后面同一簇中可以前移的元素前移填补空位，不使用墓碑标记，
+ * 因此删除后探测序列依然紧凑。
+ * 4.允许null键和null值，null键在table中用NULL_KEY对象代替（同IdentityHashMap）。
+ * 5.findIndex()、putVal()、resize()、shiftKeys()决定元素的摆放方式，RobinHoodHashMap重写它们，视图、迭代器和序列化共用。
+ *
+ * @param <K> 泛型，表示键值对中的键
+ * @param <V> 泛型，表示键值对中的值
+ * @see HashMap
+ * @see RobinHoodHashMap
+ */
+/*
+    extends
+        AbstractMap<K, V>   继承自抽象类AbstractMap<K, V>
+    implements
+        Map<K, V>   实现Map接口
+        Cloneable   标记性接口，表示该类可以被克隆
+        Serializable    标记性接口，表示该类可以被序列化和反序列化
+ */
+public class OpenHashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Cloneable, Serializable {
+    // 序列版本ID
+    private static final long serialVersionUID = -4179546120856216815L;
+
+    /**
+     * 常量，默认的初始化容量，必定是2的n次方
+     */
+    static final int DEFAULT_INITIAL_CAPACITY = 1 << 4;
+
+    /**
+     * 常量，最大容量，table的长度是容量的2倍，因此比HashMap小一半
+     */
+    static final int MAXIMUM_CAPACITY = 1 << 29;
+
+    /**
+     * 常量，默认的负载因子
+     * 线性探测在未命中时的平均探测长度约为(1 + 1/(1-α)^2)/2，α=0.75时约为8.5次，α=0.5时约为2.5次，
+     * 因此默认值比HashMap的0.75小，且负载因子必须小于1，保证数组中始终存在空位来结束探测
+     */
+    static final float DEFAULT_LOAD_FACTOR = 0.5f;
+
+    /**
+     * 代表null键的对象，table中键为null表示该位置为空
+     */
+    static final Object NULL_KEY = new Object();
+
+    /**
+     * 每个位置上键的哈希值，长度等于容量，用来在调用equals()之前快速排除不相等的键，以及删除时计算元素的初始位置
+     */
+    transient int[] hashes;
+
+    /**
+     * 存放键值对的数组，位置i的键在table[2 * i]，值在table[2 * i + 1]，长度是容量的2倍
+     * 键为null表示该位置为空，null键存放的是NULL_KEY
+     */
+    transient Object[] table;
+
+    /**
+     * 键值对的数量
+     */
+    transient int size;
+
+    /**
+     * 结构性修改的次数，用于迭代器的快速失败
+     */
+    transient int modCount;
+
+    /**
+     * 阈值，键值对的数量超过此值就会扩容，threshold = capacity * loadFactor
+     * 在数组还没有分配时，存放的是初始容量
+     */
+    transient int threshold;
+
+    /**
+     * 负载因子，取值范围是(0, 1)
+     */
+    final float loadFactor;
+
+    /**
+     * 对应键值对的映射集，keySet和values视图使用父类AbstractMap中的字段
+     */
+    transient Set<Map.Entry<K, V>> entrySet;
+
+    /* ---------------- 构造方法 -------------- */
+
+    /**
+     * 带两个参数的构造方法
+     *
+     * @param initialCapacity 初始化容量
+     * @param loadFactor      负载因子，必须大于0并且小于1
+     * @throws IllegalArgumentException initialCapacity为负数或者loadFactor不在(0, 1)范围内
+     */
+    public OpenHashMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        if (initialCapacity > MAXIMUM_CAPACITY)
+            initialCapacity = MAXIMUM_CAPACITY;
+        // 与HashMap不同，负载因子不能大于等于1，否则数组可能被填满，探测无法结束
+        if (!(loadFactor > 0 && loadFactor < 1))
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        this.loadFactor = loadFactor;
+        // 数组延迟到第一次添加时分配，此时threshold暂存的是初始容量
+        this.threshold = HashMap.tableSizeFor(initialCapacity);
+    }
+
+    /**
+     * 带初始容量的构造方法
+     *
+     * @param initialCapacity 初始化容量
+     */
+    public OpenHashMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * 无参构造方法
+     */
+    public OpenHashMap() {
+        this.loadFactor = DEFAULT_LOAD_FACTOR;
+    }
+
+    /**
+     * 使用Map集合构造
+     *
+     * @param m Map集合
+     */
+    public OpenHashMap(Map<? extends K, ? extends V> m) {
+        this.loadFactor = DEFAULT_LOAD_FACTOR;
+        putAll(m);
+    }
+
+    /* ---------------- 工具方法 -------------- */
+
+    /**
+     * 将null键转换成NULL_KEY
+     */
+    static Object maskNull(Object key) {
+        return (key == null ? NULL_KEY : key);
+    }
+
+    /**
+     * 将NULL_KEY还原成null键
+     */
+    static Object unmaskNull(Object key) {
+        return (key == NULL_KEY ? null : key);
+    }
+
+    /**
+     * 根据期望的键值对数量计算容量，保证容量是2的n次方，并且capacity * loadFactor >= expected
+     *
+     * @param expected 期望存放的键值对数量
+     * @return 返回容量
+     */
+    final int capacityFor(int expected) {
+        float fc = (float) expected / loadFactor + 1.0F;
+        return (fc >= MAXIMUM_CAPACITY) ? MAXIMUM_CAPACITY :
+                HashMap.tableSizeFor(Math.max((int) fc, DEFAULT_INITIAL_CAPACITY));
+    }
+
+    /**
+     * 根据容量计算阈值
+     */
+    final int thresholdFor(int cap) {
+        // 至少保留一个空位，保证探测一定能结束
+        return Math.min((int) (cap * loadFactor), cap - 1);
+    }
+
+    /**
+     * 查找指定键所在的位置
+     *
+     * @param hash 键的哈希值
+     * @param key  已经经过maskNull()转换的键
+     * @return 返回键在数组中的下标，没有找到则返回-1
+     */
+    int findIndex(int hash, Object key) {
+        Object[] tab;
+        if ((tab = table) == null)
+            return -1;
+        int[] hs = hashes;
+        int mask = hs.length - 1;
+        // 从初始位置开始向后线性探测，遇到空位说明键不存在
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            Object k = tab[i << 1];
+            if (k == null)
+                return -1;
+            // 同一个对象直接命中，不需要读取hashes；否则先比较哈希值，哈希值不相等就不需要调用equals()
+            if (k == key || (hs[i] == hash && key.equals(k)))
+                return i;
+        }
+    }
+
+    /* ---------------- 查询 -------------- */
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 得到指定key对应的value
+     *
+     * @param key 指定的key
+     * @return 返回查找到的value，没有查找到则返回null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int i = findIndex(HashMap.hash(key), maskNull(key));
+        return (i < 0) ? null : (V) table[(i << 1) + 1];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(Object key, V defaultValue) {
+        int i = findIndex(HashMap.hash(key), maskNull(key));
+        return (i < 0) ? defaultValue : (V) table[(i << 1) + 1];
+    }
+
+    public boolean containsKey(Object key) {
+        return findIndex(HashMap.hash(key), maskNull(key)) >= 0;
+    }
+
+    public boolean containsValue(Object value) {
+        Object[] tab;
+        if ((tab = table) != null && size > 0) {
+            for (int i = 0; i < tab.length; i += 2) {
+                Object v;
+                if (tab[i] != null && ((v = tab[i + 1]) == value || (value != null && value.equals(v))))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /* ---------------- 修改 -------------- */
+
+    public V put(K key, V value) {
+        return putVal(HashMap.hash(key), maskNull(key), value, false);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return putVal(HashMap.hash(key), maskNull(key), value, true);
+    }
+
+    /**
+     * 添加键值对
+     *
+     * @param hash         键的哈希值
+     * @param key          已经经过maskNull()转换的键
+     * @param value        值
+     * @param onlyIfAbsent 为true时，如果已经存在非null的旧值则不替换
+     * @return 返回旧值或者null
+     */
+    @SuppressWarnings("unchecked")
+    V putVal(int hash, Object key, V value, boolean onlyIfAbsent) {
+        Object[] tab;
+        if ((tab = table) == null)
+            tab = resize();
+        int[] hs = hashes;
+        int mask = hs.length - 1;
+        int i = hash & mask;
+        // 线性探测，直到找到相同的键或者空位
+        for (Object k; (k = tab[i << 1]) != null; i = (i + 1) & mask) {
+            if (k == key || (hs[i] == hash && key.equals(k))) {
+                V oldValue = (V) tab[(i << 1) + 1];
+                if (!onlyIfAbsent || oldValue == null)
+                    tab[(i << 1) + 1] = value;
+                return oldValue;
+            }
+        }
+        // 在空位上放入新的键值对
+        hs[i] = hash;
+        tab[i << 1] = key;
+        tab[(i << 1) + 1] = value;
+        ++modCount;
+        if (++size > threshold)
+            resize();
+        return null;
+    }
+
+    /**
+     * 初始化或扩容，扩容时容量变为原来的2倍，并将所有元素重新放到新数组中
+     *
+     * @return 返回新的table数组
+     */
+    Object[] resize() {
+        Object[] oldTab = table;
+        int oldCap = (oldTab == null) ? 0 : oldTab.length >>> 1;
+        int newCap;
+        if (oldCap > 0) {
+            if (oldCap >= MAXIMUM_CAPACITY) {
+                // 已经达到最大容量，只要还有空位就继续使用，数组填满之前抛出异常
+                if (size >= MAXIMUM_CAPACITY - 1)
+                    throw new IllegalStateException("Capacity exhausted.");
+                threshold = MAXIMUM_CAPACITY - 1;
+                return oldTab;
+            }
+            newCap = oldCap << 1;
+        } else if (threshold > 0)
+            // 使用构造方法指定的初始容量
+            newCap = threshold;
+        else
+            newCap = DEFAULT_INITIAL_CAPACITY;
+        threshold = thresholdFor(newCap);
+        int[] oldHashes = hashes;
+        int[] hs = new int[newCap];
+        Object[] tab = new Object[newCap << 1];
+        int mask = newCap - 1;
+        // 将旧数组中的元素放到新数组中，键一定互不相同，因此只需要找到第一个空位，不需要调用equals()
+        for (int j = 0; j < oldCap; ++j) {
+            Object k;
+            if ((k = oldTab[j << 1]) != null) {
+                int h = oldHashes[j], i = h & mask;
+                while (tab[i << 1] != null)
+                    i = (i + 1) & mask;
+                hs[i] = h;
+                tab[i << 1] = k;
+                tab[(i << 1) + 1] = oldTab[(j << 1) + 1];
+            }
+        }
+        hashes = hs;
+        table = tab;
+        return tab;
+    }
+
+    public void putAll(Map<? extends K, ? extends V> m) {
+        int s = m.size();
+        if (s > 0) {
+            // 预先扩容，避免逐个添加时多次扩容
+            if (table == null) {
+                int cap = capacityFor(s);
+                if (cap > threshold)
+                    threshold = cap;
+            } else {
+                while (s > threshold && hashes.length < MAXIMUM_CAPACITY)
+                    resize();
+            }
+            for (Map.Entry<? extends K, ? extends V> e : m.entrySet())
+                put(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * 移除指定key的键值对
+     *
+     * @param key 指定的key
+     * @return 返回被删除键值对的值或者null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        int i = findIndex(HashMap.hash(key), maskNull(key));
+        if (i < 0)
+            return null;
+        V oldValue = (V) table[(i << 1) + 1];
+        removeAt(i);
+        return oldValue;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        int i = findIndex(HashMap.hash(key), maskNull(key));
+        Object v;
+        if (i >= 0 && ((v = table[(i << 1) + 1]) == value || (value != null && value.equals(v)))) {
+            removeAt(i);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 删除指定位置上的元素，然后进行向后移位
+     *
+     * @param i 要被删除元素的下标
+     */
+    final void removeAt(int i) {
+        ++modCount;
+        --size;
+        shiftKeys(i);
+    }
+
+    /**
+     * 向后移位删除：从i的下一个位置开始遍历同一簇中的元素，如果某个元素的初始位置不在(i, j]这个循环区间内，
+     * 说明把它移动到i处之后依然能从初始位置探测到，那么将它移到i处，然后继续填补它留下的空位j，直到遇到空位为止
+     *
+     * @param i 空出来的位置
+     * @return 返回最终被置空的位置
+     */
+    int shiftKeys(int i) {
+        int[] hs = hashes;
+        Object[] tab = table;
+        int mask = hs.length - 1;
+        for (int j = (i + 1) & mask; ; j = (j + 1) & mask) {
+            Object k;
+            if ((k = tab[j << 1]) == null)
+                break;
+            if (canShift(hs[j] & mask, i, j)) {
+                hs[i] = hs[j];
+                tab[i << 1] = k;
+                tab[(i << 1) + 1] = tab[(j << 1) + 1];
+                i = j;
+            }
+        }
+        tab[i << 1] = null;
+        tab[(i << 1) + 1] = null;
+        return i;
+    }
+
+    /**
+     * 判断初始位置为home、当前位于j的元素能否移动到空位i
+     * 即home不在循环区间(i, j]内
+     */
+    static boolean canShift(int home, int i, int j) {
+        return (i <= j) ? (home <= i || home > j) : (home <= i && home > j);
+    }
+
+    /**
+     * 清空所有键值对，保留数组容量
+     */
+    public void clear() {
+        Object[] tab;
+        modCount++;
+        if ((tab = table) != null && size > 0) {
+            size = 0;
+            Arrays.fill(tab, null);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean replace(K key, V oldValue, V newValue) {
+        int i = findIndex(HashMap.hash(key), maskNull(key));
+        V v;
+        if (i >= 0 && ((v = (V) table[(i << 1) + 1]) == oldValue || (v != null && v.equals(oldValue)))) {
+            table[(i << 1) + 1] = newValue;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V replace(K key, V value) {
+        int i = findIndex(HashMap.hash(key), maskNull(key));
+        if (i >= 0) {
+            V oldValue = (V) table[(i << 1) + 1];
+            table[(i << 1) + 1] = value;
+            return oldValue;
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Object[] tab;
+        if (action == null)
+            throw new NullPointerException();
+        if (size > 0 && (tab = table) != null) {
+            int mc = modCount;
+            for (int i = 0; i < tab.length; i += 2) {
+                Object k;
+                if ((k = tab[i]) != null)
+                    action.accept((K) unmaskNull(k), (V) tab[i + 1]);
+            }
+            if (modCount != mc)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        Object[] tab;
+        if (function == null)
+            throw new NullPointerException();
+        if (size > 0 && (tab = table) != null) {
+            int mc = modCount;
+            for (int i = 0; i < tab.length; i += 2) {
+                Object k;
+                if ((k = tab[i]) != null)
+                    tab[i + 1] = function.apply((K) unmaskNull(k), (V) tab[i + 1]);
+            }
+            if (modCount != mc)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    /* ---------------- 视图 -------------- */
+
+    public Set<K> keySet() {
+        Set<K> ks = keySet;
+        if (ks == null) {
+            ks = new KeySet();
+            keySet = ks;
+        }
+        return ks;
+    }
+
+    final class KeySet extends AbstractSet<K> {
+        public final int size() {
+            return size;
+        }
+
+        public final void clear() {
+            OpenHashMap.this.clear();
+        }
+
+        public final Iterator<K> iterator() {
+            return new KeyIterator();
+        }
+
+        public final boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        public final boolean remove(Object key) {
+            int i = findIndex(HashMap.hash(key), maskNull(key));
+            if (i < 0)
+                return false;
+            removeAt(i);
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        public final void forEach(Consumer<? super K> action) {
+            Object[] tab;
+            if (action == null)
+                throw new NullPointerException();
+            if (size > 0 && (tab = table) != null) {
+                int mc = modCount;
+                for (int i = 0; i < tab.length; i += 2) {
+                    Object k;
+                    if ((k = tab[i]) != null)
+                        action.accept((K) unmaskNull(k));
+                }
+                if (modCount != mc)
+                    throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    public Collection<V> values() {
+        Collection<V> vs = values;
+        if (vs == null) {
+            vs = new Values();
+            values = vs;
+        }
+        return vs;
+    }
+
+    final class Values extends AbstractCollection<V> {
+        public final int size() {
+            return size;
+        }
+
+        public final void clear() {
+            OpenHashMap.this.clear();
+        }
+
+        public final Iterator<V> iterator() {
+            return new ValueIterator();
+        }
+
+        public final boolean contains(Object o) {
+            return containsValue(o);
+        }
+
+        @SuppressWarnings("unchecked")
+        public final void forEach(Consumer<? super V> action) {
+            Object[] tab;
+            if (action == null)
+                throw new NullPointerException();
+            if (size > 0 && (tab = table) != null) {
+                int mc = modCount;
+                for (int i = 0; i < tab.length; i += 2) {
+                    if (tab[i] != null)
+                        action.accept((V) tab[i + 1]);
+                }
+                if (modCount != mc)
+                    throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es;
+        return (es = entrySet) == null ? (entrySet = new EntrySet()) : es;
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        public final int size() {
+            return size;
+        }
+
+        public final void clear() {
+            OpenHashMap.this.clear();
+        }
+
+        public final Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        public final boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            Object key = e.getKey();
+            int i = findIndex(HashMap.hash(key), maskNull(key));
+            return i >= 0 && Objects.equals(table[(i << 1) + 1], e.getValue());
+        }
+
+        public final boolean remove(Object o) {
+            if (o instanceof Map.Entry) {
+                Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+                return OpenHashMap.this.remove(e.getKey(), e.getValue());
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 迭代器返回的键值对，记录键和它所在的位置
+     * 由于删除时会移动元素，位置可能失效，因此每次访问前都会检查该位置上是否仍然是这个键
+     */
+    final class Entry implements Map.Entry<K, V> {
+        // 经过maskNull()转换的键
+        final Object key;
+        // 最近一次所在的位置
+        int index;
+
+        Entry(Object key, int index) {
+            this.key = key;
+            this.index = index;
+        }
+
+        /**
+         * 得到键当前所在的位置，键已经被删除则返回-1
+         */
+        int slot() {
+            Object[] tab = table;
+            int i = index;
+            if (tab == null || (i << 1) >= tab.length || tab[i << 1] != key)
+                index = i = findIndex(HashMap.hash(unmaskNull(key)), key);
+            return i;
+        }
+
+        @SuppressWarnings("unchecked")
+        public K getKey() {
+            return (K) unmaskNull(key);
+        }
+
+        @SuppressWarnings("unchecked")
+        public V getValue() {
+            int i = slot();
+            return (i < 0) ? null : (V) table[(i << 1) + 1];
+        }
+
+        @SuppressWarnings("unchecked")
+        public V setValue(V value) {
+            int i = slot();
+            if (i < 0)
+                throw new IllegalStateException("Entry was removed");
+            V oldValue = (V) table[(i << 1) + 1];
+            table[(i << 1) + 1] = value;
+            return oldValue;
+        }
+
+        public boolean equals(Object o) {
+            if (o == this)
+                return true;
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(getKey(), e.getKey()) && Objects.equals(getValue(), e.getValue());
+        }
+
+        public int hashCode() {
+            return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+        }
+
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+
+    /* ---------------- 迭代器 -------------- */
+
+    /**
+     * 迭代器从数组末尾向前遍历
+     * 向后移位删除只会把元素从后面（循环意义上）移动到前面的空位，从后向前遍历时，被移动到已遍历位置的元素通常也是已经遍历过的；
+     * 唯一的例外是簇绕过数组末尾时，下标较小（还未遍历）的元素会被移动到下标较大（已经遍历）的位置，
+     * 这些元素记录在wrapped列表中，等数组遍历结束后再返回
+     */
+    abstract class HashIterator {
+        // 下一次从index - 1开始向前查找
+        int index;
+        // 最近一次返回的元素所在的位置，-1表示没有或者已经被删除
+        int last = -1;
+        // 还没有返回的元素个数
+        int remaining;
+        int expectedModCount;
+        // 被移动到已遍历位置、还没有返回的键
+        ArrayList<Object> wrapped;
+        // 最近一次返回的元素来自wrapped列表时，保存它的键
+        Object lastWrappedKey;
+
+        HashIterator() {
+            expectedModCount = modCount;
+            remaining = size;
+            index = (table == null) ? 0 : hashes.length;
+        }
+
+        public final boolean hasNext() {
+            return remaining > 0;
+        }
+
+        /**
+         * 返回下一个元素所在的位置
+         */
+        final int nextIndex() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (remaining <= 0)
+                throw new NoSuchElementException();
+            remaining--;
+            lastWrappedKey = null;
+            Object[] tab = table;
+            while (--index >= 0) {
+                if (tab[index << 1] != null)
+                    return last = index;
+            }
+            // 数组已经遍历完，剩下的元素在wrapped列表中
+            Object k = wrapped.remove(wrapped.size() - 1);
+            lastWrappedKey = k;
+            return last = findIndex(HashMap.hash(unmaskNull(k)), k);
+        }
+
+        public final void remove() {
+            if (last < 0)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            ++modCount;
+            --size;
+            if (lastWrappedKey != null) {
+                // 此时数组已经遍历完，剩下的元素都在wrapped列表中，直接删除即可
+                shiftKeys(last);
+                lastWrappedKey = null;
+            } else
+                shiftForIterator(last);
+            last = -1;
+            expectedModCount = modCount;
+        }
+
+        /**
+         * 迭代器版本的shiftKeys()，将从未遍历位置移动到已遍历位置的元素记录到wrapped列表中
+         */
+        private void shiftForIterator(int i) {
+            int pos = i;
+            int[] hs = hashes;
+            Object[] tab = table;
+            int mask = hs.length - 1;
+            for (int j = (i + 1) & mask; ; j = (j + 1) & mask) {
+                Object k;
+                if ((k = tab[j << 1]) == null)
+                    break;
+                if (canShift(hs[j] & mask, i, j)) {
+                    // j < pos说明该元素还没有被遍历，而i >= pos是已经遍历过的位置
+                    if (j < pos && i >= pos) {
+                        if (wrapped == null)
+                            wrapped = new ArrayList<>(2);
+                        wrapped.add(k);
+                    }
+                    hs[i] = hs[j];
+                    tab[i << 1] = k;
+                    tab[(i << 1) + 1] = tab[(j << 1) + 1];
+                    i = j;
+                }
+            }
+            tab[i << 1] = null;
+            tab[(i << 1) + 1] = null;
+        }
+    }
+
+    final class KeyIterator extends HashIterator implements Iterator<K> {
+        @SuppressWarnings("unchecked")
+        public final K next() {
+            return (K) unmaskNull(table[nextIndex() << 1]);
+        }
+    }
+
+    final class ValueIterator extends HashIterator implements Iterator<V> {
+        @SuppressWarnings("unchecked")
+        public final V next() {
+            return (V) table[(nextIndex() << 1) + 1];
+        }
+    }
+
+    final class EntryIterator extends HashIterator implements Iterator<Map.Entry<K, V>> {
+        public final Map.Entry<K, V> next() {
+            int i = nextIndex();
+            return new Entry(table[i << 1], i);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    // Cloning and serialization
+
+    /**
+     * 返回浅拷贝，键和值本身不会被克隆
+     *
+     * @return 返回该Map的浅拷贝
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public Object clone() {
+        OpenHashMap<K, V> result;
+        try {
+            result = (OpenHashMap<K, V>) super.clone();
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError(e);
+        }
+        if (table != null) {
+            result.hashes = hashes.clone();
+            result.table = table.clone();
+        }
+        result.modCount = 0;
+        result.entrySet = null;
+        return result;
+    }
+
+    /**
+     * 序列化，格式与HashMap相同：容量(int)、键值对数量(int)，然后是每个键值对的键和值
+     */
+    private void writeObject(java.io.ObjectOutputStream s) throws IOException {
+        s.defaultWriteObject();
+        s.writeInt((table == null) ? capacityFor(0) : hashes.length);
+        s.writeInt(size);
+        Object[] tab;
+        if (size > 0 && (tab = table) != null) {
+            for (int i = 0; i < tab.length; i += 2) {
+                Object k;
+                if ((k = tab[i]) != null) {
+                    s.writeObject(unmaskNull(k));
+                    s.writeObject(tab[i + 1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * 反序列化
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(java.io.ObjectInputStream s) throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        if (!(loadFactor > 0 && loadFactor < 1))
+            throw new InvalidObjectException("Illegal load factor: " + loadFactor);
+        s.readInt();                // 忽略容量
+        int mappings = s.readInt(); // 键值对数量
+        if (mappings < 0)
+            throw new InvalidObjectException("Illegal mappings count: " + mappings);
+        threshold = capacityFor(mappings);
+        for (int i = 0; i < mappings; i++) {
+            K key = (K) s.readObject();
+            V value = (V) s.readObject();
+            putVal(HashMap.hash(key), maskNull(key), value, false);
+        }
+    }
+}
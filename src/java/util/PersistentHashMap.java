@@ -0,0 +1,813 @@
+package java.util;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.Serializable;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * 基于HAMT（Hash Array Mapped Trie）的持久化哈希表，快照和克隆都是O(1)，适合大量线程读取、偶尔修改的场景
+ * 1.树中的结点创建之后不再修改。每个BitmapNode用哈希值的5位（从低位开始，依次右移5位）选择32个分支之一，
+ * bitmap记录哪些分支存在，array只存放存在的分支，第i个分支的下标是bitmap中低于它的1的个数。
+ * 分支是一个键值对，或者（键的位置为null时）一个子结点；哈希值完全相同的键放在CollisionNode中顺序比较。
+ * 2.修改时只复制从根到被修改位置路径上的结点，其余结点新旧两棵树共享，每次修改复制O(log32 n)个长度不超过64的数组，
+ * 而不是像HashMap.clone()那样复制整个table和所有结点。
+ * 3.根结点和键值对数量一起存放在一个不可修改的Trie对象中，由volatile字段root发布。读操作只读取一次root，不加锁，
+ * 总是看到某一次修改完成后的完整状态；写操作在this上同步，依次执行。
+ * 4.snapshot()和clone()只复制root引用，得到的Map与原Map互不影响，之后各自修改时才复制各自路径上的结点。
+ * 迭代器遍历创建时的快照，不会抛出ConcurrentModificationException，remove()和setValue()作用于当前的Map。
+ * 5.允许null键和null值，null键在结点中用NULL_KEY对象代替。
+ *
+ * @param <K> 泛型，表示键值对中的键
+ * @param <V> 泛型，表示键值对中的值
+ * @see HashMap
+ * @see FrozenHashMap
+ */
+public class PersistentHashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Cloneable, Serializable {
+    // 序列版本ID
+    private static final long serialVersionUID = -6370151245384624539L;
+
+    /**
+     * 常量，每层使用的哈希值位数
+     */
+    static final int BITS = 5;
+
+    /**
+     * 常量，每层的分支选择掩码
+     */
+    static final int MASK = (1 << BITS) - 1;
+
+    /**
+     * 常量，树的最大深度：32位哈希值最多分7层，再加一层CollisionNode
+     */
+    static final int MAX_DEPTH = 8;
+
+    /**
+     * 代替null键的对象
+     */
+    static final Object NULL_KEY = new Object();
+
+    /**
+     * 空树
+     */
+    static final Trie EMPTY = new Trie(new BitmapNode(0, new Object[0]), 0);
+
+    /**
+     * 当前的树，每次修改替换为新的Trie
+     */
+    transient volatile Trie root;
+
+    transient Set<Map.Entry<K, V>> entrySet;
+
+    /* ---------------- 构造方法 -------------- */
+
+    /**
+     * 无参构造方法
+     */
+    public PersistentHashMap() {
+        root = EMPTY;
+    }
+
+    /**
+     * 使用Map集合构造
+     *
+     * @param m Map集合
+     */
+    public PersistentHashMap(Map<? extends K, ? extends V> m) {
+        this();
+        putAll(m);
+    }
+
+    /**
+     * 共享指定的树
+     */
+    PersistentHashMap(Trie root) {
+        this.root = root;
+    }
+
+    /* ---------------- 工具方法 -------------- */
+
+    /**
+     * 将null键转换成NULL_KEY
+     */
+    static Object maskNull(Object key) {
+        return (key == null ? NULL_KEY : key);
+    }
+
+    /**
+     * 将NULL_KEY还原成null键
+     */
+    static Object unmaskNull(Object key) {
+        return (key == NULL_KEY ? null : key);
+    }
+
+    /**
+     * 计算已经经过maskNull()转换的键的哈希值，与HashMap相同
+     */
+    static int hash(Object k) {
+        return HashMap.hash(unmaskNull(k));
+    }
+
+    /**
+     * 哈希值在shift层对应的分支
+     */
+    static int bitpos(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    /**
+     * 复制数组并修改一个元素
+     */
+    static Object[] cloneAndSet(Object[] array, int i, Object a) {
+        Object[] clone = array.clone();
+        clone[i] = a;
+        return clone;
+    }
+
+    /**
+     * 复制数组并修改两个相邻的元素
+     */
+    static Object[] cloneAndSet(Object[] array, int i, Object a, Object b) {
+        Object[] clone = array.clone();
+        clone[i] = a;
+        clone[i + 1] = b;
+        return clone;
+    }
+
+    /**
+     * 复制数组并删除下标i处的一个键值对（两个元素）
+     */
+    static Object[] removePair(Object[] array, int i) {
+        Object[] a = new Object[array.length - 2];
+        System.arraycopy(array, 0, a, 0, 2 * i);
+        System.arraycopy(array, 2 * (i + 1), a, 2 * i, a.length - 2 * i);
+        return a;
+    }
+
+    /**
+     * 复制数组并在下标i处插入一个键值对
+     */
+    static Object[] insertPair(Object[] array, int i, Object k, Object v) {
+        Object[] a = new Object[array.length + 2];
+        System.arraycopy(array, 0, a, 0, 2 * i);
+        a[2 * i] = k;
+        a[2 * i + 1] = v;
+        System.arraycopy(array, 2 * i, a, 2 * (i + 1), array.length - 2 * i);
+        return a;
+    }
+
+    /* ---------------- 结点 -------------- */
+
+    /**
+     * 根结点和键值对数量，不可修改
+     */
+    static final class Trie {
+        final Node root;
+        final int size;
+
+        Trie(Node root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+    }
+
+    /**
+     * 一次修改的结果
+     */
+    static final class Result {
+        // 键原来是否存在
+        boolean found;
+        // 键原来对应的值
+        Object oldValue;
+    }
+
+    /**
+     * 不可修改的结点，修改方法返回新的结点，没有变化时返回this
+     */
+    abstract static class Node {
+        /**
+         * 查找键
+         *
+         * @param hash     键的哈希值
+         * @param shift    当前层使用的哈希值的起始位
+         * @param key      已经经过maskNull()转换的键
+         * @param notFound 没有找到时的返回值
+         * @return 返回键对应的值或者notFound
+         */
+        abstract Object find(int hash, int shift, Object key, Object notFound);
+
+        /**
+         * 添加或替换键值对
+         *
+         * @return 返回新的结点，值没有变化时返回this
+         */
+        abstract Node put(int hash, int shift, Object key, Object value, Result r);
+
+        /**
+         * 删除键值对
+         *
+         * @return 返回新的结点，键不存在时返回this，结点变为空时返回null
+         */
+        abstract Node remove(int hash, int shift, Object key, Result r);
+
+        /**
+         * 结点中的数组：BitmapNode中按键、值（或null、子结点）交替存放，CollisionNode中按键、值交替存放
+         */
+        abstract Object[] array();
+    }
+
+    /**
+     * 按哈希值的5位分支的结点
+     */
+    static final class BitmapNode extends Node {
+        final int bitmap;
+        final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        Object[] array() {
+            return array;
+        }
+
+        /**
+         * 分支在array中的序号（乘以2才是下标）
+         */
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        Object find(int hash, int shift, Object key, Object notFound) {
+            int bit = bitpos(hash, shift);
+            if ((bitmap & bit) == 0)
+                return notFound;
+            int i = index(bit) << 1;
+            Object k = array[i], v = array[i + 1];
+            if (k == null)
+                return ((Node) v).find(hash, shift + BITS, key, notFound);
+            return (k == key || key.equals(k)) ? v : notFound;
+        }
+
+        Node put(int hash, int shift, Object key, Object value, Result r) {
+            int bit = bitpos(hash, shift), idx = index(bit);
+            if ((bitmap & bit) == 0)
+                return new BitmapNode(bitmap | bit, insertPair(array, idx, key, value));
+            int i = idx << 1;
+            Object k = array[i], v = array[i + 1];
+            if (k == null) {
+                Node n = ((Node) v).put(hash, shift + BITS, key, value, r);
+                return (n == v) ? this : new BitmapNode(bitmap, cloneAndSet(array, i + 1, n));
+            }
+            if (k == key || key.equals(k)) {
+                r.found = true;
+                r.oldValue = v;
+                return (v == value) ? this : new BitmapNode(bitmap, cloneAndSet(array, i + 1, value));
+            }
+            // 分支上已经有另一个键，两个键一起下移到新的子结点
+            Node n = createNode(shift + BITS, k, v, hash, key, value);
+            return new BitmapNode(bitmap, cloneAndSet(array, i, null, n));
+        }
+
+        Node remove(int hash, int shift, Object key, Result r) {
+            int bit = bitpos(hash, shift);
+            if ((bitmap & bit) == 0)
+                return this;
+            int idx = index(bit), i = idx << 1;
+            Object k = array[i], v = array[i + 1];
+            if (k == null) {
+                Node n = ((Node) v).remove(hash, shift + BITS, key, r);
+                if (n == v)
+                    return this;
+                if (n != null) {
+                    // 子结点只剩一个键值对时上移到本结点，保持树的深度最小
+                    Object[] a = n.array();
+                    if (a.length == 2 && a[0] != null)
+                        return new BitmapNode(bitmap, cloneAndSet(array, i, a[0], a[1]));
+                    return new BitmapNode(bitmap, cloneAndSet(array, i + 1, n));
+                }
+            } else if (k == key || key.equals(k)) {
+                r.found = true;
+                r.oldValue = v;
+            } else
+                return this;
+            return (bitmap == bit) ? null : new BitmapNode(bitmap ^ bit, removePair(array, idx));
+        }
+    }
+
+    /**
+     * 哈希值完全相同的键，顺序比较
+     */
+    static final class CollisionNode extends Node {
+        final int hash;
+        final Object[] array;
+
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        Object[] array() {
+            return array;
+        }
+
+        int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                Object k = array[i];
+                if (k == key || key.equals(k))
+                    return i;
+            }
+            return -1;
+        }
+
+        Object find(int hash, int shift, Object key, Object notFound) {
+            int i;
+            return (hash == this.hash && (i = indexOf(key)) >= 0) ? array[i + 1] : notFound;
+        }
+
+        Node put(int hash, int shift, Object key, Object value, Result r) {
+            if (hash != this.hash) {
+                // 哈希值不同，把本结点放到一个BitmapNode的分支中，再添加
+                return new BitmapNode(bitpos(this.hash, shift), new Object[]{null, this})
+                        .put(hash, shift, key, value, r);
+            }
+            int i = indexOf(key);
+            if (i < 0)
+                return new CollisionNode(hash, insertPair(array, array.length >>> 1, key, value));
+            Object v = array[i + 1];
+            r.found = true;
+            r.oldValue = v;
+            return (v == value) ? this : new CollisionNode(hash, cloneAndSet(array, i + 1, value));
+        }
+
+        Node remove(int hash, int shift, Object key, Result r) {
+            int i;
+            if (hash != this.hash || (i = indexOf(key)) < 0)
+                return this;
+            r.found = true;
+            r.oldValue = array[i + 1];
+            if (array.length == 4) {
+                // 只剩一个键值对，换成普通的分支，由上一层上移
+                int j = (i == 0) ? 2 : 0;
+                return new BitmapNode(bitpos(hash, shift), new Object[]{array[j], array[j + 1]});
+            }
+            return new CollisionNode(hash, removePair(array, i >>> 1));
+        }
+    }
+
+    /**
+     * 创建包含两个键值对的结点，两个键在shift层的分支相同时继续向下，哈希值完全相同时使用CollisionNode
+     */
+    static Node createNode(int shift, Object k1, Object v1, int h2, Object k2, Object v2) {
+        int h1 = hash(k1);
+        if (h1 == h2)
+            return new CollisionNode(h1, new Object[]{k1, v1, k2, v2});
+        int b1 = bitpos(h1, shift), b2 = bitpos(h2, shift);
+        if (b1 == b2)
+            return new BitmapNode(b1, new Object[]{null, createNode(shift + BITS, k1, v1, h2, k2, v2)});
+        return new BitmapNode(b1 | b2, (Integer.compareUnsigned(b1, b2) < 0) ?
+                new Object[]{k1, v1, k2, v2} : new Object[]{k2, v2, k1, v1});
+    }
+
+    /* ---------------- 快照 -------------- */
+
+    /**
+     * 返回当前内容的快照，O(1)
+     * 快照与原Map共享所有结点，之后双方的修改互不影响
+     *
+     * @return 返回新的PersistentHashMap
+     */
+    public PersistentHashMap<K, V> snapshot() {
+        return new PersistentHashMap<>(root);
+    }
+
+    /* ---------------- 查询 -------------- */
+
+    public int size() {
+        return root.size;
+    }
+
+    public boolean isEmpty() {
+        return root.size == 0;
+    }
+
+    /**
+     * 得到指定key对应的value，不加锁
+     *
+     * @param key 指定的key
+     * @return 返回查找到的value，没有查找到则返回null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Object k = maskNull(key);
+        return (V) root.root.find(HashMap.hash(key), 0, k, null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(Object key, V defaultValue) {
+        Object k = maskNull(key);
+        return (V) root.root.find(HashMap.hash(key), 0, k, defaultValue);
+    }
+
+    public boolean containsKey(Object key) {
+        Object k = maskNull(key);
+        return root.root.find(HashMap.hash(key), 0, k, NULL_KEY) != NULL_KEY;
+    }
+
+    /* ---------------- 修改 -------------- */
+
+    /**
+     * 添加或替换键值对，复制从根到该键的路径
+     *
+     * @param key          键
+     * @param value        值
+     * @param onlyIfAbsent 为true时，如果已经存在非null的旧值则不替换
+     * @return 返回旧值或者null
+     */
+    @SuppressWarnings("unchecked")
+    final synchronized V putVal(Object key, V value, boolean onlyIfAbsent) {
+        Trie t = root;
+        Object k = maskNull(key);
+        int hash = HashMap.hash(key);
+        if (onlyIfAbsent) {
+            Object v = t.root.find(hash, 0, k, null);
+            if (v != null)
+                return (V) v;
+        }
+        Result r = new Result();
+        Node n = t.root.put(hash, 0, k, value, r);
+        if (n != t.root)
+            root = new Trie(n, r.found ? t.size : t.size + 1);
+        return (V) r.oldValue;
+    }
+
+    public V put(K key, V value) {
+        return putVal(key, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return putVal(key, value, true);
+    }
+
+    public synchronized void putAll(Map<? extends K, ? extends V> m) {
+        for (Map.Entry<? extends K, ? extends V> e : m.entrySet())
+            putVal(e.getKey(), e.getValue(), false);
+    }
+
+    /**
+     * 删除键值对，复制从根到该键的路径
+     *
+     * @param key   键
+     * @param value matchValue为true时，只有当前的值与value相等才删除
+     * @return 返回删除结果，键不存在或者值不相等时返回null
+     */
+    final synchronized Result removeNode(Object key, Object value, boolean matchValue) {
+        Trie t = root;
+        Object k = maskNull(key);
+        int hash = HashMap.hash(key);
+        if (matchValue) {
+            Object v = t.root.find(hash, 0, k, NULL_KEY);
+            if (v == NULL_KEY || !Objects.equals(v, value))
+                return null;
+        }
+        Result r = new Result();
+        Node n = t.root.remove(hash, 0, k, r);
+        if (!r.found)
+            return null;
+        root = (n == null) ? EMPTY : new Trie(n, t.size - 1);
+        return r;
+    }
+
+    /**
+     * 移除指定key的键值对
+     *
+     * @param key 指定的key
+     * @return 返回被删除键值对的值或者null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        Result r = removeNode(key, null, false);
+        return (r == null) ? null : (V) r.oldValue;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        return removeNode(key, value, true) != null;
+    }
+
+    /**
+     * 清空所有键值对，已有的快照不受影响
+     */
+    public synchronized void clear() {
+        root = EMPTY;
+    }
+
+    @Override
+    public synchronized boolean replace(K key, V oldValue, V newValue) {
+        Object v = root.root.find(HashMap.hash(key), 0, maskNull(key), NULL_KEY);
+        if (v == NULL_KEY || !Objects.equals(v, oldValue))
+            return false;
+        putVal(key, newValue, false);
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized V replace(K key, V value) {
+        Object v = root.root.find(HashMap.hash(key), 0, maskNull(key), NULL_KEY);
+        if (v == NULL_KEY)
+            return null;
+        putVal(key, value, false);
+        return (V) v;
+    }
+
+    /*
+     * 以下方法使用Map中的默认实现，加锁使整个操作不会与其他写操作交错
+     */
+
+    @Override
+    public synchronized V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        return super.computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public synchronized V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return super.computeIfPresent(key, remappingFunction);
+    }
+
+    @Override
+    public synchronized V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return super.compute(key, remappingFunction);
+    }
+
+    @Override
+    public synchronized V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        return super.merge(key, value, remappingFunction);
+    }
+
+    @Override
+    public synchronized void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        super.replaceAll(function);
+    }
+
+    /* ---------------- 遍历 -------------- */
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (action == null)
+            throw new NullPointerException();
+        forEach(root.root, (BiConsumer<Object, Object>) action);
+    }
+
+    static void forEach(Node node, BiConsumer<Object, Object> action) {
+        Object[] a = node.array();
+        for (int i = 0; i < a.length; i += 2) {
+            Object k = a[i];
+            if (k == null)
+                forEach((Node) a[i + 1], action);
+            else
+                action.accept(unmaskNull(k), a[i + 1]);
+        }
+    }
+
+    public Set<K> keySet() {
+        Set<K> ks = keySet;
+        if (ks == null) {
+            ks = new KeySet();
+            keySet = ks;
+        }
+        return ks;
+    }
+
+    final class KeySet extends AbstractSet<K> {
+        public final int size() {
+            return PersistentHashMap.this.size();
+        }
+
+        public final void clear() {
+            PersistentHashMap.this.clear();
+        }
+
+        public final Iterator<K> iterator() {
+            return new KeyIterator();
+        }
+
+        public final boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        public final boolean remove(Object key) {
+            return removeNode(key, null, false) != null;
+        }
+    }
+
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es;
+        return (es = entrySet) == null ? (entrySet = new EntrySet()) : es;
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        public final int size() {
+            return PersistentHashMap.this.size();
+        }
+
+        public final void clear() {
+            PersistentHashMap.this.clear();
+        }
+
+        public final Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        public final boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            Object key = e.getKey();
+            Object v = root.root.find(HashMap.hash(key), 0, maskNull(key), NULL_KEY);
+            return v != NULL_KEY && Objects.equals(v, e.getValue());
+        }
+
+        public final boolean remove(Object o) {
+            if (o instanceof Map.Entry) {
+                Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+                return PersistentHashMap.this.remove(e.getKey(), e.getValue());
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 迭代器返回的键值对，setValue()同时修改当前的Map
+     */
+    final class Entry extends AbstractMap.SimpleEntry<K, V> {
+        private static final long serialVersionUID = 5125452961591127045L;
+
+        Entry(K key, V value) {
+            super(key, value);
+        }
+
+        public V setValue(V value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    /**
+     * 深度优先遍历创建迭代器时的树，用栈记录每一层的数组和下标
+     */
+    abstract class TrieIterator {
+        final Object[][] arrays = new Object[MAX_DEPTH][];
+        final int[] indexes = new int[MAX_DEPTH];
+        // 栈顶的层，-1表示遍历结束
+        int depth;
+        // 下一个键值对所在的数组和下标
+        Object[] nextArray;
+        int nextPos;
+        // 最近一次返回的键（经过maskNull()转换），null表示没有或者已经被删除
+        Object lastKey;
+
+        TrieIterator() {
+            arrays[0] = root.root.array();
+            advance();
+        }
+
+        /**
+         * 找到下一个键值对，子结点入栈，数组遍历完时出栈
+         */
+        void advance() {
+            for (int d = depth; d >= 0; ) {
+                Object[] a = arrays[d];
+                int i = indexes[d];
+                if (i >= a.length) {
+                    arrays[d--] = null;
+                    continue;
+                }
+                indexes[d] = i + 2;
+                if (a[i] != null) {
+                    depth = d;
+                    nextArray = a;
+                    nextPos = i;
+                    return;
+                }
+                arrays[++d] = ((Node) a[i + 1]).array();
+                indexes[d] = 0;
+            }
+            depth = -1;
+            nextArray = null;
+        }
+
+        public final boolean hasNext() {
+            return nextArray != null;
+        }
+
+        /**
+         * 返回下一个键值对在nextArray中的下标，调用者需要先取出nextArray
+         */
+        final int nextIndex() {
+            Object[] a = nextArray;
+            if (a == null)
+                throw new NoSuchElementException();
+            int i = nextPos;
+            lastKey = a[i];
+            return i;
+        }
+
+        public final void remove() {
+            if (lastKey == null)
+                throw new IllegalStateException();
+            removeNode(unmaskNull(lastKey), null, false);
+            lastKey = null;
+        }
+    }
+
+    final class KeyIterator extends TrieIterator implements Iterator<K> {
+        @SuppressWarnings("unchecked")
+        public final K next() {
+            Object[] a = nextArray;
+            int i = nextIndex();
+            advance();
+            return (K) unmaskNull(a[i]);
+        }
+    }
+
+    final class EntryIterator extends TrieIterator implements Iterator<Map.Entry<K, V>> {
+        @SuppressWarnings("unchecked")
+        public final Map.Entry<K, V> next() {
+            Object[] a = nextArray;
+            int i = nextIndex();
+            advance();
+            return new Entry((K) unmaskNull(a[i]), (V) a[i + 1]);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    // Cloning and serialization
+
+    /**
+     * 返回浅拷贝，O(1)，与snapshot()相同
+     *
+     * @return 返回该Map的浅拷贝
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public Object clone() {
+        PersistentHashMap<K, V> result;
+        try {
+            result = (PersistentHashMap<K, V>) super.clone();
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError(e);
+        }
+        result.entrySet = null;
+        result.keySet = null;
+        result.values = null;
+        return result;
+    }
+
+    /**
+     * 序列化，写出键值对数量(int)和每个键值对的键和值，写出的是同一个快照
+     */
+    private void writeObject(java.io.ObjectOutputStream s) throws IOException {
+        s.defaultWriteObject();
+        Trie t = root;
+        s.writeInt(t.size);
+        writeNode(s, t.root);
+    }
+
+    private static void writeNode(java.io.ObjectOutputStream s, Node node) throws IOException {
+        Object[] a = node.array();
+        for (int i = 0; i < a.length; i += 2) {
+            Object k = a[i];
+            if (k == null)
+                writeNode(s, (Node) a[i + 1]);
+            else {
+                s.writeObject(unmaskNull(k));
+                s.writeObject(a[i + 1]);
+            }
+        }
+    }
+
+    /**
+     * 反序列化
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(java.io.ObjectInputStream s) throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        int mappings = s.readInt(); // 键值对数量
+        if (mappings < 0)
+            throw new InvalidObjectException("Illegal mappings count: " + mappings);
+        root = EMPTY;
+        for (int i = 0; i < mappings; i++) {
+            K key = (K) s.readObject();
+            V value = (V) s.readObject();
+            putVal(key, value, false);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package java.util;
+
+/**
+ * Robin Hood哈希：OpenHashMap的变体，插入时"劫富济贫"，使探测长度的方差很小，未命中的查找可以提前结束
+ * 1.元素的探测距离是它所在位置与初始位置((n - 1) & hash)之间的距离。插入时从初始位置向后探测，
+ * 遇到探测距离比正在插入的元素小的元素，就把位置让给正在插入的元素，被挤出的元素继续向后寻找位置。
+ * 2.这样同一簇中的元素按初始位置排好了序，查找时如果当前位置上元素的探测距离小于已经探测的距离，
+ * 要找的键如果存在就应该已经遇到了，因此不必像线性探测那样一直探测到空位。负载因子较高时，
+ * 线性探测的未命中要扫描整个簇，这里只扫描初始位置相同的一段。
+ * 3.另外记录当前所有元素的最大探测距离maxProbe，任何查找最多探测maxProbe + 1个位置。
+ * 删除不会减小maxProbe，扩容时重新计算。
+ * 4.删除时把后面探测距离大于0的元素依次前移一位，遇到空位或者探测距离为0的元素就结束，不需要墓碑标记。
+ * 5.探测距离的分布更集中，所以默认负载因子比OpenHashMap高；哈希值相同的键仍然会挤在同一簇中，
+ * hashCode()大量相同时与OpenHashMap一样退化为线性查找。
+ * 6.命中的平均探测次数与线性探测相同，但恰好在初始位置上的元素更少，命中查找的分支更难预测，
+ * 同样负载因子下命中通常比OpenHashMap慢，适合大部分查找都未命中的场景。
+ *
+ * @param <K> 泛型，表示键值对中的键
+ * @param <V> 泛型，表示键值对中的值
+ * @see OpenHashMap
+ * @see HashMap
+ */
+public class RobinHoodHashMap<K, V> extends OpenHashMap<K, V> {
+    // 序列版本ID
+    private static final long serialVersionUID = 2952310618395176724L;
+
+    /**
+     * 常量，默认的负载因子，与HashMap相同
+     * 线性探测在0.75时未命中平均要探测约8.5次，所以OpenHashMap默认0.5；这里未命中只扫描初始位置相同的一段，可以使用更高的负载因子
+     */
+    static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    /**
+     * 所有元素中最大的探测距离
+     */
+    transient int maxProbe;
+
+    /* ---------------- 构造方法 -------------- */
+
+    /**
+     * 带两个参数的构造方法
+     *
+     * @param initialCapacity 初始化容量
+     * @param loadFactor      负载因子，必须大于0并且小于1
+     * @throws IllegalArgumentException initialCapacity为负数或者loadFactor不在(0, 1)范围内
+     */
+    public RobinHoodHashMap(int initialCapacity, float loadFactor) {
+        super(initialCapacity, loadFactor);
+    }
+
+    /**
+     * 带初始容量的构造方法
+     *
+     * @param initialCapacity 初始化容量
+     */
+    public RobinHoodHashMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * 无参构造方法
+     */
+    public RobinHoodHashMap() {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * 使用Map集合构造
+     *
+     * @param m Map集合
+     */
+    public RobinHoodHashMap(Map<? extends K, ? extends V> m) {
+        this();
+        putAll(m);
+    }
+
+    /* ---------------- 探测 -------------- */
+
+    /**
+     * 查找指定键所在的位置，位置上元素的探测距离小于已经探测的距离，或者已经探测了maxProbe + 1个位置时结束
+     *
+     * @param hash 键的哈希值
+     * @param key  已经经过maskNull()转换的键
+     * @return 返回键在数组中的下标，没有找到则返回-1
+     */
+    int findIndex(int hash, Object key) {
+        Object[] tab;
+        if ((tab = table) == null)
+            return -1;
+        int[] hs = hashes;
+        int mask = hs.length - 1;
+        for (int i = hash & mask, d = 0, max = maxProbe; d <= max; i = (i + 1) & mask, d++) {
+            Object k = tab[i << 1];
+            int h;
+            if (k == null || ((i - ((h = hs[i]) & mask)) & mask) < d)
+                return -1;
+            if (k == key || (h == hash && key.equals(k)))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 添加键值对：先按findIndex()的方式查找已经存在的键，查找结束的位置就是新键值对的位置，
+     * 原来在该位置上的元素被挤出，继续向后与其他元素比较探测距离，直到放入空位
+     *
+     * @param hash         键的哈希值
+     * @param key          已经经过maskNull()转换的键
+     * @param value        值
+     * @param onlyIfAbsent 为true时，如果已经存在非null的旧值则不替换
+     * @return 返回旧值或者null
+     */
+    @SuppressWarnings("unchecked")
+    V putVal(int hash, Object key, V value, boolean onlyIfAbsent) {
+        Object[] tab;
+        if ((tab = table) == null)
+            tab = resize();
+        int[] hs = hashes;
+        int mask = hs.length - 1;
+        int i = hash & mask, d = 0;
+        for (Object k; (k = tab[i << 1]) != null; i = (i + 1) & mask, d++) {
+            int h = hs[i];
+            if (((i - (h & mask)) & mask) < d)
+                break;
+            if (k == key || (h == hash && key.equals(k))) {
+                V oldValue = (V) tab[(i << 1) + 1];
+                if (!onlyIfAbsent || oldValue == null)
+                    tab[(i << 1) + 1] = value;
+                return oldValue;
+            }
+        }
+        place(hs, tab, mask, i, d, hash, key, value);
+        ++modCount;
+        if (++size > threshold)
+            resize();
+        return null;
+    }
+
+    /**
+     * 把探测距离为d的元素放到位置i，i上原有的元素以及之后被挤出的元素依次向后寻找位置
+     */
+    private void place(int[] hs, Object[] tab, int mask, int i, int d, int h, Object k, Object v) {
+        int max = maxProbe;
+        for (Object ek; (ek = tab[i << 1]) != null; i = (i + 1) & mask, d++) {
+            int eh = hs[i], ed = (i - (eh & mask)) & mask;
+            if (ed < d) {
+                if (d > max)
+                    max = d;
+                Object ev = tab[(i << 1) + 1];
+                hs[i] = h;
+                tab[i << 1] = k;
+                tab[(i << 1) + 1] = v;
+                h = eh;
+                k = ek;
+                v = ev;
+                d = ed;
+            }
+        }
+        if (d > max)
+            max = d;
+        hs[i] = h;
+        tab[i << 1] = k;
+        tab[(i << 1) + 1] = v;
+        maxProbe = max;
+    }
+
+    /**
+     * 初始化或扩容，容量变为原来的2倍，按Robin Hood规则把所有元素放入新数组，同时重新计算maxProbe
+     *
+     * @return 返回新的table数组
+     */
+    Object[] resize() {
+        Object[] oldTab = table;
+        int oldCap = (oldTab == null) ? 0 : oldTab.length >>> 1;
+        int newCap;
+        if (oldCap > 0) {
+            if (oldCap >= MAXIMUM_CAPACITY) {
+                // 已经达到最大容量，只要还有空位就继续使用，数组填满之前抛出异常
+                if (size >= MAXIMUM_CAPACITY - 1)
+                    throw new IllegalStateException("Capacity exhausted.");
+                threshold = MAXIMUM_CAPACITY - 1;
+                return oldTab;
+            }
+            newCap = oldCap << 1;
+        } else if (threshold > 0)
+            newCap = threshold;
+        else
+            newCap = DEFAULT_INITIAL_CAPACITY;
+        threshold = thresholdFor(newCap);
+        int[] oldHashes = hashes;
+        int[] hs = new int[newCap];
+        Object[] tab = new Object[newCap << 1];
+        int mask = newCap - 1;
+        maxProbe = 0;
+        // 键一定互不相同，不需要调用equals()
+        for (int j = 0; j < oldCap; ++j) {
+            Object k;
+            if ((k = oldTab[j << 1]) != null) {
+                int h = oldHashes[j];
+                place(hs, tab, mask, h & mask, 0, h, k, oldTab[(j << 1) + 1]);
+            }
+        }
+        hashes = hs;
+        table = tab;
+        return tab;
+    }
+
+    /**
+     * 向后移位删除：后面的元素探测距离大于0时前移一位，遇到空位或者探测距离为0的元素结束
+     * 同一簇中的元素按初始位置有序，这与OpenHashMap.shiftKeys()移动的元素完全相同，只是更早结束，
+     * 因此迭代器中按OpenHashMap的规则移位也能保持Robin Hood的顺序
+     *
+     * @param i 空出来的位置
+     * @return 返回最终被置空的位置
+     */
+    int shiftKeys(int i) {
+        int[] hs = hashes;
+        Object[] tab = table;
+        int mask = hs.length - 1;
+        for (int j = (i + 1) & mask; ; i = j, j = (j + 1) & mask) {
+            Object k;
+            int h;
+            if ((k = tab[j << 1]) == null || ((j - ((h = hs[j]) & mask)) & mask) == 0)
+                break;
+            hs[i] = h;
+            tab[i << 1] = k;
+            tab[(i << 1) + 1] = tab[(j << 1) + 1];
+        }
+        tab[i << 1] = null;
+        tab[(i << 1) + 1] = null;
+        return i;
+    }
+
+    /**
+     * @return 返回所有元素中最大的探测距离（删除之后可能偏大）
+     */
+    public int maxProbeLength() {
+        return maxProbe;
+    }
+}
@@ -0,0 +1,63 @@
+package java.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 把对象写入DataOutput以及从DataInput中读取的编解码器，HashMap.writeTo()和readFrom()用它读写键和值
+ * 1.与Java序列化相比，不写入类描述和对象头，也不通过反射读写字段，读取时直接调用read()创建对象。
+ * 2.write()写入的字节必须能被read()完整地读回，read()不能多读或者少读。
+ * 3.内置的编解码器不支持null，写入null时抛出NullPointerException。
+ *
+ * @param <T> 泛型，表示被编码的对象类型
+ * @see HashMap#writeTo(DataOutput, StreamCodec, StreamCodec)
+ * @see HashMap#readFrom(DataInput, StreamCodec, StreamCodec)
+ */
+public interface StreamCodec<T> {
+    /**
+     * 把对象写入out
+     *
+     * @param value 对象
+     * @param out   目标输出
+     * @throws IOException 写入失败
+     */
+    void write(T value, DataOutput out) throws IOException;
+
+    /**
+     * 从in中读取一个对象
+     *
+     * @param in 源输入
+     * @return 返回读取的对象
+     * @throws IOException 读取失败或者数据格式错误
+     */
+    T read(DataInput in) throws IOException;
+
+    /**
+     * @return 返回String的编解码器，写入UTF-8编码后的字节数(int)和字节，没有DataOutput.writeUTF()的64KB长度限制
+     */
+    static StreamCodec<String> utf8() {
+        return StreamCodecs.Utf8.INSTANCE;
+    }
+
+    /**
+     * @return 返回Integer的编解码器，固定4个字节
+     */
+    static StreamCodec<Integer> int32() {
+        return StreamCodecs.Int32.INSTANCE;
+    }
+
+    /**
+     * @return 返回Long的编解码器，固定8个字节
+     */
+    static StreamCodec<Long> int64() {
+        return StreamCodecs.Int64.INSTANCE;
+    }
+
+    /**
+     * @return 返回byte[]的编解码器，写入数组长度(int)和内容
+     */
+    static StreamCodec<byte[]> bytes() {
+        return StreamCodecs.Bytes.INSTANCE;
+    }
+}
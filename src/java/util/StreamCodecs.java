@@ -0,0 +1,93 @@
+package java.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * StreamCodec的内置实现
+ *
+ * @see StreamCodec
+ */
+final class StreamCodecs {
+    private StreamCodecs() {
+        throw new AssertionError("no instances");
+    }
+
+    /**
+     * 读取长度前缀的字节数组
+     */
+    static byte[] readBytes(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            throw new StreamCorruptedException("Illegal length: " + length);
+        byte[] b = new byte[length];
+        in.readFully(b);
+        return b;
+    }
+
+    /**
+     * String的编解码器
+     */
+    static final class Utf8 implements StreamCodec<String> {
+        static final Utf8 INSTANCE = new Utf8();
+
+        public void write(String value, DataOutput out) throws IOException {
+            byte[] b = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(b.length);
+            out.write(b);
+        }
+
+        public String read(DataInput in) throws IOException {
+            return new String(readBytes(in), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Integer的编解码器
+     */
+    static final class Int32 implements StreamCodec<Integer> {
+        static final Int32 INSTANCE = new Int32();
+
+        public void write(Integer value, DataOutput out) throws IOException {
+            out.writeInt(value);
+        }
+
+        public Integer read(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    }
+
+    /**
+     * Long的编解码器
+     */
+    static final class Int64 implements StreamCodec<Long> {
+        static final Int64 INSTANCE = new Int64();
+
+        public void write(Long value, DataOutput out) throws IOException {
+            out.writeLong(value);
+        }
+
+        public Long read(DataInput in) throws IOException {
+            return in.readLong();
+        }
+    }
+
+    /**
+     * byte[]的编解码器
+     */
+    static final class Bytes implements StreamCodec<byte[]> {
+        static final Bytes INSTANCE = new Bytes();
+
+        public void write(byte[] value, DataOutput out) throws IOException {
+            out.writeInt(value.length);
+            out.write(value);
+        }
+
+        public byte[] read(DataInput in) throws IOException {
+            return readBytes(in);
+        }
+    }
+}
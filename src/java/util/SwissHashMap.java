@@ -0,0 +1,842 @@
+package java.util;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.Serializable;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * SwissTable风格的开放寻址哈希表：每个位置有一个控制字节，8个位置一组，用一个long上的位运算（SWAR）同时比较一组
+ * 1.控制字节为EMPTY(0x80)表示空位，DELETED(0xFE)表示已删除（墓碑），最高位为0时表示有元素，低7位是该键哈希值的h2部分。
+ * 一组的8个控制字节存放在ctrl数组的一个long中，第j个位置在第8j~8j+7位。
+ * 2.查找时由哈希值的低位选出第一组，一次读取整组控制字节，用位运算找出所有等于h2的字节，只对这些位置比较键；
+ * h2有7位，不相等的键平均每组只有8/128个误匹配，因此查找通常只访问一个long和一个键，不需要沿着next指针在堆中跳转。
+ * 组中有空位时查找结束，否则按三角数序列（1、2、3……组的步长）探测下一组，组数是2的n次方时能访问到所有组。
+ * 3.删除时如果所在的组中还有空位，说明没有查找会越过这一组，直接改为EMPTY；否则改为DELETED，插入时可以重用。
+ * growthLeft是还可以填入的空位数，降为0时重建：墓碑较多时容量不变，只清除墓碑，否则容量翻倍。
+ * 4.最大负载为7/8，不支持指定负载因子；不缓存完整的哈希值，重建时重新调用hashCode()。
+ * 5.允许null键和null值，位置是否有元素由控制字节决定，keys数组中可以直接存放null键。
+ * 6.删除不会移动其他元素，迭代器删除很简单；插入可能触发重建，迭代时插入会抛出ConcurrentModificationException。
+ *
+ * @param <K> 泛型，表示键值对中的键
+ * @param <V> 泛型，表示键值对中的值
+ * @see HashMap
+ * @see OpenHashMap
+ */
+public class SwissHashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Cloneable, Serializable {
+    // 序列版本ID
+    private static final long serialVersionUID = 3316823157604719361L;
+
+    /**
+     * 一组的位置数
+     */
+    static final int GROUP_SIZE = 8;
+
+    /**
+     * 常量，默认的初始化容量（位置数），必定是2的n次方，至少两组
+     */
+    static final int DEFAULT_INITIAL_CAPACITY = 1 << 4;
+
+    /**
+     * 常量，最大容量（位置数）
+     */
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * 控制字节：空位
+     */
+    static final int EMPTY = 0x80;
+
+    /**
+     * 控制字节：已删除
+     */
+    static final int DELETED = 0xFE;
+
+    /**
+     * 每个字节的最低位
+     */
+    static final long LSB = 0x0101010101010101L;
+
+    /**
+     * 每个字节的最高位
+     */
+    static final long MSB = 0x8080808080808080L;
+
+    /**
+     * 8个位置都为空的一组
+     */
+    static final long EMPTY_GROUP = LSB * EMPTY;
+
+    /**
+     * 控制字节数组，每个long是一组
+     */
+    transient long[] ctrl;
+
+    /**
+     * 存放键的数组，长度是ctrl.length * 8
+     */
+    transient Object[] keys;
+
+    /**
+     * 存放值的数组，与keys数组一一对应
+     */
+    transient Object[] vals;
+
+    /**
+     * 键值对的数量
+     */
+    transient int size;
+
+    /**
+     * 结构性修改的次数，用于迭代器的快速失败
+     */
+    transient int modCount;
+
+    /**
+     * 还可以填入元素的空位（EMPTY）数，降为0时重建
+     * 在数组还没有分配时，存放的是初始容量
+     */
+    transient int growthLeft;
+
+    /**
+     * 对应键值对的映射集，keySet和values视图使用父类AbstractMap中的字段
+     */
+    transient Set<Map.Entry<K, V>> entrySet;
+
+    /* ---------------- 构造方法 -------------- */
+
+    /**
+     * 带初始容量的构造方法
+     *
+     * @param initialCapacity 初始化容量，保证存放这么多键值对之前不会重建
+     * @throws IllegalArgumentException initialCapacity为负数
+     */
+    public SwissHashMap(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        // 数组延迟到第一次添加时分配，此时growthLeft暂存的是初始容量
+        this.growthLeft = capacityFor(initialCapacity);
+    }
+
+    /**
+     * 无参构造方法
+     */
+    public SwissHashMap() {
+        this.growthLeft = DEFAULT_INITIAL_CAPACITY;
+    }
+
+    /**
+     * 使用Map集合构造
+     *
+     * @param m Map集合
+     */
+    public SwissHashMap(Map<? extends K, ? extends V> m) {
+        this(m.size());
+        putAll(m);
+    }
+
+    /* ---------------- 工具方法 -------------- */
+
+    /**
+     * 计算键的哈希值：乘以黄金分割常数使高位依赖hashCode()的所有位，再把高16位异或到低16位
+     * 高7位作为h2存放在控制字节中，低位用来选择第一组
+     */
+    static int hash(Object key) {
+        int h;
+        if (key == null)
+            return 0;
+        h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 根据期望的键值对数量计算容量（位置数），保证不超过7/8的负载
+     */
+    static int capacityFor(int expected) {
+        long c = (long) expected + (expected + 6) / 7;
+        return (c >= MAXIMUM_CAPACITY) ? MAXIMUM_CAPACITY :
+                HashMap.tableSizeFor(Math.max((int) c, DEFAULT_INITIAL_CAPACITY));
+    }
+
+    /**
+     * 容量为cap时最多存放的键值对数量，至少保留一个空位，保证查找一定能结束
+     */
+    static int maxLoad(int cap) {
+        return cap - (cap >>> 3);
+    }
+
+    /**
+     * 一组中控制字节等于h2的位置，对应字节的最高位为1
+     * 字节相减的借位可能使紧挨着真正匹配的高位字节也被标记，最后都会比较键，不影响正确性
+     */
+    static long match(long group, int h2) {
+        long x = group ^ (LSB * h2);
+        return (x - LSB) & ~x & MSB;
+    }
+
+    /**
+     * 一组中的空位：最高位为1且第1位为0的字节只有EMPTY(0x80)，DELETED(0xFE)的第1位为1
+     */
+    static long matchEmpty(long group) {
+        return group & ~(group << 6) & MSB;
+    }
+
+    /**
+     * 一组中的空位和已删除位置，两者的最高位都是1
+     */
+    static long matchEmptyOrDeleted(long group) {
+        return group & MSB;
+    }
+
+    /**
+     * 一组中有元素的位置
+     */
+    static long matchFull(long group) {
+        return ~group & MSB;
+    }
+
+    /**
+     * 匹配结果中最低的一个匹配对应组内的第几个位置
+     */
+    static int lowestSlot(long match) {
+        return Long.numberOfTrailingZeros(match) >>> 3;
+    }
+
+    /**
+     * 设置第i个位置的控制字节
+     */
+    static void setCtrl(long[] ctrl, int i, int b) {
+        int shift = (i & (GROUP_SIZE - 1)) << 3;
+        int g = i >>> 3;
+        ctrl[g] = (ctrl[g] & ~(0xFFL << shift)) | ((long) b << shift);
+    }
+
+    /**
+     * 查找指定键所在的位置
+     *
+     * @param hash 键的哈希值
+     * @param key  键
+     * @return 返回键在数组中的下标，没有找到则返回-1
+     */
+    final int findIndex(int hash, Object key) {
+        long[] cs;
+        if ((cs = ctrl) == null)
+            return -1;
+        Object[] ks = keys;
+        int mask = cs.length - 1, h2 = hash >>> 25;
+        for (int g = hash & mask, step = 1; ; g = (g + step++) & mask) {
+            long c = cs[g];
+            for (long m = match(c, h2); m != 0L; m &= m - 1) {
+                int i = (g << 3) | lowestSlot(m);
+                Object k = ks[i];
+                if (k == key || (key != null && key.equals(k)))
+                    return i;
+            }
+            if (matchEmpty(c) != 0L)
+                return -1;
+        }
+    }
+
+    /**
+     * 沿着哈希值的探测序列找到第一个空位或者已删除的位置
+     */
+    static int findInsertSlot(long[] cs, int hash) {
+        int mask = cs.length - 1;
+        for (int g = hash & mask, step = 1; ; g = (g + step++) & mask) {
+            long m;
+            if ((m = matchEmptyOrDeleted(cs[g])) != 0L)
+                return (g << 3) | lowestSlot(m);
+        }
+    }
+
+    /* ---------------- 查询 -------------- */
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 得到指定key对应的value
+     *
+     * @param key 指定的key
+     * @return 返回查找到的value，没有查找到则返回null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int i = findIndex(hash(key), key);
+        return (i < 0) ? null : (V) vals[i];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(Object key, V defaultValue) {
+        int i = findIndex(hash(key), key);
+        return (i < 0) ? defaultValue : (V) vals[i];
+    }
+
+    public boolean containsKey(Object key) {
+        return findIndex(hash(key), key) >= 0;
+    }
+
+    public boolean containsValue(Object value) {
+        long[] cs;
+        if ((cs = ctrl) != null && size > 0) {
+            Object[] vs = vals;
+            for (int g = 0; g < cs.length; ++g) {
+                for (long m = matchFull(cs[g]); m != 0L; m &= m - 1) {
+                    Object v = vs[(g << 3) | lowestSlot(m)];
+                    if (v == value || (value != null && value.equals(v)))
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /* ---------------- 修改 -------------- */
+
+    public V put(K key, V value) {
+        return putVal(hash(key), key, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return putVal(hash(key), key, value, true);
+    }
+
+    /**
+     * 添加键值对，键不存在时放入探测序列上第一个空位或者已删除的位置
+     *
+     * @param hash         键的哈希值
+     * @param key          键
+     * @param value        值
+     * @param onlyIfAbsent 为true时，如果已经存在非null的旧值则不替换
+     * @return 返回旧值或者null
+     */
+    @SuppressWarnings("unchecked")
+    final V putVal(int hash, K key, V value, boolean onlyIfAbsent) {
+        if (ctrl == null)
+            rehash(growthLeft);
+        int i;
+        if ((i = findIndex(hash, key)) >= 0) {
+            V oldValue = (V) vals[i];
+            if (!onlyIfAbsent || oldValue == null)
+                vals[i] = value;
+            return oldValue;
+        }
+        long[] cs = ctrl;
+        i = findInsertSlot(cs, hash);
+        boolean empty = ((cs[i >>> 3] >>> ((i & (GROUP_SIZE - 1)) << 3)) & 0xFF) == EMPTY;
+        if (empty && growthLeft == 0) {
+            // 没有可用的空位了，重建后重新找位置，重建后没有墓碑
+            rehash(nextCapacity());
+            i = findInsertSlot(cs = ctrl, hash);
+        }
+        if (empty)
+            --growthLeft;
+        setCtrl(cs, i, hash >>> 25);
+        keys[i] = key;
+        vals[i] = value;
+        ++modCount;
+        ++size;
+        return null;
+    }
+
+    /**
+     * 重建时的新容量：键值对数量不到最大负载的一半时说明墓碑很多，容量不变，否则翻倍
+     */
+    final int nextCapacity() {
+        int cap = keys.length;
+        if (size < (maxLoad(cap) >>> 1))
+            return cap;
+        if (cap >= MAXIMUM_CAPACITY) {
+            if (size >= maxLoad(cap))
+                throw new IllegalStateException("Capacity exhausted.");
+            return cap;
+        }
+        return cap << 1;
+    }
+
+    /**
+     * 以newCap个位置重建哈希表，所有元素重新放入，墓碑被清除
+     *
+     * @param newCap 新的容量，2的n次方并且至少两组
+     */
+    final void rehash(int newCap) {
+        long[] oldCtrl = ctrl;
+        Object[] oldKeys = keys, oldVals = vals;
+        long[] cs = new long[newCap >>> 3];
+        Arrays.fill(cs, EMPTY_GROUP);
+        Object[] ks = new Object[newCap];
+        Object[] vs = new Object[newCap];
+        if (oldCtrl != null) {
+            // 键一定互不相同，不需要调用equals()
+            for (int g = 0; g < oldCtrl.length; ++g) {
+                for (long m = matchFull(oldCtrl[g]); m != 0L; m &= m - 1) {
+                    int j = (g << 3) | lowestSlot(m);
+                    Object k = oldKeys[j];
+                    int h = hash(k), i = findInsertSlot(cs, h);
+                    setCtrl(cs, i, h >>> 25);
+                    ks[i] = k;
+                    vs[i] = oldVals[j];
+                }
+            }
+        }
+        ctrl = cs;
+        keys = ks;
+        vals = vs;
+        growthLeft = maxLoad(newCap) - size;
+    }
+
+    public void putAll(Map<? extends K, ? extends V> m) {
+        int s = m.size();
+        if (s > 0) {
+            // 预先扩容，避免逐个添加时多次重建
+            int cap = capacityFor(size + s);
+            if (ctrl == null) {
+                if (cap > growthLeft)
+                    growthLeft = cap;
+            } else if (cap > keys.length)
+                rehash(cap);
+            for (Map.Entry<? extends K, ? extends V> e : m.entrySet())
+                put(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * 移除指定key的键值对
+     *
+     * @param key 指定的key
+     * @return 返回被删除键值对的值或者null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        int i = findIndex(hash(key), key);
+        if (i < 0)
+            return null;
+        V oldValue = (V) vals[i];
+        removeAt(i);
+        return oldValue;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        int i = findIndex(hash(key), key);
+        Object v;
+        if (i >= 0 && ((v = vals[i]) == value || (value != null && value.equals(v)))) {
+            removeAt(i);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 删除指定位置上的元素，所在的组中还有空位时改为EMPTY，否则改为DELETED
+     *
+     * @param i 要被删除元素的下标
+     */
+    final void removeAt(int i) {
+        long[] cs = ctrl;
+        if (matchEmpty(cs[i >>> 3]) != 0L) {
+            setCtrl(cs, i, EMPTY);
+            ++growthLeft;
+        } else
+            setCtrl(cs, i, DELETED);
+        keys[i] = null;
+        vals[i] = null;
+        ++modCount;
+        --size;
+    }
+
+    /**
+     * 清空所有键值对，保留数组容量
+     */
+    public void clear() {
+        long[] cs;
+        modCount++;
+        if ((cs = ctrl) != null && size > 0) {
+            size = 0;
+            Arrays.fill(cs, EMPTY_GROUP);
+            Arrays.fill(keys, null);
+            Arrays.fill(vals, null);
+            growthLeft = maxLoad(keys.length);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean replace(K key, V oldValue, V newValue) {
+        int i = findIndex(hash(key), key);
+        V v;
+        if (i >= 0 && ((v = (V) vals[i]) == oldValue || (v != null && v.equals(oldValue)))) {
+            vals[i] = newValue;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V replace(K key, V value) {
+        int i = findIndex(hash(key), key);
+        if (i >= 0) {
+            V oldValue = (V) vals[i];
+            vals[i] = value;
+            return oldValue;
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        long[] cs;
+        if (action == null)
+            throw new NullPointerException();
+        if (size > 0 && (cs = ctrl) != null) {
+            Object[] ks = keys, vs = vals;
+            int mc = modCount;
+            for (int g = 0; g < cs.length; ++g) {
+                for (long m = matchFull(cs[g]); m != 0L; m &= m - 1) {
+                    int i = (g << 3) | lowestSlot(m);
+                    action.accept((K) ks[i], (V) vs[i]);
+                }
+            }
+            if (modCount != mc)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        long[] cs;
+        if (function == null)
+            throw new NullPointerException();
+        if (size > 0 && (cs = ctrl) != null) {
+            Object[] ks = keys, vs = vals;
+            int mc = modCount;
+            for (int g = 0; g < cs.length; ++g) {
+                for (long m = matchFull(cs[g]); m != 0L; m &= m - 1) {
+                    int i = (g << 3) | lowestSlot(m);
+                    vs[i] = function.apply((K) ks[i], (V) vs[i]);
+                }
+            }
+            if (modCount != mc)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    /* ---------------- 视图 -------------- */
+
+    public Set<K> keySet() {
+        Set<K> ks = keySet;
+        if (ks == null) {
+            ks = new KeySet();
+            keySet = ks;
+        }
+        return ks;
+    }
+
+    final class KeySet extends AbstractSet<K> {
+        public final int size() {
+            return size;
+        }
+
+        public final void clear() {
+            SwissHashMap.this.clear();
+        }
+
+        public final Iterator<K> iterator() {
+            return new KeyIterator();
+        }
+
+        public final boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        public final boolean remove(Object key) {
+            int i = findIndex(hash(key), key);
+            if (i < 0)
+                return false;
+            removeAt(i);
+            return true;
+        }
+    }
+
+    public Collection<V> values() {
+        Collection<V> vs = values;
+        if (vs == null) {
+            vs = new Values();
+            values = vs;
+        }
+        return vs;
+    }
+
+    final class Values extends AbstractCollection<V> {
+        public final int size() {
+            return size;
+        }
+
+        public final void clear() {
+            SwissHashMap.this.clear();
+        }
+
+        public final Iterator<V> iterator() {
+            return new ValueIterator();
+        }
+
+        public final boolean contains(Object o) {
+            return containsValue(o);
+        }
+    }
+
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es;
+        return (es = entrySet) == null ? (entrySet = new EntrySet()) : es;
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        public final int size() {
+            return size;
+        }
+
+        public final void clear() {
+            SwissHashMap.this.clear();
+        }
+
+        public final Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        public final boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            Object key = e.getKey();
+            int i = findIndex(hash(key), key);
+            return i >= 0 && Objects.equals(vals[i], e.getValue());
+        }
+
+        public final boolean remove(Object o) {
+            if (o instanceof Map.Entry) {
+                Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+                return SwissHashMap.this.remove(e.getKey(), e.getValue());
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 迭代器返回的键值对，记录键和它所在的位置
+     * 删除不会移动其他元素，但重建会，因此每次访问前检查该位置上是否仍然是这个键
+     */
+    final class Entry implements Map.Entry<K, V> {
+        final K key;
+        // 最近一次所在的位置
+        int index;
+
+        Entry(K key, int index) {
+            this.key = key;
+            this.index = index;
+        }
+
+        /**
+         * 得到键当前所在的位置，键已经被删除则返回-1
+         */
+        int slot() {
+            Object[] ks = keys;
+            int i = index;
+            if (ks == null || i >= ks.length || ks[i] != key ||
+                    ((ctrl[i >>> 3] >>> ((i & (GROUP_SIZE - 1)) << 3)) & 0x80L) != 0L)
+                index = i = findIndex(hash(key), key);
+            return i;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        @SuppressWarnings("unchecked")
+        public V getValue() {
+            int i = slot();
+            return (i < 0) ? null : (V) vals[i];
+        }
+
+        @SuppressWarnings("unchecked")
+        public V setValue(V value) {
+            int i = slot();
+            if (i < 0)
+                throw new IllegalStateException("Entry was removed");
+            V oldValue = (V) vals[i];
+            vals[i] = value;
+            return oldValue;
+        }
+
+        public boolean equals(Object o) {
+            if (o == this)
+                return true;
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(getValue(), e.getValue());
+        }
+
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(getValue());
+        }
+
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+
+    /* ---------------- 迭代器 -------------- */
+
+    /**
+     * 按组遍历，每组用matchFull()一次得到所有有元素的位置
+     */
+    abstract class HashIterator {
+        // 当前组的下标
+        int group;
+        // 当前组中还没有返回的位置
+        long pending;
+        // 最近一次返回的元素所在的位置，-1表示没有或者已经被删除
+        int last = -1;
+        // 还没有返回的元素个数
+        int remaining;
+        int expectedModCount;
+
+        HashIterator() {
+            expectedModCount = modCount;
+            remaining = size;
+            group = -1;
+        }
+
+        public final boolean hasNext() {
+            return remaining > 0;
+        }
+
+        /**
+         * 返回下一个元素所在的位置
+         */
+        final int nextIndex() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (remaining <= 0)
+                throw new NoSuchElementException();
+            remaining--;
+            long m = pending;
+            while (m == 0L)
+                m = matchFull(ctrl[++group]);
+            pending = m & (m - 1);
+            return last = (group << 3) | lowestSlot(m);
+        }
+
+        public final void remove() {
+            if (last < 0)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            removeAt(last);
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    final class KeyIterator extends HashIterator implements Iterator<K> {
+        @SuppressWarnings("unchecked")
+        public final K next() {
+            return (K) keys[nextIndex()];
+        }
+    }
+
+    final class ValueIterator extends HashIterator implements Iterator<V> {
+        @SuppressWarnings("unchecked")
+        public final V next() {
+            return (V) vals[nextIndex()];
+        }
+    }
+
+    final class EntryIterator extends HashIterator implements Iterator<Map.Entry<K, V>> {
+        @SuppressWarnings("unchecked")
+        public final Map.Entry<K, V> next() {
+            int i = nextIndex();
+            return new Entry((K) keys[i], i);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    // Cloning and serialization
+
+    /**
+     * 返回浅拷贝，键和值本身不会被克隆
+     *
+     * @return 返回该Map的浅拷贝
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public Object clone() {
+        SwissHashMap<K, V> result;
+        try {
+            result = (SwissHashMap<K, V>) super.clone();
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError(e);
+        }
+        if (ctrl != null) {
+            result.ctrl = ctrl.clone();
+            result.keys = keys.clone();
+            result.vals = vals.clone();
+        }
+        result.modCount = 0;
+        result.entrySet = null;
+        result.keySet = null;
+        result.values = null;
+        return result;
+    }
+
+    /**
+     * 序列化，格式与HashMap相同：容量(int)、键值对数量(int)，然后是每个键值对的键和值
+     */
+    private void writeObject(java.io.ObjectOutputStream s) throws IOException {
+        s.defaultWriteObject();
+        s.writeInt((keys == null) ? growthLeft : keys.length);
+        s.writeInt(size);
+        long[] cs;
+        if (size > 0 && (cs = ctrl) != null) {
+            Object[] ks = keys, vs = vals;
+            for (int g = 0; g < cs.length; ++g) {
+                for (long m = matchFull(cs[g]); m != 0L; m &= m - 1) {
+                    int i = (g << 3) | lowestSlot(m);
+                    s.writeObject(ks[i]);
+                    s.writeObject(vs[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * 反序列化
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(java.io.ObjectInputStream s) throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        s.readInt();                // 忽略容量
+        int mappings = s.readInt(); // 键值对数量
+        if (mappings < 0)
+            throw new InvalidObjectException("Illegal mappings count: " + mappings);
+        growthLeft = capacityFor(mappings);
+        for (int i = 0; i < mappings; i++) {
+            K key = (K) s.readObject();
+            V value = (V) s.readObject();
+            putVal(hash(key), key, value, false);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package maps;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * HashMap.setBloomFilterEnabled()的测试
+ * 1.被过滤器排除的查找不访问哈希桶数组：渐进式扩容期间也不会搬迁桶
+ * 2.删除时计数器减一：多轮删除和添加之后没有假阴性，全部删除后计数器都回到0
+ * 3.键值对数量超过过滤器的容量时重建，重建后误判率仍然很低
+ */
+public class BloomFilterTest {
+    static Field field(Class<?> c, String name) throws NoSuchFieldException {
+        Field f = c.getDeclaredField(name);
+        f.setAccessible(true);
+        return f;
+    }
+
+    static Object filter(HashMap<?, ?> m) throws ReflectiveOperationException {
+        return field(HashMap.class, "bloomFilter").get(m);
+    }
+
+    static int capacity(Object filter) throws ReflectiveOperationException {
+        return field(filter.getClass(), "capacity").getInt(filter);
+    }
+
+    static long[] counters(Object filter) throws ReflectiveOperationException {
+        return (long[]) field(filter.getClass(), "table").get(filter);
+    }
+
+    @Test
+    public void rejectedLookupsDoNotTouchTable() throws ReflectiveOperationException {
+        HashMap<Integer, Integer> m = new HashMap<>();
+        m.setIncrementalResize(true);
+        m.setBloomFilterEnabled(true);
+        m.setStatisticsEnabled(true);
+        int n = 0;
+        while (StatisticsTest.oldTable(m) == null || field(HashMap.class, "transferIndex").getInt(m) != 0) {
+            m.put(n, n);
+            ++n;
+        }
+        // 扩容刚开始，所有的桶都还在旧表中
+        Object oldTable = StatisticsTest.oldTable(m);
+        int missing = 0;
+        for (int k = -1; k > -10000; k--) {
+            long rejects = m.statistics().bloomFilterRejectCount();
+            assertNull(m.get(k));
+            if (m.statistics().bloomFilterRejectCount() > rejects)
+                assertEquals("rejected lookup advanced the transfer", 0, field(HashMap.class, "transferIndex").getInt(m));
+            else
+                break;
+            ++missing;
+        }
+        assertTrue("only " + missing + " lookups rejected", missing > 100);
+        assertTrue(oldTable == StatisticsTest.oldTable(m));
+        // 可能存在的键照常查找并搬迁桶
+        assertEquals(Integer.valueOf(0), m.get(0));
+        assertTrue(field(HashMap.class, "transferIndex").getInt(m) > 0);
+        for (int k = 0; k < n; k++)
+            assertEquals(Integer.valueOf(k), m.get(k));
+    }
+
+    @Test
+    public void removalKeepsFilterExact() throws ReflectiveOperationException {
+        Random r = new Random(3);
+        HashMap<Integer, Integer> m = new HashMap<>();
+        m.setBloomFilterEnabled(true);
+        List<Integer> present = new ArrayList<>();
+        int next = 0;
+        for (int round = 0; round < 50; round++) {
+            // 删除随机的一半，再添加新的键，中间穿插覆盖已有的键
+            Collections.shuffle(present, r);
+            List<Integer> removed = new ArrayList<>(present.subList(0, present.size() / 2));
+            present.subList(0, present.size() / 2).clear();
+            for (Integer k : removed)
+                assertEquals(k, m.remove(k));
+            for (int i = 0; i < 500 + r.nextInt(500); i++) {
+                present.add(next);
+                m.put(next, next);
+                ++next;
+            }
+            for (int i = 0; i < present.size(); i += 7)
+                m.put(present.get(i), present.get(i));
+            for (Integer k : present)
+                assertEquals("round " + round + " lost " + k, k, m.get(k));
+            for (Integer k : removed)
+                assertFalse(m.containsKey(k));
+        }
+        assertEquals(present.size(), m.size());
+        // 每个计数器都没有饱和时，删除全部的键后所有计数器回到0
+        Object bf = filter(m);
+        boolean saturated = false;
+        for (long word : counters(bf))
+            for (int shift = 0; shift < 64; shift += 4)
+                saturated |= ((word >>> shift) & 0xFL) == 0xFL;
+        assertFalse(saturated);
+        for (Integer k : present)
+            m.remove(k);
+        assertTrue(bf == filter(m));
+        for (long word : counters(bf))
+            assertEquals(0L, word);
+    }
+
+    @Test
+    public void rebuiltWhenOverCapacity() throws ReflectiveOperationException {
+        HashMap<Integer, Integer> m = new HashMap<>();
+        m.put(-1, -1);
+        m.setBloomFilterEnabled(true);
+        m.setStatisticsEnabled(true);
+        Object bf = filter(m);
+        int rebuilds = 0;
+        for (int k = 0; k < 100000; k++) {
+            m.put(k, k);
+            Object now = filter(m);
+            if (now != bf) {
+                // 重建后的容量不小于当前的键值对数量，并且是原来的2倍
+                assertEquals(2 * capacity(bf), capacity(now));
+                assertTrue(capacity(now) >= m.size());
+                bf = now;
+                ++rebuilds;
+            }
+            assertTrue(capacity(bf) >= m.size());
+        }
+        assertTrue("rebuilds=" + rebuilds, rebuilds >= 10);
+        for (int k = -1; k < 100000; k++)
+            assertEquals(Integer.valueOf(k), m.get(k));
+        // 键值对数量接近容量时误判率最高，约为0.3%
+        long before = m.statistics().bloomFilterFalsePositiveCount();
+        for (int k = 100000; k < 200000; k++)
+            assertNull(m.get(k));
+        HashMap.Statistics st = m.statistics();
+        assertNotNull(st);
+        long falsePositives = st.bloomFilterFalsePositiveCount() - before;
+        assertTrue("false positives " + falsePositives, falsePositives < 1000);
+        // 关闭再开启时按当前的键重新构建
+        m.setBloomFilterEnabled(false);
+        assertNull(filter(m));
+        m.setBloomFilterEnabled(true);
+        assertTrue(capacity(filter(m)) >= m.size());
+        for (int k = -1; k < 100000; k++)
+            assertTrue(m.containsKey(k));
+    }
+}
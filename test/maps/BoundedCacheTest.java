@@ -0,0 +1,178 @@
+package maps;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BoundedCache;
+import java.util.BoundedCache.Policy;
+import java.util.HashSet;
+import java.util.function.ToIntBiFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * BoundedCache的测试：淘汰顺序、权重、命中/未命中/淘汰次数，以及clone()之后淘汰顺序不变
+ * MapEquivalenceTest中的缓存容量足够大，不会淘汰，这里的缓存都会填满
+ */
+public class BoundedCacheTest {
+    /**
+     * 按字符串长度计算权重
+     */
+    static final ToIntBiFunction<Integer, String> LENGTH = (k, v) -> v.length();
+
+    static void assertKeys(BoundedCache<Integer, ?> c, Integer... keys) {
+        assertEquals(new HashSet<>(Arrays.asList(keys)), c.keySet());
+    }
+
+    @Test
+    public void lruEvictsLeastRecentlyUsed() {
+        BoundedCache<Integer, String> c = new BoundedCache<>(3);
+        c.put(1, "a");
+        c.put(2, "b");
+        c.put(3, "c");
+        assertEquals("a", c.get(1));
+        c.put(4, "d");
+        assertKeys(c, 1, 3, 4);
+        // 覆盖已有的键也算一次访问
+        c.put(3, "C");
+        c.put(5, "e");
+        assertKeys(c, 3, 4, 5);
+        assertNull(c.get(1));
+        assertEquals(2L, c.evictionCount());
+        assertEquals(1L, c.hitCount());
+        assertEquals(1L, c.missCount());
+        assertEquals(0.5, c.hitRate(), 0.0);
+    }
+
+    @Test
+    public void lfuEvictsLeastFrequentlyUsed() {
+        BoundedCache<Integer, String> c = new BoundedCache<>(3, Policy.LFU, null);
+        c.put(1, "a");
+        c.put(2, "b");
+        c.put(3, "c");
+        c.get(1);
+        c.get(1);
+        c.get(2);
+        // 3的访问次数最少
+        c.put(4, "d");
+        assertKeys(c, 1, 2, 4);
+        // 4和新插入的5访问次数都是1，同一频率中淘汰更早访问的4
+        c.put(5, "e");
+        assertKeys(c, 1, 2, 5);
+        c.put(6, "f");
+        assertKeys(c, 1, 2, 6);
+        assertEquals(3L, c.evictionCount());
+    }
+
+    @Test
+    public void weightsAreTrackedAndEvicted() {
+        BoundedCache<Integer, String> c = new BoundedCache<>(10, Policy.LRU, LENGTH);
+        c.put(1, "12345");
+        c.put(2, "1234");
+        assertEquals(9L, c.weightedSize());
+        c.put(3, "12");
+        assertKeys(c, 2, 3);
+        assertEquals(6L, c.weightedSize());
+        // 值变长后重新计算权重，2成为最近访问的，淘汰3
+        c.put(2, "123456789");
+        assertKeys(c, 2);
+        assertEquals(9L, c.weightedSize());
+        // 权重本身超过上限的键值对插入后立即被淘汰
+        c.put(4, "12345678901");
+        assertKeys(c);
+        assertEquals(0L, c.weightedSize());
+        assertEquals(4L, c.evictionCount());
+        c.put(5, "");
+        c.remove(5);
+        assertEquals(0L, c.weightedSize());
+        try {
+            new BoundedCache<Integer, String>(10, Policy.LRU, (k, v) -> -1).put(1, "a");
+            fail("negative weight must be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void tinyLfuRejectsColdCandidate() {
+        BoundedCache<Integer, String> c = new BoundedCache<>(2, Policy.TINY_LFU, null);
+        c.put(1, "a");
+        c.put(2, "b");
+        for (int i = 0; i < 5; i++) {
+            c.get(1);
+            c.get(2);
+        }
+        // 只访问过一次的新键值对不能挤掉热点数据
+        c.put(3, "c");
+        assertKeys(c, 1, 2);
+        assertEquals(1L, c.evictionCount());
+        // 频率更高的候选者被接纳，淘汰链表头（最久没有访问的1）
+        for (int i = 0; i < 20; i++)
+            c.get(4);
+        c.put(4, "d");
+        assertKeys(c, 2, 4);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void clonePreservesLruOrder() {
+        BoundedCache<Integer, String> c = new BoundedCache<>(4);
+        for (int i = 0; i < 4; i++)
+            c.put(i, "v" + i);
+        // 访问顺序变为1, 2, 3, 0；桶的顺序仍然是0, 1, 2, 3
+        c.get(0);
+        BoundedCache<Integer, String> copy = (BoundedCache<Integer, String>) c.clone();
+        assertEquals(c.hitCount(), copy.hitCount());
+        assertEquals(c.weightedSize(), copy.weightedSize());
+        copy.put(4, "v4");
+        assertKeys(copy, 0, 2, 3, 4);
+        // 副本和原缓存的淘汰顺序互不影响
+        assertKeys(c, 0, 1, 2, 3);
+        c.get(1);
+        c.put(5, "v5");
+        assertKeys(c, 0, 1, 3, 5);
+        copy.put(6, "v6");
+        assertKeys(copy, 0, 3, 4, 6);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void clonePreservesFrequenciesAndWeights() {
+        BoundedCache<Integer, String> c = new BoundedCache<>(10, Policy.LFU, LENGTH);
+        c.put(1, "123");
+        c.put(2, "123");
+        c.put(3, "123");
+        c.get(1);
+        c.get(1);
+        c.get(3);
+        BoundedCache<Integer, String> copy = (BoundedCache<Integer, String>) c.clone();
+        assertEquals(9L, copy.weightedSize());
+        // 2的访问次数最少，先被淘汰；然后是新插入的4，而不是访问过的3
+        copy.put(4, "12");
+        assertKeys(copy, 1, 3, 4);
+        assertEquals(8L, copy.weightedSize());
+        copy.put(5, "123");
+        assertKeys(copy, 1, 3, 5);
+        assertTrue(copy.evictionCount() == c.evictionCount() + 2);
+        assertFalse(c.containsKey(5));
+        assertEquals(9L, c.weightedSize());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void cloneOfTinyLfuKeepsSketch() {
+        BoundedCache<Integer, String> c = new BoundedCache<>(2, Policy.TINY_LFU, null);
+        c.put(1, "a");
+        c.put(2, "b");
+        for (int i = 0; i < 10; i++) {
+            c.get(1);
+            c.get(2);
+        }
+        BoundedCache<Integer, String> copy = (BoundedCache<Integer, String>) c.clone();
+        copy.put(3, "c");
+        assertKeys(copy, 1, 2);
+    }
+}
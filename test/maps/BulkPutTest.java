@@ -0,0 +1,243 @@
+package maps;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BoundedCache;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import maps.MapEquivalenceTest.Key;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * HashMap.putAll(K[], V[])和putAll(Collection, Collection)的测试：结果与按顺序逐个put()相同
+ * 覆盖重复的键、达到BULK_SORT_MIN_CAPACITY的计数排序、延迟和立即转换的红黑树桶、添加到非空的Map，
+ * 以及子类逐个调用putVal()的情况
+ */
+public class BulkPutTest {
+    /**
+     * 逐个put()得到的参照结果
+     */
+    static <K, V, M extends Map<K, V>> M putEach(M m, K[] keys, V[] values) {
+        for (int i = 0; i < keys.length; i++)
+            m.put(keys[i], values[i]);
+        return m;
+    }
+
+    static Object[] table(HashMap<?, ?> m) throws ReflectiveOperationException {
+        Field f = HashMap.class.getDeclaredField("table");
+        f.setAccessible(true);
+        return (Object[]) f.get(m);
+    }
+
+    /**
+     * 统计红黑树桶的数量，同时检查每棵红黑树的结构
+     */
+    static int treeBins(HashMap<?, ?> m) throws ReflectiveOperationException {
+        Class<?> treeNode = Class.forName("java.util.HashMap$TreeNode");
+        Method check = treeNode.getDeclaredMethod("checkInvariants", treeNode);
+        check.setAccessible(true);
+        int count = 0;
+        for (Object b : table(m)) {
+            if (treeNode.isInstance(b)) {
+                assertTrue("broken tree bin", (Boolean) check.invoke(null, b));
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    static void assertSameContent(Map<?, ?> expected, HashMap<?, ?> actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected, actual);
+        assertEquals(expected.hashCode(), actual.hashCode());
+        int n = 0;
+        for (Map.Entry<?, ?> e : actual.entrySet()) {
+            assertEquals(expected.get(e.getKey()), e.getValue());
+            ++n;
+        }
+        assertEquals(expected.size(), n);
+    }
+
+    static Integer[] values(int len, int seed) {
+        Integer[] vs = new Integer[len];
+        for (int i = 0; i < len; i++)
+            vs[i] = seed + i;
+        return vs;
+    }
+
+    @Test
+    public void duplicateKeysKeepLastValue() {
+        String[] keys = {"a", "b", "a", null, "c", "b", null, "a"};
+        Integer[] vs = values(keys.length, 0);
+        HashMap<String, Integer> m = new HashMap<>();
+        m.putAll(keys, vs);
+        assertEquals(4, m.size());
+        assertEquals(Integer.valueOf(7), m.get("a"));
+        assertEquals(Integer.valueOf(5), m.get("b"));
+        assertEquals(Integer.valueOf(6), m.get(null));
+        assertSameContent(putEach(new HashMap<>(), keys, vs), m);
+    }
+
+    @Test
+    public void largeInputTakesSortPath() throws ReflectiveOperationException {
+        // 30万个键，其中约1/4重复，哈希桶数组的容量不小于BULK_SORT_MIN_CAPACITY
+        Random r = new Random(1);
+        int len = 300000;
+        Integer[] keys = new Integer[len];
+        for (int i = 0; i < len; i++)
+            keys[i] = r.nextInt(len * 3);
+        Integer[] vs = values(len, 0);
+        HashMap<Integer, Integer> m = new HashMap<>();
+        m.putAll(keys, vs);
+        assertTrue(table(m).length >= 1 << 18);
+        assertSameContent(putEach(new HashMap<>(), keys, vs), m);
+    }
+
+    @Test
+    public void collidingKeysBecomeTreeBins() throws ReflectiveOperationException {
+        for (int len : new int[]{2000, 300000}) {
+            // 每4个键中有一个落在16个哈希值上：每个哈希值有len / 64个键，超过BULK_TREEIFY_LIMIT时在添加过程中转换；
+            // 另外每个哈希值0x100 + h只有10个键，在全部添加完之后才转换
+            List<Key> list = new ArrayList<>();
+            for (int id = 0; id < len; id++) {
+                int hash = (id % 4 == 0) ? (id / 4) % 16 : id * 0x9E3779B1;
+                list.add(new Key(id, hash));
+            }
+            for (int h = 0; h < 16; h++)
+                for (int j = 0; j < 10; j++)
+                    list.add(new Key(-1 - (h * 10 + j), 0x100 + h));
+            // 再添加一遍前面的一部分键，重复的键落在红黑树中
+            list.addAll(list.subList(0, len / 2));
+            Key[] keys = list.toArray(new Key[0]);
+            Integer[] vs = values(keys.length, 0);
+            HashMap<Key, Integer> m = new HashMap<>();
+            m.putAll(keys, vs);
+            HashMap<Key, Integer> expected = putEach(new HashMap<>(), keys, vs);
+            assertSameContent(expected, m);
+            assertEquals("len=" + len, 32, treeBins(m));
+            assertEquals(treeBins(expected), treeBins(m));
+            for (Key k : keys)
+                assertEquals(expected.get(k), m.get(k));
+        }
+    }
+
+    @Test
+    public void mergeIntoNonEmptyMap() throws ReflectiveOperationException {
+        for (int len : new int[]{100, 300000}) {
+            HashMap<Key, Integer> m = new HashMap<>();
+            HashMap<Key, Integer> expected = new HashMap<>();
+            for (int id = 0; id < len; id += 2) {
+                // 已有的键中一部分哈希值相同，已经是红黑树桶
+                Key k = new Key(id, (id % 10 == 0) ? 7 : id * 0x9E3779B1);
+                m.put(k, -id);
+                expected.put(k, -id);
+            }
+            Key[] keys = new Key[len];
+            for (int id = 0; id < len; id++)
+                keys[id] = new Key(id, (id % 10 == 0) ? 7 : id * 0x9E3779B1);
+            Integer[] vs = values(len, 1);
+            Iterator<Key> it = m.keySet().iterator();
+            m.putAll(keys, vs);
+            assertSameContent(putEach(expected, keys, vs), m);
+            assertEquals(treeBins(expected), treeBins(m));
+            // 添加了新的键，是结构性修改
+            try {
+                it.next();
+                fail("putAll added keys without changing modCount");
+            } catch (ConcurrentModificationException e) {
+            }
+            // 只覆盖已有的键时不是结构性修改
+            it = m.keySet().iterator();
+            m.putAll(Arrays.copyOf(keys, 10), values(10, 5));
+            it.next();
+            assertEquals(Integer.valueOf(5), m.get(keys[0]));
+        }
+    }
+
+    @Test
+    public void subclassesPutOneByOne() {
+        Random r = new Random(2);
+        String[] keys = new String[5000];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = "k" + r.nextInt(3000);
+        Integer[] vs = values(keys.length, 0);
+        // LinkedHashMap依赖afterNodeInsertion()等回调维护插入顺序
+        LinkedHashMap<String, Integer> lhm = new LinkedHashMap<>();
+        lhm.putAll(keys, vs);
+        LinkedHashMap<String, Integer> expected = putEach(new LinkedHashMap<>(), keys, vs);
+        assertEquals(expected, lhm);
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(lhm.keySet()));
+        // 访问顺序的LinkedHashMap，重复的键移到末尾
+        lhm = new LinkedHashMap<>(16, 0.75f, true);
+        lhm.putAll(Arrays.asList(keys), Arrays.asList(vs));
+        expected = putEach(new LinkedHashMap<>(16, 0.75f, true), keys, vs);
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(lhm.keySet()));
+        // BoundedCache在添加过程中淘汰
+        BoundedCache<String, Integer> c = new BoundedCache<>(100);
+        c.putAll(keys, vs);
+        BoundedCache<String, Integer> reference = putEach(new BoundedCache<>(100), keys, vs);
+        assertEquals(reference, c);
+        assertEquals(reference.evictionCount(), c.evictionCount());
+    }
+
+    @Test
+    public void collectionOverload() {
+        List<String> keys = new ArrayList<>();
+        List<Integer> vs = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            keys.add("k" + (i % 700));
+            vs.add(i);
+        }
+        HashMap<String, Integer> m = new HashMap<>();
+        m.putAll(keys, vs);
+        assertSameContent(putEach(new HashMap<>(), keys.toArray(new String[0]), vs.toArray(new Integer[0])), m);
+    }
+
+    @Test
+    public void invalidArguments() {
+        HashMap<String, Integer> m = new HashMap<>();
+        m.put("x", 1);
+        try {
+            m.putAll(new String[]{"a", "b"}, new Integer[]{1});
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            m.putAll(Arrays.asList("a", "b"), Arrays.asList(1));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            m.putAll(null, new Integer[0]);
+            fail();
+        } catch (NullPointerException expected) {
+        }
+        try {
+            m.putAll(new String[0], null);
+            fail();
+        } catch (NullPointerException expected) {
+        }
+        try {
+            m.putAll((List<String>) null, Arrays.asList(1));
+            fail();
+        } catch (NullPointerException expected) {
+        }
+        // 失败时Map不变
+        assertEquals(1, m.size());
+        m.putAll(new String[0], new Integer[0]);
+        assertEquals(1, m.size());
+    }
+}
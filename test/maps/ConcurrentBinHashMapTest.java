@@ -0,0 +1,263 @@
+package maps;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentBinHashMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * ConcurrentBinHashMap的多线程压力测试，MapEquivalenceTest只覆盖了单线程的语义
+ * 1.所有的Map都从很小的容量开始，经过多次扩容：多个线程同时put时会通过helpTransfer()协助同一个Transfer搬迁桶，
+ * 读线程在扩容期间经过ForwardingNode到新数组中查找
+ * 2.每个写线程只修改自己的键，结束之后逐个比较；其他线程不加锁地读取时，永远不会被删除的键必须一直能读到，
+ * 读到的值必须是某个线程写入过的值
+ * 3.多个线程对同一组键computeIfAbsent，在空桶上会先放入ReservationNode，mappingFunction对每个键只能被调用一次
+ */
+public class ConcurrentBinHashMapTest {
+    static final int THREADS = 8;
+
+    static final int KEYS_PER_THREAD = 20000;
+
+    /**
+     * 同时启动所有任务，任何一个任务抛出的异常或者断言失败都让测试失败
+     */
+    static void runConcurrently(List<Callable<Void>> tasks) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(tasks.size());
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> task : tasks)
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            start.countDown();
+            for (Future<Void> f : futures) {
+                try {
+                    f.get(60, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof AssertionError)
+                        throw (AssertionError) cause;
+                    throw new AssertionError(cause);
+                } catch (java.util.concurrent.TimeoutException e) {
+                    fail("task did not finish, possible livelock in transfer");
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 第t个线程的第i个键，键在线程之间交错分布，同一个桶会被多个线程同时修改
+     */
+    static Integer key(int t, int i) {
+        return i * THREADS + t;
+    }
+
+    @Test
+    public void concurrentPutsAcrossResizes() throws InterruptedException {
+        ConcurrentBinHashMap<Integer, Integer> m = new ConcurrentBinHashMap<>(2);
+        // progress[t]之前的键已经被第t个线程插入，读线程要能读到
+        AtomicIntegerArray progress = new AtomicIntegerArray(THREADS);
+        AtomicInteger writersDone = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            tasks.add(() -> {
+                for (int i = 0; i < KEYS_PER_THREAD; i++) {
+                    assertNull(m.put(key(thread, i), -key(thread, i)));
+                    progress.lazySet(thread, i + 1);
+                }
+                writersDone.incrementAndGet();
+                return null;
+            });
+        }
+        for (int r = 0; r < 2; r++) {
+            Random random = new Random(r);
+            tasks.add(() -> {
+                while (writersDone.get() < THREADS) {
+                    int t = random.nextInt(THREADS);
+                    int done = progress.get(t);
+                    if (done == 0)
+                        continue;
+                    Integer k = key(t, random.nextInt(done));
+                    assertEquals("get " + k, Integer.valueOf(-k), m.get(k));
+                    assertTrue("containsKey " + k, m.containsKey(k));
+                }
+                return null;
+            });
+        }
+        runConcurrently(tasks);
+        assertEquals(THREADS * KEYS_PER_THREAD, m.size());
+        assertEquals(THREADS * KEYS_PER_THREAD, m.mappingCount());
+        for (int t = 0; t < THREADS; t++)
+            for (int i = 0; i < KEYS_PER_THREAD; i++)
+                assertEquals(Integer.valueOf(-key(t, i)), m.get(key(t, i)));
+        int count = 0;
+        for (Map.Entry<Integer, Integer> e : m.entrySet()) {
+            assertEquals(Integer.valueOf(-e.getKey()), e.getValue());
+            ++count;
+        }
+        assertEquals(THREADS * KEYS_PER_THREAD, count);
+    }
+
+    @Test
+    public void concurrentPutRemoveGet() throws InterruptedException {
+        ConcurrentBinHashMap<Integer, Integer> m = new ConcurrentBinHashMap<>();
+        // 偶数下标的键先插入且不会被删除，奇数下标的键被反复添加、替换和删除
+        for (int t = 0; t < THREADS; t++)
+            for (int i = 0; i < KEYS_PER_THREAD; i += 2)
+                m.put(key(t, i), key(t, i));
+        List<Map<Integer, Integer>> expected = new ArrayList<>();
+        AtomicInteger writersDone = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            Map<Integer, Integer> mine = new HashMap<>();
+            for (int i = 0; i < KEYS_PER_THREAD; i += 2)
+                mine.put(key(t, i), key(t, i));
+            expected.add(mine);
+            tasks.add(() -> {
+                Random random = new Random(thread);
+                for (int op = 0; op < 4 * KEYS_PER_THREAD; op++) {
+                    Integer k = key(thread, 2 * random.nextInt(KEYS_PER_THREAD / 2) + 1);
+                    // 奇数下标的键的值总是键的倍数，读线程用来检查读到的值
+                    Integer v = k * (1 + random.nextInt(4));
+                    switch (random.nextInt(5)) {
+                        case 0:
+                        case 1:
+                            assertEquals(mine.put(k, v), m.put(k, v));
+                            break;
+                        case 2:
+                            assertEquals(mine.remove(k), m.remove(k));
+                            break;
+                        case 3:
+                            assertEquals(mine.putIfAbsent(k, v), m.putIfAbsent(k, v));
+                            break;
+                        default:
+                            Integer old = mine.get(k);
+                            boolean replaced = old != null && m.replace(k, old, v);
+                            assertEquals(old != null, replaced);
+                            if (replaced)
+                                mine.put(k, v);
+                            assertEquals(mine.get(k), m.get(k));
+                    }
+                }
+                writersDone.incrementAndGet();
+                return null;
+            });
+        }
+        for (int r = 0; r < 2; r++) {
+            Random random = new Random(100 + r);
+            tasks.add(() -> {
+                while (writersDone.get() < THREADS) {
+                    int t = random.nextInt(THREADS);
+                    int i = random.nextInt(KEYS_PER_THREAD);
+                    Integer k = key(t, i);
+                    Integer v = m.get(k);
+                    if ((i & 1) == 0)
+                        assertEquals("stable key " + k, k, v);
+                    else if (v != null)
+                        assertTrue("torn value " + v + " for " + k, v % k == 0 && v / k >= 1 && v / k <= 4);
+                }
+                return null;
+            });
+        }
+        // 迭代器是弱一致的：不会抛出异常，不会被删除的键一定能遍历到
+        tasks.add(() -> {
+            while (writersDone.get() < THREADS) {
+                int stable = 0;
+                for (Map.Entry<Integer, Integer> e : m.entrySet()) {
+                    int i = e.getKey() / THREADS;
+                    if ((i & 1) == 0) {
+                        assertEquals(e.getKey(), e.getValue());
+                        ++stable;
+                    }
+                }
+                assertEquals(THREADS * KEYS_PER_THREAD / 2, stable);
+            }
+            return null;
+        });
+        runConcurrently(tasks);
+        Map<Integer, Integer> all = new HashMap<>();
+        for (Map<Integer, Integer> mine : expected)
+            all.putAll(mine);
+        assertEquals(all.size(), m.size());
+        for (Map.Entry<Integer, Integer> e : all.entrySet())
+            assertEquals(e.getValue(), m.get(e.getKey()));
+        Map<Integer, Integer> seen = new HashMap<>();
+        m.forEach((k, v) -> assertNull("iterated " + k + " twice", seen.put(k, v)));
+        assertEquals(all, seen);
+    }
+
+    @Test
+    public void computeIfAbsentCallsFunctionOnce() throws InterruptedException {
+        int keys = 50000;
+        ConcurrentBinHashMap<Integer, Integer> m = new ConcurrentBinHashMap<>(2);
+        AtomicIntegerArray calls = new AtomicIntegerArray(keys);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            tasks.add(() -> {
+                // 每个线程以不同的起点遍历同一组键，同一个键会被多个线程同时计算
+                for (int j = 0; j < keys; j++) {
+                    int k = (j + thread * (keys / THREADS)) % keys;
+                    Integer v = m.computeIfAbsent(k, kk -> {
+                        calls.incrementAndGet(kk);
+                        return kk + 1;
+                    });
+                    assertEquals(Integer.valueOf(k + 1), v);
+                }
+                return null;
+            });
+        }
+        runConcurrently(tasks);
+        assertEquals(keys, m.size());
+        for (int k = 0; k < keys; k++) {
+            assertEquals("calls for " + k, 1, calls.get(k));
+            assertEquals(Integer.valueOf(k + 1), m.get(k));
+        }
+    }
+
+    @Test
+    public void concurrentRemoveAllThenRefill() throws InterruptedException {
+        ConcurrentBinHashMap<Integer, Integer> m = new ConcurrentBinHashMap<>(2);
+        for (int round = 0; round < 3; round++) {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                tasks.add(() -> {
+                    for (int i = 0; i < KEYS_PER_THREAD; i++)
+                        m.put(key(thread, i), i);
+                    for (int i = 0; i < KEYS_PER_THREAD; i++)
+                        assertTrue(m.remove(key(thread, i), i));
+                    return null;
+                });
+            }
+            runConcurrently(tasks);
+            assertEquals("round " + round, 0, m.size());
+            assertTrue(m.isEmpty());
+            assertTrue(!m.entrySet().iterator().hasNext());
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package maps;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ExpiringMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ExpiringMap的测试，时间由手动推进的Ticker提供
+ * 1.expireAfterWrite、expireAfterAccess和两者同时设置时的过期时间
+ * 2.只有写操作推进时间轮时，时间轮在过期时间所在的那一格结束时删除结点，不会提前也不会遗漏；
+ * 过期时长覆盖时间轮的每一层，结点从高层逐层移到低层
+ * 3.通过反射检查时间轮的每个桶：结点所在的桶与过期时间一致，并且与当前时间所在的桶相差不到一圈
+ */
+public class ExpiringMapTest {
+    /**
+     * 每一步覆盖这个键来推进时间轮
+     */
+    static final String CLOCK = "clock";
+
+    /**
+     * 手动推进的时间源，起点是负数，检查有符号的移位
+     */
+    static final class ManualTicker implements ExpiringMap.Ticker {
+        long now = -(5L << 40) + 12345L;
+
+        public long read() {
+            return now;
+        }
+
+        void advance(long duration, TimeUnit unit) {
+            now += unit.toNanos(duration);
+        }
+    }
+
+    @Test
+    public void expireAfterWrite() {
+        ManualTicker ticker = new ManualTicker();
+        ExpiringMap<String, Integer> m = new ExpiringMap<>(10, Long.MAX_VALUE, TimeUnit.SECONDS, ticker);
+        m.put("a", 1);
+        ticker.advance(9, TimeUnit.SECONDS);
+        assertEquals(Integer.valueOf(1), m.get("a"));
+        m.put("b", 2);
+        ticker.advance(1, TimeUnit.SECONDS);
+        // 刚好到过期时间时已经过期，读操作删除它
+        assertNull(m.get("a"));
+        assertFalse(m.containsKey("a"));
+        assertEquals(1L, m.expirationCount());
+        // 读操作不重新计时，覆盖重新计时
+        ticker.advance(5, TimeUnit.SECONDS);
+        assertEquals(Integer.valueOf(2), m.get("b"));
+        m.put("b", 3);
+        ticker.advance(8, TimeUnit.SECONDS);
+        assertEquals(Integer.valueOf(3), m.get("b"));
+        ticker.advance(2, TimeUnit.SECONDS);
+        assertNull(m.putIfAbsent("b", 4));
+        assertEquals(Integer.valueOf(4), m.get("b"));
+        assertEquals(2L, m.expirationCount());
+    }
+
+    @Test
+    public void putIfAbsentDoesNotRestartWriteTimer() {
+        ManualTicker ticker = new ManualTicker();
+        ExpiringMap<String, Integer> m = new ExpiringMap<>(10, Long.MAX_VALUE, TimeUnit.SECONDS, ticker);
+        m.put("a", 1);
+        ticker.advance(9, TimeUnit.SECONDS);
+        // 值没有被替换，仍然从第一次写入开始计时
+        assertEquals(Integer.valueOf(1), m.putIfAbsent("a", 2));
+        assertEquals(Integer.valueOf(1), m.computeIfAbsent("a", k -> 3));
+        ticker.advance(2, TimeUnit.SECONDS);
+        assertNull(m.get("a"));
+        // 旧值为null时putIfAbsent替换它，算一次写入
+        m.put("b", null);
+        ticker.advance(9, TimeUnit.SECONDS);
+        assertNull(m.putIfAbsent("b", 4));
+        ticker.advance(9, TimeUnit.SECONDS);
+        assertEquals(Integer.valueOf(4), m.get("b"));
+        ticker.advance(1, TimeUnit.SECONDS);
+        assertNull(m.get("b"));
+    }
+
+    @Test
+    public void expireAfterAccess() {
+        ManualTicker ticker = new ManualTicker();
+        ExpiringMap<String, Integer> m = new ExpiringMap<>(Long.MAX_VALUE, 10, TimeUnit.SECONDS, ticker);
+        m.put("a", 1);
+        m.put("b", 2);
+        // 每6秒读一次a，a一直不过期；b在最后一次写入10秒后过期
+        for (int i = 0; i < 10; i++) {
+            ticker.advance(6, TimeUnit.SECONDS);
+            assertEquals(Integer.valueOf(1), m.get("a"));
+        }
+        assertNull(m.get("b"));
+        ticker.advance(10, TimeUnit.SECONDS);
+        assertNull(m.get("a"));
+        assertEquals(2L, m.expirationCount());
+    }
+
+    @Test
+    public void expireAfterWriteWinsOverAccess() {
+        ManualTicker ticker = new ManualTicker();
+        ExpiringMap<String, Integer> m = new ExpiringMap<>(30, 10, TimeUnit.SECONDS, ticker);
+        m.put("a", 1);
+        for (int i = 0; i < 4; i++) {
+            ticker.advance(6, TimeUnit.SECONDS);
+            assertEquals(Integer.valueOf(1), m.get("a"));
+        }
+        // 距离最后一次访问6秒，但距离写入已经30秒
+        ticker.advance(6, TimeUnit.SECONDS);
+        assertNull(m.get("a"));
+    }
+
+    @Test
+    public void wheelExpiresOnEveryLevel() throws ReflectiveOperationException {
+        // 依次落在第0~4层：3秒、5分钟、3小时、2天、12天（第3层的最后几个桶）、40天（最高层）
+        long[] durations = {
+                TimeUnit.SECONDS.toNanos(3),
+                TimeUnit.MINUTES.toNanos(5),
+                TimeUnit.HOURS.toNanos(3),
+                TimeUnit.DAYS.toNanos(2),
+                TimeUnit.DAYS.toNanos(12),
+                TimeUnit.DAYS.toNanos(40)
+        };
+        for (long duration : durations)
+            for (int seed = 0; seed < 3; seed++)
+                checkWheel(duration, new Random(seed));
+    }
+
+    /**
+     * 随机推进时间并插入键，只通过覆盖CLOCK推进时间轮，不读取任何键；
+     * 每一步之后，没有过期的键必须还在，过期时间所在的那一格已经结束的键必须已经被删除，
+     * 在当前这一格内过期的键可能已经在进入这一格时被删除，也可能还在
+     */
+    static void checkWheel(long duration, Random r) throws ReflectiveOperationException {
+        ManualTicker ticker = new ManualTicker();
+        ticker.now += r.nextInt();
+        ExpiringMap<String, Integer> m = new ExpiringMap<>(duration, Long.MAX_VALUE, TimeUnit.NANOSECONDS, ticker);
+        Map<String, Long> expiresAt = new HashMap<>();
+        long end = ticker.now + 3 * duration;
+        for (int step = 0; ticker.now - end < 0; step++) {
+            // 大部分时候小步推进，偶尔跳过较长的一段
+            long delta = (r.nextInt(16) == 0) ? duration / 2 : duration / 64;
+            ticker.advance(1 + (long) (r.nextDouble() * delta), TimeUnit.NANOSECONDS);
+            if (ticker.now - end < -duration && r.nextBoolean()) {
+                String k = "k" + step;
+                m.put(k, step);
+                expiresAt.put(k, ticker.now + duration);
+            }
+            m.put(CLOCK, step);
+            String at = "duration=" + duration + " step=" + step;
+            // keySet()包括已经过期但还没有被删除的键值对，正好用来观察时间轮删除了哪些
+            Set<String> present = new HashSet<>(m.keySet());
+            assertTrue(at, present.remove(CLOCK));
+            for (Map.Entry<String, Long> e : expiresAt.entrySet()) {
+                long t = e.getValue();
+                if (t - ticker.now > 0)
+                    assertTrue(at + " removed early " + e.getKey(), present.contains(e.getKey()));
+                else if (t >> 30 < ticker.now >> 30)
+                    assertFalse(at + " not removed " + e.getKey(), present.contains(e.getKey()));
+            }
+            checkBuckets(m, at);
+        }
+        m.cleanUp();
+        long live = expiresAt.values().stream().filter(t -> t - ticker.now > 0).count();
+        assertEquals(live + 1, m.size());
+        assertEquals(expiresAt.size() - live, m.expirationCount());
+        assertTrue("no key expired", m.expirationCount() > 0);
+    }
+
+    /**
+     * 检查时间轮中每个结点所在的层和桶：最高层以下，结点在过期时间对应的桶中，与当前时间所在的桶相差不到一圈，
+     * 第0层以上不会在当前桶中（否则应该放在更低的一层）
+     */
+    static void checkBuckets(ExpiringMap<?, ?> m, String at) throws ReflectiveOperationException {
+        Object[][] wheel = (Object[][]) field(ExpiringMap.class, "wheel").get(m);
+        long nanos = field(ExpiringMap.class, "nanos").getLong(m);
+        int[] buckets = (int[]) field(ExpiringMap.class, "BUCKETS").get(null);
+        int[] shift = (int[]) field(ExpiringMap.class, "SHIFT").get(null);
+        Field after = field(Class.forName("java.util.LinkedHashMap$Entry"), "after");
+        Method expiresAtOf = ExpiringMap.class.getDeclaredMethod("expiresAtOf", Class.forName("java.util.HashMap$Node"));
+        expiresAtOf.setAccessible(true);
+        for (int i = 0; i < wheel.length - 1; i++) {
+            for (int j = 0; j < wheel[i].length; j++) {
+                Object s = wheel[i][j];
+                for (Object e = after.get(s); e != s; e = after.get(e)) {
+                    long ticks = (Long) expiresAtOf.invoke(null, e) >> shift[i];
+                    long ahead = ticks - (nanos >> shift[i]);
+                    String where = at + " level=" + i + " bucket=" + j + " ahead=" + ahead;
+                    assertEquals(where, j, (int) ticks & (buckets[i] - 1));
+                    assertTrue(where, ahead < buckets[i]);
+                    assertTrue(where, ahead >= ((i == 0) ? 0 : 1));
+                }
+            }
+        }
+    }
+
+    static Field field(Class<?> c, String name) throws NoSuchFieldException {
+        Field f = c.getDeclaredField(name);
+        f.setAccessible(true);
+        return f;
+    }
+}
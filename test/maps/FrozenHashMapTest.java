@@ -0,0 +1,184 @@
+package maps;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.FrozenHashMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import maps.MapEquivalenceTest.Key;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * FrozenHashMap的测试：溢出区（哈希值相同的键和null键）、空Map、equals()/hashCode()、迭代和序列化
+ * 随机内容的差分测试在MapEquivalenceTest.frozenHashMap()中
+ */
+public class FrozenHashMapTest {
+    /**
+     * 由"Aa"和"BB"拼接的字符串，长度相同时hashCode()全部相同，共2^n个
+     */
+    static List<String> collidingStrings(int n) {
+        List<String> list = Collections.singletonList("");
+        for (int i = 0; i < n; i++) {
+            List<String> next = new ArrayList<>();
+            for (String s : list) {
+                next.add(s + "Aa");
+                next.add(s + "BB");
+            }
+            list = next;
+        }
+        return list;
+    }
+
+    /**
+     * 比较查询、遍历、equals()和hashCode()，missing中的键都不存在
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> void check(Map<K, V> expected, FrozenHashMap<K, V> m, Iterable<K> missing) {
+        Object absent = new Object();
+        assertEquals(expected.size(), m.size());
+        assertEquals(expected.isEmpty(), m.isEmpty());
+        int checkedValues = 0;
+        for (Map.Entry<K, V> e : expected.entrySet()) {
+            assertTrue(String.valueOf(e.getKey()), m.containsKey(e.getKey()));
+            assertEquals(e.getValue(), m.get(e.getKey()));
+            assertTrue(m.entrySet().contains(e));
+            // containsValue()遍历整个数组，只检查一部分
+            if (++checkedValues <= 100)
+                assertTrue(m.containsValue(e.getValue()));
+        }
+        for (K k : missing) {
+            assertFalse(String.valueOf(k), m.containsKey(k));
+            assertNull(m.get(k));
+            assertTrue(((Map<K, Object>) (Map<K, ?>) m).getOrDefault(k, absent) == absent);
+        }
+        assertTrue(expected.equals(m));
+        assertTrue(m.equals(expected));
+        assertEquals(expected.hashCode(), m.hashCode());
+        // 三种视图的迭代器和forEach()都恰好遍历每个键值对一次
+        Map<K, V> seen = new HashMap<>();
+        for (Map.Entry<K, V> e : m.entrySet()) {
+            assertFalse("entry twice " + e, seen.containsKey(e.getKey()));
+            seen.put(e.getKey(), e.getValue());
+        }
+        assertEquals(expected, seen);
+        Set<K> keys = new HashSet<>();
+        for (K k : m.keySet())
+            assertTrue("key twice " + k, keys.add(k));
+        assertEquals(expected.keySet(), keys);
+        List<V> values = new ArrayList<>(m.values());
+        assertEquals(expected.size(), values.size());
+        Map<K, V> each = new HashMap<>();
+        m.forEach((k, v) -> assertNull("forEach twice " + k, each.put(k, v)));
+        assertEquals(expected, each);
+        Set<K> keysForEach = new HashSet<>();
+        m.keySet().forEach(keysForEach::add);
+        assertEquals(expected.keySet(), keysForEach);
+        List<V> valuesForEach = new ArrayList<>();
+        m.values().forEach(valuesForEach::add);
+        assertEquals(expected.size(), valuesForEach.size());
+    }
+
+    @Test
+    public void collidingStringsGoToOverflow() {
+        List<String> colliding = collidingStrings(8);
+        HashMap<String, Integer> expected = new HashMap<>();
+        // 一半哈希值相同的字符串，加上哈希值各不相同的键
+        for (int i = 0; i < colliding.size(); i += 2)
+            expected.put(colliding.get(i), i);
+        for (int i = 0; i < 1000; i++)
+            expected.put("u" + i, -i);
+        FrozenHashMap<String, Integer> m = expected.freeze();
+        List<String> missing = new ArrayList<>();
+        for (int i = 1; i < colliding.size(); i += 2)
+            missing.add(colliding.get(i));
+        missing.add("u1000");
+        missing.add(null);
+        check(expected, m, missing);
+        check(expected, MapEquivalenceTest.copy(m), missing);
+    }
+
+    @Test
+    public void keysWithSameHashAndNullKey() {
+        HashMap<Key, String> expected = new HashMap<>();
+        // 多组哈希值相同的键，包括负的哈希值，检查溢出区的二分查找按有符号整数排序
+        for (int id = 0; id < 300; id++)
+            expected.put(new Key(id, (id % 5 - 2) * 0x40000001), "v" + id);
+        for (int id = 300; id < 600; id++)
+            expected.put(new Key(id, id * 0x9E3779B1), "v" + id);
+        expected.put(null, "null key");
+        expected.put(new Key(600, 0), null);
+        FrozenHashMap<Key, String> m = new FrozenHashMap<>(expected);
+        List<Key> missing = new ArrayList<>();
+        for (int id = 601; id < 700; id++)
+            missing.add(new Key(id, (id % 5 - 2) * 0x40000001));
+        missing.add(new Key(700, 0));
+        check(expected, m, missing);
+        assertEquals("null key", m.get(null));
+        assertTrue(m.containsKey(new Key(600, 0)));
+        assertTrue(m.containsValue(null));
+        check(expected, MapEquivalenceTest.copy(m), missing);
+    }
+
+    @Test
+    public void onlyNullKey() {
+        HashMap<String, String> expected = new HashMap<>();
+        expected.put(null, "x");
+        FrozenHashMap<String, String> m = expected.freeze();
+        check(expected, m, Arrays.asList("a", ""));
+        assertEquals("x", m.get(null));
+        check(expected, MapEquivalenceTest.copy(m), Arrays.asList("a", ""));
+    }
+
+    @Test
+    public void emptyMap() {
+        FrozenHashMap<Integer, Integer> m = new HashMap<Integer, Integer>().freeze();
+        // 哈希值为0的键也不能在空位置上命中
+        List<Integer> missing = Arrays.asList(0, 1, -1, null);
+        check(Collections.emptyMap(), m, missing);
+        assertEquals(0, m.hashCode());
+        assertEquals("{}", m.toString());
+        assertFalse(m.containsValue(null));
+        Iterator<Integer> it = m.keySet().iterator();
+        assertFalse(it.hasNext());
+        try {
+            it.next();
+            fail();
+        } catch (NoSuchElementException expected) {
+        }
+        check(Collections.emptyMap(), MapEquivalenceTest.copy(m), missing);
+    }
+
+    @Test
+    public void largeMapAndSerialization() {
+        HashMap<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 50000; i++)
+            expected.put(i * 7, i);
+        FrozenHashMap<Integer, Integer> m = expected.freeze();
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            missing.add(i * 7 + 3);
+        check(expected, m, missing);
+        // 反序列化时重新构建，内容不变
+        FrozenHashMap<Integer, Integer> copy = MapEquivalenceTest.copy(m);
+        check(expected, copy, missing);
+        assertEquals(m, copy);
+        // 冻结之后修改原来的HashMap不影响FrozenHashMap
+        expected.put(-1, -1);
+        assertFalse(m.containsKey(-1));
+        assertEquals(50000, m.size());
+    }
+}
@@ -0,0 +1,226 @@
+package maps;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import maps.MapEquivalenceTest.Key;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * HashMap.getAll(Object[], V[])和getAll(Collection, V[])的测试：结果与逐个get()相同
+ * 1.键的数量不是4的倍数时最后一组不足4个，null键、红黑树桶中的键、不存在的键和值为null的键
+ * 2.out比keys短时抛出IllegalArgumentException，out中多余的位置不会被修改
+ * 3.渐进式扩容还没有结束、开启了统计或者布隆过滤器时逐个调用getNode()的路径
+ */
+public class GetAllTest {
+    /**
+     * 没有被getAll()写入的位置保持这个值
+     */
+    static final Integer UNTOUCHED = -99;
+
+    /**
+     * 奇数id的键存在，id为3的倍数的键哈希值相同，所在的桶是红黑树；null键和id为1的键的值为null
+     */
+    static HashMap<Key, Integer> newMap(int size) {
+        HashMap<Key, Integer> m = new HashMap<>();
+        for (int id = 1; id < size; id += 2)
+            m.put(key(id), (id == 1) ? null : id);
+        m.put(null, null);
+        return m;
+    }
+
+    static Key key(int id) {
+        return new Key(id, (id % 3 == 0) ? 42 : id * 0x9E3779B1);
+    }
+
+    static void check(HashMap<Key, Integer> m, Key[] keys) {
+        check(m, new HashMap<>(m), keys);
+    }
+
+    /**
+     * 用两个重载分别查找keys，与在参照的HashMap中逐个get()的结果比较
+     * 参照结果不从m得到，避免查询在getAll()之前搬迁m的桶或者改变统计
+     */
+    static void check(HashMap<Key, Integer> m, HashMap<Key, Integer> reference, Key[] keys) {
+        String at = "keys=" + Arrays.toString(keys);
+        Integer[] expected = new Integer[keys.length];
+        int found = 0;
+        for (int i = 0; i < keys.length; i++) {
+            expected[i] = reference.get(keys[i]);
+            if (reference.containsKey(keys[i]))
+                ++found;
+        }
+        Integer[] out = new Integer[keys.length + 3];
+        Arrays.fill(out, UNTOUCHED);
+        assertEquals(at, found, m.getAll(keys, out));
+        checkOut(at, expected, out);
+        Arrays.fill(out, UNTOUCHED);
+        assertEquals(at, found, m.getAll(Arrays.asList(keys), out));
+        checkOut(at, expected, out);
+    }
+
+    static void checkOut(String at, Integer[] expected, Integer[] out) {
+        assertEquals(at, Arrays.asList(expected), Arrays.asList(out).subList(0, expected.length));
+        for (int i = expected.length; i < out.length; i++)
+            assertEquals(at, UNTOUCHED, out[i]);
+    }
+
+    /**
+     * 每个长度的第一个键不存在，然后依次是null键、红黑树桶中的键、值为null的键和其他的键
+     */
+    static Key[] keys(int len, int seed) {
+        Key[] keys = new Key[len];
+        for (int i = 0; i < len; i++) {
+            int id = seed + i;
+            keys[i] = (i == 0) ? key(2 * id) : (i == 1) ? null : (i == 2) ? key(1) : key(id);
+        }
+        return keys;
+    }
+
+    @Test
+    public void batchesAndTails() {
+        HashMap<Key, Integer> m = newMap(1000);
+        assertEquals(m.get(key(3)), Integer.valueOf(3));
+        for (int len = 0; len <= 13; len++)
+            for (int seed = 0; seed < 40; seed += 3)
+                check(m, keys(len, seed));
+        // 全部是红黑树桶中的键，存在和不存在的各一半
+        Key[] treeKeys = new Key[102];
+        for (int i = 0; i < treeKeys.length; i++)
+            treeKeys[i] = key(3 * i);
+        check(m, treeKeys);
+        // 重复的键和全部为null的一组
+        check(m, new Key[]{key(5), key(5), key(5), key(5), key(5)});
+        check(m, new Key[]{null, null, null, null, null, null});
+    }
+
+    @Test
+    public void missingKeysAreNotCounted() {
+        HashMap<Key, Integer> m = newMap(100);
+        m.remove(null);
+        // null键不存在时，不足4个的最后一组补上的null也不能计入
+        Key[] keys = {key(0), key(2), key(4), key(6), key(3), null, key(8)};
+        Integer[] out = new Integer[keys.length];
+        Arrays.fill(out, UNTOUCHED);
+        assertEquals(1, m.getAll(keys, out));
+        assertEquals(Arrays.asList(null, null, null, null, 3, null, null), Arrays.asList(out));
+        for (int len = 1; len <= 3; len++)
+            assertEquals(0, m.getAll(new Key[len], new Integer[len]));
+        // 值为null的键存在，计入找到的个数
+        assertEquals(1, m.getAll(new Key[]{key(1)}, out));
+        assertNull(out[0]);
+        // 空Map还没有哈希桶数组
+        HashMap<Key, Integer> empty = new HashMap<>();
+        Arrays.fill(out, UNTOUCHED);
+        assertEquals(0, empty.getAll(keys, out));
+        assertEquals(Arrays.asList(new Integer[keys.length]), Arrays.asList(out));
+        check(empty, keys(7, 0));
+    }
+
+    @Test
+    public void shortOutThrows() {
+        HashMap<Key, Integer> m = newMap(100);
+        Integer[] out = {UNTOUCHED, UNTOUCHED};
+        try {
+            m.getAll(new Key[]{key(1), key(3), key(5)}, out);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            m.getAll(Arrays.asList(key(1), key(3), key(5)), out);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(Arrays.asList(UNTOUCHED, UNTOUCHED), Arrays.asList(out));
+        // out更长时只写入前keys.length个位置
+        check(m, new Key[]{key(3)});
+        check(m, new Key[0]);
+    }
+
+    @Test
+    public void collectionOverloadFollowsIterationOrder() {
+        HashMap<Key, Integer> m = newMap(200);
+        for (int len = 0; len <= 9; len++) {
+            // LinkedHashSet没有随机访问，按迭代顺序每次取4个
+            LinkedHashSet<Key> set = new LinkedHashSet<>(Arrays.asList(keys(len, 50)));
+            Key[] keys = set.toArray(new Key[0]);
+            Integer[] fromArray = new Integer[keys.length];
+            Integer[] fromSet = new Integer[keys.length];
+            assertEquals(m.getAll(keys, fromArray), m.getAll(set, fromSet));
+            assertEquals(Arrays.asList(fromArray), Arrays.asList(fromSet));
+        }
+    }
+
+    @Test
+    public void incrementalResizeInProgress() throws ReflectiveOperationException {
+        HashMap<Key, Integer> m = new HashMap<>();
+        HashMap<Key, Integer> reference = new HashMap<>();
+        m.setIncrementalResize(true);
+        int checked = 0;
+        Object lastOldTable = null;
+        for (int id = 1; id < 20000; id += 2) {
+            m.put(key(id), id);
+            reference.put(key(id), id);
+            Object old = StatisticsTest.oldTable(m);
+            if (old == null || old == lastOldTable)
+                continue;
+            lastOldTable = old;
+            // 查找的键分布在旧表中还没有搬迁的桶和新表中
+            List<Key> list = new ArrayList<>();
+            for (int i = 0; i < 11; i++)
+                list.add(key((id / 11) * i + (i % 2)));
+            list.add(null);
+            check(m, reference, list.toArray(new Key[0]));
+            ++checked;
+        }
+        assertTrue("no resize was observed in progress", checked >= 5);
+    }
+
+    @Test
+    public void statisticsEnabled() {
+        HashMap<Key, Integer> m = newMap(1000);
+        m.setStatisticsEnabled(true);
+        for (int len = 0; len <= 9; len++) {
+            Key[] keys = keys(len, 7 * len);
+            long before = m.statistics().lookupCount();
+            Integer[] out = new Integer[len];
+            m.getAll(keys, out);
+            // 逐个调用getNode()，每个键计一次查找
+            assertEquals(before + len, m.statistics().lookupCount());
+            check(m, keys);
+        }
+    }
+
+    @Test
+    public void bloomFilterEnabled() {
+        HashMap<Key, Integer> m = newMap(1000);
+        m.setBloomFilterEnabled(true);
+        m.setStatisticsEnabled(true);
+        Key[] missing = new Key[1000];
+        for (int i = 0; i < missing.length; i++)
+            missing[i] = key(2 * i);
+        Integer[] out = new Integer[missing.length];
+        assertEquals(0, m.getAll(missing, out));
+        // 哈希值不是42的667个不存在的键，除了少量误判都被布隆过滤器排除
+        HashMap.Statistics st = m.statistics();
+        assertNotNull(st);
+        assertTrue("rejects " + st.bloomFilterRejectCount(), st.bloomFilterRejectCount() > 650);
+        for (int len = 0; len <= 9; len++)
+            check(m, keys(len, 11 * len));
+        // 只开启布隆过滤器
+        m.setStatisticsEnabled(false);
+        for (int len = 0; len <= 9; len++)
+            check(m, keys(len, 13 * len));
+        check(m, missing);
+    }
+}
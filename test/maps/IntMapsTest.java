@@ -0,0 +1,231 @@
+package maps;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.IntHashMap;
+import java.util.IntIntHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * IntHashMap、IntIntHashMap与HashMap<Integer, Integer>的随机差分测试，以及computeIfAbsent()中修改map的情况
+ * 键取自一个小范围，包括0和负数，同一个键会被反复添加和删除；负载因子0.9时探测序列很长，向后移位删除会绕回数组开头。
+ */
+public class IntMapsTest {
+    static final int SEEDS = 6;
+
+    static final int OPERATIONS = 4000;
+
+    @Test
+    public void intHashMap() {
+        check(IntHashMap::new);
+        check(() -> new IntHashMap<>(4, 0.9f));
+    }
+
+    @Test
+    public void intIntHashMap() {
+        checkIntInt(IntIntHashMap::new);
+        checkIntInt(() -> new IntIntHashMap(4, 0.9f));
+    }
+
+    static int randomKey(Random r, int universe) {
+        return r.nextInt(universe) - universe / 4;
+    }
+
+    static void check(Supplier<IntHashMap<Integer>> factory) {
+        for (int seed = 0; seed < SEEDS; seed++) {
+            Random r = new Random(seed);
+            IntHashMap<Integer> m = factory.get();
+            HashMap<Integer, Integer> ref = new HashMap<>();
+            int universe = 8 + r.nextInt(393);
+            for (int op = 0; op < OPERATIONS; op++) {
+                int k = randomKey(r, universe);
+                // 值可以为null，与HashMap相同
+                Integer v = (r.nextInt(32) == 0) ? null : r.nextInt(1000);
+                String at = "seed=" + seed + " op=" + op + " key=" + k;
+                switch (r.nextInt(8)) {
+                    case 0:
+                    case 1:
+                        assertEquals(at + " put", ref.put(k, v), m.put(k, v));
+                        break;
+                    case 2:
+                        assertEquals(at + " remove", ref.remove(k), m.remove(k));
+                        break;
+                    case 3:
+                        assertEquals(at + " get", ref.get(k), m.get(k));
+                        assertEquals(at + " getOrDefault", ref.getOrDefault(k, -1), m.getOrDefault(k, -1));
+                        assertEquals(at + " containsKey", ref.containsKey(k), m.containsKey(k));
+                        break;
+                    case 4:
+                        assertEquals(at + " putIfAbsent", ref.putIfAbsent(k, v), m.putIfAbsent(k, v));
+                        break;
+                    case 5:
+                        assertEquals(at + " computeIfAbsent", ref.computeIfAbsent(k, kk -> v),
+                                m.computeIfAbsent(k, kk -> v));
+                        break;
+                    case 6:
+                        if (r.nextInt(4) == 0) {
+                            m = (r.nextBoolean()) ? m.clone() : MapEquivalenceTest.copy(m);
+                            compare(ref, m, at + " copied");
+                        } else
+                            compare(ref, m, at);
+                        break;
+                    default:
+                        if (r.nextInt(32) == 0) {
+                            ref.clear();
+                            m.clear();
+                        }
+                }
+                assertEquals(at + " size", ref.size(), m.size());
+            }
+            compare(ref, m, "seed=" + seed + " final");
+        }
+    }
+
+    static void compare(Map<Integer, Integer> ref, IntHashMap<Integer> m, String at) {
+        assertEquals(at + " size", ref.size(), m.size());
+        Map<Integer, Integer> seen = new HashMap<>();
+        m.forEach((k, v) -> {
+            if (seen.containsKey(k))
+                fail(at + " iterated " + k + " twice");
+            seen.put(k, v);
+        });
+        assertEquals(at + " content", ref, seen);
+        assertEquals(at + " keys", ref.size(), m.keys().length);
+        for (int k : m.keys())
+            assertTrue(at + " keys " + k, ref.containsKey(k));
+        assertEquals(at + " hashCode", ref.hashCode(), m.hashCode());
+        assertTrue(at + " equals clone", m.equals(m.clone()));
+    }
+
+    static void checkIntInt(Supplier<IntIntHashMap> factory) {
+        for (int seed = 0; seed < SEEDS; seed++) {
+            Random r = new Random(seed);
+            IntIntHashMap m = factory.get();
+            HashMap<Integer, Integer> ref = new HashMap<>();
+            int universe = 8 + r.nextInt(393);
+            for (int op = 0; op < OPERATIONS; op++) {
+                int k = randomKey(r, universe);
+                int v = r.nextInt(1000) - 500;
+                String at = "seed=" + seed + " op=" + op + " key=" + k;
+                switch (r.nextInt(9)) {
+                    case 0:
+                    case 1:
+                        assertEquals(at + " put", orZero(ref.put(k, v)), m.put(k, v));
+                        break;
+                    case 2:
+                        assertEquals(at + " remove", orZero(ref.remove(k)), m.remove(k));
+                        break;
+                    case 3:
+                        assertEquals(at + " get", orZero(ref.get(k)), m.get(k));
+                        assertEquals(at + " getOrDefault", (int) ref.getOrDefault(k, -1), m.getOrDefault(k, -1));
+                        assertEquals(at + " containsKey", ref.containsKey(k), m.containsKey(k));
+                        assertEquals(at + " containsValue", ref.containsValue(v), m.containsValue(v));
+                        break;
+                    case 4:
+                        assertEquals(at + " putIfAbsent", orZero(ref.putIfAbsent(k, v)), m.putIfAbsent(k, v));
+                        break;
+                    case 5:
+                        assertEquals(at + " computeIfAbsent", (int) ref.computeIfAbsent(k, kk -> v),
+                                m.computeIfAbsent(k, kk -> v));
+                        break;
+                    case 6:
+                        assertEquals(at + " addTo", (int) ref.merge(k, v, Integer::sum), m.addTo(k, v));
+                        break;
+                    case 7:
+                        if (r.nextInt(4) == 0) {
+                            m = (r.nextBoolean()) ? m.clone() : MapEquivalenceTest.copy(m);
+                            compareIntInt(ref, m, at + " copied");
+                        } else
+                            compareIntInt(ref, m, at);
+                        break;
+                    default:
+                        if (r.nextInt(32) == 0) {
+                            ref.clear();
+                            m.clear();
+                        }
+                }
+                assertEquals(at + " size", ref.size(), m.size());
+            }
+            compareIntInt(ref, m, "seed=" + seed + " final");
+        }
+    }
+
+    static int orZero(Integer v) {
+        return (v == null) ? 0 : v;
+    }
+
+    static void compareIntInt(Map<Integer, Integer> ref, IntIntHashMap m, String at) {
+        assertEquals(at + " size", ref.size(), m.size());
+        Map<Integer, Integer> seen = new HashMap<>();
+        m.forEach((k, v) -> {
+            if (seen.containsKey(k))
+                fail(at + " iterated " + k + " twice");
+            seen.put(k, v);
+        });
+        assertEquals(at + " content", ref, seen);
+        assertEquals(at + " keys", ref.size(), m.keys().length);
+        assertEquals(at + " hashCode", ref.hashCode(), m.hashCode());
+        assertTrue(at + " equals clone", m.equals(m.clone()));
+    }
+
+    @Test
+    public void intIntComputeIfAbsentInsertingSameKey() {
+        // 让键落在扩容的边界上：mappingFunction插入该键时触发扩容
+        for (int n = 0; n < 40; n++) {
+            for (int key : new int[]{0, 7, -3}) {
+                IntIntHashMap m = new IntIntHashMap();
+                for (int i = 1; i <= n; i++)
+                    m.put(i * 1000, i);
+                int expectedSize = m.size() + 1;
+                int v = m.computeIfAbsent(key, k -> {
+                    m.put(k, 99);
+                    return 42;
+                });
+                assertEquals(42, v);
+                assertEquals("n=" + n + " key=" + key, 42, m.get(key));
+                assertEquals("n=" + n + " key=" + key, expectedSize, m.size());
+            }
+        }
+    }
+
+    @Test
+    public void intIntComputeIfAbsentModifyingOtherKeys() {
+        IntIntHashMap m = new IntIntHashMap();
+        HashMap<Integer, Integer> ref = new HashMap<>();
+        for (int key = 1; key <= 200; key++) {
+            int base = key;
+            // 函数中添加和删除其他键，可能扩容，也可能让key所在的探测序列移位
+            int v = m.computeIfAbsent(key, k -> {
+                m.put(-k, k);
+                m.remove(k - 1);
+                return k * 2;
+            });
+            ref.put(-base, base);
+            ref.remove(base - 1);
+            ref.put(base, base * 2);
+            assertEquals(base * 2, v);
+            compareIntInt(ref, m, "key=" + key);
+        }
+    }
+
+    @Test
+    public void intHashMapComputeIfAbsentInsertingSameKey() {
+        for (int key : new int[]{0, 7}) {
+            IntHashMap<String> m = new IntHashMap<>();
+            String v = m.computeIfAbsent(key, k -> {
+                m.put(k, "inner");
+                return "outer";
+            });
+            assertEquals("outer", v);
+            assertEquals("outer", m.get(key));
+            assertEquals(1, m.size());
+        }
+    }
+}
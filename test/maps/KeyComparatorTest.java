@@ -0,0 +1,178 @@
+package maps;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Objects;
+
+import maps.MapEquivalenceTest.Key;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * HashMap.setKeyComparator()的测试：红黑树桶中的键没有实现Comparable，或者比较器对不相等的键返回0，
+ * 以及重建红黑树桶对正在进行的迭代和渐进式扩容的影响
+ */
+public class KeyComparatorTest {
+    /**
+     * 同一个桶中的键的个数，远超过转换成红黑树的阈值
+     */
+    static final int KEYS = 100;
+
+    /**
+     * 没有实现Comparable的组合键，按(group, id)判断相等，哈希值全部相同
+     */
+    static final class PairKey {
+        final int group;
+        final int id;
+
+        PairKey(int group, int id) {
+            this.group = group;
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof PairKey && ((PairKey) o).group == group && ((PairKey) o).id == id;
+        }
+
+        @Override
+        public String toString() {
+            return group + ":" + id;
+        }
+    }
+
+    /**
+     * 与equals()一致的比较器
+     */
+    static final Comparator<PairKey> BY_GROUP_AND_ID =
+            Comparator.<PairKey>comparingInt(k -> k.group).thenComparingInt(k -> k.id);
+
+    /**
+     * 只比较group的比较器：相等的键总是返回0，不相等的键也可能返回0，符合setKeyComparator()的要求
+     */
+    static final Comparator<PairKey> BY_GROUP = Comparator.comparingInt(k -> k.group);
+
+    @Test
+    public void nonComparableKeysInOneBin() {
+        for (Comparator<PairKey> cmp : Arrays.asList(BY_GROUP_AND_ID, BY_GROUP, null)) {
+            HashMap<PairKey, Integer> m = new HashMap<>();
+            m.setKeyComparator(cmp);
+            fillAndCheck(m, Objects.toString(cmp));
+        }
+    }
+
+    @Test
+    public void comparatorChangedWithTreeBins() {
+        HashMap<PairKey, Integer> m = new HashMap<>();
+        fillAndCheck(m, "before");
+        // 已有的红黑树桶按新的比较器重新构建，之后查找、覆盖和删除都要正确
+        m.setKeyComparator(BY_GROUP);
+        checkContent(m, "BY_GROUP");
+        m.setKeyComparator(BY_GROUP_AND_ID.reversed());
+        checkContent(m, "reversed");
+        m.setKeyComparator(null);
+        checkContent(m, "null");
+    }
+
+    @Test
+    public void rebuildingTreeBinsIsStructuralModification() {
+        HashMap<PairKey, Integer> m = new HashMap<>();
+        fillAndCheck(m, "before");
+        // 重建改变了桶中结点的next顺序，迭代器不能继续
+        Iterator<PairKey> it = m.keySet().iterator();
+        it.next();
+        m.setKeyComparator(BY_GROUP);
+        try {
+            it.next();
+            fail("setKeyComparator() rebuilt tree bins without changing modCount");
+        } catch (ConcurrentModificationException expected) {
+        }
+        // 没有红黑树桶时只更换比较器，不影响迭代
+        HashMap<String, Integer> small = new HashMap<>();
+        small.put("a", 1);
+        small.put("b", 2);
+        Iterator<String> it2 = small.keySet().iterator();
+        it2.next();
+        small.setKeyComparator(Comparator.reverseOrder());
+        it2.next();
+        assertFalse(it2.hasNext());
+    }
+
+    @Test
+    public void comparatorChangedDuringIncrementalResize() throws ReflectiveOperationException {
+        HashMap<PairKey, Integer> m = new HashMap<>();
+        m.setIncrementalResize(true);
+        m.setKeyComparator(BY_GROUP_AND_ID);
+        // 再添加键直到触发扩容，扩容开始后马上更换比较器，先按原来的比较器搬迁完再重建
+        for (int i = 0; i < KEYS; i++)
+            m.put(new PairKey(i % 10, i), i);
+        int id = 0;
+        while (StatisticsTest.oldTable(m) == null)
+            m.put(new PairKey(-1, ++id), -id);
+        m.setKeyComparator(BY_GROUP_AND_ID.reversed());
+        assertNull(StatisticsTest.oldTable(m));
+        for (int i = 0; i < KEYS; i++)
+            assertEquals(Integer.valueOf(i), m.get(new PairKey(i % 10, i)));
+        for (int i = 1; i <= id; i++)
+            assertEquals(Integer.valueOf(-i), m.remove(new PairKey(-1, i)));
+        checkContent(m, "reversed after resize");
+    }
+
+    @Test
+    public void coarseComparatorMatchesReference() {
+        // 比较器只区分id / 8，同一个桶中大量的键比较结果为0，需要同时查找左右子树
+        MapEquivalenceTest.check(() -> {
+            HashMap<Key, Integer> m = new HashMap<>();
+            m.setKeyComparator(Comparator.comparingInt(k -> k.id / 8));
+            return m;
+        }, true, true);
+        // 所有的键比较结果都为0，退化成没有比较器、键也没有实现Comparable的情况
+        MapEquivalenceTest.check(() -> {
+            HashMap<Key, Integer> m = new HashMap<>();
+            m.setKeyComparator((a, b) -> 0);
+            return m;
+        }, true, true);
+    }
+
+    /**
+     * 在同一个桶中添加KEYS个键，检查查找、重复添加和删除
+     */
+    static void fillAndCheck(HashMap<PairKey, Integer> m, String at) {
+        for (int i = 0; i < KEYS; i++)
+            assertNull(at, m.put(new PairKey(i % 10, i), i));
+        checkContent(m, at);
+    }
+
+    static void checkContent(HashMap<PairKey, Integer> m, String at) {
+        assertEquals(at, KEYS, m.size());
+        for (int i = 0; i < KEYS; i++)
+            assertEquals(at + " get " + i, Integer.valueOf(i), m.get(new PairKey(i % 10, i)));
+        assertFalse(at, m.containsKey(new PairKey(3, 4)));
+        assertNull(at, m.get("not a PairKey"));
+        // 用新的对象覆盖已有的键，不能插入重复的键
+        for (int i = 0; i < KEYS; i++)
+            assertEquals(at + " re-put " + i, Integer.valueOf(i), m.put(new PairKey(i % 10, i), i));
+        assertEquals(at, KEYS, m.size());
+        for (int i = 0; i < KEYS; i += 2)
+            assertEquals(at + " remove " + i, Integer.valueOf(i), m.remove(new PairKey(i % 10, i)));
+        assertEquals(at, KEYS / 2, m.size());
+        for (int i = 0; i < KEYS; i++)
+            assertTrue(at + " after remove " + i, m.containsKey(new PairKey(i % 10, i)) == (i % 2 == 1));
+        for (int i = 0; i < KEYS; i += 2)
+            m.put(new PairKey(i % 10, i), i);
+    }
+}
@@ -0,0 +1,116 @@
+package maps;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.LoadingCache;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * LoadingCache的测试：同一个键只加载一次，失败和null结果不缓存，getAsync()的调用者不能影响缓存中的结果
+ */
+public class LoadingCacheTest {
+    @Test
+    public void cancellingAsyncResultDoesNotPoisonKey() {
+        // 加载任务先保存起来，取消之后再执行，保证取消时加载还没有完成
+        AtomicInteger loads = new AtomicInteger();
+        List<Runnable> pending = new ArrayList<>();
+        LoadingCache<Integer, String> lc = new LoadingCache<>(k -> {
+            loads.incrementAndGet();
+            return "v" + k;
+        }, pending::add);
+        CompletableFuture<String> f = lc.getAsync(99);
+        assertTrue(f.cancel(true));
+        pending.forEach(Runnable::run);
+        assertEquals("get after cancel", "v99", lc.get(99));
+        assertEquals("cancel must not trigger a reload", 1, loads.get());
+        assertEquals("v99", lc.getAsync(99).join());
+    }
+
+    @Test
+    public void completingAsyncResultDoesNotChangeCachedValue() {
+        // 加载阻塞到latch打开，getAsync()的调用者在加载完成之前complete()或者obtrudeValue()
+        CountDownLatch latch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            LoadingCache<Integer, String> lc = new LoadingCache<>(k -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return "v" + k;
+            }, executor);
+            lc.getAsync(1).complete("forged");
+            lc.getAsync(1).obtrudeValue("forged");
+            lc.getAsync(1).completeExceptionally(new IllegalStateException());
+            latch.countDown();
+            assertEquals("v1", lc.get(1));
+            assertEquals("v1", lc.getAsync(1).join());
+            assertEquals("v1", lc.getIfPresent(1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void concurrentGetsLoadOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+        LoadingCache<Integer, Integer> lc = new LoadingCache<>(k -> {
+            loads.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return k * 2;
+        });
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] fs = new Future<?>[8];
+            for (int i = 0; i < fs.length; i++)
+                fs[i] = pool.submit(() -> lc.get(21));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            release.countDown();
+            for (Future<?> f : fs)
+                assertEquals(42, f.get(10, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failuresAndNullsAreNotCached() {
+        AtomicInteger loads = new AtomicInteger();
+        LoadingCache<Integer, String> lc = new LoadingCache<>(k -> {
+            int n = loads.incrementAndGet();
+            if (n == 1)
+                throw new IllegalArgumentException("first");
+            return n == 2 ? null : "v" + n;
+        });
+        try {
+            lc.get(1);
+            fail("expected the loader's exception");
+        } catch (IllegalArgumentException expected) {
+            assertEquals("first", expected.getMessage());
+        }
+        assertEquals(null, lc.get(1));
+        assertEquals("v3", lc.get(1));
+        assertEquals("v3", lc.get(1));
+        assertEquals(3, loads.get());
+    }
+}
@@ -0,0 +1,441 @@
+package maps;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.BoundedCache;
+import java.util.BufferCodec;
+import java.util.CompactHashMap;
+import java.util.Comparator;
+import java.util.ConcurrentBinHashMap;
+import java.util.ExpiringMap;
+import java.util.FrozenHashMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OffHeapHashMap;
+import java.util.OpenHashMap;
+import java.util.PersistentHashMap;
+import java.util.Random;
+import java.util.RobinHoodHashMap;
+import java.util.SwissHashMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntBiFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 各种Map实现与java.util.HashMap、TreeMap的随机差分测试
+ * 1.同一个随机操作序列（put、remove、putIfAbsent、compute、computeIfAbsent、merge、迭代器remove()、序列化）
+ * 同时作用于被测Map、HashMap和TreeMap，每个操作的返回值和操作之后的内容都必须相同。
+ * TreeMap不依赖哈希值，作为独立的参照；HashMap本身也被本项目修改过，所以两者都比较。
+ * 2.键的哈希值有三种分布：各不相同、全部集中在4个哈希值上（1023、1022、0、1），以及两者混合。
+ * 1023和1022在容量不超过1024时落在表的最后两个位置，开放寻址的探测序列和删除时的向后移动都会绕回表头。
+ * 3.键的个数比操作次数少得多，同一个键会被反复添加和删除，结点、墓碑和扩容的各种组合都会出现。
+ * 4.不可修改的FrozenHashMap先用随机操作构建HashMap，再冻结，只比较查询、遍历和序列化的结果。
+ */
+public class MapEquivalenceTest {
+    /**
+     * 每个Map实现运行的随机种子个数，每个种子依次使用三种哈希值分布
+     */
+    static final int SEEDS = 6;
+
+    /**
+     * 每轮的操作次数
+     */
+    static final int OPERATIONS = 4000;
+
+    /**
+     * 集中分布使用的哈希值
+     */
+    static final int[] WRAPPING_HASHES = {1023, 1022, 0, 1};
+
+    /**
+     * 测试用的键：按id判断相等和排序，哈希值在构造时指定
+     */
+    static final class Key implements Comparable<Key>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final int id;
+        final int hash;
+
+        Key(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        static Key of(int id, int scheme) {
+            switch (scheme) {
+                case 0:
+                    return new Key(id, id * 0x9E3779B1);
+                case 1:
+                    return new Key(id, WRAPPING_HASHES[id & 3]);
+                default:
+                    return new Key(id, (id % 3 == 0) ? WRAPPING_HASHES[id & 3] : id);
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).id == id;
+        }
+
+        @Override
+        public int compareTo(Key o) {
+            return Integer.compare(id, o.id);
+        }
+
+        @Override
+        public String toString() {
+            return id + "#" + hash;
+        }
+    }
+
+    /**
+     * OffHeapHashMap使用的Key编解码器：id和哈希值各4个字节
+     */
+    static final class KeyCodec implements BufferCodec<Key> {
+        @Override
+        public int encodedSize(Key value) {
+            return 8;
+        }
+
+        @Override
+        public void encode(Key value, ByteBuffer buf, int offset) {
+            buf.putInt(offset, value.id);
+            buf.putInt(offset + 4, value.hash);
+        }
+
+        @Override
+        public Key decode(ByteBuffer buf, int offset, int length) {
+            return new Key(buf.getInt(offset), buf.getInt(offset + 4));
+        }
+    }
+
+    @Test
+    public void hashMapWithOptions() {
+        check(() -> {
+            HashMap<Key, Integer> m = new HashMap<>();
+            m.setIncrementalResize(true);
+            m.setBloomFilterEnabled(true);
+            m.setRandomizedHashing(true);
+            m.setKeyComparator(Comparator.comparingInt(k -> k.id));
+            return m;
+        }, true, true);
+    }
+
+    @Test
+    public void openHashMap() {
+        check(OpenHashMap::new, true, true);
+        check(() -> new OpenHashMap<>(4, 0.9f), true, true);
+    }
+
+    @Test
+    public void robinHoodHashMap() {
+        check(RobinHoodHashMap::new, true, true);
+        check(() -> new RobinHoodHashMap<>(4, 0.9f), true, true);
+    }
+
+    @Test
+    public void swissHashMap() {
+        check(SwissHashMap::new, true, true);
+    }
+
+    @Test
+    public void persistentHashMap() {
+        check(PersistentHashMap::new, true, true);
+    }
+
+    @Test
+    public void compactHashMap() {
+        check(CompactHashMap::new, true, true);
+    }
+
+    @Test
+    public void offHeapHashMap() {
+        check(() -> new OffHeapHashMap<>(new KeyCodec(), BufferCodec.int32()), false, false);
+    }
+
+    @Test
+    public void concurrentBinHashMap() {
+        check(ConcurrentBinHashMap::new, false, true);
+    }
+
+    @Test
+    public void boundedCache() {
+        // 容量远大于键的个数，不会淘汰，行为应该与普通的Map相同
+        for (BoundedCache.Policy policy : BoundedCache.Policy.values())
+            check(() -> new BoundedCache<>(1 << 20, policy, null), true, true);
+        // 可序列化的weigher随缓存一起序列化
+        ToIntBiFunction<Key, Integer> weigher = (ToIntBiFunction<Key, Integer> & Serializable) (k, v) -> 1;
+        check(() -> new BoundedCache<>(1 << 20, BoundedCache.Policy.LRU, weigher), true, true);
+    }
+
+    @Test
+    public void expiringMap() {
+        check(() -> new ExpiringMap<>(1, TimeUnit.HOURS), true, true);
+        check(() -> new ExpiringMap<>(Long.MAX_VALUE, 1, TimeUnit.HOURS, ExpiringMap.Ticker.system()), true, true);
+    }
+
+    @Test
+    public void frozenHashMap() {
+        checkReadOnly(HashMap::freeze);
+        checkReadOnly(FrozenHashMap::new);
+    }
+
+    /**
+     * 不可修改的Map：用随机的put和remove构建HashMap和TreeMap，然后由HashMap得到被测Map，
+     * 比较全部内容和每个键（包括不存在的键）的查找结果，序列化之后再比较一次
+     *
+     * @param freeze 由构建好的HashMap得到被测Map
+     */
+    static void checkReadOnly(Function<HashMap<Key, Integer>, Map<Key, Integer>> freeze) {
+        for (int seed = 0; seed < SEEDS; seed++) {
+            for (int scheme = 0; scheme < 3; scheme++) {
+                Random r = new Random(seed * 31L + scheme);
+                TreeMap<Key, Integer> ref = new TreeMap<>(Comparator.nullsFirst(Comparator.<Key>naturalOrder()));
+                HashMap<Key, Integer> hm = new HashMap<>();
+                // 键的个数从0到几千，包括空Map
+                int universe = (seed == 0) ? 1 : 8 + r.nextInt(4000);
+                int ops = (seed == 0) ? 0 : r.nextInt(2 * universe);
+                for (int op = 0; op < ops; op++) {
+                    Key k = (r.nextInt(64) == 0) ? null : Key.of(r.nextInt(universe), scheme);
+                    Integer v = (r.nextInt(32) == 0) ? null : r.nextInt(1000);
+                    if (r.nextInt(4) == 0) {
+                        ref.remove(k);
+                        hm.remove(k);
+                    } else {
+                        ref.put(k, v);
+                        hm.put(k, v);
+                    }
+                }
+                Map<Key, Integer> m = freeze.apply(hm);
+                String tag = m.getClass().getSimpleName() + " seed=" + seed + " scheme=" + scheme;
+                // 被测Map与原来的HashMap互不影响
+                hm.put(Key.of(universe, scheme), -1);
+                hm.remove(Key.of(universe, scheme));
+                for (int copy = 0; copy < 2; copy++) {
+                    String at = tag + ((copy == 0) ? "" : " deserialized");
+                    compare(ref, hm, m, at);
+                    for (int id = -1; id <= universe; id++) {
+                        Key k = (id < 0) ? null : Key.of(id, scheme);
+                        String where = at + " key=" + k;
+                        same(where + " get", ref.get(k), hm.get(k), m.get(k));
+                        same(where + " containsKey", ref.containsKey(k), hm.containsKey(k), m.containsKey(k));
+                        same(where + " getOrDefault", ref.getOrDefault(k, -1), hm.getOrDefault(k, -1), m.getOrDefault(k, -1));
+                    }
+                    for (int v : new int[]{0, 1, 999, -1})
+                        same(at + " containsValue", ref.containsValue(v), hm.containsValue(v), m.containsValue(v));
+                    same(at + " containsValue(null)", ref.containsValue(null), hm.containsValue(null), m.containsValue(null));
+                    m = copy(m);
+                }
+                expectReadOnly(m, tag);
+            }
+        }
+    }
+
+    /**
+     * 所有修改方法都抛出UnsupportedOperationException
+     */
+    static void expectReadOnly(Map<Key, Integer> m, String tag) {
+        Key k = Key.of(0, 0);
+        java.util.List<Runnable> mutators = java.util.Arrays.asList(
+                () -> m.put(k, 1),
+                () -> m.putAll(java.util.Collections.singletonMap(k, 1)),
+                () -> m.remove(k),
+                () -> m.clear(),
+                () -> m.putIfAbsent(k, 1),
+                () -> m.remove(k, 1),
+                () -> m.replace(k, 1, 2),
+                () -> m.replace(k, 1),
+                () -> m.computeIfAbsent(k, kk -> 1),
+                () -> m.computeIfPresent(k, (kk, v) -> 1),
+                () -> m.compute(k, (kk, v) -> 1),
+                () -> m.merge(k, 1, Integer::sum),
+                () -> m.replaceAll((kk, v) -> v));
+        for (int i = 0; i < mutators.size(); i++) {
+            try {
+                mutators.get(i).run();
+                fail(tag + " mutator " + i + " did not throw");
+            } catch (UnsupportedOperationException expected) {
+            }
+        }
+        if (!m.isEmpty()) {
+            Iterator<Map.Entry<Key, Integer>> it = m.entrySet().iterator();
+            Map.Entry<Key, Integer> e = it.next();
+            try {
+                it.remove();
+                fail(tag + " iterator.remove() did not throw");
+            } catch (UnsupportedOperationException expected) {
+            }
+            try {
+                e.setValue(1);
+                fail(tag + " setValue() did not throw");
+            } catch (UnsupportedOperationException expected) {
+            }
+        }
+    }
+
+    /**
+     * 对一个Map实现运行全部种子和哈希值分布
+     *
+     * @param factory      创建被测的空Map
+     * @param nulls        是否支持null键和null值
+     * @param serializable 是否可以序列化
+     */
+    static void check(Supplier<Map<Key, Integer>> factory, boolean nulls, boolean serializable) {
+        for (int seed = 0; seed < SEEDS; seed++) {
+            for (int scheme = 0; scheme < 3; scheme++) {
+                Map<Key, Integer> m = factory.get();
+                String tag = m.getClass().getSimpleName() + " seed=" + seed + " scheme=" + scheme;
+                try {
+                    run(m, new Random(seed * 31L + scheme), scheme, nulls, serializable, tag);
+                } finally {
+                    if (m instanceof OffHeapHashMap)
+                        ((OffHeapHashMap<Key, Integer>) m).close();
+                }
+            }
+        }
+    }
+
+    static void run(Map<Key, Integer> m, Random r, int scheme, boolean nulls, boolean serializable, String tag) {
+        TreeMap<Key, Integer> ref = new TreeMap<>(Comparator.nullsFirst(Comparator.<Key>naturalOrder()));
+        Map<Key, Integer> hm = new HashMap<>();
+        // 键的个数在8到400之间，少量的键让同一个键反复添加和删除
+        int universe = 8 + r.nextInt(393);
+        for (int op = 0; op < OPERATIONS; op++) {
+            Key k = (nulls && r.nextInt(64) == 0) ? null : Key.of(r.nextInt(universe), scheme);
+            Integer v = (nulls && r.nextInt(32) == 0) ? null : r.nextInt(1000);
+            int x = r.nextInt(1000);
+            String at = tag + " op=" + op + " key=" + k;
+            switch (r.nextInt(12)) {
+                case 0:
+                case 1:
+                case 2:
+                    same(at + " put", ref.put(k, v), hm.put(k, v), m.put(k, v));
+                    break;
+                case 3:
+                case 4:
+                    same(at + " remove", ref.remove(k), hm.remove(k), m.remove(k));
+                    break;
+                case 5:
+                    same(at + " get", ref.get(k), hm.get(k), m.get(k));
+                    same(at + " containsKey", ref.containsKey(k), hm.containsKey(k), m.containsKey(k));
+                    break;
+                case 6:
+                    same(at + " putIfAbsent", ref.putIfAbsent(k, v), hm.putIfAbsent(k, v), m.putIfAbsent(k, v));
+                    break;
+                case 7: {
+                    // x % 4 == 0时返回null，即删除
+                    BiFunction<Key, Integer, Integer> f = (kk, old) -> (x % 4 == 0) ? null : (old == null ? x : old + x);
+                    same(at + " compute", ref.compute(k, f), hm.compute(k, f), m.compute(k, f));
+                    break;
+                }
+                case 8:
+                    same(at + " computeIfAbsent", ref.computeIfAbsent(k, kk -> x),
+                            hm.computeIfAbsent(k, kk -> x), m.computeIfAbsent(k, kk -> x));
+                    break;
+                case 9: {
+                    BiFunction<Integer, Integer, Integer> f = (a, b) -> ((a + b) % 3 == 0) ? null : a + b;
+                    same(at + " merge", ref.merge(k, x, f), hm.merge(k, x, f), m.merge(k, x, f));
+                    break;
+                }
+                case 10: {
+                    // 通过迭代器删除id % mod == rem的键值对
+                    int mod = 2 + r.nextInt(6), rem = r.nextInt(mod);
+                    removeByIterator(ref, mod, rem);
+                    removeByIterator(hm, mod, rem);
+                    removeByIterator(m, mod, rem);
+                    compare(ref, hm, m, at + " iterator.remove");
+                    break;
+                }
+                default:
+                    if (r.nextInt(8) == 0) {
+                        compare(ref, hm, m, at);
+                        if (serializable) {
+                            m = copy(m);
+                            hm = copy(hm);
+                            compare(ref, hm, m, at + " deserialized");
+                        }
+                    } else if (r.nextInt(16) == 0) {
+                        ref.clear();
+                        hm.clear();
+                        m.clear();
+                    }
+            }
+            same(at + " size", ref.size(), hm.size(), m.size());
+        }
+        compare(ref, hm, m, tag + " final");
+    }
+
+    static void removeByIterator(Map<Key, Integer> map, int mod, int rem) {
+        for (Iterator<Map.Entry<Key, Integer>> it = map.entrySet().iterator(); it.hasNext(); ) {
+            Key k = it.next().getKey();
+            if (k != null && k.id % mod == rem)
+                it.remove();
+        }
+    }
+
+    static void same(String at, Object expected, Object fromHashMap, Object actual) {
+        if (!Objects.equals(expected, fromHashMap))
+            fail(at + ": HashMap returned " + fromHashMap + ", TreeMap returned " + expected);
+        if (!Objects.equals(expected, actual))
+            fail(at + ": returned " + actual + ", TreeMap returned " + expected);
+    }
+
+    /**
+     * 比较全部内容：equals()双向成立、hashCode()相同，遍历得到的键值对各不相同且个数等于size()
+     */
+    static void compare(TreeMap<Key, Integer> ref, Map<Key, Integer> hm, Map<Key, Integer> m, String at) {
+        for (Map<Key, Integer> map : java.util.Arrays.asList(hm, m)) {
+            String name = at + " " + map.getClass().getSimpleName();
+            assertEquals(name + " size", ref.size(), map.size());
+            assertTrue(name + " equals", ref.equals(map));
+            assertTrue(name + " reverse equals", map.equals(ref));
+            assertEquals(name + " hashCode", ref.hashCode(), map.hashCode());
+            TreeMap<Key, Integer> seen = new TreeMap<>(ref.comparator());
+            int count = 0;
+            for (Map.Entry<Key, Integer> e : map.entrySet()) {
+                ++count;
+                if (seen.containsKey(e.getKey()))
+                    fail(name + " iterated " + e.getKey() + " twice");
+                seen.put(e.getKey(), e.getValue());
+            }
+            assertEquals(name + " iterated count", ref.size(), count);
+            assertEquals(name + " iterated content", ref, seen);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T copy(T o) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(o);
+            }
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                return (T) in.readObject();
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            throw new AssertionError(o.getClass().getSimpleName() + " serialization failed", e);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package maps;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.BufferCodec;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OffHeapHashMap;
+
+import maps.MapEquivalenceTest.Key;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * OffHeapHashMap快照的测试：写入后重新打开内容不变，哈希值不稳定的编解码器被拒绝
+ */
+public class OffHeapSnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Key的编解码器，哈希值是hashCode()异或salt
+     * 不同的salt模拟枚举、Object.hashCode()这类在另一个进程中哈希值不同的键
+     */
+    static final class SaltedKeyCodec implements BufferCodec<Key> {
+        final int salt;
+        final boolean stable;
+
+        SaltedKeyCodec(int salt, boolean stable) {
+            this.salt = salt;
+            this.stable = stable;
+        }
+
+        @Override
+        public int hash(Key value) {
+            return value.hashCode() ^ salt;
+        }
+
+        @Override
+        public boolean stableHash() {
+            return stable;
+        }
+
+        @Override
+        public int encodedSize(Key value) {
+            return 8;
+        }
+
+        @Override
+        public void encode(Key value, ByteBuffer buf, int offset) {
+            buf.putInt(offset, value.id);
+            buf.putInt(offset + 4, value.hash);
+        }
+
+        @Override
+        public Key decode(ByteBuffer buf, int offset, int length) {
+            return new Key(buf.getInt(offset), buf.getInt(offset + 4));
+        }
+    }
+
+    /**
+     * 写入一个经过删除、原地覆盖和追加覆盖的Map，返回快照文件，ref中是期望的内容
+     */
+    Path write(BufferCodec<Key> keyCodec, Map<Key, String> ref) throws IOException {
+        Path file = folder.newFile().toPath();
+        try (OffHeapHashMap<Key, String> m = new OffHeapHashMap<>(keyCodec, BufferCodec.utf8())) {
+            for (int i = 0; i < 2000; i++) {
+                // 一半的键集中在4个哈希值上，快照中会有很长的探测序列
+                Key k = Key.of(i, i & 1);
+                m.put(k, "v" + i);
+                ref.put(k, "v" + i);
+            }
+            for (int i = 0; i < 2000; i += 3) {
+                Key k = Key.of(i, i & 1);
+                m.remove(k);
+                ref.remove(k);
+            }
+            for (int i = 1; i < 2000; i += 3) {
+                Key k = Key.of(i, i & 1);
+                String v = (i % 2 == 0) ? "x" : "a much longer value " + i;
+                m.put(k, v);
+                ref.put(k, v);
+            }
+            m.writeSnapshot(file);
+        }
+        return file;
+    }
+
+    @Test
+    public void writeAndReopen() throws IOException {
+        Map<Key, String> ref = new HashMap<>();
+        Path file = write(new SaltedKeyCodec(0, true), ref);
+        try (OffHeapHashMap<Key, String> m = OffHeapHashMap.openSnapshot(file, new SaltedKeyCodec(0, true),
+                BufferCodec.utf8())) {
+            assertEquals(ref.size(), m.size());
+            assertEquals(ref, m);
+            for (Map.Entry<Key, String> e : ref.entrySet())
+                assertEquals(e.getKey().toString(), e.getValue(), m.get(e.getKey()));
+            for (int i = 0; i < 2000; i += 3)
+                assertNull(m.get(Key.of(i, i & 1)));
+            try {
+                m.put(Key.of(0, 0), "v");
+                fail("snapshot must be read-only");
+            } catch (UnsupportedOperationException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void unstableHashIsRejectedOnWrite() throws IOException {
+        try {
+            write(new SaltedKeyCodec(0, false), new HashMap<>());
+            fail("writeSnapshot must reject a codec without stableHash()");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void unstableHashIsRejectedOnOpen() throws IOException {
+        Path file = write(new SaltedKeyCodec(0, true), new HashMap<>());
+        try {
+            OffHeapHashMap.openSnapshot(file, new SaltedKeyCodec(0, false), BufferCodec.utf8()).close();
+            fail("openSnapshot must reject a codec without stableHash()");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void changedHashIsDetectedOnOpen() throws IOException {
+        // 写入和打开时哈希值不同，相当于在另一个进程中打开了用Object.hashCode()写入的快照
+        Path file = write(new SaltedKeyCodec(0, true), new HashMap<>());
+        try {
+            OffHeapHashMap.openSnapshot(file, new SaltedKeyCodec(0x5bd1e995, true), BufferCodec.utf8()).close();
+            fail("openSnapshot must detect hashes that differ from the ones in the file");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("hash"));
+        }
+    }
+}
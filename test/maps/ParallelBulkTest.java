@@ -0,0 +1,184 @@
+package maps;
+
+import org.junit.Test;
+
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import maps.MapEquivalenceTest.Key;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * HashMap的并行批量操作forEach(long, ...)、replaceAll(long, ...)、reduce()、search()的测试
+ * 每个测试都用顺序执行（Long.MAX_VALUE）和尽可能拆分（1）两种阈值运行；
+ * 键值对包括一半哈希值集中在少数桶中的键，这些桶会转为红黑树，检查红黑树桶也能沿着next遍历到所有结点
+ */
+public class ParallelBulkTest {
+    static final long[] THRESHOLDS = {Long.MAX_VALUE, 1L};
+
+    static final int SIZE = 20000;
+
+    static HashMap<Key, Integer> newMap() {
+        HashMap<Key, Integer> m = new HashMap<>();
+        for (int id = 0; id < SIZE; id++)
+            m.put(new Key(id, (id % 2 == 0) ? id % 16 : id * 0x9E3779B1), id);
+        return m;
+    }
+
+    @Test
+    public void forEachVisitsEveryEntryOnce() {
+        for (long threshold : THRESHOLDS) {
+            HashMap<Key, Integer> m = newMap();
+            Map<Key, Integer> seen = new ConcurrentHashMap<>();
+            m.forEach(threshold, (k, v) -> {
+                if (seen.put(k, v) != null)
+                    fail("visited " + k + " twice");
+            });
+            assertEquals(m, seen);
+        }
+    }
+
+    @Test
+    public void sequentialBelowThreshold() {
+        HashMap<Key, Integer> m = newMap();
+        Thread caller = Thread.currentThread();
+        AtomicInteger calls = new AtomicInteger();
+        // 键值对数量小于阈值时所有回调都在当前线程执行
+        m.forEach(SIZE + 1, (k, v) -> {
+            assertTrue(Thread.currentThread() == caller);
+            calls.incrementAndGet();
+        });
+        assertEquals(SIZE, calls.get());
+    }
+
+    @Test
+    public void replaceAllUpdatesEveryValue() {
+        for (long threshold : THRESHOLDS) {
+            HashMap<Key, Integer> m = newMap();
+            m.replaceAll(threshold, (k, v) -> -v);
+            assertEquals(SIZE, m.size());
+            for (Map.Entry<Key, Integer> e : m.entrySet())
+                assertEquals(Integer.valueOf(-e.getKey().id), e.getValue());
+        }
+    }
+
+    @Test
+    public void reduceSkipsNullElements() {
+        for (long threshold : THRESHOLDS) {
+            HashMap<Key, Integer> m = newMap();
+            // 只归约id为3的倍数的键值对，reducer不会收到null
+            Long sum = m.reduce(threshold, (k, v) -> (v % 3 == 0) ? (long) v : null, (a, b) -> {
+                assertNotNull(a);
+                assertNotNull(b);
+                return a + b;
+            });
+            long expected = 0L;
+            for (int id = 0; id < SIZE; id += 3)
+                expected += id;
+            assertEquals(Long.valueOf(expected), sum);
+            // 只有一个元素时直接返回它，不调用reducer
+            assertEquals(Integer.valueOf(7), m.reduce(threshold, (k, v) -> (v == 7) ? v : null, (a, b) -> {
+                throw new AssertionError("reducer called for a single element");
+            }));
+            // 所有元素都是null时返回null
+            assertNull(m.reduce(threshold, (k, v) -> null, (a, b) -> {
+                throw new AssertionError("reducer called without elements");
+            }));
+            assertNull(new HashMap<Key, Integer>().reduce(threshold, (k, v) -> v, Integer::sum));
+        }
+    }
+
+    @Test
+    public void searchFindsMatch() {
+        for (long threshold : THRESHOLDS) {
+            HashMap<Key, Integer> m = newMap();
+            assertEquals(Integer.valueOf(12345), m.search(threshold, (k, v) -> (v == 12345) ? v : null));
+            assertNull(m.search(threshold, (k, v) -> null));
+            Integer any = m.search(threshold, (k, v) -> (v % 1000 == 0) ? v : null);
+            assertNotNull(any);
+            assertEquals(0, any % 1000);
+        }
+    }
+
+    @Test
+    public void searchStopsEarly() {
+        HashMap<Key, Integer> m = newMap();
+        // 顺序执行时按桶的顺序查找，第一个结果之后不再调用searchFunction
+        int position = 0;
+        for (Key k : m.keySet()) {
+            ++position;
+            if (k.id == 4321)
+                break;
+        }
+        AtomicInteger calls = new AtomicInteger();
+        m.search(Long.MAX_VALUE, (k, v) -> {
+            calls.incrementAndGet();
+            return (v == 4321) ? v : null;
+        });
+        assertEquals(position, calls.get());
+        // 并行执行时每个键值对都满足条件：每个叶子任务找到第一个结果后就返回，
+        // 叶子任务最多是batchFor()返回值（并行度的4倍）的2倍
+        calls.set(0);
+        assertNotNull(m.search(1L, (k, v) -> {
+            calls.incrementAndGet();
+            return v;
+        }));
+        int leaves = 8 * Math.max(1, ForkJoinPool.getCommonPoolParallelism());
+        assertTrue("searchFunction called " + calls.get() + " times", calls.get() <= leaves);
+    }
+
+    @Test
+    public void structuralModificationThrows() {
+        for (long threshold : THRESHOLDS) {
+            String at = "threshold=" + threshold;
+            // 只在id为0的回调中删除另一个键，删除不会扩容，其他线程遍历的数组不变
+            HashMap<Key, Integer> m = newMap();
+            expectCme(at + " forEach", () -> m.forEach(threshold, (k, v) -> {
+                if (v == 0)
+                    m.remove(new Key(1, 0x9E3779B1));
+            }));
+            HashMap<Key, Integer> m2 = newMap();
+            expectCme(at + " replaceAll", () -> m2.replaceAll(threshold, (k, v) -> {
+                if (v == 0)
+                    m2.remove(new Key(1, 0x9E3779B1));
+                return v;
+            }));
+            HashMap<Key, Integer> m3 = newMap();
+            expectCme(at + " reduce", () -> m3.reduce(threshold, (k, v) -> {
+                if (v == 0)
+                    m3.remove(new Key(1, 0x9E3779B1));
+                return v;
+            }, Integer::sum));
+            HashMap<Key, Integer> m4 = newMap();
+            expectCme(at + " search", () -> m4.search(threshold, (k, v) -> {
+                if (v == 0)
+                    m4.remove(new Key(1, 0x9E3779B1));
+                return null;
+            }));
+            // 只修改值不是结构性修改
+            HashMap<Key, Integer> m5 = newMap();
+            m5.forEach(threshold, (k, v) -> {
+                if (v == 0)
+                    m5.put(k, -1);
+            });
+            assertEquals(Integer.valueOf(-1), m5.get(new Key(0, 0)));
+        }
+    }
+
+    static void expectCme(String at, Runnable r) {
+        try {
+            r.run();
+            fail(at + " did not throw ConcurrentModificationException");
+        } catch (ConcurrentModificationException expected) {
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package maps;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * HashMap.setRandomizedHashing()的测试
+ * 1.hashCode()相同的String键（"Aa"和"BB"拼接）分散到不同的桶中，两个实例的分布不同
+ * 2.clone()和序列化得到的副本使用相同的种子，键所在的桶不变
+ */
+public class RandomizedHashingTest {
+    static Field field(String name) throws NoSuchFieldException {
+        Field f = HashMap.class.getDeclaredField(name);
+        f.setAccessible(true);
+        return f;
+    }
+
+    static int seed(HashMap<?, ?> m) throws ReflectiveOperationException {
+        return field("hashSeed").getInt(m);
+    }
+
+    /**
+     * 每个键所在的桶的下标，按keys的顺序
+     */
+    static int[] bins(HashMap<String, Integer> m, List<String> keys) throws ReflectiveOperationException {
+        Object[] tab = BulkPutTest.table(m);
+        Field key = Class.forName("java.util.HashMap$Node").getDeclaredField("key");
+        Field next = Class.forName("java.util.HashMap$Node").getDeclaredField("next");
+        key.setAccessible(true);
+        next.setAccessible(true);
+        HashMap<Object, Integer> index = new HashMap<>();
+        for (int i = 0; i < tab.length; i++)
+            for (Object e = tab[i]; e != null; e = next.get(e))
+                index.put(key.get(e), i);
+        int[] bins = new int[keys.size()];
+        for (int i = 0; i < bins.length; i++)
+            bins[i] = index.get(keys.get(i));
+        return bins;
+    }
+
+    static HashMap<String, Integer> randomized(List<String> keys) {
+        HashMap<String, Integer> m = new HashMap<>();
+        m.setRandomizedHashing(true);
+        for (int i = 0; i < keys.size(); i++)
+            m.put(keys.get(i), i);
+        return m;
+    }
+
+    static int distinct(int[] bins) {
+        return (int) Arrays.stream(bins).distinct().count();
+    }
+
+    @Test
+    public void collidingStringsAreSpread() throws ReflectiveOperationException {
+        // 1024个hashCode()相同的字符串
+        List<String> keys = FrozenHashMapTest.collidingStrings(10);
+        assertEquals(1, keys.stream().mapToInt(String::hashCode).distinct().count());
+        HashMap<String, Integer> plain = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++)
+            plain.put(keys.get(i), i);
+        assertEquals(1, distinct(bins(plain, keys)));
+        assertEquals(1, BulkPutTest.treeBins(plain));
+        HashMap<String, Integer> a = randomized(keys), b = randomized(keys);
+        assertNotEquals(seed(a), seed(b));
+        int[] binsA = bins(a, keys), binsB = bins(b, keys);
+        // 2048个桶中1024个键，随机分布时大约占用800个桶
+        assertTrue("bins used " + distinct(binsA), distinct(binsA) > 600);
+        assertTrue("bins used " + distinct(binsB), distinct(binsB) > 600);
+        assertEquals(0, BulkPutTest.treeBins(a));
+        // 两个实例中同一个键落在同一个桶中的比例接近1/2048
+        int same = 0;
+        for (int i = 0; i < binsA.length; i++)
+            if (binsA[i] == binsB[i])
+                ++same;
+        assertTrue("same bin for " + same + " keys", same < 20);
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(Integer.valueOf(i), a.get(keys.get(i)));
+            assertEquals(Integer.valueOf(i), b.get(keys.get(i)));
+        }
+        assertEquals(plain, a);
+        assertEquals(a, b);
+    }
+
+    @Test
+    public void seedSurvivesCloneAndSerialization() throws ReflectiveOperationException {
+        List<String> keys = FrozenHashMapTest.collidingStrings(8);
+        HashMap<String, Integer> m = randomized(keys);
+        m.put(null, -1);
+        int[] expected = bins(m, keys);
+        @SuppressWarnings("unchecked")
+        HashMap<String, Integer> clone = (HashMap<String, Integer>) m.clone();
+        HashMap<String, Integer> copy = MapEquivalenceTest.copy(m);
+        for (HashMap<String, Integer> c : Arrays.asList(clone, copy)) {
+            assertEquals(seed(m), seed(c));
+            assertEquals(m, c);
+            assertTrue(Arrays.equals(expected, bins(c, keys)));
+            // 之后添加的键也使用同样的种子
+            c.put("AaAaAaAaAaAaAaAaAa", 1);
+            assertEquals(Integer.valueOf(1), c.get("AaAaAaAaAaAaAaAaAa"));
+            assertEquals(Integer.valueOf(-1), c.get(null));
+        }
+        // 没有开启时种子为0，副本也没有开启
+        HashMap<String, Integer> plain = new HashMap<>();
+        plain.put("a", 1);
+        assertEquals(0, seed(MapEquivalenceTest.copy(plain)));
+    }
+
+    @Test
+    public void onlyForEmptyHashMap() throws ReflectiveOperationException {
+        HashMap<String, Integer> m = new HashMap<>();
+        m.setRandomizedHashing(true);
+        int first = seed(m);
+        assertTrue(first != 0);
+        // 再次开启更换种子，关闭后种子为0
+        m.setRandomizedHashing(true);
+        assertNotEquals(first, seed(m));
+        m.setRandomizedHashing(false);
+        assertEquals(0, seed(m));
+        m.put("a", 1);
+        try {
+            m.setRandomizedHashing(true);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(0, seed(m));
+        try {
+            new LinkedHashMap<String, Integer>().setRandomizedHashing(true);
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        assertFalse(m.isEmpty());
+    }
+}
@@ -0,0 +1,165 @@
+package maps;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.Spliterator;
+
+import maps.MapEquivalenceTest.Key;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * HashMap的Spliterator按分段统计拆分的测试
+ * 1.容量不小于MIN_SEGMENTED_CAPACITY时，递归拆分得到的每一部分都是SIZED|SUBSIZED，两部分的大小之和等于拆分前的大小，
+ * 每个叶子的estimateSize()等于实际遍历到的数量
+ * 2.只在段的边界上拆分，两部分的差不超过范围内最大的一段
+ * 3.用tryAdvance()遍历过的Spliterator不再拆分，包括刚好遍历到段的边界的情况
+ * 4.容量较小时与JDK相同，按桶的下标平分
+ */
+public class SpliteratorSplitTest {
+    /**
+     * 4096个桶，每段16个桶；7/10的键落在前64个桶（前4段）中，这些桶都是红黑树，其余的键分散在整个数组中
+     */
+    static HashMap<Key, Integer> skewedMap() {
+        HashMap<Key, Integer> m = new HashMap<>(4096);
+        for (int id = 0; id < 3000; id++)
+            m.put(new Key(id, (id % 10 < 7) ? id % 64 : id * 0x9E3779B1), id);
+        return m;
+    }
+
+    static Field field(String name) throws NoSuchFieldException {
+        Field f = HashMap.class.getDeclaredField(name);
+        f.setAccessible(true);
+        return f;
+    }
+
+    static Field spliteratorField(String name) throws ReflectiveOperationException {
+        Field f = Class.forName("java.util.HashMap$HashMapSpliterator").getDeclaredField(name);
+        f.setAccessible(true);
+        return f;
+    }
+
+    @Test
+    public void segmentedSplitIsExact() throws ReflectiveOperationException {
+        HashMap<Key, Integer> m = skewedMap();
+        int[] counts = (int[]) field("segmentCounts").get(m);
+        int shift = field("segmentShift").getInt(m);
+        assertNotNull(counts);
+        assertEquals(4096 >>> shift, counts.length);
+        Set<Object> seen = new HashSet<>();
+        int[] leaves = new int[1];
+        long total = check(m.keySet().spliterator(), counts, shift, seen, leaves);
+        assertEquals(m.size(), total);
+        assertEquals(m.keySet(), seen);
+        // 一段内的键值对数量最多约为500，3000个键值对至少拆成4部分
+        assertTrue("leaves=" + leaves[0], leaves[0] >= 4);
+        // 值和键值对的Spliterator使用同样的拆分
+        seen.clear();
+        assertEquals(m.size(), check(m.values().spliterator(), counts, shift, seen, leaves));
+        assertEquals(m.size(), seen.size());
+        seen.clear();
+        assertEquals(m.size(), check(m.entrySet().spliterator(), counts, shift, seen, leaves));
+        assertEquals(m.entrySet(), seen);
+        // 并行流的结果与顺序遍历相同
+        assertEquals(m.size(), m.keySet().parallelStream().count());
+        assertEquals(4498500L, m.values().parallelStream().mapToLong(Integer::longValue).sum());
+    }
+
+    /**
+     * 递归拆分并检查每一次拆分，返回遍历到的元素数量
+     */
+    static long check(Spliterator<?> s, int[] counts, int shift, Set<Object> seen, int[] leaves)
+            throws ReflectiveOperationException {
+        int characteristics = Spliterator.SIZED | Spliterator.SUBSIZED;
+        assertEquals(characteristics, s.characteristics() & characteristics);
+        long est = s.estimateSize();
+        Spliterator<?> prefix = s.trySplit();
+        if (prefix == null) {
+            ++leaves[0];
+            long[] n = new long[1];
+            s.forEachRemaining(e -> {
+                assertTrue("visited twice " + e, seen.add(e));
+                ++n[0];
+            });
+            assertEquals(est, n[0]);
+            return n[0];
+        }
+        int lo = spliteratorField("index").getInt(prefix);
+        int mid = spliteratorField("fence").getInt(prefix);
+        int hi = spliteratorField("fence").getInt(s);
+        assertEquals(mid, spliteratorField("index").getInt(s));
+        int mask = (1 << shift) - 1;
+        assertEquals("split at " + mid, 0, mid & mask);
+        assertEquals(0, lo & mask);
+        assertTrue(lo < mid && mid < hi);
+        long a = prefix.estimateSize(), b = s.estimateSize();
+        assertEquals(est, a + b);
+        // 在最接近一半的边界上拆分，两部分的差不超过范围内最大的一段
+        int max = 0;
+        for (int i = lo >>> shift; i < hi >>> shift; i++)
+            max = Math.max(max, counts[i]);
+        assertTrue("sizes " + a + " " + b + " max segment " + max, Math.abs(a - b) <= max);
+        return check(prefix, counts, shift, seen, leaves) + check(s, counts, shift, seen, leaves);
+    }
+
+    @Test
+    public void traversedSpliteratorDoesNotSplit() throws ReflectiveOperationException {
+        HashMap<Key, Integer> m = skewedMap();
+        int shift = field("segmentShift").getInt(m);
+        // 遍历一个元素之后不再拆分
+        Spliterator<Key> s = m.keySet().spliterator();
+        assertTrue(s.tryAdvance(k -> {
+        }));
+        assertNull(s.trySplit());
+        // 遍历完第一段之后current为null，index在段的边界上，est已经不是剩下的数量
+        Field current = spliteratorField("current");
+        Field index = spliteratorField("index");
+        s = m.keySet().spliterator();
+        int n = 0;
+        while (current.get(s) != null || index.getInt(s) != 1 << shift) {
+            assertTrue(s.tryAdvance(k -> {
+            }));
+            ++n;
+        }
+        assertTrue(n > 0);
+        assertNull(s.trySplit());
+        long[] rest = new long[1];
+        s.forEachRemaining(k -> ++rest[0]);
+        assertEquals(m.size(), n + rest[0]);
+        // 拆分得到的后一部分同样
+        s = m.keySet().spliterator();
+        Spliterator<Key> prefix = s.trySplit();
+        assertNotNull(prefix);
+        assertTrue(s.tryAdvance(k -> {
+        }));
+        assertNull(s.trySplit());
+        assertNotNull(prefix.trySplit());
+    }
+
+    @Test
+    public void smallTableSplitsInHalf() throws ReflectiveOperationException {
+        HashMap<Integer, Integer> m = new HashMap<>();
+        for (int i = 0; i < 100; i++)
+            m.put(i, i);
+        assertNull(field("segmentCounts").get(m));
+        Spliterator<Integer> s = m.keySet().spliterator();
+        assertEquals(Spliterator.SIZED, s.characteristics() & (Spliterator.SIZED | Spliterator.SUBSIZED));
+        Spliterator<Integer> prefix = s.trySplit();
+        assertNotNull(prefix);
+        assertEquals(128, spliteratorField("index").getInt(s));
+        assertEquals(50, prefix.estimateSize());
+        assertEquals(50, s.estimateSize());
+        assertEquals(0, s.characteristics() & Spliterator.SIZED);
+        long[] n = new long[1];
+        prefix.forEachRemaining(k -> ++n[0]);
+        s.forEachRemaining(k -> ++n[0]);
+        assertEquals(100, n[0]);
+    }
+}
@@ -0,0 +1,141 @@
+package maps;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import maps.MapEquivalenceTest.Key;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * HashMap.statistics()的测试
+ * 1.渐进式扩容期间统计不会搬迁剩下的桶，结果与搬迁完之后统计的相同
+ * 2.哈希值相同的键使链表转为红黑树，删除和扩容拆分使红黑树转回链表，两个计数与实际发生的次数一致
+ */
+public class StatisticsTest {
+    /**
+     * 读取HashMap.oldTable，判断渐进式扩容是否还在进行
+     */
+    static Object oldTable(HashMap<?, ?> m) throws ReflectiveOperationException {
+        Field f = HashMap.class.getDeclaredField("oldTable");
+        f.setAccessible(true);
+        return f.get(m);
+    }
+
+    @Test
+    public void statisticsDoNotFinishIncrementalResize() throws ReflectiveOperationException {
+        HashMap<Key, Integer> m = new HashMap<>();
+        m.setIncrementalResize(true);
+        m.setStatisticsEnabled(true);
+        Object lastOldTable = null;
+        int checked = 0, treeBins = 0;
+        for (int id = 0; id < 20000; id++) {
+            // 每8个键中有1个的哈希值集中在16个值上，低5位相同：容量32时都在同一个桶中并转为红黑树，
+            // 之后每次扩容按哈希值的更高位拆分，红黑树桶的拆分和转回链表都会被统计到
+            int hash = (id % 8 == 0) ? ((id / 8) % 16) * 32 + 3 : id * 0x9E3779B1;
+            m.put(new Key(id, hash), id);
+            Object old = oldTable(m);
+            if (old == null || old == lastOldTable)
+                continue;
+            lastOldTable = old;
+            HashMap.Statistics before = m.statistics();
+            // 渐进式扩容刚开始，统计两次都不能搬迁桶
+            HashMap.Statistics again = m.statistics();
+            assertNotNull("statistics() finished the transfer at size " + m.size(), oldTable(m));
+            assertTrue(Arrays.equals(before.binHistogram(), again.binHistogram()));
+            m.finishTransfer();
+            HashMap.Statistics after = m.statistics();
+            String at = "size=" + m.size() + " capacity=" + after.capacity();
+            assertEquals(at, after.capacity(), before.capacity());
+            assertEquals(at, after.size(), before.size());
+            assertEquals(at + " histogram", Arrays.toString(after.binHistogram()), Arrays.toString(before.binHistogram()));
+            assertEquals(at + " tree bins", after.treeBinCount(), before.treeBinCount());
+            assertEquals(at + " bins", after.capacity(), Arrays.stream(before.binHistogram()).sum());
+            treeBins += before.treeBinCount();
+            ++checked;
+        }
+        assertTrue("no resize was observed in progress", checked >= 5);
+        assertTrue("no tree bins were split", treeBins > 0);
+    }
+
+    @Test
+    public void treeifyAndUntreeifyCounts() {
+        HashMap<Key, Integer> m = new HashMap<>(64);
+        m.setStatisticsEnabled(true);
+        // 同一个桶中第9个结点加入时转为红黑树，之后再添加不会再计数
+        for (int id = 0; id < 8; id++)
+            m.put(new Key(id, 5), id);
+        assertEquals(0L, m.statistics().treeifyCount());
+        m.put(new Key(8, 5), 8);
+        HashMap.Statistics st = m.statistics();
+        assertEquals(1L, st.treeifyCount());
+        assertEquals(1, st.treeBinCount());
+        for (int id = 9; id < 20; id++)
+            m.put(new Key(id, 5), id);
+        assertEquals(1L, m.statistics().treeifyCount());
+        // 删除到只剩一个结点时一定已经转回链表，并且只转换一次
+        for (int id = 0; id < 19; id++)
+            m.remove(new Key(id, 5));
+        st = m.statistics();
+        assertEquals(1L, st.untreeifyCount());
+        assertEquals(0, st.treeBinCount());
+        // 再次添加到9个结点，第二次转换
+        for (int id = 20; id < 28; id++)
+            m.put(new Key(id, 5), id);
+        assertEquals(2L, m.statistics().treeifyCount());
+        assertEquals(1, m.statistics().treeBinCount());
+    }
+
+    @Test
+    public void resizeSplitCountsUntreeify() {
+        // 容量64时哈希值5和69在同一个桶中，扩容到128后分开
+        for (int each : new int[]{5, 20}) {
+            HashMap<Key, Integer> m = new HashMap<>(64);
+            m.setStatisticsEnabled(true);
+            int id = 0;
+            for (int i = 0; i < each; i++) {
+                m.put(new Key(id++, 5), i);
+                m.put(new Key(id++, 69), i);
+            }
+            assertEquals(1L, m.statistics().treeifyCount());
+            assertEquals(1, m.statistics().treeBinCount());
+            // 用分散在其他桶中的键触发扩容，id从10开始到不超过64
+            while (m.statistics().capacity() == 64)
+                m.put(new Key(id, id++), 0);
+            HashMap.Statistics st = m.statistics();
+            String at = "each=" + each;
+            if (each <= 6) {
+                // 拆分后的两部分都不超过UNTREEIFY_THRESHOLD，各转回链表一次
+                assertEquals(at, 2L, st.untreeifyCount());
+                assertEquals(at, 0, st.treeBinCount());
+            } else {
+                // 两部分仍然是红黑树，拆分时重新构建不计入treeifyCount
+                assertEquals(at, 0L, st.untreeifyCount());
+                assertEquals(at, 2, st.treeBinCount());
+            }
+            assertEquals(at, 1L, st.treeifyCount());
+        }
+    }
+
+    @Test
+    public void smallTableResizesInsteadOfTreeify() {
+        HashMap<Key, Integer> m = new HashMap<>();
+        m.setStatisticsEnabled(true);
+        // 容量小于MIN_TREEIFY_CAPACITY时，链表过长先扩容：第9、10个结点分别扩容到32和64，第11个结点才转为红黑树
+        for (int id = 0; id < 10; id++)
+            m.put(new Key(id, 5), id);
+        HashMap.Statistics st = m.statistics();
+        assertEquals(0L, st.treeifyCount());
+        assertEquals(64, st.capacity());
+        m.put(new Key(10, 5), 10);
+        st = m.statistics();
+        assertEquals(1L, st.treeifyCount());
+        assertEquals(1, st.treeBinCount());
+        assertEquals(64, st.capacity());
+    }
+}
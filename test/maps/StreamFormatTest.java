@@ -0,0 +1,97 @@
+package maps;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BoundedCache;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.StreamCodec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * HashMap.writeTo()/readFrom()的往返测试：内容不变，LinkedHashMap和BoundedCache的顺序也不变
+ */
+public class StreamFormatTest {
+    static final int KEYS = 20;
+
+    /**
+     * 把from写出后读回到to中
+     */
+    static <M extends HashMap<String, Integer>> M roundTrip(HashMap<String, Integer> from, M to) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            from.writeTo(out, StreamCodec.utf8(), StreamCodec.int32());
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            to.readFrom(in, StreamCodec.utf8(), StreamCodec.int32());
+            assertEquals("trailing bytes", -1, in.read());
+        }
+        return to;
+    }
+
+    static List<String> keysInOrder(HashMap<String, Integer> m) {
+        return new ArrayList<>(m.keySet());
+    }
+
+    @Test
+    public void hashMapRoundTrip() throws IOException {
+        HashMap<String, Integer> m = new HashMap<>();
+        for (int i = 0; i < 1000; i++)
+            m.put("k" + i, i);
+        HashMap<String, Integer> copy = roundTrip(m, new HashMap<>());
+        assertEquals(m, copy);
+        // 读到已有键值对的Map中时覆盖相同的键
+        HashMap<String, Integer> target = new HashMap<>();
+        target.put("k1", -1);
+        target.put("other", -2);
+        roundTrip(m, target);
+        assertEquals(m.size() + 1, target.size());
+        assertEquals(Integer.valueOf(1), target.get("k1"));
+    }
+
+    @Test
+    public void linkedHashMapKeepsInsertionOrder() throws IOException {
+        // 倒序插入，桶的顺序与插入顺序不同
+        LinkedHashMap<String, Integer> m = new LinkedHashMap<>();
+        for (int i = KEYS - 1; i >= 0; i--)
+            m.put("k" + i, i);
+        LinkedHashMap<String, Integer> copy = roundTrip(m, new LinkedHashMap<>());
+        assertEquals(m, copy);
+        assertEquals(keysInOrder(m), keysInOrder(copy));
+    }
+
+    @Test
+    public void linkedHashMapKeepsAccessOrder() throws IOException {
+        LinkedHashMap<String, Integer> m = new LinkedHashMap<>(16, 0.75f, true);
+        for (int i = 0; i < KEYS; i++)
+            m.put("k" + i, i);
+        for (int i = 0; i < KEYS; i += 3)
+            m.get("k" + i);
+        LinkedHashMap<String, Integer> copy = roundTrip(m, new LinkedHashMap<>(16, 0.75f, true));
+        assertEquals(keysInOrder(m), keysInOrder(copy));
+    }
+
+    @Test
+    public void boundedCacheKeepsEvictionOrder() throws IOException {
+        BoundedCache<String, Integer> c = new BoundedCache<>(KEYS);
+        for (int i = 0; i < KEYS; i++)
+            c.put("k" + i, i);
+        c.get("k0");
+        BoundedCache<String, Integer> copy = roundTrip(c, new BoundedCache<>(KEYS));
+        // k0是最近访问的，读回之后应该淘汰k1
+        copy.put("new", -1);
+        assertTrue(copy.containsKey("k0"));
+        assertFalse(copy.containsKey("k1"));
+        assertEquals(KEYS, copy.size());
+    }
+}